@@ -0,0 +1,85 @@
+package com.docomo.admin.config;
+
+import com.docomo.admin.repository.mongo.MongoParkingLotRepository;
+import com.docomo.admin.repository.mongo.MongoTransactionRepository;
+import com.docomo.admin.service.mongo.MongoIndexService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import java.util.List;
+
+/**
+ * MongoDB のインデックスを起動時に作成する (ApplicationReadyEvent より前に実行される)。
+ * 本番で起動時の作成を止める場合は admin.mongo.indexes.create-on-startup=false にし、
+ * デプロイ時に --migrate-mongo-indexes を付けて起動すると、インデックスだけ作成して終了する。
+ * インデックス用の派生フィールド (ナンバーの n-gram など) を持たない既存ドキュメントもここで補完し、
+ * 文字列で保存された金額 (取引の金額・駐車場の料金) を Decimal128 に書き換える。
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class MongoIndexInitializer implements ApplicationRunner {
+
+    static final String MIGRATE_OPTION = "migrate-mongo-indexes";
+
+    private final MongoIndexService indexService;
+    private final MongoTransactionRepository transactionRepository;
+    private final MongoParkingLotRepository parkingLotRepository;
+    private final ApplicationContext applicationContext;
+
+    @Value("${admin.mongo.indexes.create-on-startup:true}")
+    private boolean createOnStartup;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (args.containsOption(MIGRATE_OPTION)) {
+            List<String> failures = indexService.ensureIndexes();
+            backfill();
+            int exitCode = SpringApplication.exit(applicationContext, () -> failures.isEmpty() ? 0 : 1);
+            System.exit(exitCode);
+        }
+        if (createOnStartup) {
+            List<String> failures = indexService.ensureIndexes();
+            if (!failures.isEmpty()) {
+                log.error("Mongo indexes could not be created: {}", failures);
+            }
+            backfill();
+        }
+    }
+
+    private void backfill() {
+        try {
+            long updated = transactionRepository.backfillLicensePlateKeys();
+            if (updated > 0) {
+                log.info("Backfilled license plate search keys for {} transactions", updated);
+            }
+        } catch (DataAccessException e) {
+            log.error("Failed to backfill license plate search keys", e);
+        }
+        try {
+            long updated = transactionRepository.backfillDecimalAmounts();
+            if (updated > 0) {
+                log.info("Converted {} transaction amounts to Decimal128", updated);
+            }
+        } catch (DataAccessException e) {
+            log.error("Failed to convert transaction amounts to Decimal128", e);
+        }
+        try {
+            long updated = parkingLotRepository.backfillDecimalRates();
+            if (updated > 0) {
+                log.info("Converted rates of {} parking lots to Decimal128", updated);
+            }
+        } catch (DataAccessException e) {
+            log.error("Failed to convert parking lot rates to Decimal128", e);
+        }
+    }
+}
@@ -1,25 +1,34 @@
 package com.docomo.admin.config;
 
+import com.docomo.admin.security.JwtAuthenticationFilter;
+import com.docomo.admin.security.JwtTokenService;
+import com.docomo.admin.security.RefreshTokenService;
+import com.docomo.admin.security.TokenCookies;
+import com.docomo.admin.security.TokenLoginSuccessHandler;
+import com.docomo.admin.security.TokenLogoutHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
+import org.springframework.security.web.savedrequest.NullRequestCache;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // セッションを使うフォームログイン (admin.security.token.enabled=false のとき)
     @Bean
+    @ConditionalOnProperty(name = "admin.security.token.enabled", havingValue = "false", matchIfMissing = true)
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+        authorizeRequests(http);
         http
-            .authorizeHttpRequests(authz -> authz
-                .requestMatchers("/h2-console/**").permitAll()
-                .requestMatchers("/css/**", "/js/**", "/images/**").permitAll()
-                .anyRequest().authenticated()
-            )
             .formLogin(form -> form
                 .loginPage("/login")
                 .defaultSuccessUrl("/")
@@ -31,16 +40,63 @@ public class SecurityConfig {
             )
             .csrf(csrf -> csrf
                 .ignoringRequestMatchers("/h2-console/**")
-            )
-            .headers(headers -> headers
-                .frameOptions().sameOrigin()
             );
         
         return http.build();
     }
 
+    // セッションを使わないトークン認証。ログイン画面はそのままで、成功時にアクセストークンと
+    // リフレッシュトークンを Cookie で返す。CSRF トークンも Cookie に持つので、どのノードで受けてもよい
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    @ConditionalOnProperty(name = "admin.security.token.enabled", havingValue = "true")
+    public SecurityFilterChain tokenFilterChain(HttpSecurity http, JwtTokenService tokenService,
+                                                RefreshTokenService refreshTokenService,
+                                                @Value("${admin.security.token.secure-cookies:true}") boolean secureCookies)
+            throws Exception {
+        TokenCookies cookies = new TokenCookies(secureCookies);
+        SimpleUrlAuthenticationFailureHandler failureHandler = new SimpleUrlAuthenticationFailureHandler("/login?error");
+        failureHandler.setAllowSessionCreation(false);
+        
+        authorizeRequests(http);
+        http
+            // 認証情報はリクエストの間だけ持つ。SessionCreationPolicy.STATELESS は使わない
+            // (認証済みのリクエストごとにログイン扱いになり、CSRF トークンが毎回作り直されてしまう)
+            .securityContext(context -> context
+                .securityContextRepository(new RequestAttributeSecurityContextRepository())
+            )
+            .requestCache(cache -> cache
+                .requestCache(new NullRequestCache())
+            )
+            .addFilterBefore(new JwtAuthenticationFilter(tokenService, refreshTokenService, cookies),
+                UsernamePasswordAuthenticationFilter.class)
+            .formLogin(form -> form
+                .loginPage("/login")
+                .successHandler(new TokenLoginSuccessHandler(tokenService, refreshTokenService, cookies, "/"))
+                .failureHandler(failureHandler)
+                .permitAll()
+            )
+            .logout(logout -> logout
+                .addLogoutHandler(new TokenLogoutHandler(refreshTokenService, cookies))
+                .logoutSuccessUrl("/login?logout")
+                .permitAll()
+            )
+            .csrf(csrf -> csrf
+                .csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse())
+                .ignoringRequestMatchers("/h2-console/**")
+            );
+        
+        return http.build();
+    }
+
+    private static void authorizeRequests(HttpSecurity http) throws Exception {
+        http
+            .authorizeHttpRequests(authz -> authz
+                .requestMatchers("/h2-console/**").permitAll()
+                .requestMatchers("/css/**", "/js/**", "/images/**").permitAll()
+                .anyRequest().authenticated()
+            )
+            .headers(headers -> headers
+                .frameOptions().sameOrigin()
+            );
     }
-} 
\ No newline at end of file
+}
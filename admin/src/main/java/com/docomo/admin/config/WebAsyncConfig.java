@@ -0,0 +1,39 @@
+package com.docomo.admin.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import java.time.Duration;
+
+// エクスポートなどのストリーミングレスポンスは専用のスレッドで書き出し、リクエスト処理スレッドを占有しない
+@Configuration
+public class WebAsyncConfig implements WebMvcConfigurer {
+
+    @Value("${admin.export.max-concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${admin.export.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${admin.export.timeout:PT30M}")
+    private Duration timeout;
+
+    @Bean
+    public ThreadPoolTaskExecutor streamingTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("streaming-");
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamingTaskExecutor());
+        configurer.setDefaultTimeout(timeout.toMillis());
+    }
+}
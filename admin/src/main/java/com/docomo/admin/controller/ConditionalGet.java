@@ -0,0 +1,89 @@
+package com.docomo.admin.controller;
+
+import com.docomo.admin.service.version.VersionStamp;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.security.web.csrf.DeferredCsrfToken;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.servlet.support.RequestContextUtils;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 条件付き GET。版 (と画面を変える値) から ETag を作り、If-None-Match / If-Modified-Since が一致すれば 304 を返す。
+ * 一致したら呼び出し側は null を返す (DB もテンプレートも使わない)。
+ * 画面には CSRF トークンとログイン中のユーザーが入るので、それも ETag に含める。フラッシュメッセージがある画面は毎回描画する。
+ * 版はノードごとなので、他のノードでの更新も拾えるよう revalidate-interval ごとに ETag を切り替える。
+ */
+@Component
+public class ConditionalGet {
+
+    private final long revalidateMillis;
+
+    public ConditionalGet(@Value("${admin.http.conditional.revalidate-interval:PT1M}") Duration revalidateInterval) {
+        this.revalidateMillis = Math.max(1, revalidateInterval.toMillis());
+    }
+
+    public boolean notModified(NativeWebRequest request, VersionStamp stamp, Object... variant) {
+        List<Object> parts = new ArrayList<>(List.of(stamp.getEpoch(), stamp.getVersion()));
+        parts.addAll(Arrays.asList(variant));
+        return check(request, stamp.getLastModified(), parts);
+    }
+
+    // 版を持たない画面 (メモリ上の集計値だけで描画するものなど) は値そのものから ETag を作る
+    public boolean contentNotModified(NativeWebRequest request, Object... content) {
+        return check(request, null, Arrays.asList(content));
+    }
+
+    private boolean check(NativeWebRequest request, Instant lastModified, List<Object> parts) {
+        HttpServletRequest servletRequest = request.getNativeRequest(HttpServletRequest.class);
+        HttpServletResponse servletResponse = request.getNativeResponse(HttpServletResponse.class);
+        if (servletRequest == null || servletResponse == null) {
+            return false;
+        }
+        Map<String, ?> flash = RequestContextUtils.getInputFlashMap(servletRequest);
+        if (flash != null && !flash.isEmpty()) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        long bucketStart = now - now % revalidateMillis;
+        StringBuilder seed = new StringBuilder()
+            .append(bucketStart).append('|')
+            .append(servletRequest.getRemoteUser()).append('|')
+            .append(csrfToken(servletRequest));
+        for (Object part : parts) {
+            seed.append('|').append(part);
+        }
+        String etag = "W/\"" + DigestUtils.md5DigestAsHex(seed.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+
+        // キャッシュはしてよいが、使う前に毎回確認させる (Spring Security の no-store を上書きする)
+        servletResponse.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        if (lastModified == null) {
+            return request.checkNotModified(etag);
+        }
+        Instant validFrom = Instant.ofEpochMilli(Math.max(lastModified.toEpochMilli(), bucketStart));
+        return request.checkNotModified(etag, validFrom.truncatedTo(ChronoUnit.SECONDS).toEpochMilli());
+    }
+
+    // マスクされていない CSRF トークン (画面に埋め込まれるトークンはリクエストごとにマスクが変わる)
+    private static String csrfToken(HttpServletRequest request) {
+        Object deferred = request.getAttribute(DeferredCsrfToken.class.getName());
+        if (deferred instanceof DeferredCsrfToken token) {
+            CsrfToken csrfToken = token.get();
+            return csrfToken != null ? csrfToken.getToken() : "";
+        }
+        return "";
+    }
+}
@@ -1,44 +1,60 @@
 package com.docomo.admin.controller;
 
-import com.docomo.admin.service.ParkingLotService;
-import com.docomo.admin.service.TransactionService;
-import com.docomo.admin.service.UserService;
+import com.docomo.admin.service.occupancy.OccupancyHistoryService;
+import com.docomo.admin.service.occupancy.OccupancyPoint;
+import com.docomo.admin.service.occupancy.OccupancyResolution;
+import com.docomo.admin.service.statistics.DashboardStatistics;
+import com.docomo.admin.service.statistics.DashboardStatisticsService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
-import java.math.BigDecimal;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.NativeWebRequest;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequiredArgsConstructor
 public class DashboardController {
     
-    private final UserService userService;
-    private final ParkingLotService parkingLotService;
-    private final TransactionService transactionService;
+    private final DashboardStatisticsService statisticsService;
+    private final OccupancyHistoryService occupancyHistoryService;
+    private final ConditionalGet conditionalGet;
     
     @GetMapping("/")
-    public String dashboard(Model model) {
-        // 統計情報を取得
-        long totalUsers = userService.getAllUsers().size();
-        long totalParkingLots = parkingLotService.getAllParkingLots().size();
-        long activeParkingLots = parkingLotService.getParkingLotsByStatus(
-            com.docomo.admin.entity.ParkingLot.ParkingLotStatus.ACTIVE
-        ).size();
-        
-        BigDecimal todayRevenue = transactionService.getTotalRevenue();
-        BigDecimal monthlyRevenue = transactionService.getMonthlyRevenue();
+    public String dashboard(Model model, NativeWebRequest request) {
+        // 統計情報を取得 (インメモリの集計値なのでDBアクセスなし)
+        DashboardStatistics statistics = statisticsService.getStatistics();
+        // 集計値が変わっていなければ描画しない
+        if (conditionalGet.contentNotModified(request, statistics)) {
+            return null;
+        }
         
         // モデルにデータを追加
-        model.addAttribute("totalUsers", totalUsers);
-        model.addAttribute("totalParkingLots", totalParkingLots);
-        model.addAttribute("activeParkingLots", activeParkingLots);
-        model.addAttribute("todayRevenue", todayRevenue);
-        model.addAttribute("monthlyRevenue", monthlyRevenue);
+        model.addAttribute("totalUsers", statistics.getTotalUsers());
+        model.addAttribute("totalParkingLots", statistics.getTotalParkingLots());
+        model.addAttribute("activeParkingLots", statistics.getActiveParkingLots());
+        model.addAttribute("todayRevenue", statistics.getTodayRevenue());
+        model.addAttribute("monthlyRevenue", statistics.getMonthlyRevenue());
         
         return "dashboard";
     }
     
+    // 稼働率グラフ用の空き台数の推移 (駐車場ID -> 時系列)
+    @GetMapping("/api/occupancy")
+    @ResponseBody
+    public Map<String, List<OccupancyPoint>> occupancy(
+            @RequestParam List<String> parkingLotIds,
+            @RequestParam(defaultValue = "HOUR") OccupancyResolution resolution,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        return occupancyHistoryService.getHistories(parkingLotIds, resolution, start, end);
+    }
+    
     @GetMapping("/login")
     public String login() {
         return "login";
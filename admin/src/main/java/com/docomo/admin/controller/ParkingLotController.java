@@ -2,25 +2,68 @@ package com.docomo.admin.controller;
 
 import com.docomo.admin.entity.ParkingLot;
 import com.docomo.admin.service.ParkingLotService;
+import com.docomo.admin.service.geo.NearbyParkingLot;
+import com.docomo.admin.service.version.EntityVersionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import java.util.List;
 
 @Controller
 @RequestMapping("/parking-lots")
 @RequiredArgsConstructor
 public class ParkingLotController {
     
+    private static final int SEARCH_LIMIT = 100;
+    
     private final ParkingLotService parkingLotService;
+    private final EntityVersionService versionService;
+    private final ConditionalGet conditionalGet;
     
+    // 自動更新で同じ一覧を何度も取りに来るので、変更がなければ 304 を返す (以下の GET も同じ)
     @GetMapping
-    public String listParkingLots(Model model) {
-        model.addAttribute("parkingLots", parkingLotService.getAllParkingLots());
+    public String listParkingLots(@RequestParam(required = false) String q, Model model, NativeWebRequest request) {
+        if (conditionalGet.notModified(request, versionService.getVersion(EntityVersionService.PARKING_LOTS), q)) {
+            return null;
+        }
+        if (q != null && !q.isBlank()) {
+            model.addAttribute("parkingLots", parkingLotService.searchParkingLots(q, SEARCH_LIMIT));
+            model.addAttribute("q", q);
+        } else {
+            model.addAttribute("parkingLots", parkingLotService.getAllParkingLots());
+        }
         return "parking-lots/list";
     }
     
+    // 検索ボックスの入力補完
+    @GetMapping("/suggest")
+    @ResponseBody
+    public List<ParkingLot> suggestParkingLots(@RequestParam String q, @RequestParam(defaultValue = "10") int limit,
+                                               NativeWebRequest request) {
+        if (conditionalGet.notModified(request, versionService.getVersion(EntityVersionService.PARKING_LOTS), q, limit)) {
+            return null;
+        }
+        return parkingLotService.suggestParkingLots(q, Math.min(limit, SEARCH_LIMIT));
+    }
+    
+    // 空きのある近くの駐車場 (radius はメートル、省略時は距離で絞らない)
+    @GetMapping("/nearby")
+    @ResponseBody
+    public List<NearbyParkingLot<ParkingLot>> nearbyParkingLots(@RequestParam double lat, @RequestParam double lng,
+                                                                @RequestParam(defaultValue = "10") int limit,
+                                                                @RequestParam(required = false) Double radius,
+                                                                NativeWebRequest request) {
+        if (conditionalGet.notModified(request, versionService.getVersion(EntityVersionService.PARKING_LOTS),
+                lat, lng, limit, radius)) {
+            return null;
+        }
+        return parkingLotService.findNearestAvailableParkingLots(lat, lng, Math.min(limit, SEARCH_LIMIT),
+            radius != null ? radius : Double.POSITIVE_INFINITY);
+    }
+    
     @GetMapping("/new")
     public String newParkingLotForm(Model model) {
         model.addAttribute("parkingLot", new ParkingLot());
@@ -40,7 +83,10 @@ public class ParkingLotController {
     }
     
     @GetMapping("/{id}/edit")
-    public String editParkingLotForm(@PathVariable Long id, Model model) {
+    public String editParkingLotForm(@PathVariable Long id, Model model, NativeWebRequest request) {
+        if (conditionalGet.notModified(request, versionService.getVersion(EntityVersionService.PARKING_LOTS, id), id)) {
+            return null;
+        }
         ParkingLot parkingLot = parkingLotService.getParkingLotById(id)
             .orElseThrow(() -> new RuntimeException("Parking lot not found"));
         model.addAttribute("parkingLot", parkingLot);
@@ -1,17 +1,33 @@
 package com.docomo.admin.controller;
 
 import com.docomo.admin.entity.Transaction;
+import com.docomo.admin.repository.TransactionFilter;
+import com.docomo.admin.repository.projection.TransactionListItem;
+import com.docomo.admin.repository.support.InvalidCursorException;
+import com.docomo.admin.repository.support.KeysetPage;
 import com.docomo.admin.service.ParkingLotService;
 import com.docomo.admin.service.TransactionService;
+import com.docomo.admin.service.export.ExportFormat;
+import com.docomo.admin.service.export.TransactionExportWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Locale;
 
+@Slf4j
 @Controller
 @RequestMapping("/transactions")
 @RequiredArgsConstructor
@@ -19,13 +35,100 @@ public class TransactionController {
     
     private final TransactionService transactionService;
     private final ParkingLotService parkingLotService;
+    private final ObjectMapper objectMapper;
     
     @GetMapping
-    public String listTransactions(Model model) {
-        model.addAttribute("transactions", transactionService.getAllTransactions());
+    public String listTransactions(@ModelAttribute("filter") TransactionFilter filter,
+                                   @RequestParam(required = false) String cursor,
+                                   @RequestParam(required = false) Integer size,
+                                   Model model) {
+        KeysetPage<TransactionListItem> page = transactionService.getTransactionPage(filter, cursor, size);
+        model.addAttribute("transactions", page.getItems());
+        model.addAttribute("nextCursor", page.getNextCursor());
+        model.addAttribute("size", KeysetPage.clampSize(size));
+        model.addAttribute("parkingLots", parkingLotService.getParkingLotOptions());
+        model.addAttribute("statuses", Transaction.TransactionStatus.values());
+        model.addAttribute("paymentMethods", Transaction.PaymentMethod.values());
         return "transactions/list";
     }
     
+    @GetMapping("/api")
+    @ResponseBody
+    public KeysetPage<TransactionListItem> listTransactionsJson(@ModelAttribute TransactionFilter filter,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(required = false) Integer size) {
+        return transactionService.getTransactionPage(filter, cursor, size);
+    }
+    
+    // 改ざんされた・別の一覧のカーソル (画面と API のどちらも)。トークンは返さない
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<String> invalidCursor(InvalidCursorException e) {
+        log.debug("Rejected transaction page request: {}", e.getMessage());
+        return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body("Invalid cursor");
+    }
+    
+    // 入庫日時が [from, to) の取引を CSV/NDJSON でストリーミング出力する (非同期スレッドで書き出す)
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String filename = String.format("transactions-%s-%s.%s",
+            from.format(DateTimeFormatter.BASIC_ISO_DATE), to.format(DateTimeFormatter.BASIC_ISO_DATE), format.getExtension());
+        
+        StreamingResponseBody body = output -> {
+            try (TransactionExportWriter writer = new TransactionExportWriter(output, format, objectMapper, gzip)) {
+                long rows = transactionService.exportTransactions(from, to, writer);
+                log.info("Exported {} transactions ({} - {}) as {}", rows, from, to, format);
+            }
+        };
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_TYPE, format.getContentType())
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+    
+    // Accept-Encoding の q 値を見て gzip を受け付けるか判定する。gzip;q=0 は明示的な拒否。
+    // gzip の指定がなければ * の q 値に従う (q 値が読めないものは受け付けないとみなす)
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double wildcard = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.length() > 2 && parameter.substring(0, 2).equalsIgnoreCase("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = gzip != null ? Math.max(gzip, quality) : quality;
+            } else if (coding.equals("*")) {
+                wildcard = quality;
+            }
+        }
+        if (gzip != null) {
+            return gzip > 0;
+        }
+        return wildcard != null && wildcard > 0;
+    }
+    
     @GetMapping("/new")
     public String newTransactionForm(Model model) {
         model.addAttribute("transaction", new Transaction());
@@ -2,10 +2,12 @@ package com.docomo.admin.controller;
 
 import com.docomo.admin.entity.User;
 import com.docomo.admin.service.UserService;
+import com.docomo.admin.service.version.EntityVersionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 @Controller
@@ -14,9 +16,15 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 public class UserController {
     
     private final UserService userService;
+    private final EntityVersionService versionService;
+    private final ConditionalGet conditionalGet;
     
+    // 変更がなければ 304 を返す (ユーザー一覧を読まない)
     @GetMapping
-    public String listUsers(Model model) {
+    public String listUsers(Model model, NativeWebRequest request) {
+        if (conditionalGet.notModified(request, versionService.getVersion(EntityVersionService.USERS))) {
+            return null;
+        }
         model.addAttribute("users", userService.getAllUsers());
         return "users/list";
     }
@@ -40,7 +48,10 @@ public class UserController {
     }
     
     @GetMapping("/{id}/edit")
-    public String editUserForm(@PathVariable Long id, Model model) {
+    public String editUserForm(@PathVariable Long id, Model model, NativeWebRequest request) {
+        if (conditionalGet.notModified(request, versionService.getVersion(EntityVersionService.USERS, id), id)) {
+            return null;
+        }
         User user = userService.getUserById(id)
             .orElseThrow(() -> new RuntimeException("User not found"));
         model.addAttribute("user", user);
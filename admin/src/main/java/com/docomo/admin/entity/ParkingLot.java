@@ -1,14 +1,20 @@
 package com.docomo.admin.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+// 取引の関連・画面の参照から何度も読まれるので二次キャッシュに置く。
+// 入出庫の書き戻しはエンティティの更新で行うので、変わった駐車場のエントリだけが書き換わる (画面からの一括 UPDATE ではリージョンごと無効化される)
 @Entity
 @Table(name = "parking_lots")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "parking-lots")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -39,6 +45,15 @@ public class ParkingLot {
     @Enumerated(EnumType.STRING)
     private ParkingLotStatus status;
     
+    // 近くの駐車場の検索用 (WGS84)。未設定の駐車場は検索対象にならない
+    private Double latitude;
+    
+    private Double longitude;
+    
+    // 画面からの編集とセンサーからの空き台数更新が互いを上書きしないよう、更新ごとに進める
+    @Version
+    private Long version;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
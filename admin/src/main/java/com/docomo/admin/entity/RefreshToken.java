@@ -0,0 +1,52 @@
+package com.docomo.admin.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+// リフレッシュトークン。トークン自体は保存せず SHA-256 のハッシュで引く。
+// 1回使うと usedAt が入り、同じ系列 (familyId) の次のトークンに置き換わる。権限は持たず、使うたびにユーザーを読み直す
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+    @Index(name = "idx_refresh_tokens_family", columnList = "family_id"),
+    @Index(name = "idx_refresh_tokens_username", columnList = "username"),
+    @Index(name = "idx_refresh_tokens_expires_at", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshToken {
+    
+    @Id
+    @Column(name = "token_hash", length = 64)
+    private String tokenHash;
+    
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
+    
+    @Column(nullable = false)
+    private String username;
+    
+    // 系列の最初のトークン (ログイン) の発行日時。ローテーションしても系列の有効期限はここから数える
+    @Column(name = "family_issued_at", nullable = false)
+    private LocalDateTime familyIssuedAt;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    @Column(name = "used_at")
+    private LocalDateTime usedAt;
+    
+    @Column(nullable = false)
+    private boolean revoked;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,76 @@
+package com.docomo.admin.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "revenue_rollups", uniqueConstraints = {
+    // 支払方法・ステータスは NULL があり、列の組み合わせの一意制約では NULL 同士が重複扱いにならないのでキー列で守る
+    @UniqueConstraint(name = "uk_revenue_rollups_bucket_key", columnNames = "bucket_key")
+}, indexes = {
+    @Index(name = "idx_revenue_rollups_bucket", columnList = "granularity, bucket_start, status"),
+    @Index(name = "idx_revenue_rollups_parking_lot", columnList = "parking_lot_id, granularity, status")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueRollup {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Granularity granularity;
+    
+    @Column(name = "parking_lot_id", nullable = false)
+    private Long parkingLotId;
+    
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+    
+    @Column(name = "payment_method")
+    @Enumerated(EnumType.STRING)
+    private Transaction.PaymentMethod paymentMethod;
+    
+    @Enumerated(EnumType.STRING)
+    private Transaction.TransactionStatus status;
+    
+    @Column(name = "total_amount", precision = 14, scale = 2, nullable = false)
+    private BigDecimal totalAmount;
+    
+    @Column(name = "transaction_count", nullable = false)
+    private Long transactionCount;
+    
+    // (granularity, parking_lot_id, bucket_start, payment_method, status) をつないだもの。保存時に作る
+    @Column(name = "bucket_key", nullable = false, length = 120)
+    private String bucketKey;
+    
+    public RevenueRollup(Long id, Granularity granularity, Long parkingLotId, LocalDateTime bucketStart,
+                         Transaction.PaymentMethod paymentMethod, Transaction.TransactionStatus status,
+                         BigDecimal totalAmount, Long transactionCount) {
+        this(id, granularity, parkingLotId, bucketStart, paymentMethod, status, totalAmount, transactionCount,
+            keyOf(granularity, parkingLotId, bucketStart, paymentMethod, status));
+    }
+    
+    public static String keyOf(Granularity granularity, Long parkingLotId, LocalDateTime bucketStart,
+                               Transaction.PaymentMethod paymentMethod, Transaction.TransactionStatus status) {
+        return granularity + "|" + parkingLotId + "|" + bucketStart + "|"
+            + (paymentMethod != null ? paymentMethod : "-") + "|" + (status != null ? status : "-");
+    }
+    
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        bucketKey = keyOf(granularity, parkingLotId, bucketStart, paymentMethod, status);
+    }
+    
+    public enum Granularity {
+        HOUR, DAY
+    }
+}
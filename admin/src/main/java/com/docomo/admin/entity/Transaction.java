@@ -4,28 +4,45 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+    @Index(name = "idx_transactions_entry_time_id", columnList = "entry_time, id"),
+    @Index(name = "idx_transactions_lot_entry_time_id", columnList = "parking_lot_id, entry_time, id"),
+    @Index(name = "uk_transactions_event_id", columnList = "event_id", unique = true)
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Transaction {
     
+    // IDENTITY だと INSERT ごとに採番が必要でバッチにできないため、シーケンスから50件単位で払い出す
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
     
-    @ManyToOne
+    // 一覧・集計では読み込まない (必要な箇所で JOIN FETCH / EntityGraph を使う)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "parking_lot_id", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private ParkingLot parkingLot;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private User user;
     
+    // ゲートの入庫イベント ID (ジャーナルの再生で同じ入庫を二重に登録しないため)
+    @Column(name = "event_id", length = 64)
+    private String eventId;
+    
     @Column(name = "license_plate")
     private String licensePlate;
     
@@ -1,6 +1,9 @@
 package com.docomo.admin.entity.mongo;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import lombok.Data;
@@ -10,6 +13,15 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Document(collection = "parking_lots")
+@CompoundIndexes({
+    @CompoundIndex(name = "status_available_spaces", def = "{'status': 1, 'available_spaces': 1}"),
+    @CompoundIndex(name = "available_spaces", def = "{'available_spaces': 1}"),
+    @CompoundIndex(name = "hourly_rate", def = "{'hourly_rate': 1}"),
+    @CompoundIndex(name = "daily_rate", def = "{'daily_rate': 1}"),
+    @CompoundIndex(name = "total_spaces", def = "{'total_spaces': 1}"),
+    // 空きのある近くの駐車場 ($nearSphere + status + available_spaces)
+    @CompoundIndex(name = "location_status_available_spaces", def = "{'location': '2dsphere', 'status': 1, 'available_spaces': 1}")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -39,6 +51,10 @@ public class MongoParkingLot {
     @Field("status")
     private ParkingLotStatus status;
     
+    // GeoJSON の Point (経度, 緯度)。未設定の駐車場は検索対象にならない
+    @Field("location")
+    private GeoJsonPoint location;
+    
     @Field("created_at")
     private LocalDateTime createdAt;
     
@@ -1,6 +1,8 @@
 package com.docomo.admin.entity.mongo;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import lombok.Data;
@@ -8,8 +10,28 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Document(collection = "transactions")
+// リポジトリの検索ごとのインデックス (自動作成は無効なので MongoIndexService が起動時に作る)
+@CompoundIndexes({
+    @CompoundIndex(name = "entry_time_id", def = "{'entry_time': -1, '_id': -1}"),
+    @CompoundIndex(name = "parking_lot_entry_time_id", def = "{'parking_lot_id': 1, 'entry_time': -1, '_id': -1}"),
+    // 一覧の絞り込み (findPage) も並び順 (entry_time, _id) までインデックスで返せるようにする
+    @CompoundIndex(name = "parking_lot_status_entry_time_id", def = "{'parking_lot_id': 1, 'status': 1, 'entry_time': -1, '_id': -1}"),
+    @CompoundIndex(name = "status_entry_time_id", def = "{'status': 1, 'entry_time': -1, '_id': -1}"),
+    @CompoundIndex(name = "payment_method_entry_time_id", def = "{'payment_method': 1, 'entry_time': -1, '_id': -1}"),
+    @CompoundIndex(name = "user_status", def = "{'user_id': 1, 'status': 1}"),
+    // 入庫中 (exit_time 未設定) の検索もこのインデックスの null の範囲で引く
+    @CompoundIndex(name = "exit_time", def = "{'exit_time': 1}"),
+    @CompoundIndex(name = "created_at", def = "{'created_at': 1}"),
+    // 金額は出庫時に入るので、入庫中の取引は索引に載せない
+    @CompoundIndex(name = "amount", def = "{'amount': 1}", partialFilter = "{'amount': {$exists: true}}"),
+    @CompoundIndex(name = "event_id", def = "{'event_id': 1}", unique = true, sparse = true),
+    // ナンバーの部分一致 (n-gram のマルチキーインデックス) と前方一致
+    @CompoundIndex(name = "license_plate_grams", def = "{'license_plate_grams': 1}"),
+    @CompoundIndex(name = "license_plate_key", def = "{'license_plate_key': 1}")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -24,9 +46,20 @@ public class MongoTransaction {
     @Field("user_id")
     private String userId;
     
+    // ゲートの入庫イベント ID (ジャーナルの再生で同じ入庫を二重に登録しないため)
+    @Field("event_id")
+    private String eventId;
+    
     @Field("license_plate")
     private String licensePlate;
     
+    // 検索用 (保存時に LicensePlateIndexCallback が license_plate から作る)
+    @Field("license_plate_key")
+    private String licensePlateKey;
+    
+    @Field("license_plate_grams")
+    private List<String> licensePlateGrams;
+    
     @Field("entry_time")
     private LocalDateTime entryTime;
     
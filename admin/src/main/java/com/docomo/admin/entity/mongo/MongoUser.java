@@ -1,6 +1,8 @@
 package com.docomo.admin.entity.mongo;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import lombok.Data;
@@ -9,6 +11,13 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDateTime;
 
 @Document(collection = "users")
+@CompoundIndexes({
+    @CompoundIndex(name = "username", def = "{'username': 1}", unique = true),
+    // メールアドレス未登録のユーザーは何人いてもよい
+    @CompoundIndex(name = "email", def = "{'email': 1}", unique = true, partialFilter = "{'email': {$exists: true}}"),
+    @CompoundIndex(name = "role", def = "{'role': 1}"),
+    @CompoundIndex(name = "created_at", def = "{'created_at': 1}")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
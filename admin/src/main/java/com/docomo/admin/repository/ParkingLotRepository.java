@@ -2,12 +2,73 @@ package com.docomo.admin.repository;
 
 import com.docomo.admin.entity.ParkingLot;
 import com.docomo.admin.entity.ParkingLot.ParkingLotStatus;
+import com.docomo.admin.repository.projection.ParkingLotAvailability;
+import com.docomo.admin.repository.projection.ParkingLotLocation;
+import com.docomo.admin.repository.projection.ParkingLotOption;
+import com.docomo.admin.repository.projection.ParkingLotSearchText;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ParkingLotRepository extends JpaRepository<ParkingLot, Long> {
+    // 結果はクエリキャッシュに置く (parking_lots が更新されるとまとめて無効化される)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<ParkingLot> findByStatus(ParkingLotStatus status);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<ParkingLot> findByNameContainingIgnoreCase(String name);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<ParkingLotOption> findAllByOrderByNameAsc();
+    
+    List<ParkingLotAvailability> findAvailabilityBy();
+    List<ParkingLotAvailability> findAvailabilityByIdIn(Collection<Long> ids);
+    List<ParkingLotSearchText> findSearchTextBy();
+    List<ParkingLotLocation> findLocationByLatitudeNotNullAndLongitudeNotNull();
+    
+    @Query("SELECT p.status, COUNT(p) FROM ParkingLot p GROUP BY p.status")
+    List<Object[]> countGroupByStatus();
+    
+    // 一括 UPDATE の後に同じトランザクションで読み直す用 (二次キャッシュのエントリはコミットまで残っている)
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE, value = "BYPASS"))
+    @Query("SELECT p FROM ParkingLot p WHERE p.id = :id")
+    Optional<ParkingLot> findCurrentById(@Param("id") Long id);
+    
+    // 入出庫の書き戻し用。行ロックを取って DB の最新の値を読み、変更はエンティティの更新として反映する
+    // (一括 UPDATE と違い、二次キャッシュは更新した駐車場のエントリだけが書き換わる)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_CACHE_RETRIEVE_MODE, value = "BYPASS"))
+    @Query("SELECT p FROM ParkingLot p WHERE p.id IN :ids ORDER BY p.id")
+    List<ParkingLot> findForUpdateByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT p.availableSpaces FROM ParkingLot p WHERE p.id = :id")
+    Optional<Integer> findAvailableSpacesById(@Param("id") Long id);
+    
+    // 以下は SELECT せずに1文で更新する。範囲外になる場合は WHERE で弾かれ 0 を返す
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ParkingLot p SET p.availableSpaces = p.availableSpaces + :count, p.version = p.version + 1, " +
+           "p.updatedAt = LOCAL DATETIME WHERE p.id = :id AND p.availableSpaces + :count <= p.totalSpaces")
+    int incrementAvailableSpaces(@Param("id") Long id, @Param("count") int count);
+    
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ParkingLot p SET p.availableSpaces = p.availableSpaces - :count, p.version = p.version + 1, " +
+           "p.updatedAt = LOCAL DATETIME WHERE p.id = :id AND p.availableSpaces >= :count")
+    int decrementAvailableSpaces(@Param("id") Long id, @Param("count") int count);
+    
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ParkingLot p SET p.availableSpaces = :availableSpaces, p.version = p.version + 1, " +
+           "p.updatedAt = LOCAL DATETIME WHERE p.id = :id AND :availableSpaces >= 0 AND :availableSpaces <= p.totalSpaces")
+    int setAvailableSpaces(@Param("id") Long id, @Param("availableSpaces") int availableSpaces);
 } 
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.docomo.admin.repository;
+
+import com.docomo.admin.entity.RevenueRollup;
+import com.docomo.admin.entity.RevenueRollup.Granularity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Repository
+public interface RevenueRollupRepository extends JpaRepository<RevenueRollup, Long> {
+    
+    @Modifying
+    @Query("UPDATE RevenueRollup r SET r.totalAmount = r.totalAmount + :amount, r.transactionCount = r.transactionCount + :count " +
+           "WHERE r.bucketKey = :bucketKey")
+    int increment(@Param("bucketKey") String bucketKey,
+                  @Param("amount") BigDecimal amount,
+                  @Param("count") long count);
+    
+    @Query("SELECT SUM(r.totalAmount) FROM RevenueRollup r WHERE r.granularity = :granularity " +
+           "AND r.bucketStart >= :from AND r.bucketStart < :to AND r.status = 'COMPLETED'")
+    BigDecimal getTotalRevenueByBucketRange(@Param("granularity") Granularity granularity,
+                                            @Param("from") LocalDateTime from,
+                                            @Param("to") LocalDateTime to);
+    
+    @Query("SELECT SUM(r.totalAmount) FROM RevenueRollup r WHERE r.granularity = 'DAY' " +
+           "AND r.parkingLotId = :parkingLotId AND r.status = 'COMPLETED'")
+    BigDecimal getTotalRevenueByParkingLot(@Param("parkingLotId") Long parkingLotId);
+}
@@ -0,0 +1,26 @@
+package com.docomo.admin.repository;
+
+import com.docomo.admin.entity.Transaction.PaymentMethod;
+import com.docomo.admin.entity.Transaction.TransactionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import java.time.LocalDateTime;
+
+// 取引一覧の絞り込み条件 (null の項目は条件にしない。期間は入庫日時で from 以上 to 未満)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionFilter {
+
+    private Long parkingLotId;
+    private TransactionStatus status;
+    private PaymentMethod paymentMethod;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime to;
+}
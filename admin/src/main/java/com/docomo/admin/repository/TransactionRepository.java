@@ -2,24 +2,84 @@ package com.docomo.admin.repository;
 
 import com.docomo.admin.entity.Transaction;
 import com.docomo.admin.entity.Transaction.TransactionStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, TransactionRepositoryCustom {
+    // エンティティを返す検索は駐車場だけを同じ SELECT で読み込む (ユーザーは遅延読み込み)
+    @Override
+    @EntityGraph(attributePaths = "parkingLot")
+    List<Transaction> findAll();
+    
+    @EntityGraph(attributePaths = "parkingLot")
     List<Transaction> findByParkingLotId(Long parkingLotId);
+    
+    @EntityGraph(attributePaths = "parkingLot")
     List<Transaction> findByUserId(Long userId);
+    
+    @EntityGraph(attributePaths = "parkingLot")
     List<Transaction> findByStatus(TransactionStatus status);
+    
+    @EntityGraph(attributePaths = "parkingLot")
     List<Transaction> findByEntryTimeBetween(LocalDateTime start, LocalDateTime end);
     
+    Optional<Transaction> findByEventId(String eventId);
+    
+    @Query("SELECT t.id FROM Transaction t WHERE t.eventId = :eventId")
+    Optional<Long> findIdByEventId(@Param("eventId") String eventId);
+    
+    // 重複検出の起動時読み込み用
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT t.eventId FROM Transaction t WHERE t.eventId IS NOT NULL AND t.createdAt >= :since")
+    Stream<String> streamEventIdsCreatedSince(@Param("since") LocalDateTime since);
+    
     @Query("SELECT SUM(t.amount) FROM Transaction t WHERE t.parkingLot.id = :parkingLotId AND t.status = 'COMPLETED'")
     BigDecimal getTotalRevenueByParkingLot(@Param("parkingLotId") Long parkingLotId);
     
     @Query("SELECT SUM(t.amount) FROM Transaction t WHERE t.entryTime BETWEEN :startDate AND :endDate AND t.status = 'COMPLETED'")
     BigDecimal getTotalRevenueByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
-} 
\ No newline at end of file
+    
+    @Query("SELECT SUM(t.amount) FROM Transaction t WHERE t.entryTime >= :startDate AND t.entryTime < :endDate AND t.status = 'COMPLETED'")
+    BigDecimal getTotalRevenueByEntryTimeRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+    
+    @Query("SELECT t.parkingLot.id, YEAR(t.entryTime), MONTH(t.entryTime), DAY(t.entryTime), HOUR(t.entryTime), " +
+           "t.paymentMethod, t.status, SUM(t.amount), COUNT(t) FROM Transaction t WHERE t.entryTime IS NOT NULL " +
+           "GROUP BY t.parkingLot.id, YEAR(t.entryTime), MONTH(t.entryTime), DAY(t.entryTime), HOUR(t.entryTime), t.paymentMethod, t.status")
+    List<Object[]> getHourlyRevenueBuckets();
+    
+    @Query("SELECT YEAR(t.entryTime), MONTH(t.entryTime), DAY(t.entryTime), SUM(t.amount) FROM Transaction t " +
+           "WHERE t.entryTime >= :startDate AND t.status = 'COMPLETED' " +
+           "GROUP BY YEAR(t.entryTime), MONTH(t.entryTime), DAY(t.entryTime)")
+    List<Object[]> getDailyRevenueSince(@Param("startDate") LocalDateTime startDate);
+    
+    // エクスポート用。関連は外部キーの値しか使わないので結合しない。
+    // トランザクション内で使い、読み終えた行は呼び出し側で永続化コンテキストから外す
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM Transaction t WHERE t.entryTime >= :startDate AND t.entryTime < :endDate ORDER BY t.entryTime, t.id")
+    Stream<Transaction> streamByEntryTimeRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+    
+    // 分析用ストアの作り直し用 (AnalyticsRecord#isRecordable と同じ条件)。
+    // 列の値だけを読むので永続化コンテキストには載らない。トランザクション内で使う
+    @Query("SELECT COUNT(t) FROM Transaction t WHERE t.status = 'COMPLETED' AND t.parkingLot IS NOT NULL AND t.entryTime IS NOT NULL")
+    long countRecordable();
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT t.parkingLot.id, t.entryTime, t.exitTime, t.amount, t.paymentMethod FROM Transaction t " +
+           "WHERE t.status = 'COMPLETED' AND t.parkingLot IS NOT NULL AND t.entryTime IS NOT NULL ORDER BY t.id")
+    Stream<Object[]> streamRecordable();
+}
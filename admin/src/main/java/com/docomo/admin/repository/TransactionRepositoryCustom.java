@@ -0,0 +1,11 @@
+package com.docomo.admin.repository;
+
+import com.docomo.admin.repository.projection.TransactionListItem;
+import com.docomo.admin.repository.support.KeysetCursor;
+import java.util.List;
+
+public interface TransactionRepositoryCustom {
+
+    // after の次から最大 limit 件を (entryTime 降順, id 降順) で返す
+    List<TransactionListItem> findPage(TransactionFilter filter, KeysetCursor after, int limit);
+}
@@ -0,0 +1,68 @@
+package com.docomo.admin.repository;
+
+import com.docomo.admin.repository.projection.TransactionListItem;
+import com.docomo.admin.repository.support.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 条件の組み合わせごとに必要な述語だけを並べ、(entry_time, id) のインデックスでシークさせる
+public class TransactionRepositoryImpl implements TransactionRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<TransactionListItem> findPage(TransactionFilter filter, KeysetCursor after, int limit) {
+        // 駐車場名だけ結合し、ユーザーは外部キーの値だけを読む
+        StringBuilder jpql = new StringBuilder(
+            "SELECT new com.docomo.admin.repository.projection.TransactionListItem("
+                + "t.id, p.id, p.name, t.user.id, t.licensePlate, t.entryTime, t.exitTime, t.durationHours, "
+                + "t.amount, t.status, t.paymentMethod) "
+                + "FROM Transaction t JOIN t.parkingLot p WHERE 1 = 1");
+        Map<String, Object> parameters = new HashMap<>();
+
+        if (filter != null) {
+            if (filter.getParkingLotId() != null) {
+                jpql.append(" AND p.id = :parkingLotId");
+                parameters.put("parkingLotId", filter.getParkingLotId());
+            }
+            if (filter.getStatus() != null) {
+                jpql.append(" AND t.status = :status");
+                parameters.put("status", filter.getStatus());
+            }
+            if (filter.getPaymentMethod() != null) {
+                jpql.append(" AND t.paymentMethod = :paymentMethod");
+                parameters.put("paymentMethod", filter.getPaymentMethod());
+            }
+            if (filter.getFrom() != null) {
+                jpql.append(" AND t.entryTime >= :from");
+                parameters.put("from", filter.getFrom());
+            }
+            if (filter.getTo() != null) {
+                jpql.append(" AND t.entryTime < :to");
+                parameters.put("to", filter.getTo());
+            }
+        }
+
+        if (after != null) {
+            parameters.put("afterId", Long.valueOf(after.getId()));
+            if (after.getEntryTime() != null) {
+                jpql.append(" AND (t.entryTime < :afterTime OR (t.entryTime = :afterTime AND t.id < :afterId)"
+                    + " OR t.entryTime IS NULL)");
+                parameters.put("afterTime", after.getEntryTime());
+            } else {
+                // entryTime 未設定の行は末尾にまとめて id 降順
+                jpql.append(" AND t.entryTime IS NULL AND t.id < :afterId");
+            }
+        }
+        jpql.append(" ORDER BY t.entryTime DESC NULLS LAST, t.id DESC");
+
+        TypedQuery<TransactionListItem> query = entityManager.createQuery(jpql.toString(), TransactionListItem.class);
+        parameters.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+}
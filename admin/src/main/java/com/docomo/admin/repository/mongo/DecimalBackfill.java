@@ -0,0 +1,53 @@
+package com.docomo.admin.repository.mongo;
+
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// 文字列で保存された金額フィールドを Decimal128 に書き換える (文字列と数値は範囲検索で比較されないため)
+final class DecimalBackfill {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private DecimalBackfill() {
+    }
+
+    // 書き換えたドキュメント数を返す
+    static long convert(MongoTemplate mongoTemplate, String collection, String... fields) {
+        Criteria[] stringFields = Arrays.stream(fields)
+            .map(field -> Criteria.where(field).type(JsonSchemaObject.Type.stringType()))
+            .toArray(Criteria[]::new);
+        Query query = new Query(new Criteria().orOperator(stringFields));
+        query.fields().include(fields);
+        long updated = 0;
+        try (Stream<Document> documents = mongoTemplate.stream(query, Document.class, collection)) {
+            Iterator<Document> iterator = documents.iterator();
+            while (iterator.hasNext()) {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, collection);
+                int batch = 0;
+                while (batch < BATCH_SIZE && iterator.hasNext()) {
+                    Document document = iterator.next();
+                    Update update = new Update();
+                    for (String field : fields) {
+                        if (document.get(field) instanceof String value) {
+                            update.set(field, new Decimal128(new BigDecimal(value)));
+                        }
+                    }
+                    bulk.updateOne(new Query(Criteria.where("_id").is(document.get("_id"))), update);
+                    batch++;
+                }
+                updated += bulk.execute().getModifiedCount();
+            }
+        }
+        return updated;
+    }
+}
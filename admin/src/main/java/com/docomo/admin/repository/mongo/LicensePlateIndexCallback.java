@@ -0,0 +1,19 @@
+package com.docomo.admin.repository.mongo;
+
+import com.docomo.admin.entity.mongo.MongoTransaction;
+import com.docomo.admin.service.search.LicensePlateGrams;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.stereotype.Component;
+
+// 取引を保存するたびにナンバーの検索用フィールドを作り直す (save / insert / insertAll のすべてで呼ばれる)
+@Component
+public class LicensePlateIndexCallback implements BeforeConvertCallback<MongoTransaction> {
+
+    @Override
+    public MongoTransaction onBeforeConvert(MongoTransaction transaction, String collection) {
+        String key = LicensePlateGrams.normalize(transaction.getLicensePlate());
+        transaction.setLicensePlateKey(key);
+        transaction.setLicensePlateGrams(key != null ? LicensePlateGrams.index(key) : null);
+        return transaction;
+    }
+}
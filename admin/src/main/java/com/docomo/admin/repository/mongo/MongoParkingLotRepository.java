@@ -1,15 +1,18 @@
 package com.docomo.admin.repository.mongo;
 
 import com.docomo.admin.entity.mongo.MongoParkingLot;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.Point;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface MongoParkingLotRepository extends MongoRepository<MongoParkingLot, String> {
+public interface MongoParkingLotRepository extends MongoRepository<MongoParkingLot, String>, MongoParkingLotRepositoryCustom {
     
     List<MongoParkingLot> findByStatus(MongoParkingLot.ParkingLotStatus status);
     
@@ -35,4 +38,23 @@ public interface MongoParkingLotRepository extends MongoRepository<MongoParkingL
     
     @Query("{'status': 'ACTIVE', 'available_spaces': {$gt: 0}}")
     List<MongoParkingLot> findActiveAvailableParkingLots();
+    
+    @Query(value = "{}", fields = "{'total_spaces': 1, 'available_spaces': 1}")
+    List<MongoParkingLot> findAllAvailability();
+    
+    @Query(value = "{'_id': {$in: ?0}}", fields = "{'available_spaces': 1}")
+    List<MongoParkingLot> findAvailabilityByIdIn(Collection<String> ids);
+    
+    @Query(value = "{}", fields = "{'name': 1, 'address': 1}")
+    List<MongoParkingLot> findAllSearchText();
+    
+    @Query(value = "{}", fields = "{'status': 1, 'hourly_rate': 1, 'daily_rate': 1, 'total_spaces': 1, 'available_spaces': 1}")
+    List<MongoParkingLot> findAllFilterColumns();
+    
+    @Query(value = "{'location': {$exists: true}}", fields = "{'location': 1, 'status': 1}")
+    List<MongoParkingLot> findAllLocations();
+    
+    // 2dsphere インデックスを使う近い順の検索 (サービスはメモリ上の索引で答え、こちらは他の用途向け)
+    List<MongoParkingLot> findByStatusAndAvailableSpacesGreaterThanAndLocationNear(
+        MongoParkingLot.ParkingLotStatus status, Integer availableSpaces, Point location, Distance maxDistance);
 } 
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.docomo.admin.repository.mongo;
+
+import com.docomo.admin.entity.mongo.MongoParkingLot;
+import java.util.Map;
+
+public interface MongoParkingLotRepositoryCustom {
+
+    // 空き台数に delta を加算する。結果が 0 以上 total_spaces 以下になる場合だけ更新し、更新後の駐車場を返す (それ以外は null)
+    MongoParkingLot adjustAvailableSpaces(String id, int delta);
+
+    // 複数の駐車場の増減を1回の bulk write (UNORDERED) で反映し、更新できた件数を返す (範囲外のものは更新しない)。
+    // 一部の操作が失敗すると BulkOperationException を投げる。エラーの index は deltas の反復順で数える
+    int adjustAvailableSpaces(Map<String, Integer> deltas);
+
+    // 空き台数を上書きし、更新前の駐車場を返す。0 以上 total_spaces 以下の場合だけ更新する (それ以外・存在しなければ null)
+    MongoParkingLot replaceAvailableSpaces(String id, int availableSpaces);
+
+    // 文字列で保存された料金 (hourly_rate, daily_rate) を Decimal128 に書き換え、書き換えた件数を返す
+    long backfillDecimalRates();
+}
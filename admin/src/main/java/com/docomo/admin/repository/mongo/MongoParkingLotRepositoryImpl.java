@@ -0,0 +1,73 @@
+package com.docomo.admin.repository.mongo;
+
+import com.docomo.admin.entity.mongo.MongoParkingLot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+public class MongoParkingLotRepositoryImpl implements MongoParkingLotRepositoryCustom {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public MongoParkingLot adjustAvailableSpaces(String id, int delta) {
+        return mongoTemplate.findAndModify(new Query(withinBounds(id, delta)), adjustment(delta),
+            FindAndModifyOptions.options().returnNew(true), MongoParkingLot.class);
+    }
+
+    @Override
+    public int adjustAvailableSpaces(Map<String, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MongoParkingLot.class);
+        deltas.forEach((id, delta) -> operations.updateOne(new Query(withinBounds(id, delta)), adjustment(delta)));
+        return operations.execute().getModifiedCount();
+    }
+
+    @Override
+    public MongoParkingLot replaceAvailableSpaces(String id, int availableSpaces) {
+        if (availableSpaces < 0) {
+            throw new IllegalArgumentException("availableSpaces must not be negative");
+        }
+        // 上限は同じドキュメントの total_spaces と比較する
+        Criteria criteria = Criteria.where("id").is(id).andOperator(Criteria.expr(
+            ComparisonOperators.valueOf("total_spaces").greaterThanEqualToValue(availableSpaces)));
+        Update update = new Update()
+            .set("availableSpaces", availableSpaces)
+            .set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.findAndModify(new Query(criteria), update, MongoParkingLot.class);
+    }
+
+    @Override
+    public long backfillDecimalRates() {
+        return DecimalBackfill.convert(mongoTemplate, mongoTemplate.getCollectionName(MongoParkingLot.class),
+            "hourly_rate", "daily_rate");
+    }
+
+    private static Criteria withinBounds(String id, int delta) {
+        Criteria criteria = Criteria.where("id").is(id);
+        if (delta < 0) {
+            return criteria.and("availableSpaces").gte(-delta);
+        }
+        // 上限は同じドキュメントの total_spaces と比較する
+        return criteria.andOperator(Criteria.expr(
+            ComparisonOperators.valueOf(ArithmeticOperators.valueOf("available_spaces").add(delta))
+                .lessThanEqualTo("total_spaces")));
+    }
+
+    private static Update adjustment(int delta) {
+        return new Update()
+            .inc("availableSpaces", delta)
+            .set("updatedAt", LocalDateTime.now());
+    }
+}
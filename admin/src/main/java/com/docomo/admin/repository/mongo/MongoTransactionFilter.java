@@ -0,0 +1,25 @@
+package com.docomo.admin.repository.mongo;
+
+import com.docomo.admin.entity.mongo.MongoTransaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import java.time.LocalDateTime;
+
+// 取引一覧の絞り込み条件 (null の項目は条件にしない。期間は入庫日時で from 以上 to 未満)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MongoTransactionFilter {
+
+    private String parkingLotId;
+    private MongoTransaction.TransactionStatus status;
+    private MongoTransaction.PaymentMethod paymentMethod;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime to;
+}
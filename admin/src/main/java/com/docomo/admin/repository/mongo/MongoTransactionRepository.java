@@ -10,7 +10,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface MongoTransactionRepository extends MongoRepository<MongoTransaction, String> {
+public interface MongoTransactionRepository extends MongoRepository<MongoTransaction, String>, MongoTransactionRepositoryCustom {
     
     List<MongoTransaction> findByParkingLotId(String parkingLotId);
     
@@ -20,6 +20,8 @@ public interface MongoTransactionRepository extends MongoRepository<MongoTransac
     
     List<MongoTransaction> findByPaymentMethod(MongoTransaction.PaymentMethod paymentMethod);
     
+    Optional<MongoTransaction> findByEventId(String eventId);
+    
     @Query("{'license_plate': {$regex: ?0, $options: 'i'}}")
     List<MongoTransaction> findByLicensePlateContainingIgnoreCase(String licensePlate);
     
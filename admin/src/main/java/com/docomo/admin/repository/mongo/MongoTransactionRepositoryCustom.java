@@ -0,0 +1,23 @@
+package com.docomo.admin.repository.mongo;
+
+import com.docomo.admin.entity.mongo.MongoTransaction;
+import com.docomo.admin.repository.support.KeysetCursor;
+import java.util.List;
+
+public interface MongoTransactionRepositoryCustom {
+
+    // after の次から最大 limit 件を (entry_time 降順, _id 降順) で返す
+    List<MongoTransaction> findPage(MongoTransactionFilter filter, KeysetCursor after, int limit);
+
+    // ナンバーの部分一致 (全角・半角、大文字・小文字、区切りの違いは無視する)。新しい入庫から順に返す
+    List<MongoTransaction> searchByLicensePlate(String licensePlate);
+
+    // ナンバーの前方一致
+    List<MongoTransaction> searchByLicensePlatePrefix(String prefix);
+
+    // 検索用フィールドを持たない (導入前に登録された) 取引に設定し、更新件数を返す
+    long backfillLicensePlateKeys();
+
+    // 文字列で保存された (Decimal128 で保存する前の) 金額を Decimal128 に書き換え、更新件数を返す
+    long backfillDecimalAmounts();
+}
@@ -0,0 +1,131 @@
+package com.docomo.admin.repository.mongo;
+
+import com.docomo.admin.entity.mongo.MongoTransaction;
+import com.docomo.admin.repository.support.KeysetCursor;
+import com.docomo.admin.service.search.LicensePlateGrams;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+public class MongoTransactionRepositoryImpl implements MongoTransactionRepositoryCustom {
+
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+    private static final String COLLECTION = "transactions";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public List<MongoTransaction> findPage(MongoTransactionFilter filter, KeysetCursor after, int limit) {
+        List<Criteria> conditions = new ArrayList<>();
+        if (filter != null) {
+            if (filter.getParkingLotId() != null) {
+                conditions.add(Criteria.where("parkingLotId").is(filter.getParkingLotId()));
+            }
+            if (filter.getStatus() != null) {
+                conditions.add(Criteria.where("status").is(filter.getStatus()));
+            }
+            if (filter.getPaymentMethod() != null) {
+                conditions.add(Criteria.where("paymentMethod").is(filter.getPaymentMethod()));
+            }
+            if (filter.getFrom() != null || filter.getTo() != null) {
+                Criteria entryTime = Criteria.where("entryTime");
+                if (filter.getFrom() != null) {
+                    entryTime.gte(filter.getFrom());
+                }
+                if (filter.getTo() != null) {
+                    entryTime.lt(filter.getTo());
+                }
+                conditions.add(entryTime);
+            }
+        }
+
+        if (after != null) {
+            // 比較演算子の中の id は ObjectId に変換されないので自分で変換する
+            Object afterId = ObjectId.isValid(after.getId()) ? new ObjectId(after.getId()) : after.getId();
+            if (after.getEntryTime() != null) {
+                // null は比較演算子に一致しないので、末尾の entry_time 未設定の行を明示的に含める
+                conditions.add(new Criteria().orOperator(
+                    Criteria.where("entryTime").lt(after.getEntryTime()),
+                    Criteria.where("entryTime").is(after.getEntryTime()).and("id").lt(afterId),
+                    Criteria.where("entryTime").is(null)
+                ));
+            } else {
+                conditions.add(Criteria.where("entryTime").is(null).and("id").lt(afterId));
+            }
+        }
+
+        Query query = new Query();
+        if (!conditions.isEmpty()) {
+            query.addCriteria(new Criteria().andOperator(conditions));
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "entryTime", "id")).limit(limit);
+        return mongoTemplate.find(query, MongoTransaction.class);
+    }
+
+    @Override
+    public List<MongoTransaction> searchByLicensePlate(String licensePlate) {
+        String key = LicensePlateGrams.normalize(licensePlate);
+        List<String> grams = LicensePlateGrams.query(key);
+        Query query = new Query();
+        if (!grams.isEmpty()) {
+            // n-gram のマルチキーインデックスで候補を絞り、正規化キーの部分一致で確定する
+            // (n-gram をすべて含んでいても、並びが違えば一致しない)
+            query.addCriteria(Criteria.where("licensePlateGrams").all(grams)
+                .and("licensePlateKey").regex(Pattern.quote(key)));
+        } else if (!key.isEmpty()) {
+            // 1文字ではインデックスで絞れないので正規化キーを走査する
+            query.addCriteria(Criteria.where("licensePlateKey").regex(Pattern.quote(key)));
+        } else {
+            query.addCriteria(Criteria.where("licensePlateKey").exists(true));
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "entryTime", "id"));
+        return mongoTemplate.find(query, MongoTransaction.class);
+    }
+
+    @Override
+    public List<MongoTransaction> searchByLicensePlatePrefix(String prefix) {
+        // 先頭固定の正規表現は license_plate_key のインデックスの範囲検索になる
+        Query query = new Query(Criteria.where("licensePlateKey").regex("^" + Pattern.quote(LicensePlateGrams.normalize(prefix))));
+        query.with(Sort.by(Sort.Direction.DESC, "entryTime", "id"));
+        return mongoTemplate.find(query, MongoTransaction.class);
+    }
+
+    @Override
+    public long backfillLicensePlateKeys() {
+        Query query = new Query(Criteria.where("licensePlate").ne(null).and("licensePlateKey").exists(false));
+        query.fields().include("licensePlate");
+        long updated = 0;
+        try (Stream<MongoTransaction> transactions = mongoTemplate.stream(query, MongoTransaction.class)) {
+            Iterator<MongoTransaction> iterator = transactions.iterator();
+            while (iterator.hasNext()) {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MongoTransaction.class);
+                int batch = 0;
+                while (batch < BACKFILL_BATCH_SIZE && iterator.hasNext()) {
+                    MongoTransaction transaction = iterator.next();
+                    String key = LicensePlateGrams.normalize(transaction.getLicensePlate());
+                    bulk.updateOne(new Query(Criteria.where("id").is(transaction.getId())),
+                        new Update().set("licensePlateKey", key).set("licensePlateGrams", LicensePlateGrams.index(key)));
+                    batch++;
+                }
+                updated += bulk.execute().getModifiedCount();
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public long backfillDecimalAmounts() {
+        return DecimalBackfill.convert(mongoTemplate, COLLECTION, "amount");
+    }
+}
@@ -0,0 +1,11 @@
+package com.docomo.admin.repository.projection;
+
+// 空き台数の同期用 (ID と台数だけを読む)
+public interface ParkingLotAvailability {
+    
+    Long getId();
+    
+    Integer getTotalSpaces();
+    
+    Integer getAvailableSpaces();
+}
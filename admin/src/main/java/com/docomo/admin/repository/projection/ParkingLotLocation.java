@@ -0,0 +1,15 @@
+package com.docomo.admin.repository.projection;
+
+import com.docomo.admin.entity.ParkingLot.ParkingLotStatus;
+
+// 空間索引の作成用 (ID と位置、状態だけを読む)
+public interface ParkingLotLocation {
+    
+    Long getId();
+    
+    Double getLatitude();
+    
+    Double getLongitude();
+    
+    ParkingLotStatus getStatus();
+}
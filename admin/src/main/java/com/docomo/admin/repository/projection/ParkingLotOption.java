@@ -0,0 +1,9 @@
+package com.docomo.admin.repository.projection;
+
+// 選択肢の表示用 (ID と名前だけを読む)
+public interface ParkingLotOption {
+    
+    Long getId();
+    
+    String getName();
+}
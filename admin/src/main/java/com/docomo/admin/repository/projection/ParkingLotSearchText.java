@@ -0,0 +1,11 @@
+package com.docomo.admin.repository.projection;
+
+// 全文検索の索引作成用 (ID と名前・住所だけを読む)
+public interface ParkingLotSearchText {
+    
+    Long getId();
+    
+    String getName();
+    
+    String getAddress();
+}
@@ -0,0 +1,24 @@
+package com.docomo.admin.repository.projection;
+
+import com.docomo.admin.entity.Transaction.PaymentMethod;
+import com.docomo.admin.entity.Transaction.TransactionStatus;
+import lombok.Value;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// 取引一覧の1行。表示する列だけを JPQL のコンストラクタ式で直接読み込む (User は結合しない)
+@Value
+public class TransactionListItem {
+    
+    Long id;
+    Long parkingLotId;
+    String parkingLotName;
+    Long userId;
+    String licensePlate;
+    LocalDateTime entryTime;
+    LocalDateTime exitTime;
+    Double durationHours;
+    BigDecimal amount;
+    TransactionStatus status;
+    PaymentMethod paymentMethod;
+}
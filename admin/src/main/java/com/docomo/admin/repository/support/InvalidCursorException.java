@@ -0,0 +1,15 @@
+package com.docomo.admin.repository.support;
+
+// 復元できないカーソル (改ざん・別の一覧のもの)。画面・API では 400 にする
+public class InvalidCursorException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,60 @@
+package com.docomo.admin.repository.support;
+
+import lombok.Value;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.function.Predicate;
+
+/**
+ * 取引一覧のシーク位置 (直前のページの最後の行の entryTime, id)。
+ * 並び順は entryTime 降順 (未設定は末尾)、同時刻は id 降順。
+ */
+@Value
+public class KeysetCursor {
+
+    LocalDateTime entryTime;
+    String id;
+
+    public String encode() {
+        String raw = (entryTime != null ? entryTime.toString() : "") + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String token) {
+        return decode(token, id -> true);
+    }
+
+    // idFormat に合わない id (数値 id の一覧に文字列など) も不正なカーソルとして扱う
+    public static KeysetCursor decode(String token, Predicate<String> idFormat) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid cursor: " + token, e);
+        }
+        int separator = raw.indexOf('|');
+        if (separator < 0 || separator == raw.length() - 1 || !idFormat.test(raw.substring(separator + 1))) {
+            throw new InvalidCursorException("Invalid cursor: " + token);
+        }
+        String time = raw.substring(0, separator);
+        try {
+            return new KeysetCursor(time.isEmpty() ? null : LocalDateTime.parse(time), raw.substring(separator + 1));
+        } catch (DateTimeParseException e) {
+            throw new InvalidCursorException("Invalid cursor: " + token, e);
+        }
+    }
+
+    public static boolean isNumericId(String id) {
+        try {
+            Long.parseLong(id);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
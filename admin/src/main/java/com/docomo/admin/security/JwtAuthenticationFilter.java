@@ -0,0 +1,77 @@
+package com.docomo.admin.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Authorization: Bearer ヘッダーか Cookie のアクセストークンから認証する (セッションは使わない)。
+ * アクセストークンがない・期限切れで、リフレッシュトークンの Cookie があればローテーションして Cookie を書き直す。
+ */
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtTokenService tokenService;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenCookies cookies;
+
+    public JwtAuthenticationFilter(JwtTokenService tokenService, RefreshTokenService refreshTokenService, TokenCookies cookies) {
+        this.tokenService = tokenService;
+        this.refreshTokenService = refreshTokenService;
+        this.cookies = cookies;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = authenticate(request, response);
+        if (authentication != null) {
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(authentication);
+            SecurityContextHolder.setContext(context);
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private Authentication authenticate(HttpServletRequest request, HttpServletResponse response) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            // API クライアントはリフレッシュしない (期限切れなら 401 / ログイン画面へ)
+            return tokenService.parseAccessToken(header.substring(BEARER_PREFIX.length()));
+        }
+        String accessToken = TokenCookies.read(request, TokenCookies.ACCESS_TOKEN);
+        if (accessToken != null) {
+            Authentication authentication = tokenService.parseAccessToken(accessToken);
+            if (authentication != null) {
+                return authentication;
+            }
+        }
+        String refreshToken = TokenCookies.read(request, TokenCookies.REFRESH_TOKEN);
+        if (refreshToken == null) {
+            return null;
+        }
+        Optional<TokenRotation> rotation = refreshTokenService.rotate(refreshToken);
+        if (rotation.isEmpty()) {
+            cookies.clear(response, TokenCookies.ACCESS_TOKEN);
+            cookies.clear(response, TokenCookies.REFRESH_TOKEN);
+            return null;
+        }
+        Authentication authentication = rotation.get().getAuthentication();
+        cookies.write(response, TokenCookies.ACCESS_TOKEN,
+            tokenService.createAccessToken(authentication.getName(), authentication.getAuthorities()),
+            tokenService.getAccessTtl());
+        if (rotation.get().getRefreshToken() != null) {
+            cookies.write(response, TokenCookies.REFRESH_TOKEN, rotation.get().getRefreshToken(), refreshTokenService.getRefreshTtl());
+        }
+        return authentication;
+    }
+}
@@ -0,0 +1,128 @@
+package com.docomo.admin.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+import javax.crypto.SecretKey;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 署名付きの短命なアクセストークン (JWT, HS256)。検証は起動時に作った鍵とパーサーだけで行い、DB は読まない。
+ * 鍵は admin.security.token.secret (Base64, 256 bit 以上)。鍵を入れ替えるときは古い鍵を previous-secrets に残すと、
+ * 発行済みのトークンも有効期限までは通る (ヘッダーの kid で鍵を選ぶ)。
+ * 鍵が未設定なら起動しない (ノードごとの乱数の鍵では、他のノードや再起動後にトークンが通らなくなるため)。
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "admin.security.token.enabled", havingValue = "true")
+public class JwtTokenService {
+
+    private static final String AUTHORITIES_CLAIM = "roles";
+    private static final long CLOCK_SKEW_SECONDS = 30;
+
+    private final SecretKey signingKey;
+    private final String signingKeyId;
+    private final Map<String, Key> verificationKeys = new HashMap<>();
+    private final JwtParser parser;
+    private final Duration accessTtl;
+
+    public JwtTokenService(@Value("${admin.security.token.secret:}") String secret,
+                           @Value("${admin.security.token.previous-secrets:}") String[] previousSecrets,
+                           @Value("${admin.security.token.access-ttl:PT15M}") Duration accessTtl) {
+        if (secret.isBlank()) {
+            throw new IllegalStateException("admin.security.token.secret must be set when admin.security.token.enabled is true");
+        }
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        this.signingKeyId = keyId(signingKey);
+        verificationKeys.put(signingKeyId, signingKey);
+        for (String previous : previousSecrets) {
+            if (!previous.isBlank()) {
+                SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(previous.trim()));
+                verificationKeys.put(keyId(key), key);
+            }
+        }
+        this.accessTtl = accessTtl;
+        this.parser = Jwts.parserBuilder()
+            .setAllowedClockSkewSeconds(CLOCK_SKEW_SECONDS)
+            .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                // jjwt 0.11 の SigningKeyResolver は JwsHeader を raw 型で宣言していて、JwsHeader<?> では上書きできない
+                @Override
+                @SuppressWarnings("rawtypes")
+                public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                    Key key = header.getKeyId() != null ? verificationKeys.get(header.getKeyId()) : null;
+                    if (key == null) {
+                        throw new JwtException("Unknown signing key: " + header.getKeyId());
+                    }
+                    return key;
+                }
+            })
+            .build();
+    }
+
+    public String createAccessToken(String username, Collection<? extends GrantedAuthority> authorities) {
+        Instant now = Instant.now();
+        return Jwts.builder()
+            .setHeaderParam(JwsHeader.KEY_ID, signingKeyId)
+            .setId(UUID.randomUUID().toString())
+            .setSubject(username)
+            .claim(AUTHORITIES_CLAIM, authorities.stream().map(GrantedAuthority::getAuthority).toList())
+            .setIssuedAt(Date.from(now))
+            .setExpiration(Date.from(now.plus(accessTtl)))
+            .signWith(signingKey, SignatureAlgorithm.HS256)
+            .compact();
+    }
+
+    // 署名・有効期限を検証して認証情報を返す。無効なトークンは null
+    public Authentication parseAccessToken(String token) {
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            List<?> roles = claims.get(AUTHORITIES_CLAIM, List.class);
+            List<GrantedAuthority> authorities = roles == null ? List.of() : roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(String.valueOf(role)))
+                .toList();
+            return new UsernamePasswordAuthenticationToken(claims.getSubject(), null, authorities);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Rejected access token: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public Duration getAccessTtl() {
+        return accessTtl;
+    }
+
+    // 鍵の内容から決まる ID (どのノードでも同じになる)
+    private static String keyId(SecretKey key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getEncoded());
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.docomo.admin.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+// ハッシュ計算の待ち行列が満杯、または待ち時間を超えた。ログイン時はログイン失敗として扱われる
+public class PasswordHashingBusyException extends AuthenticationServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
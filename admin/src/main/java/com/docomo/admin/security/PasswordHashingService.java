@@ -0,0 +1,186 @@
+package com.docomo.admin.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntToLongFunction;
+
+/**
+ * BCrypt のハッシュ計算 (ユーザー登録・パスワード変更・ログイン) を専用の小さなスレッドプールで行う PasswordEncoder。
+ * 交代時間の一斉ログインやパスワードリスト攻撃でも、同時に計算するのはプールのスレッド数まで。
+ * 待ち行列が満杯なら待たずに PasswordHashingBusyException を返す。
+ * コスト (strength) を 0 にすると、起動時に計測して target-hash-time に収まる最大のコストを選ぶ。
+ * 登録済みのハッシュは作成時のコストのまま照合できる。
+ * 待ち時間 (wait-timeout) を超えたときは future を cancel するが、BCrypt は割り込みを見ないので、
+ * 計算を始めていたものは最後まで走り、その間スレッドは埋まったまま (待ち行列にあるだけのものは計算されずに捨てられる)。
+ * 待ち時間内に順番が来ない位置まで並べてもタイムアウトするだけなので、待ち行列は
+ * 「スレッド数 × wait-timeout ÷ target-hash-time」件までに抑える (queue-capacity がそれより大きくても)。
+ */
+@Slf4j
+@Service
+public class PasswordHashingService implements PasswordEncoder, DisposableBean {
+
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    private final BCryptPasswordEncoder encoder;
+    private final int strength;
+    private final ThreadPoolTaskExecutor executor;
+    private final Duration waitTimeout;
+    private final LongAdder hashCount = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAccumulator maxHashNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public PasswordHashingService(@Value("${admin.security.password.threads:0}") int threads,
+                                  @Value("${admin.security.password.queue-capacity:64}") int queueCapacity,
+                                  @Value("${admin.security.password.wait-timeout:PT5S}") Duration waitTimeout,
+                                  @Value("${admin.security.password.strength:0}") int strength,
+                                  @Value("${admin.security.password.target-hash-time:PT0.25S}") Duration targetHashTime,
+                                  @Value("${admin.security.password.min-strength:10}") int minStrength,
+                                  @Value("${admin.security.password.max-strength:14}") int maxStrength) {
+        this.strength = strength > 0 ? strength : calibrate(targetHashTime, minStrength, maxStrength);
+        this.encoder = new BCryptPasswordEncoder(this.strength);
+        this.waitTimeout = waitTimeout;
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        int capacity = queueCapacity(queueCapacity, poolSize, waitTimeout, targetHashTime);
+        executor.setQueueCapacity(capacity);
+        executor.setThreadNamePrefix("password-hashing-");
+        executor.setDaemon(true);
+        executor.initialize();
+        log.info("Password hashing: BCrypt strength {}, {} threads, queue capacity {}", this.strength, poolSize, capacity);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> encoder.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return encoder.upgradeEncoding(encodedPassword);
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    // 待ち行列に入っている (まだ計算を始めていない) 件数
+    public int getQueueDepth() {
+        return executor.getQueueSize();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getHashCount() {
+        return hashCount.sum();
+    }
+
+    public Duration getAverageHashTime() {
+        long count = hashCount.sum();
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(hashNanos.sum() / count);
+    }
+
+    public Duration getMaxHashTime() {
+        return Duration.ofNanos(maxHashNanos.get());
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    // 最小コストで1回計測し、コストが1上がるごとに2倍になるとして target に収まる最大のコストを選ぶ
+    static int chooseStrength(Duration targetHashTime, int minStrength, int maxStrength, IntToLongFunction hashNanos) {
+        long nanos = Math.max(1, hashNanos.applyAsLong(minStrength));
+        int chosen = minStrength;
+        while (chosen < maxStrength && nanos * 2 <= targetHashTime.toNanos()) {
+            nanos *= 2;
+            chosen++;
+        }
+        return chosen;
+    }
+
+    // wait-timeout の間に計算を始められる件数までに待ち行列を抑える (target-hash-time が 0 なら設定のまま)
+    static int queueCapacity(int configured, int poolSize, Duration waitTimeout, Duration hashTime) {
+        if (hashTime.isZero() || hashTime.isNegative()) {
+            return configured;
+        }
+        long startable = waitTimeout.toNanos() / hashTime.toNanos() * poolSize;
+        return (int) Math.max(1, Math.min(configured, startable));
+    }
+
+    private static int calibrate(Duration targetHashTime, int minStrength, int maxStrength) {
+        return chooseStrength(targetHashTime, minStrength, maxStrength, strength -> {
+            BCryptPasswordEncoder calibration = new BCryptPasswordEncoder(strength);
+            // 1回目は JIT の影響を受けるので捨てる
+            calibration.encode(CALIBRATION_PASSWORD);
+            long start = System.nanoTime();
+            calibration.encode(CALIBRATION_PASSWORD);
+            return System.nanoTime() - start;
+        });
+    }
+
+    private <T> T execute(Callable<T> hashing) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    return hashing.call();
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    hashCount.increment();
+                    hashNanos.add(elapsed);
+                    maxHashNanos.accumulate(elapsed);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            rejectedCount.increment();
+            throw new PasswordHashingBusyException("Password hashing queue is full");
+        }
+        try {
+            return future.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 計算中なら止まらない (BCrypt は割り込みを見ない)。まだ待ち行列にあれば実行されずに終わる
+            future.cancel(true);
+            rejectedCount.increment();
+            throw new PasswordHashingBusyException("Password hashing timed out");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingBusyException("Interrupted while waiting for password hashing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.docomo.admin.security;
+
+import com.docomo.admin.entity.RefreshToken;
+import com.docomo.admin.repository.RefreshTokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * リフレッシュトークンの発行とローテーション。トークンは乱数の文字列で、DB にはハッシュだけを持つ。
+ * 使うたびに同じ系列の新しいトークンに置き換え、使用済みのトークンがもう一度使われたら (盗まれた可能性がある)
+ * 系列ごと失効させる。ただしブラウザが並行して送ったリクエストのように、使用直後 (reuse-grace 以内) の再使用は
+ * アクセストークンだけを発行し直して失効させない。
+ * 権限は使うたびに UserDetailsService から読み直し、削除・無効化されたユーザーの系列は失効させる。
+ * ローテーションし続けても、系列はログインから refresh-max-lifetime で切れる。
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "admin.security.token.enabled", havingValue = "true")
+@Transactional
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserDetailsService userDetailsService;
+    private final Duration refreshTtl;
+    private final Duration reuseGrace;
+    private final Duration maxLifetime;
+    private final SecureRandom random = new SecureRandom();
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               UserDetailsService userDetailsService,
+                               @Value("${admin.security.token.refresh-ttl:P7D}") Duration refreshTtl,
+                               @Value("${admin.security.token.refresh-reuse-grace:PT10S}") Duration reuseGrace,
+                               @Value("${admin.security.token.refresh-max-lifetime:P30D}") Duration maxLifetime) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userDetailsService = userDetailsService;
+        this.refreshTtl = refreshTtl;
+        this.reuseGrace = reuseGrace;
+        this.maxLifetime = maxLifetime;
+    }
+
+    // ログイン時: 新しい系列の最初のトークン
+    public String issue(Authentication authentication) {
+        return issue(UUID.randomUUID().toString(), authentication.getName(), LocalDateTime.now());
+    }
+
+    // 使えないトークン (期限切れ・失効・不明・再使用・ユーザーが使えない) は空を返す
+    public Optional<TokenRotation> rotate(String token) {
+        String tokenHash = hash(token);
+        LocalDateTime now = LocalDateTime.now();
+        if (refreshTokenRepository.markUsed(tokenHash, now) == 1) {
+            RefreshToken used = refreshTokenRepository.findById(tokenHash).orElseThrow();
+            Optional<Authentication> authentication = currentUser(used);
+            if (authentication.isEmpty()) {
+                return Optional.empty();
+            }
+            String next = issue(used.getFamilyId(), used.getUsername(), used.getFamilyIssuedAt());
+            return Optional.of(new TokenRotation(authentication.get(), next));
+        }
+        Optional<RefreshToken> found = refreshTokenRepository.findById(tokenHash);
+        if (found.isEmpty() || found.get().isRevoked() || found.get().getExpiresAt().isBefore(now)) {
+            return Optional.empty();
+        }
+        RefreshToken used = found.get();
+        if (used.getUsedAt().plus(reuseGrace).isAfter(now)) {
+            return currentUser(used).map(authentication -> new TokenRotation(authentication, null));
+        }
+        log.warn("Refresh token reused for user {}, revoking token family {}", used.getUsername(), used.getFamilyId());
+        refreshTokenRepository.revokeFamily(used.getFamilyId());
+        return Optional.empty();
+    }
+
+    // ユーザーの削除・パスワードや権限の変更時: そのユーザーの系列をすべて失効させる
+    public void revokeUser(String username) {
+        int revoked = refreshTokenRepository.revokeUser(username);
+        if (revoked > 0) {
+            log.info("Revoked {} refresh tokens of user {}", revoked, username);
+        }
+    }
+
+    // ログアウト: 系列ごと失効させる
+    public void revoke(String token) {
+        refreshTokenRepository.findById(hash(token))
+            .ifPresent(refreshToken -> refreshTokenRepository.revokeFamily(refreshToken.getFamilyId()));
+    }
+
+    public Duration getRefreshTtl() {
+        return refreshTtl;
+    }
+
+    @Scheduled(fixedDelayString = "${admin.security.token.purge-interval:PT1H}")
+    public void purgeExpired() {
+        int deleted = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.debug("Purged {} expired refresh tokens", deleted);
+        }
+    }
+
+    // 有効期限は使うたびに延びるが、系列の発行から maxLifetime を超えない
+    private String issue(String familyId, String username, LocalDateTime familyIssuedAt) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        LocalDateTime expiresAt = LocalDateTime.now().plus(refreshTtl);
+        LocalDateTime familyExpiresAt = familyIssuedAt.plus(maxLifetime);
+        refreshTokenRepository.save(new RefreshToken(hash(token), familyId, username, familyIssuedAt,
+            expiresAt.isBefore(familyExpiresAt) ? expiresAt : familyExpiresAt, null, false, null));
+        return token;
+    }
+
+    // 削除・無効化されたユーザーなら系列を失効させて空を返す
+    private Optional<Authentication> currentUser(RefreshToken refreshToken) {
+        UserDetails user;
+        try {
+            user = userDetailsService.loadUserByUsername(refreshToken.getUsername());
+        } catch (UsernameNotFoundException e) {
+            user = null;
+        }
+        if (user == null || !user.isEnabled() || !user.isAccountNonLocked() || !user.isAccountNonExpired()) {
+            log.info("User {} is no longer active, revoking token family {}", refreshToken.getUsername(), refreshToken.getFamilyId());
+            refreshTokenRepository.revokeFamily(refreshToken.getFamilyId());
+            return Optional.empty();
+        }
+        return Optional.of(new UsernamePasswordAuthenticationToken(user.getUsername(), null, user.getAuthorities()));
+    }
+
+    private static String hash(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
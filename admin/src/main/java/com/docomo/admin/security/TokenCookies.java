@@ -0,0 +1,49 @@
+package com.docomo.admin.security;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import java.time.Duration;
+
+// アクセストークンとリフレッシュトークンの Cookie (HttpOnly, SameSite=Lax)
+public class TokenCookies {
+
+    public static final String ACCESS_TOKEN = "ADMIN_ACCESS_TOKEN";
+    public static final String REFRESH_TOKEN = "ADMIN_REFRESH_TOKEN";
+
+    private final boolean secure;
+
+    public TokenCookies(boolean secure) {
+        this.secure = secure;
+    }
+
+    public static String read(HttpServletRequest request, String name) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (name.equals(cookie.getName()) && !cookie.getValue().isEmpty()) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    public void write(HttpServletResponse response, String name, String value, Duration maxAge) {
+        response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(name, value)
+            .httpOnly(true)
+            .secure(secure)
+            .sameSite("Lax")
+            .path("/")
+            .maxAge(maxAge)
+            .build()
+            .toString());
+    }
+
+    public void clear(HttpServletResponse response, String name) {
+        write(response, name, "", Duration.ZERO);
+    }
+}
@@ -0,0 +1,35 @@
+package com.docomo.admin.security;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
+import java.io.IOException;
+
+// フォームログインに成功したらセッションの代わりにトークンの Cookie を発行する
+public class TokenLoginSuccessHandler extends SimpleUrlAuthenticationSuccessHandler {
+
+    private final JwtTokenService tokenService;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenCookies cookies;
+
+    public TokenLoginSuccessHandler(JwtTokenService tokenService, RefreshTokenService refreshTokenService,
+                                    TokenCookies cookies, String defaultTargetUrl) {
+        super(defaultTargetUrl);
+        this.tokenService = tokenService;
+        this.refreshTokenService = refreshTokenService;
+        this.cookies = cookies;
+    }
+
+    @Override
+    public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
+                                        Authentication authentication) throws IOException, ServletException {
+        cookies.write(response, TokenCookies.ACCESS_TOKEN,
+            tokenService.createAccessToken(authentication.getName(), authentication.getAuthorities()),
+            tokenService.getAccessTtl());
+        cookies.write(response, TokenCookies.REFRESH_TOKEN, refreshTokenService.issue(authentication),
+            refreshTokenService.getRefreshTtl());
+        handle(request, response, authentication);
+    }
+}
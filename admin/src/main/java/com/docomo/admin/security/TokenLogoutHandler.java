@@ -0,0 +1,28 @@
+package com.docomo.admin.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.logout.LogoutHandler;
+
+// ログアウト: リフレッシュトークンの系列を失効させ、Cookie を消す (アクセストークンは有効期限まで残る)
+public class TokenLogoutHandler implements LogoutHandler {
+
+    private final RefreshTokenService refreshTokenService;
+    private final TokenCookies cookies;
+
+    public TokenLogoutHandler(RefreshTokenService refreshTokenService, TokenCookies cookies) {
+        this.refreshTokenService = refreshTokenService;
+        this.cookies = cookies;
+    }
+
+    @Override
+    public void logout(HttpServletRequest request, HttpServletResponse response, Authentication authentication) {
+        String refreshToken = TokenCookies.read(request, TokenCookies.REFRESH_TOKEN);
+        if (refreshToken != null) {
+            refreshTokenService.revoke(refreshToken);
+        }
+        cookies.clear(response, TokenCookies.ACCESS_TOKEN);
+        cookies.clear(response, TokenCookies.REFRESH_TOKEN);
+    }
+}
@@ -0,0 +1,12 @@
+package com.docomo.admin.security;
+
+import lombok.Value;
+import org.springframework.security.core.Authentication;
+
+// リフレッシュトークンを使った結果。refreshToken は再使用の猶予内で新しいトークンを出さなかった場合 null
+@Value
+public class TokenRotation {
+
+    Authentication authentication;
+    String refreshToken;
+}
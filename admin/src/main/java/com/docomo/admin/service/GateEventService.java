@@ -0,0 +1,158 @@
+package com.docomo.admin.service;
+
+import com.docomo.admin.entity.Transaction;
+import com.docomo.admin.repository.ParkingLotRepository;
+import com.docomo.admin.repository.UserRepository;
+import com.docomo.admin.service.journal.EventJournal;
+import com.docomo.admin.service.journal.GateEvent;
+import com.docomo.admin.service.journal.GateEventPipeline;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * ゲートの入出庫。イベントをローカルのジャーナルに書いた時点で受け付け、取引の登録・完了は
+ * バックグラウンドで順番に行う (DB が遅延・停止していてもゲートは止まらない)。
+ * 再起動時は未適用のイベントから再生する。再生やゲートからの再送で同じイベントが届いても、
+ * 取引はイベント ID で1件だけ登録される。
+ */
+@Slf4j
+@Service
+public class GateEventService {
+
+    private final TransactionService transactionService;
+    private final TransactionDeduplicationService deduplicationService;
+    private final ParkingLotRepository parkingLotRepository;
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean sync;
+    private final Duration retryBackoff;
+
+    private GateEventPipeline pipeline;
+
+    public GateEventService(TransactionService transactionService,
+                            TransactionDeduplicationService deduplicationService,
+                            ParkingLotRepository parkingLotRepository,
+                            UserRepository userRepository,
+                            ObjectMapper objectMapper,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${admin.journal.directory:}") String directory,
+                            @Value("${admin.journal.segment-bytes:16777216}") int segmentBytes,
+                            @Value("${admin.journal.sync:true}") boolean sync,
+                            @Value("${admin.journal.retry-backoff:PT0.1S}") Duration retryBackoff) {
+        this.transactionService = transactionService;
+        this.deduplicationService = deduplicationService;
+        this.parkingLotRepository = parkingLotRepository;
+        this.userRepository = userRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // 受け付けたイベントはここにしか残らないので、消えない場所を明示的に指定させる
+        if (directory.isBlank()) {
+            throw new IllegalStateException("admin.journal.directory must be set to a persistent directory");
+        }
+        this.directory = Paths.get(directory, "jpa");
+        this.segmentBytes = segmentBytes;
+        this.sync = sync;
+        this.retryBackoff = retryBackoff;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        EventJournal journal = new EventJournal(directory, segmentBytes, sync);
+        EventJournal deadLetters = new EventJournal(directory.resolve("dead-letter"), segmentBytes, sync);
+        pipeline = new GateEventPipeline(journal, deadLetters, objectMapper, this::apply, retryBackoff, "jpa");
+        log.info("Gate event journal opened: {} events pending, {} dead letters in {}",
+            pipeline.getBacklog(), pipeline.getDeadLetterCount(), directory);
+    }
+
+    // DB の準備ができてから未適用分の再生を始める
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        pipeline.start();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        pipeline.close();
+    }
+
+    // 入庫を受け付けてイベント ID を返す (出庫時に指定する)。
+    // eventId はゲートが採番したもの (null ならここで採番)。同じ eventId の再送は1件として登録される
+    public String recordEntry(String eventId, Long parkingLotId, Long userId, String licensePlate, LocalDateTime entryTime) {
+        GateEvent event = GateEvent.entry(eventId, String.valueOf(parkingLotId),
+            userId != null ? String.valueOf(userId) : null, licensePlate, entryTime);
+        pipeline.submit(event);
+        return event.getEventId();
+    }
+
+    public String recordExit(String eventId, String entryEventId, LocalDateTime exitTime, BigDecimal amount) {
+        GateEvent event = GateEvent.exit(eventId, entryEventId, exitTime, amount);
+        pipeline.submit(event);
+        return event.getEventId();
+    }
+
+    // 受け付け済みで DB に未反映のイベント数
+    public long getBacklog() {
+        return pipeline.getBacklog();
+    }
+
+    // 適用できずにデッドレターに移したイベント数
+    public long getDeadLetterCount() {
+        return pipeline.getDeadLetterCount();
+    }
+
+    // 原因 (駐車場の登録漏れなど) を直した後に、デッドレターのイベントを改めて適用させる
+    public long replayDeadLetters() {
+        return pipeline.replayDeadLetters();
+    }
+
+    public boolean awaitDrained(Duration timeout) throws InterruptedException {
+        return pipeline.awaitDrained(timeout);
+    }
+
+    // 入庫は TransactionService が自分のトランザクションで登録する (一意制約で弾かれた再送を登録済みとして扱うため)
+    void apply(GateEvent event) {
+        switch (event.getType()) {
+            case ENTRY -> applyEntry(event);
+            case EXIT -> transactionTemplate.executeWithoutResult(status -> applyExit(event));
+        }
+    }
+
+    // 登録済みのイベントは TransactionService が読み飛ばす
+    private void applyEntry(GateEvent event) {
+        Transaction transaction = new Transaction();
+        transaction.setEventId(event.getEventId());
+        transaction.setParkingLot(parkingLotRepository.findById(Long.valueOf(event.getParkingLotId()))
+            .orElseThrow(() -> new RuntimeException("Parking lot not found")));
+        if (event.getUserId() != null) {
+            transaction.setUser(userRepository.getReferenceById(Long.valueOf(event.getUserId())));
+        }
+        transaction.setLicensePlate(event.getLicensePlate());
+        transaction.setEntryTime(event.getTime());
+        transactionService.createTransaction(transaction);
+    }
+
+    private void applyExit(GateEvent event) {
+        Long transactionId = deduplicationService.resolveTransactionId(event.getEntryEventId());
+        if (transactionId == null) {
+            throw new RuntimeException("Transaction not found");
+        }
+        transactionService.completeTransaction(transactionId, event.getTime(), event.getAmount());
+    }
+}
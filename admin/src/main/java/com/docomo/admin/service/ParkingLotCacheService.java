@@ -0,0 +1,87 @@
+package com.docomo.admin.service;
+
+import com.docomo.admin.entity.ParkingLot;
+import com.docomo.admin.repository.ParkingLotRepository;
+import com.docomo.admin.repository.projection.ParkingLotAvailability;
+import com.docomo.admin.service.cache.ParkingLotNearCache;
+import com.docomo.admin.service.support.AfterCommit;
+import com.docomo.admin.service.version.EntityVersionService;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 駐車場の参照 (取引の入力画面・売上・請求など) 用のニアキャッシュ。
+ * 駐車場本体は ParkingLotService からの通知で ID 単位に無効化し、空き台数は短い TTL に任せる
+ * (入出庫の書き込みは ParkingLotOccupancyService がまとめて反映するため、画面からの更新だけ即時に無効化する)。
+ * 無効化はコミット後に行い、その後で一覧の版 (条件付き GET 用) を進める。
+ */
+@Service
+public class ParkingLotCacheService {
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final EntityVersionService versionService;
+    private final ParkingLotNearCache<Long, ParkingLot> cache;
+
+    public ParkingLotCacheService(ParkingLotRepository parkingLotRepository,
+                                  EntityVersionService versionService,
+                                  @Value("${admin.cache.parking-lots.maximum-size:10000}") long maximumSize,
+                                  @Value("${admin.cache.parking-lots.ttl:PT10M}") Duration ttl,
+                                  @Value("${admin.cache.parking-lots.availability-ttl:PT2S}") Duration availabilityTtl) {
+        this.parkingLotRepository = parkingLotRepository;
+        this.versionService = versionService;
+        this.cache = new ParkingLotNearCache<>(maximumSize, ttl, availabilityTtl, ParkingLot::getId,
+            ParkingLotCacheService::copy, ParkingLot::getAvailableSpaces, ParkingLot::setAvailableSpaces);
+    }
+
+    public Optional<ParkingLot> getParkingLot(Long id) {
+        return cache.get(id, parkingLotRepository::findById, this::loadAvailability);
+    }
+
+    public List<ParkingLot> getAllParkingLots() {
+        return cache.getAll(parkingLotRepository::findAll, this::loadAvailability);
+    }
+
+    // 以下は DB の値が変わったときの通知
+    public void parkingLotChanged(Long id) {
+        AfterCommit.run(() -> cache.invalidate(id));
+        versionService.changed(EntityVersionService.PARKING_LOTS, id);
+    }
+
+    public void availableSpacesChanged(Long id) {
+        AfterCommit.run(() -> cache.invalidateAvailability(id));
+        versionService.changed(EntityVersionService.PARKING_LOTS, id);
+    }
+
+    public CacheStats getParkingLotStats() {
+        return cache.lotStats();
+    }
+
+    public CacheStats getAvailabilityStats() {
+        return cache.availabilityStats();
+    }
+
+    private Map<Long, Integer> loadAvailability(Set<Long> ids) {
+        Map<Long, Integer> availableSpaces = new HashMap<>();
+        for (ParkingLotAvailability availability : parkingLotRepository.findAvailabilityByIdIn(ids)) {
+            if (availability.getAvailableSpaces() != null) {
+                availableSpaces.put(availability.getId(), availability.getAvailableSpaces());
+            }
+        }
+        return availableSpaces;
+    }
+
+    // キャッシュには管理対象外のコピーを持つ
+    private static ParkingLot copy(ParkingLot parkingLot) {
+        ParkingLot copy = new ParkingLot();
+        BeanUtils.copyProperties(parkingLot, copy);
+        return copy;
+    }
+}
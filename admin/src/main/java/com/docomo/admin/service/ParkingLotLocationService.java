@@ -0,0 +1,120 @@
+package com.docomo.admin.service;
+
+import com.docomo.admin.entity.ParkingLot;
+import com.docomo.admin.entity.ParkingLot.ParkingLotStatus;
+import com.docomo.admin.repository.ParkingLotRepository;
+import com.docomo.admin.repository.projection.ParkingLotLocation;
+import com.docomo.admin.service.geo.GeoGridIndex;
+import com.docomo.admin.service.geo.GeoHit;
+import com.docomo.admin.service.geo.NearbyParkingLot;
+import com.docomo.admin.service.support.AfterCommit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 空きのある近くの駐車場の検索。稼働中で位置のある駐車場をメモリ上のグリッド索引に持ち、
+ * 空き台数は ParkingLotOccupancyService の値 (入出庫のたびに更新される) で絞り込む。
+ * 索引は起動時と一定間隔で全件から作り直し、ParkingLotService からの通知で1件ずつ更新する。
+ */
+@Slf4j
+@Service
+public class ParkingLotLocationService {
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final ParkingLotOccupancyService occupancyService;
+    private final double cellDegrees;
+    private volatile GeoGridIndex index;
+
+    public ParkingLotLocationService(ParkingLotRepository parkingLotRepository,
+                                     ParkingLotOccupancyService occupancyService,
+                                     @Value("${admin.location.cell-degrees:0.01}") double cellDegrees) {
+        this.parkingLotRepository = parkingLotRepository;
+        this.occupancyService = occupancyService;
+        this.cellDegrees = cellDegrees;
+        this.index = new GeoGridIndex(cellDegrees);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${admin.location.rebuild-interval:PT10M}",
+               initialDelayString = "${admin.location.rebuild-interval:PT10M}")
+    public void rebuild() {
+        GeoGridIndex rebuilt = new GeoGridIndex(cellDegrees);
+        for (ParkingLotLocation location : parkingLotRepository.findLocationByLatitudeNotNullAndLongitudeNotNull()) {
+            if (location.getStatus() == ParkingLotStatus.ACTIVE) {
+                rebuilt.put(String.valueOf(location.getId()), location.getLatitude(), location.getLongitude());
+            }
+        }
+        index = rebuilt;
+        log.debug("Parking lot location index rebuilt: {} parking lots", rebuilt.size());
+    }
+
+    // 空きのある駐車場を近い順に最大 limit 件 (ID と距離だけ。DB には問い合わせない)
+    public List<GeoHit> findNearestAvailableIds(double latitude, double longitude, int limit, double maxMeters) {
+        return index.nearest(latitude, longitude, limit, maxMeters, this::isAvailable);
+    }
+
+    public List<NearbyParkingLot<ParkingLot>> findNearestAvailable(double latitude, double longitude, int limit,
+                                                                   double maxMeters) {
+        return load(findNearestAvailableIds(latitude, longitude, limit, maxMeters));
+    }
+
+    // 半径 radiusMeters 以内で空きのある駐車場を近い順に最大 limit 件
+    public List<NearbyParkingLot<ParkingLot>> findAvailableWithin(double latitude, double longitude,
+                                                                  double radiusMeters, int limit) {
+        List<GeoHit> hits = index.within(latitude, longitude, radiusMeters, this::isAvailable);
+        return load(hits.subList(0, Math.min(limit, hits.size())));
+    }
+
+    // 以下は DB の値が変わったときの通知 (コミット後に反映する)
+    public void parkingLotChanged(ParkingLot parkingLot) {
+        String id = String.valueOf(parkingLot.getId());
+        boolean indexed = parkingLot.getStatus() == ParkingLotStatus.ACTIVE
+            && parkingLot.getLatitude() != null && parkingLot.getLongitude() != null;
+        Double latitude = parkingLot.getLatitude();
+        Double longitude = parkingLot.getLongitude();
+        AfterCommit.run(() -> {
+            if (indexed) {
+                index.put(id, latitude, longitude);
+            } else {
+                index.remove(id);
+            }
+        });
+    }
+
+    public void parkingLotDeleted(Long id) {
+        AfterCommit.run(() -> index.remove(String.valueOf(id)));
+    }
+
+    private boolean isAvailable(String id) {
+        return occupancyService.hasAvailableSpaces(Long.valueOf(id));
+    }
+
+    // 検索結果の順序のまま読み込む (DB から消えているものは索引からも外す)
+    private List<NearbyParkingLot<ParkingLot>> load(List<GeoHit> hits) {
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ParkingLot> parkingLots = parkingLotRepository.findAllById(
+                hits.stream().map(hit -> Long.valueOf(hit.getId())).toList()).stream()
+            .collect(Collectors.toMap(ParkingLot::getId, Function.identity()));
+        List<NearbyParkingLot<ParkingLot>> result = new ArrayList<>(hits.size());
+        for (GeoHit hit : hits) {
+            ParkingLot parkingLot = parkingLots.get(Long.valueOf(hit.getId()));
+            if (parkingLot != null) {
+                result.add(new NearbyParkingLot<>(parkingLot, hit.getDistanceMeters()));
+            } else {
+                index.remove(hit.getId());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,206 @@
+package com.docomo.admin.service;
+
+import com.docomo.admin.entity.ParkingLot;
+import com.docomo.admin.repository.ParkingLotRepository;
+import com.docomo.admin.repository.projection.ParkingLotAvailability;
+import com.docomo.admin.service.occupancy.OccupancyCell;
+import com.docomo.admin.service.occupancy.OccupancyEngine;
+import com.docomo.admin.service.occupancy.OccupancyHistoryService;
+import com.docomo.admin.service.support.AfterCommit;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 入出庫による空き台数の増減をメモリ上で受け付け、一定間隔で駐車場ごとにまとめて DB に反映する。
+ * 起動時に全駐車場を読み込み、画面などから DB の値が変わった場合は ParkingLotService から通知を受ける。
+ */
+@Slf4j
+@Service
+public class ParkingLotOccupancyService {
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final OccupancyHistoryService occupancyHistoryService;
+    private final ParkingLotCacheService cacheService;
+    private final TransactionTemplate transactionTemplate;
+    private final OccupancyEngine engine = new OccupancyEngine();
+
+    public ParkingLotOccupancyService(ParkingLotRepository parkingLotRepository,
+                                      OccupancyHistoryService occupancyHistoryService,
+                                      ParkingLotCacheService cacheService,
+                                      PlatformTransactionManager transactionManager) {
+        this.parkingLotRepository = parkingLotRepository;
+        this.occupancyHistoryService = occupancyHistoryService;
+        this.cacheService = cacheService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        parkingLotRepository.findAvailabilityBy().forEach(this::load);
+        log.info("Occupancy engine loaded: {} parking lots", engine.size());
+    }
+
+    // 入庫: 空き台数を1減らして更新後の値を返す
+    public int enter(Long id) {
+        return adjust(id, -1, "No available spaces");
+    }
+
+    // 出庫: 空き台数を1増やして更新後の値を返す
+    public int exit(Long id) {
+        return adjust(id, 1, "Available spaces would exceed total spaces");
+    }
+
+    // ゲートの入出庫 (取引のコミット後に反映する)。車はもう通過しているので、範囲外でも例外にせずログだけ残す
+    public void vehicleEntered(Long id) {
+        AfterCommit.run(() -> adjustFromGate(id, -1));
+    }
+
+    public void vehicleExited(Long id) {
+        AfterCommit.run(() -> adjustFromGate(id, 1));
+    }
+
+    public int getAvailableSpaces(Long id) {
+        Integer availableSpaces = engine.getAvailableSpaces(String.valueOf(id));
+        if (availableSpaces != null) {
+            return availableSpaces;
+        }
+        ensureLoaded(id);
+        return engine.getAvailableSpaces(String.valueOf(id));
+    }
+
+    // 空間検索の絞り込み用。未読み込みの駐車場 (他のインスタンスで追加されたものなど) だけ DB から読む
+    public boolean hasAvailableSpaces(Long id) {
+        Integer availableSpaces = engine.getAvailableSpaces(String.valueOf(id));
+        if (availableSpaces == null) {
+            parkingLotRepository.findAvailabilityByIdIn(List.of(id)).forEach(this::load);
+            availableSpaces = engine.getAvailableSpaces(String.valueOf(id));
+        }
+        return availableSpaces != null && availableSpaces > 0;
+    }
+
+    // 以下は DB の値が変わったときの通知 (コミット後に反映する)
+    public void parkingLotChanged(ParkingLot parkingLot) {
+        if (parkingLot.getId() == null || parkingLot.getTotalSpaces() == null || parkingLot.getAvailableSpaces() == null) {
+            return;
+        }
+        String lotKey = String.valueOf(parkingLot.getId());
+        int totalSpaces = parkingLot.getTotalSpaces();
+        int availableSpaces = parkingLot.getAvailableSpaces();
+        AfterCommit.run(() -> engine.load(lotKey, totalSpaces, availableSpaces));
+    }
+
+    public void availableSpacesChanged(Long id, int availableSpaces) {
+        AfterCommit.run(() -> engine.availableSpacesChanged(String.valueOf(id), availableSpaces));
+    }
+
+    public void parkingLotDeleted(Long id) {
+        AfterCommit.run(() -> engine.remove(String.valueOf(id)));
+    }
+
+    @Scheduled(fixedDelayString = "${admin.occupancy.write-behind-interval:PT1S}")
+    public void flush() {
+        Map<String, Integer> pending = engine.drainPending();
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<ParkingLot> persisted;
+        try {
+            // 駐車場ごとに行ロックを取って読み、範囲内の増減だけをエンティティに反映する。
+            // 一括 UPDATE だと parking-lots リージョン全体が無効になり、入出庫が続く間は二次キャッシュが効かない
+            persisted = transactionTemplate.execute(status -> {
+                Set<Long> ids = new HashSet<>();
+                pending.keySet().forEach(lotKey -> ids.add(Long.valueOf(lotKey)));
+                List<ParkingLot> parkingLots = parkingLotRepository.findForUpdateByIdIn(ids);
+                for (ParkingLot parkingLot : parkingLots) {
+                    int delta = pending.get(String.valueOf(parkingLot.getId()));
+                    if (!withinBounds(parkingLot, delta)) {
+                        log.warn("Occupancy delta {} for parking lot {} is out of range, resynchronizing", delta, parkingLot.getId());
+                        continue;
+                    }
+                    parkingLot.setAvailableSpaces(parkingLot.getAvailableSpaces() + delta);
+                }
+                return parkingLots;
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to flush occupancy changes, retrying later", e);
+            pending.forEach(engine::restorePending);
+            return;
+        }
+
+        // 画面からの変更などで DB 側の値が動いていても、DB の値 + 未反映の増減に揃える
+        Set<String> found = new HashSet<>();
+        for (ParkingLot parkingLot : persisted) {
+            if (parkingLot.getTotalSpaces() != null && parkingLot.getAvailableSpaces() != null) {
+                engine.load(String.valueOf(parkingLot.getId()), parkingLot.getTotalSpaces(), parkingLot.getAvailableSpaces());
+            }
+            found.add(String.valueOf(parkingLot.getId()));
+            cacheService.availableSpacesChanged(parkingLot.getId());
+        }
+        pending.keySet().stream().filter(lotKey -> !found.contains(lotKey)).forEach(engine::remove);
+        log.debug("Flushed occupancy changes for {} parking lots", pending.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    private int adjust(Long id, int delta, String rejectedMessage) {
+        ensureLoaded(id);
+        String lotKey = String.valueOf(id);
+        int availableSpaces = engine.adjust(lotKey, delta);
+        if (availableSpaces == OccupancyCell.REJECTED) {
+            throw new RuntimeException(rejectedMessage);
+        }
+        occupancyHistoryService.availabilityChanged(lotKey, availableSpaces - delta, availableSpaces);
+        return availableSpaces;
+    }
+
+    private static boolean withinBounds(ParkingLot parkingLot, int delta) {
+        if (parkingLot.getAvailableSpaces() == null || parkingLot.getTotalSpaces() == null) {
+            return false;
+        }
+        int availableSpaces = parkingLot.getAvailableSpaces() + delta;
+        return availableSpaces >= 0 && availableSpaces <= parkingLot.getTotalSpaces();
+    }
+
+    private void adjustFromGate(Long id, int delta) {
+        try {
+            if (delta < 0) {
+                enter(id);
+            } else {
+                exit(id);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Gate {} at parking lot {} not applied to occupancy: {}", delta < 0 ? "entry" : "exit", id, e.getMessage());
+        }
+    }
+
+    private void ensureLoaded(Long id) {
+        if (engine.contains(String.valueOf(id))) {
+            return;
+        }
+        List<ParkingLotAvailability> availability = parkingLotRepository.findAvailabilityByIdIn(List.of(id));
+        if (availability.isEmpty()) {
+            throw new RuntimeException("Parking lot not found");
+        }
+        load(availability.get(0));
+    }
+
+    private void load(ParkingLotAvailability availability) {
+        if (availability.getTotalSpaces() == null || availability.getAvailableSpaces() == null) {
+            return;
+        }
+        engine.load(String.valueOf(availability.getId()), availability.getTotalSpaces(), availability.getAvailableSpaces());
+    }
+}
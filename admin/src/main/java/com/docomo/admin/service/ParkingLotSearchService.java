@@ -0,0 +1,93 @@
+package com.docomo.admin.service;
+
+import com.docomo.admin.entity.ParkingLot;
+import com.docomo.admin.repository.ParkingLotRepository;
+import com.docomo.admin.service.search.ParkingLotSearchIndex;
+import com.docomo.admin.service.search.ParkingLotSearchIndex.Field;
+import com.docomo.admin.service.support.AfterCommit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 駐車場の名前・住所の全文検索。索引はメモリ上に持ち、起動時と一定間隔で全件から作り直すほか、
+ * ParkingLotService からの通知で1件ずつ更新する (他のインスタンスでの変更は作り直しで反映される)。
+ */
+@Slf4j
+@Service
+public class ParkingLotSearchService {
+
+    private final ParkingLotRepository parkingLotRepository;
+    private final ParkingLotSearchIndex index = new ParkingLotSearchIndex();
+
+    public ParkingLotSearchService(ParkingLotRepository parkingLotRepository) {
+        this.parkingLotRepository = parkingLotRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${admin.search.rebuild-interval:PT10M}",
+               initialDelayString = "${admin.search.rebuild-interval:PT10M}")
+    public void rebuild() {
+        index.replaceAll(parkingLotRepository.findSearchTextBy().stream()
+            .map(lot -> new ParkingLotSearchIndex.Lot(String.valueOf(lot.getId()), lot.getName(), lot.getAddress()))
+            .toList());
+        log.debug("Parking lot search index rebuilt: {} parking lots", index.size());
+    }
+
+    // 名前と住所から、関連度の高い順に返す
+    public List<ParkingLot> search(String query, int limit) {
+        return load(() -> index.search(query, Set.of(Field.NAME, Field.ADDRESS), limit));
+    }
+
+    public List<ParkingLot> searchByName(String name, int limit) {
+        return load(() -> index.search(name, Set.of(Field.NAME), limit));
+    }
+
+    public List<ParkingLot> suggest(String prefix, int limit) {
+        return load(() -> index.suggest(prefix, limit));
+    }
+
+    // 以下は DB の値が変わったときの通知 (コミット後に反映する)
+    public void parkingLotChanged(ParkingLot parkingLot) {
+        String id = String.valueOf(parkingLot.getId());
+        String name = parkingLot.getName();
+        String address = parkingLot.getAddress();
+        AfterCommit.run(() -> index.put(id, name, address));
+    }
+
+    public void parkingLotDeleted(Long id) {
+        AfterCommit.run(() -> index.remove(String.valueOf(id)));
+    }
+
+    // 索引の順序のまま読み込む。索引に残っていても DB から消えているもの (他のインスタンスでの削除など) は
+    // 索引から外して検索し直す (外すたびに索引は小さくなるので必ず終わる)
+    private List<ParkingLot> load(Supplier<List<String>> search) {
+        while (true) {
+            List<String> ids = search.get();
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            Map<Long, Integer> order = new HashMap<>();
+            for (String id : ids) {
+                order.put(Long.valueOf(id), order.size());
+            }
+            List<ParkingLot> parkingLots = parkingLotRepository.findAllById(order.keySet());
+            if (parkingLots.size() < ids.size()) {
+                parkingLots.forEach(parkingLot -> order.remove(parkingLot.getId()));
+                order.keySet().forEach(id -> index.remove(String.valueOf(id)));
+                continue;
+            }
+            return parkingLots.stream()
+                .sorted(Comparator.comparing(parkingLot -> order.get(parkingLot.getId())))
+                .toList();
+        }
+    }
+}
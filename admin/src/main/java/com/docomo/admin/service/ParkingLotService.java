@@ -3,8 +3,14 @@ package com.docomo.admin.service;
 import com.docomo.admin.entity.ParkingLot;
 import com.docomo.admin.entity.ParkingLot.ParkingLotStatus;
 import com.docomo.admin.repository.ParkingLotRepository;
+import com.docomo.admin.repository.projection.ParkingLotOption;
+import com.docomo.admin.service.geo.NearbyParkingLot;
+import com.docomo.admin.service.occupancy.OccupancyHistoryService;
+import com.docomo.admin.service.statistics.DashboardStatisticsService;
+import com.docomo.admin.service.support.OptimisticRetry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 import java.util.Optional;
@@ -15,21 +21,49 @@ import java.util.Optional;
 public class ParkingLotService {
     
     private final ParkingLotRepository parkingLotRepository;
+    private final DashboardStatisticsService statisticsService;
+    private final OccupancyHistoryService occupancyHistoryService;
+    private final OptimisticRetry optimisticRetry;
+    private final ParkingLotOccupancyService occupancyService;
+    private final ParkingLotSearchService searchService;
+    private final ParkingLotLocationService locationService;
+    private final ParkingLotCacheService cacheService;
     
+    // 参照はキャッシュから (返すのはコピーなので、書き換えても DB には反映されない)
     public List<ParkingLot> getAllParkingLots() {
-        return parkingLotRepository.findAll();
+        return cacheService.getAllParkingLots();
+    }
+    
+    public List<ParkingLotOption> getParkingLotOptions() {
+        return parkingLotRepository.findAllByOrderByNameAsc();
     }
     
     public Optional<ParkingLot> getParkingLotById(Long id) {
-        return parkingLotRepository.findById(id);
+        return cacheService.getParkingLot(id);
     }
     
     public List<ParkingLot> getParkingLotsByStatus(ParkingLotStatus status) {
         return parkingLotRepository.findByStatus(status);
     }
     
+    // 名前の部分一致 (全角・半角、カタカナ・ひらがなの違いは無視し、関連度の高い順に返す)
     public List<ParkingLot> searchParkingLotsByName(String name) {
-        return parkingLotRepository.findByNameContainingIgnoreCase(name);
+        return searchService.searchByName(name, Integer.MAX_VALUE);
+    }
+    
+    // 検索ボックス: 空白区切りの語をすべて名前か住所に含むもの
+    public List<ParkingLot> searchParkingLots(String query, int limit) {
+        return searchService.search(query, limit);
+    }
+    
+    public List<ParkingLot> suggestParkingLots(String prefix, int limit) {
+        return searchService.suggest(prefix, limit);
+    }
+    
+    // 空きのある近くの駐車場 (近い順)
+    public List<NearbyParkingLot<ParkingLot>> findNearestAvailableParkingLots(double latitude, double longitude,
+                                                                              int limit, double maxMeters) {
+        return locationService.findNearestAvailable(latitude, longitude, limit, maxMeters);
     }
     
     public ParkingLot createParkingLot(ParkingLot parkingLot) {
@@ -39,45 +73,134 @@ public class ParkingLotService {
         if (parkingLot.getAvailableSpaces() == null) {
             parkingLot.setAvailableSpaces(parkingLot.getTotalSpaces());
         }
-        return parkingLotRepository.save(parkingLot);
+        ParkingLot saved = parkingLotRepository.save(parkingLot);
+        statisticsService.parkingLotCreated(saved.getStatus());
+        occupancyHistoryService.availabilityChanged(String.valueOf(saved.getId()), null, saved.getAvailableSpaces());
+        occupancyService.parkingLotChanged(saved);
+        searchService.parkingLotChanged(saved);
+        locationService.parkingLotChanged(saved);
+        cacheService.parkingLotChanged(saved.getId());
+        return saved;
     }
     
+    // センサーによる空き台数の更新と競合した場合は読み直してやり直す
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public ParkingLot updateParkingLot(Long id, ParkingLot parkingLotDetails) {
-        ParkingLot parkingLot = parkingLotRepository.findById(id)
-            .orElseThrow(() -> new RuntimeException("Parking lot not found"));
-        
-        parkingLot.setName(parkingLotDetails.getName());
-        parkingLot.setAddress(parkingLotDetails.getAddress());
-        parkingLot.setTotalSpaces(parkingLotDetails.getTotalSpaces());
-        parkingLot.setAvailableSpaces(parkingLotDetails.getAvailableSpaces());
-        parkingLot.setHourlyRate(parkingLotDetails.getHourlyRate());
-        parkingLot.setDailyRate(parkingLotDetails.getDailyRate());
-        parkingLot.setStatus(parkingLotDetails.getStatus());
-        
-        return parkingLotRepository.save(parkingLot);
+        return optimisticRetry.execute(() -> {
+            ParkingLot parkingLot = parkingLotRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Parking lot not found"));
+            ParkingLotStatus oldStatus = parkingLot.getStatus();
+            Integer oldAvailableSpaces = parkingLot.getAvailableSpaces();
+            
+            parkingLot.setName(parkingLotDetails.getName());
+            parkingLot.setAddress(parkingLotDetails.getAddress());
+            parkingLot.setTotalSpaces(parkingLotDetails.getTotalSpaces());
+            parkingLot.setAvailableSpaces(parkingLotDetails.getAvailableSpaces());
+            parkingLot.setHourlyRate(parkingLotDetails.getHourlyRate());
+            parkingLot.setDailyRate(parkingLotDetails.getDailyRate());
+            parkingLot.setStatus(parkingLotDetails.getStatus());
+            parkingLot.setLatitude(parkingLotDetails.getLatitude());
+            parkingLot.setLongitude(parkingLotDetails.getLongitude());
+            
+            ParkingLot saved = parkingLotRepository.saveAndFlush(parkingLot);
+            statisticsService.parkingLotStatusChanged(oldStatus, saved.getStatus());
+            occupancyHistoryService.availabilityChanged(String.valueOf(id), oldAvailableSpaces, saved.getAvailableSpaces());
+            occupancyService.parkingLotChanged(saved);
+            searchService.parkingLotChanged(saved);
+            locationService.parkingLotChanged(saved);
+            cacheService.parkingLotChanged(id);
+            return saved;
+        });
     }
     
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void deleteParkingLot(Long id) {
-        parkingLotRepository.deleteById(id);
+        optimisticRetry.execute(() -> {
+            parkingLotRepository.findById(id).ifPresent(parkingLot -> {
+                parkingLotRepository.delete(parkingLot);
+                parkingLotRepository.flush();
+                statisticsService.parkingLotDeleted(parkingLot.getStatus());
+                occupancyService.parkingLotDeleted(id);
+                searchService.parkingLotDeleted(id);
+                locationService.parkingLotDeleted(id);
+                cacheService.parkingLotChanged(id);
+            });
+            return null;
+        });
     }
     
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public ParkingLot updateParkingLotStatus(Long id, ParkingLotStatus status) {
-        ParkingLot parkingLot = parkingLotRepository.findById(id)
-            .orElseThrow(() -> new RuntimeException("Parking lot not found"));
-        
-        parkingLot.setStatus(status);
-        return parkingLotRepository.save(parkingLot);
+        return optimisticRetry.execute(() -> {
+            ParkingLot parkingLot = parkingLotRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Parking lot not found"));
+            ParkingLotStatus oldStatus = parkingLot.getStatus();
+            
+            parkingLot.setStatus(status);
+            ParkingLot saved = parkingLotRepository.saveAndFlush(parkingLot);
+            statisticsService.parkingLotStatusChanged(oldStatus, saved.getStatus());
+            locationService.parkingLotChanged(saved);
+            cacheService.parkingLotChanged(id);
+            return saved;
+        });
     }
     
+    // 空き台数は SELECT せずに範囲条件付きの UPDATE 1文で書き換える (version も進める)
     public ParkingLot updateAvailableSpaces(Long id, Integer availableSpaces) {
-        ParkingLot parkingLot = parkingLotRepository.findById(id)
+        if (parkingLotRepository.setAvailableSpaces(id, availableSpaces) == 0) {
+            throw notUpdated(id, "Available spaces cannot exceed total spaces");
+        }
+        occupancyHistoryService.availabilityChanged(String.valueOf(id), null, availableSpaces);
+        occupancyService.availableSpacesChanged(id, availableSpaces);
+        cacheService.availableSpacesChanged(id);
+        return parkingLotRepository.findCurrentById(id)
+            .orElseThrow(() -> new RuntimeException("Parking lot not found"));
+    }
+    
+    // 出庫: 空き台数を増やして更新後の値を返す。total_spaces を超える場合は更新しない
+    public int incrementAvailable(Long id) {
+        return incrementAvailable(id, 1);
+    }
+    
+    public int incrementAvailable(Long id, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        if (parkingLotRepository.incrementAvailableSpaces(id, count) == 0) {
+            throw notUpdated(id, "Available spaces would exceed total spaces");
+        }
+        return availableSpacesChanged(id, count);
+    }
+    
+    // 入庫: 空き台数を減らして更新後の値を返す。0 を下回る場合は更新しない
+    public int decrementAvailable(Long id) {
+        return decrementAvailable(id, 1);
+    }
+    
+    public int decrementAvailable(Long id, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        if (parkingLotRepository.decrementAvailableSpaces(id, count) == 0) {
+            throw notUpdated(id, "No available spaces");
+        }
+        return availableSpacesChanged(id, -count);
+    }
+    
+    // UPDATE で行ロックを持っているので、コミットまで他の更新は入らず読み直した値が自分の更新結果になる
+    private int availableSpacesChanged(Long id, int delta) {
+        int availableSpaces = parkingLotRepository.findAvailableSpacesById(id)
             .orElseThrow(() -> new RuntimeException("Parking lot not found"));
-        
-        if (availableSpaces > parkingLot.getTotalSpaces()) {
-            throw new RuntimeException("Available spaces cannot exceed total spaces");
+        occupancyHistoryService.availabilityChanged(String.valueOf(id), availableSpaces - delta, availableSpaces);
+        occupancyService.availableSpacesChanged(id, availableSpaces);
+        cacheService.availableSpacesChanged(id);
+        return availableSpaces;
+    }
+    
+    private RuntimeException notUpdated(Long id, String outOfRangeMessage) {
+        if (!parkingLotRepository.existsById(id)) {
+            return new RuntimeException("Parking lot not found");
         }
-        
-        parkingLot.setAvailableSpaces(availableSpaces);
-        return parkingLotRepository.save(parkingLot);
+        return new RuntimeException(outOfRangeMessage);
     }
 } 
\ No newline at end of file
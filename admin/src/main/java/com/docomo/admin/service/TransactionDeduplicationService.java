@@ -0,0 +1,72 @@
+package com.docomo.admin.service;
+
+import com.docomo.admin.repository.TransactionRepository;
+import com.docomo.admin.service.dedup.EventDeduplicator;
+import com.docomo.admin.service.support.AfterCommit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * ゲートのイベント ID から登録済みの取引を引く。新規のイベントは DB を見ずに判定する (EventDeduplicator)。
+ * 起動時は直近の取引のイベント ID を読み込んでおき、再起動をまたいだ再送も検出する。
+ */
+@Slf4j
+@Service
+public class TransactionDeduplicationService {
+
+    private final TransactionRepository transactionRepository;
+    private final EventDeduplicator<Long> deduplicator;
+    private final Duration warmupWindow;
+
+    public TransactionDeduplicationService(TransactionRepository transactionRepository,
+                                           @Value("${admin.dedup.expected-events:1000000}") int expectedEvents,
+                                           @Value("${admin.dedup.false-positive-rate:0.001}") double falsePositiveRate,
+                                           @Value("${admin.dedup.recent-capacity:100000}") int recentCapacity,
+                                           @Value("${admin.dedup.warmup-window:P3D}") Duration warmupWindow) {
+        this.transactionRepository = transactionRepository;
+        this.deduplicator = new EventDeduplicator<>(expectedEvents, falsePositiveRate, recentCapacity);
+        this.warmupWindow = warmupWindow;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void initialize() {
+        AtomicLong count = new AtomicLong();
+        try (Stream<String> eventIds = transactionRepository.streamEventIdsCreatedSince(LocalDateTime.now().minus(warmupWindow))) {
+            eventIds.forEach(eventId -> {
+                deduplicator.preload(eventId);
+                count.incrementAndGet();
+            });
+        }
+        log.info("Event deduplication loaded: {} event ids", count.get());
+    }
+
+    // 登録済みならその取引の ID、未登録なら null。登録前の重複確認用 (取りこぼしは DB の一意制約で弾く)
+    public Long findTransactionId(String eventId) {
+        return deduplicator.find(eventId, id -> transactionRepository.findIdByEventId(id).orElse(null));
+    }
+
+    // 登録済みの取引を必ず見つける (Bloom filter では判定しない)。出庫から入庫の取引を引くとき用
+    public Long resolveTransactionId(String eventId) {
+        return deduplicator.resolve(eventId, id -> transactionRepository.findIdByEventId(id).orElse(null));
+    }
+
+    // Bloom filter にはすぐ入れる (同じトランザクション内の再送も DB で確認させるため)。
+    // ロールバックされても誤判定が1件増えるだけ
+    public void transactionCreated(String eventId, Long transactionId) {
+        deduplicator.preload(eventId);
+        AfterCommit.run(() -> deduplicator.record(eventId, transactionId));
+    }
+
+    public void transactionDeleted(String eventId) {
+        AfterCommit.run(() -> deduplicator.forget(eventId));
+    }
+}
@@ -2,26 +2,70 @@ package com.docomo.admin.service;
 
 import com.docomo.admin.entity.Transaction;
 import com.docomo.admin.entity.Transaction.TransactionStatus;
+import com.docomo.admin.repository.TransactionFilter;
 import com.docomo.admin.repository.TransactionRepository;
+import com.docomo.admin.repository.projection.TransactionListItem;
+import com.docomo.admin.repository.support.KeysetCursor;
+import com.docomo.admin.repository.support.KeysetPage;
+import com.docomo.admin.service.analytics.AnalyticsRecord;
+import com.docomo.admin.service.analytics.TransactionAnalyticsService;
+import com.docomo.admin.service.export.ExportRow;
+import com.docomo.admin.service.export.TransactionExportWriter;
+import com.docomo.admin.service.revenue.RevenueContribution;
+import com.docomo.admin.service.revenue.RevenueRollupService;
+import com.docomo.admin.service.statistics.DashboardStatisticsService;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class TransactionService {
     
+    private static final int EXPORT_CLEAR_INTERVAL = 1000;
+    // hibernate.jdbc.batch_size と揃える
+    private static final int BULK_FLUSH_INTERVAL = 50;
+    
     private final TransactionRepository transactionRepository;
+    private final DashboardStatisticsService statisticsService;
+    private final RevenueRollupService revenueRollupService;
+    private final TransactionAnalyticsService analyticsService;
+    private final TransactionDeduplicationService deduplicationService;
+    private final ParkingLotOccupancyService occupancyService;
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
     
     public List<Transaction> getAllTransactions() {
         return transactionRepository.findAll();
     }
     
+    // 一覧は件数によらず同じコストで取れるよう (entryTime, id) でシークする
+    @Transactional(readOnly = true)
+    public KeysetPage<TransactionListItem> getTransactionPage(TransactionFilter filter, String cursor, Integer size) {
+        int limit = KeysetPage.clampSize(size);
+        List<TransactionListItem> rows = transactionRepository.findPage(filter,
+            KeysetCursor.decode(cursor, KeysetCursor::isNumericId), limit + 1);
+        return KeysetPage.of(rows, limit, item -> new KeysetCursor(item.getEntryTime(), String.valueOf(item.getId())));
+    }
+    
     public Optional<Transaction> getTransactionById(Long id) {
         return transactionRepository.findById(id);
     }
@@ -42,16 +86,87 @@ public class TransactionService {
         return transactionRepository.findByEntryTimeBetween(start, end);
     }
     
+    // 入庫日時が [start, end) の取引をカーソルで読みながら書き出す (永続化コンテキストは一定件数ごとに破棄)
+    @Transactional(readOnly = true)
+    public long exportTransactions(LocalDateTime start, LocalDateTime end, TransactionExportWriter writer) {
+        try (Stream<Transaction> transactions = transactionRepository.streamByEntryTimeRange(start, end)) {
+            transactions.forEach(transaction -> {
+                writer.write(ExportRow.of(transaction));
+                if (writer.getRowCount() % EXPORT_CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            });
+        }
+        return writer.getRowCount();
+    }
+    
+    // イベント ID 付きの取引は、同じイベントが登録済みならそれを返す (ゲートからの再送)。
+    // 事前の確認をすり抜けた重複 (他のノードでの登録・同時に届いた再送) は一意制約で弾かれるので、そのときも登録済みのものを返す。
+    // 制約違反の後はトランザクションを続けられないため、呼び出し元のトランザクション内ではそのまま投げる
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Transaction createTransaction(Transaction transaction) {
-        if (transaction.getStatus() == null) {
-            transaction.setStatus(TransactionStatus.PENDING);
+        String eventId = transaction.getEventId();
+        if (eventId != null) {
+            Optional<Transaction> existing = findByEventId(eventId);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return insertTransaction(transaction);
         }
-        return transactionRepository.save(transaction);
+        try {
+            return new TransactionTemplate(transactionManager).execute(status -> insertTransaction(transaction));
+        } catch (DataIntegrityViolationException e) {
+            if (eventId == null) {
+                throw e;
+            }
+            return transactionRepository.findIdByEventId(eventId)
+                .flatMap(transactionRepository::findById)
+                .orElseThrow(() -> e);
+        }
+    }
+    
+    // ゲートの入出庫の再送など大量の取引をまとめて登録する。INSERT は JDBC バッチで送り、
+    // 永続化コンテキストは一定件数ごとに flush/clear する。売上集計はバケット単位にまとめて最後に1回だけ更新する。
+    // 登録済みのイベント (同じ一括登録内の重複を含む) は登録せず、結果にも含めない
+    public List<Transaction> createTransactions(Collection<Transaction> transactions) {
+        List<Transaction> saved = new ArrayList<>(transactions.size());
+        List<RevenueContribution> contributions = new ArrayList<>(transactions.size());
+        Set<String> eventIds = new HashSet<>();
+        for (Transaction transaction : transactions) {
+            String eventId = transaction.getEventId();
+            if (eventId != null && (!eventIds.add(eventId) || deduplicationService.findTransactionId(eventId) != null)) {
+                continue;
+            }
+            if (transaction.getStatus() == null) {
+                transaction.setStatus(TransactionStatus.PENDING);
+            }
+            entityManager.persist(transaction);
+            eventRecorded(transaction);
+            saved.add(transaction);
+            contributions.add(RevenueContribution.of(transaction));
+            analyticsService.transactionChanged(null, AnalyticsRecord.of(transaction));
+            if (saved.size() % BULK_FLUSH_INTERVAL == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        
+        revenueRollupService.applyAll(contributions);
+        contributions.stream()
+            .filter(contribution -> contribution != RevenueContribution.NONE)
+            .forEach(contribution -> statisticsService.revenueChanged(RevenueContribution.NONE, contribution));
+        return saved;
     }
     
     public Transaction updateTransaction(Long id, Transaction transactionDetails) {
         Transaction transaction = transactionRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        RevenueContribution before = RevenueContribution.of(transaction);
+        AnalyticsRecord recordBefore = AnalyticsRecord.of(transaction);
         
         transaction.setExitTime(transactionDetails.getExitTime());
         transaction.setDurationHours(transactionDetails.getDurationHours());
@@ -59,21 +174,57 @@ public class TransactionService {
         transaction.setStatus(transactionDetails.getStatus());
         transaction.setPaymentMethod(transactionDetails.getPaymentMethod());
         
-        return transactionRepository.save(transaction);
+        Transaction saved = transactionRepository.save(transaction);
+        revenueChanged(before, RevenueContribution.of(saved));
+        analyticsService.transactionChanged(recordBefore, AnalyticsRecord.of(saved));
+        return saved;
     }
     
+    // 同じ出庫の再送は何もしない
+    public Transaction completeTransaction(Long id, LocalDateTime exitTime, BigDecimal amount) {
+        Transaction transaction = transactionRepository.findById(id)
+            .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        if (transaction.getStatus() == TransactionStatus.COMPLETED && Objects.equals(transaction.getExitTime(), exitTime)
+                && amount != null && transaction.getAmount() != null && amount.compareTo(transaction.getAmount()) == 0) {
+            return transaction;
+        }
+        boolean exited = transaction.getEventId() != null && transaction.getStatus() != TransactionStatus.COMPLETED;
+        RevenueContribution before = RevenueContribution.of(transaction);
+        AnalyticsRecord recordBefore = AnalyticsRecord.of(transaction);
+    
+        transaction.setExitTime(exitTime);
+        transaction.setAmount(amount);
+        transaction.setStatus(TransactionStatus.COMPLETED);
+        if (transaction.getEntryTime() != null && exitTime != null) {
+            transaction.setDurationHours(ChronoUnit.MINUTES.between(transaction.getEntryTime(), exitTime) / 60.0);
+        }
+    
+        Transaction saved = transactionRepository.save(transaction);
+        revenueChanged(before, RevenueContribution.of(saved));
+        analyticsService.transactionChanged(recordBefore, AnalyticsRecord.of(saved));
+        if (exited && saved.getParkingLot() != null) {
+            occupancyService.vehicleExited(saved.getParkingLot().getId());
+        }
+        return saved;
+    }
+
     public void deleteTransaction(Long id) {
-        transactionRepository.deleteById(id);
+        transactionRepository.findById(id).ifPresent(transaction -> {
+            transactionRepository.delete(transaction);
+            if (transaction.getEventId() != null) {
+                deduplicationService.transactionDeleted(transaction.getEventId());
+            }
+            revenueChanged(RevenueContribution.of(transaction), RevenueContribution.NONE);
+            analyticsService.transactionChanged(AnalyticsRecord.of(transaction), null);
+        });
     }
     
     public BigDecimal getTotalRevenueByParkingLot(Long parkingLotId) {
-        BigDecimal revenue = transactionRepository.getTotalRevenueByParkingLot(parkingLotId);
-        return revenue != null ? revenue : BigDecimal.ZERO;
+        return revenueRollupService.getTotalRevenueByParkingLot(parkingLotId);
     }
     
     public BigDecimal getTotalRevenueByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
-        BigDecimal revenue = transactionRepository.getTotalRevenueByDateRange(startDate, endDate);
-        return revenue != null ? revenue : BigDecimal.ZERO;
+        return revenueRollupService.getTotalRevenueByDateRange(startDate, endDate);
     }
     
     public BigDecimal getTotalRevenue() {
@@ -92,4 +243,38 @@ public class TransactionService {
             .withNano(0);
         return getTotalRevenueByDateRange(startOfMonth, LocalDateTime.now());
     }
-} 
\ No newline at end of file
+    
+    private Transaction insertTransaction(Transaction transaction) {
+        if (transaction.getStatus() == null) {
+            transaction.setStatus(TransactionStatus.PENDING);
+        }
+        Transaction saved = transactionRepository.saveAndFlush(transaction);
+        eventRecorded(saved);
+        revenueChanged(RevenueContribution.NONE, RevenueContribution.of(saved));
+        analyticsService.transactionChanged(null, AnalyticsRecord.of(saved));
+        return saved;
+    }
+    
+    private Optional<Transaction> findByEventId(String eventId) {
+        Long transactionId = deduplicationService.findTransactionId(eventId);
+        return transactionId != null ? transactionRepository.findById(transactionId) : Optional.empty();
+    }
+    
+    // イベント ID 付きの取引はゲートの入庫なので、空き台数も減らす (書き込みは ParkingLotOccupancyService がまとめて行う)
+    private void eventRecorded(Transaction transaction) {
+        if (transaction.getEventId() != null) {
+            deduplicationService.transactionCreated(transaction.getEventId(), transaction.getId());
+            if (transaction.getStatus() == TransactionStatus.PENDING && transaction.getParkingLot() != null) {
+                occupancyService.vehicleEntered(transaction.getParkingLot().getId());
+            }
+        }
+    }
+    
+    private void revenueChanged(RevenueContribution before, RevenueContribution after) {
+        if (before.sameAs(after)) {
+            return;
+        }
+        revenueRollupService.apply(before, after);
+        statisticsService.revenueChanged(before, after);
+    }
+}
@@ -1,8 +1,13 @@
 package com.docomo.admin.service;
 
 import com.docomo.admin.entity.User;
+import com.docomo.admin.entity.User.UserRole;
 import com.docomo.admin.repository.UserRepository;
+import com.docomo.admin.security.RefreshTokenService;
+import com.docomo.admin.service.statistics.DashboardStatisticsService;
+import com.docomo.admin.service.version.EntityVersionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,6 +21,10 @@ public class UserService {
     
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final DashboardStatisticsService statisticsService;
+    private final EntityVersionService versionService;
+    // トークン認証が有効なときだけ
+    private final ObjectProvider<RefreshTokenService> refreshTokenService;
     
     public List<User> getAllUsers() {
         return userRepository.findAll();
@@ -38,26 +47,42 @@ public class UserService {
         }
         
         user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        statisticsService.userCreated(saved.getRole());
+        versionService.changed(EntityVersionService.USERS, saved.getId());
+        return saved;
     }
     
     public User updateUser(Long id, User userDetails) {
         User user = userRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("User not found"));
+        UserRole oldRole = user.getRole();
         
         user.setFullName(userDetails.getFullName());
         user.setEmail(userDetails.getEmail());
         user.setRole(userDetails.getRole());
         
-        if (userDetails.getPassword() != null && !userDetails.getPassword().isEmpty()) {
+        boolean passwordChanged = userDetails.getPassword() != null && !userDetails.getPassword().isEmpty();
+        if (passwordChanged) {
             user.setPassword(passwordEncoder.encode(userDetails.getPassword()));
         }
         
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        statisticsService.userRoleChanged(oldRole, saved.getRole());
+        versionService.changed(EntityVersionService.USERS, id);
+        if (passwordChanged || saved.getRole() != oldRole) {
+            revokeTokens(saved.getUsername());
+        }
+        return saved;
     }
     
     public void deleteUser(Long id) {
-        userRepository.deleteById(id);
+        userRepository.findById(id).ifPresent(user -> {
+            userRepository.delete(user);
+            statisticsService.userDeleted(user.getRole());
+            versionService.changed(EntityVersionService.USERS, id);
+            revokeTokens(user.getUsername());
+        });
     }
     
     public boolean existsByUsername(String username) {
@@ -67,4 +92,9 @@ public class UserService {
     public boolean existsByEmail(String email) {
         return userRepository.existsByEmail(email);
     }
+    
+    // 発行済みのリフレッシュトークンで古い権限のまま使い続けられないようにする
+    private void revokeTokens(String username) {
+        refreshTokenService.ifAvailable(service -> service.revokeUser(username));
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,232 @@
+package com.docomo.admin.service.analytics;
+
+import com.docomo.admin.entity.Transaction.PaymentMethod;
+import com.docomo.admin.service.support.AfterCommit;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 完了済み取引の分析用列ストア。取引サービスから完了・取消の変化を受け取り、
+ * 時間帯別売上や駐車場別平均滞在時間などをエンティティを読み込まずに集計する。
+ *
+ * ストアは取引の写しなので、バックエンド (JPA / MongoDB) ごとに別のディレクトリに置く。
+ * 起動時に完了済み取引の件数がバックエンドと合わなければ (初回・ストアの消失・DB の作り直しなど)、
+ * バックエンドから読み直して作り直す。
+ */
+@Slf4j
+public abstract class AbstractTransactionAnalyticsService {
+
+    private static final String TRANSACTIONS = "transactions";
+    private static final String PARKING_LOTS = "parking-lots.dict";
+    private static final String REBUILD = "rebuild";
+
+    private final Path directory;
+    private final int segmentRows;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private volatile ColumnarTransactionStore store;
+    private volatile LotDictionary lots;
+
+    protected AbstractTransactionAnalyticsService(Path directory, int segmentRows) {
+        this.directory = directory;
+        this.segmentRows = segmentRows;
+    }
+
+    // ストアに載せる完了済み取引 (AnalyticsRecord#isRecordable を満たすもの) の件数
+    protected abstract long countRecordable();
+
+    // 完了済み取引を順に読む (作り直し用)
+    protected abstract void forEachRecordable(Consumer<AnalyticsRecord> action);
+
+    @PostConstruct
+    public void open() throws IOException {
+        store = new ColumnarTransactionStore(directory.resolve(TRANSACTIONS), segmentRows);
+        lots = new LotDictionary(directory.resolve(PARKING_LOTS));
+        log.info("Transaction analytics store opened: {} rows in {}", store.size(), directory);
+        try {
+            long expected = countRecordable();
+            long recorded = getRecordedCount();
+            if (recorded != expected) {
+                log.info("Transaction analytics store in {} has {} transactions but the database has {}, rebuilding",
+                    directory, recorded, expected);
+                rebuild();
+            }
+        } catch (RuntimeException e) {
+            // 分析用ストアのために起動を止めない (次回の起動時に改めて確かめる)
+            log.error("Failed to check transaction analytics store in {}", directory, e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        store.close();
+        lots.close();
+    }
+
+    // バックエンドの完了済み取引から作り直し、ストアの行数を返す。作り直している間の集計は元のストアから返す。
+    // 作り直しの途中で完了した取引は二重に数えられることがあるので、書き込みのない起動時に行う
+    public synchronized long rebuild() throws IOException {
+        Path work = directory.resolve(REBUILD);
+        deleteRecursively(work);
+        try (ColumnarTransactionStore rebuilt = new ColumnarTransactionStore(work.resolve(TRANSACTIONS), segmentRows);
+             LotDictionary rebuiltLots = new LotDictionary(work.resolve(PARKING_LOTS))) {
+            forEachRecordable(record -> {
+                try {
+                    append(rebuilt, rebuiltLots, record, false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        store.close();
+        lots.close();
+        deleteRecursively(directory.resolve(TRANSACTIONS));
+        Files.deleteIfExists(directory.resolve(PARKING_LOTS));
+        Files.move(work.resolve(TRANSACTIONS), directory.resolve(TRANSACTIONS));
+        Files.move(work.resolve(PARKING_LOTS), directory.resolve(PARKING_LOTS));
+        Files.delete(work);
+        store = new ColumnarTransactionStore(directory.resolve(TRANSACTIONS), segmentRows);
+        lots = new LotDictionary(directory.resolve(PARKING_LOTS));
+        log.info("Transaction analytics store rebuilt: {} rows in {}", store.size(), directory);
+        return store.size();
+    }
+
+    // 完了した取引は1行、完了状態から外れた・内容が変わった取引は打ち消し行を追記する
+    public void transactionChanged(AnalyticsRecord before, AnalyticsRecord after) {
+        boolean wasRecorded = before != null && before.isRecordable();
+        boolean isRecorded = after != null && after.isRecordable();
+        if (wasRecorded && isRecorded && before.equals(after)) {
+            return;
+        }
+        if (!wasRecorded && !isRecorded) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            try {
+                synchronized (this) {
+                    if (wasRecorded) {
+                        append(store, lots, before, true);
+                    }
+                    if (isRecorded) {
+                        append(store, lots, after, false);
+                    }
+                }
+            } catch (IOException e) {
+                // 分析用ストアの失敗で取引自体を失敗させない
+                log.error("Failed to append transaction to analytics store", e);
+            }
+        });
+    }
+
+    public long size() {
+        return store.size();
+    }
+
+    // 打ち消し行を差し引いた、ストア上の完了済み取引の件数
+    public long getRecordedCount() {
+        return store.aggregate(query(null, null, -1, AnalyticsQuery.GroupBy.NONE)).getCount(0);
+    }
+
+    public Map<Integer, BigDecimal> getRevenueByHourOfDay(LocalDateTime start, LocalDateTime end) {
+        AnalyticsResult result = store.aggregate(query(start, end, -1, AnalyticsQuery.GroupBy.HOUR_OF_DAY));
+        Map<Integer, BigDecimal> revenue = new LinkedHashMap<>();
+        for (int hour = 0; hour < 24; hour++) {
+            revenue.put(hour, BigDecimal.valueOf(result.getAmountYen(hour)));
+        }
+        return revenue;
+    }
+
+    public Map<String, Double> getAverageDurationByParkingLot(LocalDateTime start, LocalDateTime end) {
+        AnalyticsResult result = store.aggregate(query(start, end, -1, AnalyticsQuery.GroupBy.PARKING_LOT));
+        Map<String, Double> durations = new LinkedHashMap<>();
+        for (int code = 0; code < result.cardinality(); code++) {
+            Double average = result.getAverageDurationHours(code);
+            if (average != null) {
+                durations.put(lots.idOf(code), average);
+            }
+        }
+        return durations;
+    }
+
+    public Map<PaymentMethod, Long> getPaymentMix(LocalDateTime start, LocalDateTime end) {
+        AnalyticsResult result = store.aggregate(query(start, end, -1, AnalyticsQuery.GroupBy.PAYMENT_METHOD));
+        Map<PaymentMethod, Long> mix = new EnumMap<>(PaymentMethod.class);
+        for (PaymentMethod method : PaymentMethod.values()) {
+            mix.put(method, result.getCount(paymentCode(method)));
+        }
+        return mix;
+    }
+
+    public BigDecimal getRevenueByParkingLot(String parkingLotId, LocalDateTime start, LocalDateTime end) {
+        int code = lots.find(parkingLotId);
+        if (code < 0) {
+            return BigDecimal.ZERO;
+        }
+        AnalyticsResult result = store.aggregate(query(start, end, code, AnalyticsQuery.GroupBy.NONE));
+        return BigDecimal.valueOf(result.getAmountYen(0));
+    }
+
+    private void append(ColumnarTransactionStore store, LotDictionary lots, AnalyticsRecord record,
+                        boolean reversal) throws IOException {
+        long amount = record.getAmount() != null
+            ? record.getAmount().setScale(0, RoundingMode.HALF_UP).longValueExact() : 0L;
+        byte status = (byte) record.getStatus().ordinal();
+        store.append(
+            lots.codeOf(record.getParkingLotId()),
+            epochSecond(record.getEntryTime()),
+            record.getExitTime() != null ? epochSecond(record.getExitTime()) : ColumnarTransactionStore.NO_EXIT,
+            reversal ? -amount : amount,
+            reversal ? (byte) (status | ColumnarTransactionStore.REVERSAL) : status,
+            (byte) paymentCode(record.getPaymentMethod())
+        );
+    }
+
+    private AnalyticsQuery query(LocalDateTime start, LocalDateTime end, int lotCode, AnalyticsQuery.GroupBy groupBy) {
+        return new AnalyticsQuery(
+            start != null ? epochSecond(start) : Long.MIN_VALUE,
+            end != null ? epochSecond(end) : Long.MAX_VALUE,
+            lotCode,
+            groupBy,
+            zone.getRules().getOffset(Instant.now()).getTotalSeconds()
+        );
+    }
+
+    private long epochSecond(LocalDateTime time) {
+        return time.atZone(zone).toEpochSecond();
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    // 0 は支払方法なし
+    private static int paymentCode(PaymentMethod method) {
+        return method != null ? method.ordinal() + 1 : 0;
+    }
+}
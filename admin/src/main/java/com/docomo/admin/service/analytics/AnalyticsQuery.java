@@ -0,0 +1,27 @@
+package com.docomo.admin.service.analytics;
+
+import lombok.Value;
+
+@Value
+public class AnalyticsQuery {
+    
+    long fromEpochSecond;
+    long toEpochSecond;
+    int lotCode;
+    GroupBy groupBy;
+    long utcOffsetSeconds;
+    
+    public enum GroupBy {
+        NONE(1), HOUR_OF_DAY(24), PARKING_LOT(1024), PAYMENT_METHOD(8), STATUS(8);
+        
+        private final int initialCardinality;
+        
+        GroupBy(int initialCardinality) {
+            this.initialCardinality = initialCardinality;
+        }
+        
+        int initialCardinality() {
+            return initialCardinality;
+        }
+    }
+}
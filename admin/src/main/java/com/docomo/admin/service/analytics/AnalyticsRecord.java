@@ -0,0 +1,48 @@
+package com.docomo.admin.service.analytics;
+
+import com.docomo.admin.entity.Transaction;
+import com.docomo.admin.entity.Transaction.PaymentMethod;
+import com.docomo.admin.entity.Transaction.TransactionStatus;
+import com.docomo.admin.entity.mongo.MongoTransaction;
+import lombok.Value;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// 列ストアに記録する取引の状態 (JPA/Mongo 共通)
+@Value
+public class AnalyticsRecord {
+    
+    String parkingLotId;
+    LocalDateTime entryTime;
+    LocalDateTime exitTime;
+    BigDecimal amount;
+    TransactionStatus status;
+    PaymentMethod paymentMethod;
+    
+    public static AnalyticsRecord of(Transaction transaction) {
+        return new AnalyticsRecord(
+            transaction.getParkingLot() != null && transaction.getParkingLot().getId() != null
+                ? String.valueOf(transaction.getParkingLot().getId()) : null,
+            transaction.getEntryTime(),
+            transaction.getExitTime(),
+            transaction.getAmount(),
+            transaction.getStatus(),
+            transaction.getPaymentMethod()
+        );
+    }
+    
+    public static AnalyticsRecord of(MongoTransaction transaction) {
+        return new AnalyticsRecord(
+            transaction.getParkingLotId(),
+            transaction.getEntryTime(),
+            transaction.getExitTime(),
+            transaction.getAmount(),
+            transaction.getStatus() != null ? TransactionStatus.valueOf(transaction.getStatus().name()) : null,
+            transaction.getPaymentMethod() != null ? PaymentMethod.valueOf(transaction.getPaymentMethod().name()) : null
+        );
+    }
+    
+    public boolean isRecordable() {
+        return status == TransactionStatus.COMPLETED && parkingLotId != null && entryTime != null;
+    }
+}
@@ -0,0 +1,58 @@
+package com.docomo.admin.service.analytics;
+
+import java.util.Arrays;
+
+// グループキーごとの件数・金額・滞在時間の合計 (キーは列の値そのもの)
+public class AnalyticsResult {
+
+    private long[] counts;
+    private long[] amounts;
+    private long[] durationSeconds;
+    private long[] durationCounts;
+
+    AnalyticsResult(int cardinality) {
+        counts = new long[cardinality];
+        amounts = new long[cardinality];
+        durationSeconds = new long[cardinality];
+        durationCounts = new long[cardinality];
+    }
+
+    void add(int key, int weight, long amountYen, long duration) {
+        if (key >= counts.length) {
+            grow(key + 1);
+        }
+        counts[key] += weight;
+        amounts[key] += amountYen;
+        if (duration >= 0) {
+            durationSeconds[key] += weight * duration;
+            durationCounts[key] += weight;
+        }
+    }
+
+    public int cardinality() {
+        return counts.length;
+    }
+
+    public long getCount(int key) {
+        return key < counts.length ? counts[key] : 0;
+    }
+
+    public long getAmountYen(int key) {
+        return key < amounts.length ? amounts[key] : 0;
+    }
+
+    public Double getAverageDurationHours(int key) {
+        if (key >= durationCounts.length || durationCounts[key] <= 0) {
+            return null;
+        }
+        return durationSeconds[key] / 3600.0 / durationCounts[key];
+    }
+
+    private void grow(int minimum) {
+        int size = Math.max(minimum, counts.length * 2);
+        counts = Arrays.copyOf(counts, size);
+        amounts = Arrays.copyOf(amounts, size);
+        durationSeconds = Arrays.copyOf(durationSeconds, size);
+        durationCounts = Arrays.copyOf(durationCounts, size);
+    }
+}
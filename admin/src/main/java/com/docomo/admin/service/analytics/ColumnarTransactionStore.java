@@ -0,0 +1,194 @@
+package com.docomo.admin.service.analytics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 完了済み取引を列ごとのプリミティブ配列としてメモリマップドファイルに追記するストア。
+ * データはページキャッシュ上にあり、ヒープに載るのは集計結果だけ。
+ *
+ * セグメントファイルは segmentRows 行分の列を連続して持つ:
+ * [駐車場 int][入庫 long][出庫 long][金額 long][ステータス byte][支払方法 byte]
+ */
+public class ColumnarTransactionStore implements Closeable {
+
+    // ステータス列の最上位ビットは取消行 (金額・件数を打ち消す行) を表す
+    public static final byte REVERSAL = (byte) 0x80;
+    public static final long NO_EXIT = Long.MIN_VALUE;
+
+    private static final int MAGIC = 0x54434f4c;
+    private static final int META_BYTES = 16;
+    private static final int ROW_BYTES = Integer.BYTES + Long.BYTES * 3 + 2;
+
+    private final Path directory;
+    private final int segmentRows;
+    private final FileChannel metaChannel;
+    private final MappedByteBuffer meta;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private volatile long rowCount;
+
+    public ColumnarTransactionStore(Path directory, int segmentRows) throws IOException {
+        if (segmentRows <= 0 || segmentRows > Integer.MAX_VALUE / ROW_BYTES) {
+            throw new IllegalArgumentException("Invalid segment rows: " + segmentRows);
+        }
+        this.directory = directory;
+        Files.createDirectories(directory);
+        this.metaChannel = FileChannel.open(directory.resolve("meta"),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = metaChannel.size() == 0;
+        this.meta = metaChannel.map(FileChannel.MapMode.READ_WRITE, 0, META_BYTES);
+        meta.order(ByteOrder.LITTLE_ENDIAN);
+        if (created) {
+            meta.putInt(0, MAGIC).putInt(4, segmentRows).putLong(8, 0L);
+        } else if (meta.getInt(0) != MAGIC) {
+            throw new IOException("Not a columnar transaction store: " + directory);
+        }
+        // 既存ストアはセグメントサイズを作成時の値で固定する
+        this.segmentRows = meta.getInt(4);
+        this.rowCount = meta.getLong(8);
+        long segmentCount = (rowCount + this.segmentRows - 1) / this.segmentRows;
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add(openSegment(i));
+        }
+    }
+
+    public long size() {
+        return rowCount;
+    }
+
+    public synchronized void append(int lotCode, long entryEpochSecond, long exitEpochSecond,
+                                    long amountYen, byte status, byte paymentMethod) throws IOException {
+        long row = rowCount;
+        int segmentIndex = (int) (row / segmentRows);
+        if (segmentIndex == segments.size()) {
+            segments.add(openSegment(segmentIndex));
+        }
+        Segment segment = segments.get(segmentIndex);
+        int i = (int) (row % segmentRows);
+        segment.lots.put(i, lotCode);
+        segment.entries.put(i, entryEpochSecond);
+        segment.exits.put(i, exitEpochSecond);
+        segment.amounts.put(i, amountYen);
+        segment.statuses.put(i, status);
+        segment.payments.put(i, paymentMethod);
+
+        // 列を書き終えてから行数を進める (読み手は行数までしか見ない)
+        meta.putLong(8, row + 1);
+        rowCount = row + 1;
+    }
+
+    public AnalyticsResult aggregate(AnalyticsQuery query) {
+        long total = rowCount;
+        AnalyticsResult result = new AnalyticsResult(query.getGroupBy().initialCardinality());
+        long from = query.getFromEpochSecond();
+        long to = query.getToEpochSecond();
+        int lotFilter = query.getLotCode();
+        long offset = query.getUtcOffsetSeconds();
+        AnalyticsQuery.GroupBy groupBy = query.getGroupBy();
+
+        for (int s = 0; s < segments.size() && (long) s * segmentRows < total; s++) {
+            Segment segment = segments.get(s);
+            int rows = (int) Math.min(segmentRows, total - (long) s * segmentRows);
+            LongBuffer entries = segment.entries;
+            for (int i = 0; i < rows; i++) {
+                long entry = entries.get(i);
+                if (entry < from || entry >= to) {
+                    continue;
+                }
+                int lot = segment.lots.get(i);
+                if (lotFilter >= 0 && lot != lotFilter) {
+                    continue;
+                }
+                byte status = segment.statuses.get(i);
+                int key;
+                switch (groupBy) {
+                    case HOUR_OF_DAY:
+                        key = (int) (Math.floorMod(entry + offset, 86400L) / 3600);
+                        break;
+                    case PARKING_LOT:
+                        key = lot;
+                        break;
+                    case PAYMENT_METHOD:
+                        key = segment.payments.get(i);
+                        break;
+                    case STATUS:
+                        key = status & 0x7f;
+                        break;
+                    default:
+                        key = 0;
+                }
+                long exit = segment.exits.get(i);
+                result.add(key, status < 0 ? -1 : 1, segment.amounts.get(i), exit == NO_EXIT ? -1 : exit - entry);
+            }
+        }
+        return result;
+    }
+
+    public synchronized void flush() {
+        meta.force();
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for (Segment segment : segments) {
+            segment.channel.close();
+        }
+        metaChannel.close();
+    }
+
+    private Segment openSegment(int index) throws IOException {
+        Path file = directory.resolve(String.format("segment-%06d.col", index));
+        FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRows * ROW_BYTES);
+        return new Segment(channel, buffer, segmentRows);
+    }
+
+    private static final class Segment {
+
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final IntBuffer lots;
+        final LongBuffer entries;
+        final LongBuffer exits;
+        final LongBuffer amounts;
+        final ByteBuffer statuses;
+        final ByteBuffer payments;
+
+        Segment(FileChannel channel, MappedByteBuffer buffer, int rows) {
+            this.channel = channel;
+            this.buffer = buffer;
+            int offset = 0;
+            this.lots = column(buffer, offset, rows * Integer.BYTES).asIntBuffer();
+            offset += rows * Integer.BYTES;
+            this.entries = column(buffer, offset, rows * Long.BYTES).asLongBuffer();
+            offset += rows * Long.BYTES;
+            this.exits = column(buffer, offset, rows * Long.BYTES).asLongBuffer();
+            offset += rows * Long.BYTES;
+            this.amounts = column(buffer, offset, rows * Long.BYTES).asLongBuffer();
+            offset += rows * Long.BYTES;
+            this.statuses = column(buffer, offset, rows);
+            offset += rows;
+            this.payments = column(buffer, offset, rows);
+        }
+
+        private static ByteBuffer column(MappedByteBuffer buffer, int offset, int length) {
+            return buffer.slice(offset, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.docomo.admin.service.analytics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 駐車場IDを列に格納する連番の int コードに変換する (1行1IDで追記保存)
+public class LotDictionary implements Closeable {
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private final BufferedWriter writer;
+
+    public LotDictionary(Path file) throws IOException {
+        if (Files.exists(file)) {
+            for (String id : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (!id.isEmpty()) {
+                    codes.put(id, ids.size());
+                    ids.add(id);
+                }
+            }
+        }
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public int codeOf(String id) throws IOException {
+        Integer code = codes.get(id);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(id);
+            if (code == null) {
+                writer.write(id);
+                writer.newLine();
+                writer.flush();
+                code = ids.size();
+                ids.add(id);
+                codes.put(id, code);
+            }
+            return code;
+        }
+    }
+
+    public int find(String id) {
+        return codes.getOrDefault(id, -1);
+    }
+
+    public synchronized String idOf(int code) {
+        return code < ids.size() ? ids.get(code) : null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
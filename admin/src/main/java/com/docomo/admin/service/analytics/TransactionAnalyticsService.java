@@ -0,0 +1,53 @@
+package com.docomo.admin.service.analytics;
+
+import com.docomo.admin.entity.Transaction.PaymentMethod;
+import com.docomo.admin.entity.Transaction.TransactionStatus;
+import com.docomo.admin.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// JPA の取引の分析用列ストア
+@Service
+public class TransactionAnalyticsService extends AbstractTransactionAnalyticsService {
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public TransactionAnalyticsService(TransactionRepository transactionRepository,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${admin.analytics.directory}") String directory,
+                                       @Value("${admin.analytics.segment-rows:1048576}") int segmentRows) {
+        super(Paths.get(directory, "jpa"), segmentRows);
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+    }
+
+    @Override
+    protected long countRecordable() {
+        return transactionRepository.countRecordable();
+    }
+
+    @Override
+    protected void forEachRecordable(Consumer<AnalyticsRecord> action) {
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = transactionRepository.streamRecordable()) {
+                rows.forEach(row -> action.accept(new AnalyticsRecord(
+                    String.valueOf(row[0]),
+                    (LocalDateTime) row[1],
+                    (LocalDateTime) row[2],
+                    (BigDecimal) row[3],
+                    TransactionStatus.COMPLETED,
+                    (PaymentMethod) row[4]
+                )));
+            }
+        });
+    }
+}
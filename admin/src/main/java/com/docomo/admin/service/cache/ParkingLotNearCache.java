@@ -0,0 +1,118 @@
+package com.docomo.admin.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 駐車場の読み取り用のニアキャッシュ。めったに変わらない駐車場本体と、入出庫のたびに変わる空き台数を
+ * 別々の Caffeine キャッシュに持ち、返すときに本体のコピーへ空き台数を重ねる。
+ * 本体は件数と長めの TTL、空き台数は短い TTL で追い出し、更新時は呼び出し側が ID 単位で無効化する。
+ * 全件の一覧は1エントリとして本体と同じ TTL で持ち、どれかの駐車場の本体が変わったら捨てる。
+ *
+ * 見つからない駐車場はキャッシュしない。返す駐車場は毎回コピーなので、呼び出し側が書き換えてもよい。
+ */
+public class ParkingLotNearCache<K, V> {
+
+    private final Cache<K, V> lots;
+    private final Cache<Boolean, List<V>> all;
+    private final Cache<K, Integer> availability;
+    private final Function<V, K> idOf;
+    private final UnaryOperator<V> copier;
+    private final Function<V, Integer> availabilityOf;
+    private final BiConsumer<V, Integer> availabilitySetter;
+
+    public ParkingLotNearCache(long maximumSize, Duration ttl, Duration availabilityTtl, Function<V, K> idOf,
+                               UnaryOperator<V> copier, Function<V, Integer> availabilityOf,
+                               BiConsumer<V, Integer> availabilitySetter) {
+        this.lots = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).recordStats().build();
+        this.all = Caffeine.newBuilder().maximumSize(1).expireAfterWrite(ttl).recordStats().build();
+        this.availability = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(availabilityTtl).recordStats().build();
+        this.idOf = idOf;
+        this.copier = copier;
+        this.availabilityOf = availabilityOf;
+        this.availabilitySetter = availabilitySetter;
+    }
+
+    // availabilityLoader は ID の集合から空き台数を読む (見つからない ID は結果に含めない)
+    public Optional<V> get(K id, Function<K, Optional<V>> loader, Function<Set<K>, Map<K, Integer>> availabilityLoader) {
+        V cached = lots.get(id, key -> loader.apply(key).map(this::store).orElse(null));
+        if (cached == null) {
+            return Optional.empty();
+        }
+        return Optional.of(withAvailability(cached, availability(Set.of(id), availabilityLoader).get(id)));
+    }
+
+    public List<V> getAll(Supplier<List<V>> loader, Function<Set<K>, Map<K, Integer>> availabilityLoader) {
+        List<V> cached = all.get(Boolean.TRUE, key -> loader.get().stream().map(this::store).toList());
+        Set<K> ids = new HashSet<>();
+        cached.forEach(lot -> ids.add(idOf.apply(lot)));
+        Map<K, Integer> current = availability(ids, availabilityLoader);
+        List<V> result = new ArrayList<>(cached.size());
+        for (V lot : cached) {
+            result.add(withAvailability(lot, current.get(idOf.apply(lot))));
+        }
+        return result;
+    }
+
+    // 駐車場本体が変わった・削除された (一覧も捨てる)
+    public void invalidate(K id) {
+        lots.invalidate(id);
+        availability.invalidate(id);
+        all.invalidateAll();
+    }
+
+    public void invalidateAvailability(K id) {
+        availability.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        lots.invalidateAll();
+        availability.invalidateAll();
+        all.invalidateAll();
+    }
+
+    public CacheStats lotStats() {
+        return lots.stats();
+    }
+
+    public CacheStats listStats() {
+        return all.stats();
+    }
+
+    public CacheStats availabilityStats() {
+        return availability.stats();
+    }
+
+    // 読み込んだ時点の空き台数は空き台数の側にも入れておく
+    private V store(V lot) {
+        Integer availableSpaces = availabilityOf.apply(lot);
+        if (availableSpaces != null) {
+            availability.put(idOf.apply(lot), availableSpaces);
+        }
+        return copier.apply(lot);
+    }
+
+    private Map<K, Integer> availability(Set<K> ids, Function<Set<K>, Map<K, Integer>> availabilityLoader) {
+        return availability.getAll(ids, missing -> availabilityLoader.apply(new HashSet<>(missing)));
+    }
+
+    private V withAvailability(V cached, Integer availableSpaces) {
+        V lot = copier.apply(cached);
+        if (availableSpaces != null) {
+            availabilitySetter.accept(lot, availableSpaces);
+        }
+        return lot;
+    }
+}
@@ -0,0 +1,84 @@
+package com.docomo.admin.service.cache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * コレクション全体をメモリに持ち、変更通知 (change stream) を順に適用して DB と揃えるキャッシュ。
+ * TTL は持たない。通知が途切れている間 (起動直後・切断中・全件の読み直し中) は ready でなくなり、
+ * 呼び出し側は DB から読む。返すのはコピー。
+ */
+public class ReplicatedCache<T> {
+
+    private final Function<T, String> idOf;
+    private final UnaryOperator<T> copier;
+    private volatile Map<String, T> entries = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    public ReplicatedCache(Function<T, String> idOf, UnaryOperator<T> copier) {
+        this.idOf = idOf;
+        this.copier = copier;
+    }
+
+    // 全件の読み直し。ready にするのは通知に追いついてから
+    public void load(Collection<T> values) {
+        Map<String, T> loaded = new ConcurrentHashMap<>();
+        for (T value : values) {
+            loaded.put(idOf.apply(value), value);
+        }
+        entries = loaded;
+    }
+
+    public void put(T value) {
+        entries.put(idOf.apply(value), value);
+    }
+
+    // 持っているエントリーだけを書き換える (自ノードでの部分更新。通知が来れば上書きされる)
+    public void update(String id, Consumer<T> change) {
+        entries.computeIfPresent(id, (key, value) -> {
+            T updated = copier.apply(value);
+            change.accept(updated);
+            return updated;
+        });
+    }
+
+    public void remove(String id) {
+        entries.remove(id);
+    }
+
+    public void markReady() {
+        ready = true;
+    }
+
+    // 通知が途切れた。再開するまで読み出しは DB に任せる (中身は再開後の適用に備えて残す)
+    public void markStale() {
+        ready = false;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Optional<T> get(String id) {
+        return Optional.ofNullable(entries.get(id)).map(copier);
+    }
+
+    public List<T> getAll() {
+        return entries.values().stream().map(copier).toList();
+    }
+
+    public List<T> find(Predicate<T> condition) {
+        return entries.values().stream().filter(condition).map(copier).toList();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
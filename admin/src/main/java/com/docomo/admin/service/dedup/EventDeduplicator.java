@@ -0,0 +1,87 @@
+package com.docomo.admin.service.dedup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * イベント ID による重複検出。ゲートからの再送で同じ入出庫が何度も届くため、登録前にこれで確認する。
+ *
+ * 1. Bloom filter に無ければ確実に新規 (DB は見ない。ほとんどのイベントはここで終わる)
+ * 2. 最近登録した ID は LRU に登録先の ID ごと持っているので、DB を見ずに重複と分かる
+ * 3. どちらでもなければ (古いイベントの再送か Bloom filter の誤判定) DB を引く
+ * 同時に届いた同じイベントはここでは防げないので、最終的には DB の一意制約で弾く。
+ *
+ * @param <V> 登録済みの取引の ID
+ */
+public class EventDeduplicator<V> {
+
+    private final ScalableBloomFilter filter;
+    private final Map<String, V> recent;
+
+    public EventDeduplicator(int expectedEvents, double falsePositiveRate, int recentCapacity) {
+        this.filter = new ScalableBloomFilter(expectedEvents, falsePositiveRate);
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > recentCapacity;
+            }
+        };
+    }
+
+    // 登録済みなら登録先の ID、未登録なら null。loader は Bloom filter が「登録済みかもしれない」と答え、
+    // LRU にも無い場合だけ呼ぶ
+    public V find(String eventId, Function<String, V> loader) {
+        if (!filter.mightContain(eventId)) {
+            return null;
+        }
+        synchronized (recent) {
+            V value = recent.get(eventId);
+            if (value != null) {
+                return value;
+            }
+        }
+        V value = loader.apply(eventId);
+        if (value != null) {
+            synchronized (recent) {
+                recent.put(eventId, value);
+            }
+        }
+        return value;
+    }
+
+    // 参照の解決用 (出庫の入庫イベントなど)。Bloom filter は他のノードで登録された ID や読み込み期間より古い ID を
+    // 知らないので使わず、LRU に無ければ必ず loader を呼ぶ
+    public V resolve(String eventId, Function<String, V> loader) {
+        synchronized (recent) {
+            V value = recent.get(eventId);
+            if (value != null) {
+                return value;
+            }
+        }
+        V value = loader.apply(eventId);
+        if (value != null) {
+            record(eventId, value);
+        }
+        return value;
+    }
+
+    public void record(String eventId, V value) {
+        filter.add(eventId);
+        synchronized (recent) {
+            recent.put(eventId, value);
+        }
+    }
+
+    // 起動時の読み込み用 (登録先は必要になったときに DB から引く)
+    public void preload(String eventId) {
+        filter.add(eventId);
+    }
+
+    // 登録が取り消されたとき (LRU からだけ外す。Bloom filter は誤判定が増えるだけなのでそのまま)
+    public void forget(String eventId) {
+        synchronized (recent) {
+            recent.remove(eventId);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.docomo.admin.service.export;
+
+import com.docomo.admin.entity.Transaction;
+import com.docomo.admin.entity.mongo.MongoTransaction;
+import lombok.Value;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// エクスポートする取引の1行 (JPA/Mongo 共通)
+@Value
+public class ExportRow {
+    
+    String id;
+    String parkingLotId;
+    String userId;
+    String licensePlate;
+    LocalDateTime entryTime;
+    LocalDateTime exitTime;
+    Double durationHours;
+    BigDecimal amount;
+    String status;
+    String paymentMethod;
+    
+    public static ExportRow of(Transaction transaction) {
+        return new ExportRow(
+            String.valueOf(transaction.getId()),
+            transaction.getParkingLot() != null ? String.valueOf(transaction.getParkingLot().getId()) : null,
+            transaction.getUser() != null ? String.valueOf(transaction.getUser().getId()) : null,
+            transaction.getLicensePlate(),
+            transaction.getEntryTime(),
+            transaction.getExitTime(),
+            transaction.getDurationHours(),
+            transaction.getAmount(),
+            transaction.getStatus() != null ? transaction.getStatus().name() : null,
+            transaction.getPaymentMethod() != null ? transaction.getPaymentMethod().name() : null
+        );
+    }
+    
+    public static ExportRow of(MongoTransaction transaction) {
+        return new ExportRow(
+            transaction.getId(),
+            transaction.getParkingLotId(),
+            transaction.getUserId(),
+            transaction.getLicensePlate(),
+            transaction.getEntryTime(),
+            transaction.getExitTime(),
+            transaction.getDurationHours(),
+            transaction.getAmount(),
+            transaction.getStatus() != null ? transaction.getStatus().name() : null,
+            transaction.getPaymentMethod() != null ? transaction.getPaymentMethod().name() : null
+        );
+    }
+}
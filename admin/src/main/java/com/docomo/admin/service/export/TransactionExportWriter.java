@@ -0,0 +1,101 @@
+package com.docomo.admin.service.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 取引を1行ずつ CSV / NDJSON でレスポンスに書き出す。行を溜め込まずにバッファ単位で送るので、
+ * 件数に関係なくメモリ使用量は一定。クライアントの受信が遅ければ書き込みがブロックし、
+ * 呼び出し側のカーソルもそこで止まる。
+ */
+public class TransactionExportWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String[] CSV_HEADER = {
+        "id", "parking_lot_id", "user_id", "license_plate", "entry_time", "exit_time",
+        "duration_hours", "amount", "status", "payment_method"
+    };
+
+    private final ExportFormat format;
+    private final Writer writer;
+    private final ObjectWriter jsonWriter;
+    private long rowCount;
+
+    public TransactionExportWriter(OutputStream output, ExportFormat format, ObjectMapper objectMapper,
+                                   boolean gzip) throws IOException {
+        this.format = format;
+        OutputStream stream = gzip ? new GZIPOutputStream(output, BUFFER_SIZE) : output;
+        this.writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.jsonWriter = objectMapper.writerFor(ExportRow.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (format == ExportFormat.CSV) {
+            writeCsvLine((Object[]) CSV_HEADER);
+        }
+    }
+
+    // Stream.forEach から使えるよう IOException は UncheckedIOException で投げる
+    public void write(ExportRow row) {
+        try {
+            if (format == ExportFormat.CSV) {
+                writeCsvLine(row.getId(), row.getParkingLotId(), row.getUserId(), row.getLicensePlate(),
+                    row.getEntryTime(), row.getExitTime(), row.getDurationHours(), row.getAmount(),
+                    row.getStatus(), row.getPaymentMethod());
+            } else {
+                jsonWriter.writeValue(writer, row);
+                writer.write('\n');
+            }
+            rowCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // gzip のトレーラまで書き切ってから閉じる
+        writer.close();
+    }
+
+    private void writeCsvLine(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] instanceof BigDecimal) {
+                writer.write(((BigDecimal) values[i]).toPlainString());
+            } else if (values[i] != null) {
+                writeCsvValue(values[i].toString());
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeCsvValue(String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,104 @@
+package com.docomo.admin.service.filter;
+
+import com.docomo.admin.service.filter.ParkingLotFilterIndex.Column;
+import java.math.BigDecimal;
+import java.util.BitSet;
+
+/**
+ * 駐車場の絞り込み条件。単一条件を and / or / not で組み合わせ、ParkingLotFilterIndex がビットマップの演算で評価する。
+ * <pre>
+ * ParkingLotFilter.status("ACTIVE")
+ *     .and(ParkingLotFilter.availableSpacesAtLeast(1))
+ *     .and(ParkingLotFilter.hourlyRateAtMost(new BigDecimal("500")).or(ParkingLotFilter.dailyRateAtMost(new BigDecimal("3000"))))
+ * </pre>
+ */
+public abstract class ParkingLotFilter {
+
+    // 呼び出し側は結果を書き換えてよい (索引が持つビットマップをそのまま返さないこと)
+    abstract BitSet evaluate(ParkingLotFilterIndex index);
+
+    public static ParkingLotFilter all() {
+        return new ParkingLotFilter() {
+            @Override
+            BitSet evaluate(ParkingLotFilterIndex index) {
+                return index.allBits();
+            }
+        };
+    }
+
+    public static ParkingLotFilter status(String... statuses) {
+        return new ParkingLotFilter() {
+            @Override
+            BitSet evaluate(ParkingLotFilterIndex index) {
+                BitSet bits = new BitSet();
+                for (String status : statuses) {
+                    bits.or(index.statusBits(status));
+                }
+                return bits;
+            }
+        };
+    }
+
+    // 両端を含む範囲。null の端は制限なし (値のない駐車場はどの範囲にも含まれない)
+    public static ParkingLotFilter between(Column column, BigDecimal min, BigDecimal max) {
+        return new ParkingLotFilter() {
+            @Override
+            BitSet evaluate(ParkingLotFilterIndex index) {
+                return index.rangeBits(column, min, max);
+            }
+        };
+    }
+
+    public static ParkingLotFilter hourlyRateAtMost(BigDecimal max) {
+        return between(Column.HOURLY_RATE, null, max);
+    }
+
+    public static ParkingLotFilter dailyRateAtMost(BigDecimal max) {
+        return between(Column.DAILY_RATE, null, max);
+    }
+
+    public static ParkingLotFilter totalSpacesAtLeast(int min) {
+        return between(Column.TOTAL_SPACES, BigDecimal.valueOf(min), null);
+    }
+
+    public static ParkingLotFilter availableSpacesAtLeast(int min) {
+        return between(Column.AVAILABLE_SPACES, BigDecimal.valueOf(min), null);
+    }
+
+    public ParkingLotFilter and(ParkingLotFilter other) {
+        ParkingLotFilter self = this;
+        return new ParkingLotFilter() {
+            @Override
+            BitSet evaluate(ParkingLotFilterIndex index) {
+                BitSet bits = self.evaluate(index);
+                if (!bits.isEmpty()) {
+                    bits.and(other.evaluate(index));
+                }
+                return bits;
+            }
+        };
+    }
+
+    public ParkingLotFilter or(ParkingLotFilter other) {
+        ParkingLotFilter self = this;
+        return new ParkingLotFilter() {
+            @Override
+            BitSet evaluate(ParkingLotFilterIndex index) {
+                BitSet bits = self.evaluate(index);
+                bits.or(other.evaluate(index));
+                return bits;
+            }
+        };
+    }
+
+    public static ParkingLotFilter not(ParkingLotFilter filter) {
+        return new ParkingLotFilter() {
+            @Override
+            BitSet evaluate(ParkingLotFilterIndex index) {
+                BitSet bits = index.allBits();
+                bits.andNot(filter.evaluate(index));
+                return bits;
+            }
+        };
+    }
+}
@@ -0,0 +1,248 @@
+package com.docomo.admin.service.filter;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 駐車場の複数条件の絞り込み索引。駐車場ごとに連番 (スロット) を振り、状態ごとのビットマップと、
+ * 料金・台数の列ごとに値 → ビットマップの順序付きの表を持つ。範囲条件は表の該当範囲の OR、
+ * 条件の組み合わせはビットマップの AND/OR で評価する (ParkingLotFilter)。
+ * 並び替えは列の表を値の順にたどり、結果のビットマップに含まれるスロットを取り出す (上位だけなら途中で止まる)。
+ *
+ * 削除した駐車場のスロットは再利用するので、ビットマップの長さは駐車場数の最大値で頭打ちになる。
+ * 状態は文字列で持つ (JPA と MongoDB の両方の列挙型から使えるように)。
+ */
+public class ParkingLotFilterIndex {
+
+    public enum Column {
+        HOURLY_RATE, DAILY_RATE, TOTAL_SPACES, AVAILABLE_SPACES
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<Row> rows = new ArrayList<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+    private final Map<String, BitSet> statuses = new HashMap<>();
+    private final Map<Column, NavigableMap<BigDecimal, BitSet>> columns = new EnumMap<>(Column.class);
+
+    public ParkingLotFilterIndex() {
+        for (Column column : Column.values()) {
+            columns.put(column, new TreeMap<>());
+        }
+    }
+
+    // 値は Column の順 (時間料金, 日額料金, 総台数, 空き台数)。null は値なし
+    public void put(String id, String status, BigDecimal hourlyRate, BigDecimal dailyRate,
+                    Integer totalSpaces, Integer availableSpaces) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = slots.get(id);
+            int slot;
+            if (existing != null) {
+                slot = existing;
+                unindex(slot);
+            } else {
+                slot = freeSlots.isEmpty() ? rows.size() : freeSlots.pop();
+                slots.put(id, slot);
+                if (slot == rows.size()) {
+                    rows.add(null);
+                }
+            }
+            Row row = new Row(id, status, new BigDecimal[] {hourlyRate, dailyRate, decimal(totalSpaces), decimal(availableSpaces)});
+            rows.set(slot, row);
+            live.set(slot);
+            if (status != null) {
+                statuses.computeIfAbsent(status, s -> new BitSet()).set(slot);
+            }
+            for (Column column : Column.values()) {
+                BigDecimal value = row.values[column.ordinal()];
+                if (value != null) {
+                    columns.get(column).computeIfAbsent(value, v -> new BitSet()).set(slot);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 1列だけの更新 (入出庫による空き台数の変化など)。未登録の駐車場は無視する
+    public void update(String id, Column column, BigDecimal value) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            if (slot == null) {
+                return;
+            }
+            Row row = rows.get(slot);
+            BigDecimal previous = row.values[column.ordinal()];
+            if (previous == null ? value == null : value != null && previous.compareTo(value) == 0) {
+                return;
+            }
+            NavigableMap<BigDecimal, BitSet> values = columns.get(column);
+            if (previous != null) {
+                clear(values, previous, slot);
+            }
+            if (value != null) {
+                values.computeIfAbsent(value, v -> new BitSet()).set(slot);
+            }
+            row.values[column.ordinal()] = value;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void update(String id, Column column, Integer value) {
+        update(id, column, decimal(value));
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(id);
+            if (slot == null) {
+                return;
+            }
+            unindex(slot);
+            rows.set(slot, null);
+            live.clear(slot);
+            freeSlots.push(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int count(ParkingLotFilter filter) {
+        lock.readLock().lock();
+        try {
+            return filter.evaluate(this).cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 条件に合う駐車場の ID を orderBy の順 (null なら登録順) に最大 limit 件返す。値のない駐車場は最後に並ぶ
+    public List<String> find(ParkingLotFilter filter, Column orderBy, boolean descending, int limit) {
+        List<String> ids = new ArrayList<>();
+        if (limit <= 0) {
+            return ids;
+        }
+        lock.readLock().lock();
+        try {
+            BitSet matched = filter.evaluate(this);
+            if (orderBy != null) {
+                NavigableMap<BigDecimal, BitSet> values = descending ? columns.get(orderBy).descendingMap() : columns.get(orderBy);
+                for (BitSet bucket : values.values()) {
+                    for (int slot = bucket.nextSetBit(0); slot >= 0; slot = bucket.nextSetBit(slot + 1)) {
+                        if (matched.get(slot)) {
+                            ids.add(rows.get(slot).id);
+                            matched.clear(slot);
+                            if (ids.size() >= limit) {
+                                return ids;
+                            }
+                        }
+                    }
+                }
+            }
+            for (int slot = matched.nextSetBit(0); slot >= 0 && ids.size() < limit; slot = matched.nextSetBit(slot + 1)) {
+                ids.add(rows.get(slot).id);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 以下は ParkingLotFilter の評価用 (読み取りロックの中で呼ばれる)。返したビットマップは呼び出し側が書き換えてよい
+    BitSet allBits() {
+        return (BitSet) live.clone();
+    }
+
+    BitSet statusBits(String status) {
+        BitSet bits = statuses.get(status);
+        return bits != null ? (BitSet) bits.clone() : new BitSet();
+    }
+
+    BitSet rangeBits(Column column, BigDecimal min, BigDecimal max) {
+        NavigableMap<BigDecimal, BitSet> values = columns.get(column);
+        if (min != null && max != null) {
+            if (min.compareTo(max) > 0) {
+                return new BitSet();
+            }
+            values = values.subMap(min, true, max, true);
+        } else if (min != null) {
+            values = values.tailMap(min, true);
+        } else if (max != null) {
+            values = values.headMap(max, true);
+        }
+        BitSet bits = new BitSet();
+        for (BitSet bucket : values.values()) {
+            bits.or(bucket);
+        }
+        return bits;
+    }
+
+    private void unindex(int slot) {
+        Row row = rows.get(slot);
+        if (row.status != null) {
+            BitSet bits = statuses.get(row.status);
+            bits.clear(slot);
+            if (bits.isEmpty()) {
+                statuses.remove(row.status);
+            }
+        }
+        for (Column column : Column.values()) {
+            BigDecimal value = row.values[column.ordinal()];
+            if (value != null) {
+                clear(columns.get(column), value, slot);
+            }
+        }
+    }
+
+    private static void clear(NavigableMap<BigDecimal, BitSet> values, BigDecimal value, int slot) {
+        BitSet bits = values.get(value);
+        if (bits != null) {
+            bits.clear(slot);
+            if (bits.isEmpty()) {
+                values.remove(value);
+            }
+        }
+    }
+
+    private static BigDecimal decimal(Integer value) {
+        return value != null ? BigDecimal.valueOf(value) : null;
+    }
+
+    private static final class Row {
+
+        final String id;
+        final String status;
+        final BigDecimal[] values;
+
+        Row(String id, String status, BigDecimal[] values) {
+            this.id = id;
+            this.status = status;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.docomo.admin.service.geo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 緯度経度の等間隔グリッドによる空間索引。点をセルに振り分けて持ち、
+ * k 近傍は検索地点のセルから外側へ1周ずつ広げ、まだ見ていないセルの最短距離が k 番目の距離を超えたら打ち切る。
+ * 半径検索は半径を囲むセルだけを調べる。調べるセルが点の入ったセルより多くなる (点がまばら) 場合は全件を調べる。
+ * 距離は球面 (haversine) で計算する。
+ */
+public class GeoGridIndex {
+
+    public static final double EARTH_RADIUS_METERS = 6_371_008.8;
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * EARTH_RADIUS_METERS;
+
+    private final double cellDegrees;
+    private final int rows;
+    private final int columns;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Point> points = new HashMap<>();
+    private final Map<Long, Set<Point>> cells = new HashMap<>();
+
+    public GeoGridIndex(double cellDegrees) {
+        if (!(cellDegrees > 0 && cellDegrees <= 90)) {
+            throw new IllegalArgumentException("Invalid cell size: " + cellDegrees);
+        }
+        this.cellDegrees = cellDegrees;
+        this.rows = (int) Math.ceil(180 / cellDegrees);
+        this.columns = (int) Math.ceil(360 / cellDegrees);
+    }
+
+    public void put(String id, double latitude, double longitude) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new IllegalArgumentException("Invalid coordinates: " + latitude + ", " + longitude);
+        }
+        Point point = new Point(id, latitude, longitude);
+        lock.writeLock().lock();
+        try {
+            removePoint(points.put(id, point));
+            cells.computeIfAbsent(cellKey(row(latitude), column(longitude)), k -> new HashSet<>()).add(point);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removePoint(points.remove(id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            points.clear();
+            cells.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return points.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // filter を満たす点のうち近い順に最大 k 件 (maxMeters より遠いものは含めない)
+    public List<GeoHit> nearest(double latitude, double longitude, int k, double maxMeters, Predicate<String> filter) {
+        if (k <= 0) {
+            return List.of();
+        }
+        // 距離の大きい順に並べて、k 件を超えたら先頭 (最も遠いもの) を捨てる
+        PriorityQueue<GeoHit> best = new PriorityQueue<>(Comparator.comparingDouble(GeoHit::getDistanceMeters).reversed());
+        lock.readLock().lock();
+        try {
+            int centerRow = row(latitude);
+            int centerColumn = column(longitude);
+            int maxRing = Math.max(rows, columns / 2);
+            for (int ring = 0; ring <= maxRing; ring++) {
+                double bound = ringLowerBound(latitude, ring);
+                if (bound > maxMeters || (best.size() == k && bound > best.peek().getDistanceMeters())) {
+                    break;
+                }
+                if (ringCellCount(ring) > cells.size()) {
+                    // まばらなので残りは全件を調べる (見たセルの点も入り直すので一度空にする)
+                    best.clear();
+                    for (Point point : points.values()) {
+                        offer(best, k, point, latitude, longitude, maxMeters, filter);
+                    }
+                    break;
+                }
+                for (long key : ring(centerRow, centerColumn, ring)) {
+                    Set<Point> cell = cells.get(key);
+                    if (cell != null) {
+                        for (Point point : cell) {
+                            offer(best, k, point, latitude, longitude, maxMeters, filter);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<GeoHit> hits = new ArrayList<>(best);
+        hits.sort(Comparator.comparingDouble(GeoHit::getDistanceMeters));
+        return hits;
+    }
+
+    // filter を満たし radiusMeters 以内にある点を近い順に返す
+    public List<GeoHit> within(double latitude, double longitude, double radiusMeters, Predicate<String> filter) {
+        List<GeoHit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            double latitudeSpan = radiusMeters / METERS_PER_DEGREE;
+            int firstRow = row(Math.max(-90, latitude - latitudeSpan));
+            int lastRow = row(Math.min(90, latitude + latitudeSpan));
+            // 経度方向のセル幅は高緯度ほど狭いので、範囲内で最も極に近い緯度で見積もる
+            double cos = Math.cos(Math.toRadians(Math.min(90, Math.abs(latitude) + latitudeSpan)));
+            double longitudeSpan = cos > 0 ? radiusMeters / (METERS_PER_DEGREE * cos) : 360;
+            int columnSpan = longitudeSpan >= 180 ? columns : (int) Math.ceil(longitudeSpan / cellDegrees) + 1;
+            long cellCount = (long) (lastRow - firstRow + 1) * Math.min(columns, 2L * columnSpan + 1);
+            if (cellCount > cells.size()) {
+                for (Point point : points.values()) {
+                    collect(hits, point, latitude, longitude, radiusMeters, filter);
+                }
+            } else {
+                int centerColumn = column(longitude);
+                boolean allColumns = 2L * columnSpan + 1 >= columns;
+                for (int row = firstRow; row <= lastRow; row++) {
+                    for (int offset = allColumns ? 0 : -columnSpan; offset <= (allColumns ? columns - 1 : columnSpan); offset++) {
+                        int column = allColumns ? offset : Math.floorMod(centerColumn + offset, columns);
+                        Set<Point> cell = cells.get(cellKey(row, column));
+                        if (cell != null) {
+                            for (Point point : cell) {
+                                collect(hits, point, latitude, longitude, radiusMeters, filter);
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(Comparator.comparingDouble(GeoHit::getDistanceMeters));
+        return hits;
+    }
+
+    public static double distanceMeters(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLatitude = Math.toRadians(latitude2 - latitude1);
+        double dLongitude = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLatitude / 2) * Math.sin(dLatitude / 2)
+            + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2))
+            * Math.sin(dLongitude / 2) * Math.sin(dLongitude / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private void offer(PriorityQueue<GeoHit> best, int k, Point point, double latitude, double longitude,
+                       double maxMeters, Predicate<String> filter) {
+        double distance = distanceMeters(latitude, longitude, point.latitude, point.longitude);
+        if (distance > maxMeters || (best.size() == k && distance >= best.peek().getDistanceMeters())) {
+            return;
+        }
+        if (!filter.test(point.id)) {
+            return;
+        }
+        best.add(new GeoHit(point.id, distance));
+        if (best.size() > k) {
+            best.poll();
+        }
+    }
+
+    private static void collect(List<GeoHit> hits, Point point, double latitude, double longitude,
+                                double radiusMeters, Predicate<String> filter) {
+        double distance = distanceMeters(latitude, longitude, point.latitude, point.longitude);
+        if (distance <= radiusMeters && filter.test(point.id)) {
+            hits.add(new GeoHit(point.id, distance));
+        }
+    }
+
+    // ring 周目のセルにある点までの距離の下限。検索地点は中心のセル内のどこかにあるので、
+    // ring 周目の点は少なくとも ring - 1 セル分は (緯度か経度の方向に) 離れている。
+    // 経度方向は範囲内で最も極に近い緯度の幅で見積もり、大円と緯線の差の分だけ余裕を持たせる
+    private double ringLowerBound(double latitude, int ring) {
+        if (ring <= 1) {
+            return 0;
+        }
+        double span = (ring - 1) * cellDegrees;
+        double cos = Math.cos(Math.toRadians(Math.min(90, Math.abs(latitude) + ring * cellDegrees)));
+        return span * METERS_PER_DEGREE * Math.max(0, cos) * 0.95;
+    }
+
+    private long ringCellCount(int ring) {
+        return ring == 0 ? 1 : 8L * ring;
+    }
+
+    private List<Long> ring(int centerRow, int centerColumn, int ring) {
+        List<Long> keys = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (int dRow = -ring; dRow <= ring; dRow++) {
+            int row = centerRow + dRow;
+            if (row < 0 || row >= rows) {
+                continue;
+            }
+            // 上下の辺は全列、それ以外は左右の端だけ
+            int step = Math.abs(dRow) == ring ? 1 : Math.max(1, 2 * ring);
+            for (int dColumn = -ring; dColumn <= ring; dColumn += step) {
+                long key = cellKey(row, Math.floorMod(centerColumn + dColumn, columns));
+                if (seen.add(key)) {
+                    keys.add(key);
+                }
+            }
+        }
+        return keys;
+    }
+
+    private void removePoint(Point point) {
+        if (point == null) {
+            return;
+        }
+        long key = cellKey(row(point.latitude), column(point.longitude));
+        Set<Point> cell = cells.get(key);
+        if (cell != null && cell.remove(point) && cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+    private int row(double latitude) {
+        return Math.min(rows - 1, (int) Math.floor((latitude + 90) / cellDegrees));
+    }
+
+    private int column(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / cellDegrees), columns);
+    }
+
+    private long cellKey(int row, int column) {
+        return (long) row * columns + column;
+    }
+
+    private static final class Point {
+
+        final String id;
+        final double latitude;
+        final double longitude;
+
+        Point(String id, double latitude, double longitude) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.docomo.admin.service.geo;
+
+import lombok.Value;
+
+// 検索地点からの距離 (メートル) 付きの駐車場 ID
+@Value
+public class GeoHit {
+
+    String id;
+    double distanceMeters;
+}
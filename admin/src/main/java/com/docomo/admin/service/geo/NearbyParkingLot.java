@@ -0,0 +1,11 @@
+package com.docomo.admin.service.geo;
+
+import lombok.Value;
+
+// 近くの駐車場の検索結果 (検索地点からの距離付き)
+@Value
+public class NearbyParkingLot<T> {
+
+    T parkingLot;
+    double distanceMeters;
+}
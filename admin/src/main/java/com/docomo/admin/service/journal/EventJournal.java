@@ -0,0 +1,324 @@
+package com.docomo.admin.service.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 追記専用のイベントジャーナル。固定長のセグメントファイルをメモリマップし、満杯になったら次のファイルへ移る。
+ *
+ * セグメント: [magic int][先頭シーケンス long][予約 int] の後にレコードが並ぶ。
+ * レコード: [長さ int][CRC32C int][シーケンス long][本体]。長さ 0 は末尾を表す (未使用領域は 0 で埋まっている)。
+ * 書き込みはページキャッシュに入った時点で返すので、プロセスが落ちても残るが、OS ごと落ちた場合に
+ * 残すには sync を有効にする (レコードごとに force する)。
+ * 起動時は最後のセグメントを CRC で検証し、途中で切れたレコード以降を捨てる。
+ * 適用済みの位置はチェックポイントとして別ファイルに記録し、それより前だけのセグメントは削除する。
+ * 1つのディレクトリを同時に開けるのは1つのインスタンスだけ (ロックファイルで排他する)。
+ */
+public class EventJournal implements Closeable {
+
+    private static final int MAGIC = 0x4a524e4c;
+    private static final int SEGMENT_HEADER_BYTES = 16;
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES * 2 + Long.BYTES;
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean sync;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final FileChannel checkpointChannel;
+    private final MappedByteBuffer checkpointBuffer;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+
+    private Segment active;
+    private int writePosition;
+    private long nextSequence;
+    private volatile long lastSequence;
+
+    public EventJournal(Path directory, int segmentBytes, boolean sync) throws IOException {
+        if (segmentBytes < SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES + 1) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.sync = sync;
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve("lock"),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.lock = tryLock(lockChannel);
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Journal is in use: " + directory);
+        }
+
+        this.checkpointChannel = FileChannel.open(directory.resolve("checkpoint"),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.checkpointBuffer = checkpointChannel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        checkpointBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList()) {
+                segments.add(openSegment(file, -1));
+            }
+        }
+        if (segments.isEmpty()) {
+            nextSequence = getCheckpoint() + 1;
+            active = createSegment(nextSequence);
+            writePosition = SEGMENT_HEADER_BYTES;
+        } else {
+            recover();
+        }
+        lastSequence = nextSequence - 1;
+    }
+
+    // シーケンス番号を採番して追記する。戻った時点で読み手から見える
+    public synchronized long append(byte[] payload) throws IOException {
+        int recordBytes = RECORD_HEADER_BYTES + payload.length;
+        if (recordBytes > segmentBytes - SEGMENT_HEADER_BYTES) {
+            throw new IllegalArgumentException("Record too large: " + payload.length + " bytes");
+        }
+        if (writePosition + recordBytes > segmentBytes) {
+            active = createSegment(nextSequence);
+            writePosition = SEGMENT_HEADER_BYTES;
+        }
+        long sequence = nextSequence;
+        MappedByteBuffer buffer = active.buffer;
+        buffer.putLong(writePosition + Integer.BYTES * 2, sequence);
+        buffer.put(writePosition + RECORD_HEADER_BYTES, payload);
+        buffer.putInt(writePosition + Integer.BYTES, crc(sequence, payload));
+        // 長さを最後に書く (長さが 0 でないレコードだけが読まれる)
+        buffer.putInt(writePosition, payload.length);
+        if (sync) {
+            buffer.force(writePosition, recordBytes);
+        }
+        writePosition += recordBytes;
+        nextSequence = sequence + 1;
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public long getCheckpoint() {
+        return checkpointBuffer.getLong(0);
+    }
+
+    // sequence まで適用済みとして記録し、不要になったセグメントを削除する
+    public synchronized void checkpoint(long sequence) throws IOException {
+        checkpointBuffer.putLong(0, sequence);
+        if (sync) {
+            checkpointBuffer.force();
+        }
+        while (segments.size() > 1 && segments.get(1).firstSequence <= sequence + 1) {
+            Segment segment = segments.remove(0);
+            segment.channel.close();
+            Files.deleteIfExists(segment.file);
+        }
+    }
+
+    // afterSequence より後のレコードを順に読むカーソル
+    public Cursor openCursor(long afterSequence) {
+        return new Cursor(afterSequence);
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        checkpointBuffer.force();
+        for (Segment segment : segments) {
+            segment.buffer.force();
+            segment.channel.close();
+        }
+        checkpointChannel.close();
+        lock.release();
+        lockChannel.close();
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    private void recover() throws IOException {
+        active = segments.get(segments.size() - 1);
+        int position = SEGMENT_HEADER_BYTES;
+        long sequence = active.firstSequence;
+        while (true) {
+            int length = readLength(active, position);
+            if (length <= 0 || !isValid(active, position, length, sequence)) {
+                break;
+            }
+            position += RECORD_HEADER_BYTES + length;
+            sequence++;
+        }
+        // 書きかけのレコードが残っていれば消しておく (後から書くレコードと混ざらないように)
+        if (position + Integer.BYTES <= segmentBytes && active.buffer.getInt(position) != 0) {
+            for (int i = position; i < segmentBytes; i++) {
+                active.buffer.put(i, (byte) 0);
+            }
+            active.buffer.force();
+        }
+        writePosition = position;
+        nextSequence = sequence;
+    }
+
+    private Segment createSegment(long firstSequence) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", firstSequence, SEGMENT_SUFFIX));
+        Segment segment = openSegment(file, firstSequence);
+        segments.add(segment);
+        return segment;
+    }
+
+    private Segment openSegment(Path file, long firstSequence) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (firstSequence >= 0) {
+            buffer.putLong(Integer.BYTES, firstSequence);
+            buffer.putInt(0, MAGIC);
+            buffer.force(0, SEGMENT_HEADER_BYTES);
+        } else if (buffer.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a journal segment: " + file);
+        }
+        return new Segment(file, channel, buffer, buffer.getLong(Integer.BYTES));
+    }
+
+    private int readLength(Segment segment, int position) {
+        if (position + RECORD_HEADER_BYTES > segmentBytes) {
+            return 0;
+        }
+        return segment.buffer.getInt(position);
+    }
+
+    private boolean isValid(Segment segment, int position, int length, long expectedSequence) {
+        if (position + RECORD_HEADER_BYTES + length > segmentBytes) {
+            return false;
+        }
+        long sequence = segment.buffer.getLong(position + Integer.BYTES * 2);
+        if (sequence != expectedSequence) {
+            return false;
+        }
+        byte[] payload = new byte[length];
+        segment.buffer.get(position + RECORD_HEADER_BYTES, payload);
+        return segment.buffer.getInt(position + Integer.BYTES) == crc(sequence, payload);
+    }
+
+    private static int crc(long sequence, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        for (int i = 0; i < Long.BYTES; i++) {
+            crc.update((int) (sequence >>> (i * 8)));
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    public class Cursor {
+
+        private Segment segment;
+        private int position = SEGMENT_HEADER_BYTES;
+        private long nextSequence;
+
+        private Cursor(long afterSequence) {
+            this.segment = segments.get(0);
+            this.nextSequence = Math.max(afterSequence + 1, segment.firstSequence);
+            // 読み始めのセグメントを探し、その中を先頭から読み飛ばす
+            for (Segment candidate : segments) {
+                if (candidate.firstSequence <= nextSequence) {
+                    segment = candidate;
+                }
+            }
+            long sequence = segment.firstSequence;
+            while (sequence < nextSequence && sequence <= lastSequence) {
+                position += RECORD_HEADER_BYTES + readLength(segment, position);
+                sequence++;
+            }
+        }
+
+        // 次のレコードを返す。追いついていれば null
+        public Record next() {
+            if (nextSequence > lastSequence) {
+                return null;
+            }
+            int length = readLength(segment, position);
+            if (length <= 0) {
+                // 書き手は次のセグメントに移っている (読み終えたセグメントはチェックポイントで削除され得るので、
+                // 添字ではなく先頭シーケンスで探す)
+                segment = segmentStartingAt(nextSequence);
+                position = SEGMENT_HEADER_BYTES;
+                length = readLength(segment, position);
+            }
+            if (!isValid(segment, position, length, nextSequence)) {
+                throw new IllegalStateException("Corrupt journal record " + nextSequence + " in " + segment.file);
+            }
+            byte[] payload = new byte[length];
+            segment.buffer.get(position + RECORD_HEADER_BYTES, payload);
+            position += RECORD_HEADER_BYTES + length;
+            return new Record(nextSequence++, payload);
+        }
+
+        private Segment segmentStartingAt(long sequence) {
+            for (Segment candidate : segments) {
+                if (candidate.firstSequence == sequence) {
+                    return candidate;
+                }
+            }
+            throw new IllegalStateException("Journal segment for record " + sequence + " not found in " + directory);
+        }
+    }
+
+    public static class Record {
+
+        private final long sequence;
+        private final byte[] payload;
+
+        Record(long sequence, byte[] payload) {
+            this.sequence = sequence;
+            this.payload = payload;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    private static class Segment {
+
+        final Path file;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final long firstSequence;
+
+        Segment(Path file, FileChannel channel, MappedByteBuffer buffer, long firstSequence) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.firstSequence = firstSequence;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.docomo.admin.service.journal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// ゲートの入出庫イベント (JPA/Mongo 共通)。ジャーナルには JSON で記録する
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GateEvent {
+    
+    // 入庫イベントの ID は作成される取引にも記録し、再生時の重複適用を防ぐ
+    private String eventId;
+    private Type type;
+    private String parkingLotId;
+    private String userId;
+    private String licensePlate;
+    // 出庫時: 対応する入庫イベントの ID
+    private String entryEventId;
+    private LocalDateTime time;
+    private BigDecimal amount;
+    
+    public enum Type {
+        ENTRY, EXIT
+    }
+    
+    // eventId はゲートが採番したもの (再送でも同じ値)。null ならここで採番する
+    public static GateEvent entry(String eventId, String parkingLotId, String userId, String licensePlate,
+                                  LocalDateTime entryTime) {
+        return new GateEvent(eventIdOrNew(eventId), Type.ENTRY, parkingLotId, userId, licensePlate,
+            null, entryTime, null);
+    }
+    
+    public static GateEvent exit(String eventId, String entryEventId, LocalDateTime exitTime, BigDecimal amount) {
+        return new GateEvent(eventIdOrNew(eventId), Type.EXIT, null, null, null,
+            entryEventId, exitTime, amount);
+    }
+    
+    private static String eventIdOrNew(String eventId) {
+        return eventId != null ? eventId : UUID.randomUUID().toString();
+    }
+}
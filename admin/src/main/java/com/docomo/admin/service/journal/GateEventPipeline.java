@@ -0,0 +1,199 @@
+package com.docomo.admin.service.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 入出庫イベントをジャーナルに書いた時点で受け付け、バックグラウンドのスレッドが順番に DB へ適用する。
+ * DB が遅い・止まっている間はイベントがジャーナルに溜まるだけで、ゲート側の応答時間には影響しない。
+ *
+ * 適用したイベントのシーケンスはチェックポイントとして記録し、再起動時はその次から再生する。
+ * 適用とチェックポイントの間で落ちると同じイベントを2回適用し得るので、適用処理は冪等にしておくこと。
+ *
+ * やり直しても成功しないイベント (存在しない駐車場への入庫など) はデッドレター用のジャーナルに移してから先へ進む。
+ * 原因を直した後に replayDeadLetters() で本体のジャーナルに戻すと、改めて適用される。
+ */
+@Slf4j
+public class GateEventPipeline implements Closeable {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+
+    private final EventJournal journal;
+    private final EventJournal deadLetters;
+    private final ObjectMapper objectMapper;
+    private final Consumer<GateEvent> applier;
+    private final Duration initialBackoff;
+    private final Thread drainer;
+    private volatile boolean running;
+
+    public GateEventPipeline(EventJournal journal, EventJournal deadLetters, ObjectMapper objectMapper,
+                             Consumer<GateEvent> applier, Duration initialBackoff, String name) {
+        this.journal = journal;
+        this.deadLetters = deadLetters;
+        this.objectMapper = objectMapper;
+        this.applier = applier;
+        this.initialBackoff = initialBackoff;
+        this.drainer = new Thread(this::drain, "gate-event-drain-" + name);
+        drainer.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        drainer.start();
+    }
+
+    // ジャーナルに書いたら戻る (DB への適用は待たない)
+    public long submit(GateEvent event) {
+        try {
+            long sequence = journal.append(objectMapper.writeValueAsBytes(event));
+            LockSupport.unpark(drainer);
+            return sequence;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // まだ DB に適用されていないイベント数
+    public long getBacklog() {
+        return journal.getLastSequence() - journal.getCheckpoint();
+    }
+
+    // デッドレターに移したまま戻していないイベント数
+    public long getDeadLetterCount() {
+        return deadLetters.getLastSequence() - deadLetters.getCheckpoint();
+    }
+
+    // デッドレターのイベントを本体のジャーナルの末尾に戻す (受け付け順ではなく、戻した時点の順で適用される)。
+    // 戻した件数を返す
+    public synchronized long replayDeadLetters() {
+        EventJournal.Cursor cursor = deadLetters.openCursor(deadLetters.getCheckpoint());
+        long replayed = 0;
+        try {
+            for (EventJournal.Record record = cursor.next(); record != null; record = cursor.next()) {
+                journal.append(record.getPayload());
+                // 戻した直後に落ちると次回も同じものを戻すが、適用処理が冪等なので1件として扱われる
+                deadLetters.checkpoint(record.getSequence());
+                replayed++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            LockSupport.unpark(drainer);
+        }
+        return replayed;
+    }
+
+    public boolean awaitDrained(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (getBacklog() > 0) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            journal.close();
+        } finally {
+            deadLetters.close();
+        }
+    }
+
+    private void drain() {
+        EventJournal.Cursor cursor = journal.openCursor(journal.getCheckpoint());
+        while (running) {
+            EventJournal.Record record = cursor.next();
+            if (record == null) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            if (!apply(record)) {
+                return;
+            }
+            try {
+                journal.checkpoint(record.getSequence());
+            } catch (IOException e) {
+                log.error("Failed to write journal checkpoint {}", record.getSequence(), e);
+            }
+        }
+    }
+
+    // 停止要求で中断した場合だけ false (チェックポイントを進めず、再起動後にやり直す)
+    private boolean apply(EventJournal.Record record) {
+        GateEvent event;
+        try {
+            event = objectMapper.readValue(record.getPayload(), GateEvent.class);
+        } catch (IOException e) {
+            log.error("Moving unreadable journal record {} to dead letters", record.getSequence(), e);
+            return deadLetter(record);
+        }
+        Duration backoff = initialBackoff;
+        while (true) {
+            try {
+                applier.accept(event);
+                return true;
+            } catch (RuntimeException e) {
+                if (!isTransient(e)) {
+                    // 存在しない駐車場への入庫など、やり直しても成功しないものはデッドレターに移して先へ進む
+                    log.error("Moving gate event {} ({}) to dead letters: {}", event.getEventId(), event.getType(), e.getMessage(), e);
+                    return deadLetter(record);
+                }
+                log.warn("Gate event {} could not be applied, retrying in {}: {}", event.getEventId(), backoff, e.getMessage());
+                LockSupport.parkNanos(backoff.toNanos());
+                if (!running) {
+                    return false;
+                }
+                backoff = backoff.multipliedBy(2).compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff.multipliedBy(2);
+            }
+        }
+    }
+
+    // デッドレターに書けるまでチェックポイントを進めない (書けないまま進めるとイベントが失われる)
+    private boolean deadLetter(EventJournal.Record record) {
+        Duration backoff = initialBackoff;
+        while (true) {
+            try {
+                deadLetters.append(record.getPayload());
+                return true;
+            } catch (IOException e) {
+                log.error("Failed to write journal record {} to dead letters, retrying in {}", record.getSequence(), backoff, e);
+                LockSupport.parkNanos(backoff.toNanos());
+                if (!running) {
+                    return false;
+                }
+                backoff = backoff.multipliedBy(2).compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff.multipliedBy(2);
+            }
+        }
+    }
+
+    // DB に接続できない・タイムアウトなど、時間をおけば成功し得る失敗か
+    static boolean isTransient(Throwable e) {
+        return e instanceof TransientDataAccessException
+            || e instanceof RecoverableDataAccessException
+            || e instanceof DataAccessResourceFailureException
+            || e instanceof CannotCreateTransactionException;
+    }
+}
@@ -0,0 +1,267 @@
+package com.docomo.admin.service.mongo;
+
+import com.docomo.admin.service.cache.ReplicatedCache;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * 1つのコレクションを change stream で追いかける ReplicatedCache。他のノードからの書き込みも反映されるので、
+ * 読み出しを全ノードでメモリから返せる。
+ *
+ * 起動時と通知が欠けたとき (oplog から履歴が消えた・コレクションが drop された) は、先にストリームを開いてから全件を読み直し、
+ * 開いた後の変更を読み直しの上に重ねて適用する。切断などの一時的なエラーでは最後の再開トークンから続ける。
+ * 再開トークンはメモリ上だけに持つ (中身もメモリ上なので、再起動時は全件を読み直す)。
+ * 自ノードでの書き込みは saved / deleted / update で先に反映し、書いた直後の読み出しでも古い値を返さないようにする。
+ * change stream はレプリカセットでしか使えない。使えない場合は ready にならず、呼び出し側は DB から読む。
+ */
+@Slf4j
+public class MongoChangeStreamCache<T> {
+    
+    // ChangeStreamHistoryLost, ChangeStreamFatalError
+    private static final List<Integer> HISTORY_LOST_CODES = List.of(286, 280);
+    private static final long AWAIT_MILLIS = 500;
+    
+    private final ChangeStreamSource source;
+    private final MongoConverter converter;
+    private final Class<T> type;
+    private final String collectionName;
+    private final Duration retryInterval;
+    private final ReplicatedCache<T> cache;
+    private final Thread watcher;
+    
+    private volatile boolean running;
+    private BsonDocument resumeToken;
+    private boolean reloadRequired = true;
+    private String failure;
+    
+    public MongoChangeStreamCache(MongoTemplate mongoTemplate, Class<T> type, Function<T, String> idOf,
+                                  UnaryOperator<T> copier, Duration retryInterval) {
+        this(collectionSource(mongoTemplate.getCollection(mongoTemplate.getCollectionName(type))),
+            mongoTemplate.getConverter(), type, mongoTemplate.getCollectionName(type), idOf, copier, retryInterval);
+    }
+    
+    // テストではストリームと全件読み込みを差し替える
+    MongoChangeStreamCache(ChangeStreamSource source, MongoConverter converter, Class<T> type, String collectionName,
+                           Function<T, String> idOf, UnaryOperator<T> copier, Duration retryInterval) {
+        this.source = source;
+        this.converter = converter;
+        this.type = type;
+        this.collectionName = collectionName;
+        this.retryInterval = retryInterval;
+        this.cache = new ReplicatedCache<>(idOf, copier);
+        this.watcher = new Thread(this::watch, "change-stream-" + collectionName);
+        watcher.setDaemon(true);
+    }
+    
+    public void start() {
+        running = true;
+        watcher.start();
+    }
+    
+    public void stop() {
+        running = false;
+        watcher.interrupt();
+    }
+    
+    public boolean isReady() {
+        return cache.isReady();
+    }
+    
+    public Optional<T> get(String id) {
+        return cache.get(id);
+    }
+    
+    public List<T> getAll() {
+        return cache.getAll();
+    }
+    
+    public List<T> find(Predicate<T> condition) {
+        return cache.find(condition);
+    }
+    
+    public int size() {
+        return cache.size();
+    }
+    
+    // 以下は自ノードで書き込んだときの通知 (同じ内容の通知が後から届く)
+    public void saved(T value) {
+        cache.put(value);
+    }
+    
+    public void deleted(String id) {
+        cache.remove(id);
+    }
+    
+    public void update(String id, Consumer<T> change) {
+        cache.update(id, change);
+    }
+    
+    private void watch() {
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor =
+                     source.open(reloadRequired ? null : resumeToken)) {
+                if (reloadRequired) {
+                    reload();
+                }
+                follow(cursor);
+            } catch (MongoCommandException e) {
+                cache.markStale();
+                if (HISTORY_LOST_CODES.contains(e.getErrorCode())) {
+                    log.warn("Change stream on {} cannot resume, reloading: {}", collectionName, e.getErrorMessage());
+                    requireReload();
+                    continue;
+                }
+                logFailure("command-" + e.getErrorCode(), "Change stream on {} is not available, reading from the database: {}",
+                    collectionName, e.getErrorMessage());
+                pause();
+            } catch (MongoException e) {
+                cache.markStale();
+                if (running) {
+                    logFailure(e.getClass().getName(), "Change stream on {} interrupted, resuming", collectionName, e);
+                    pause();
+                }
+            }
+        }
+        cache.markStale();
+    }
+    
+    // ストリームを開いた後に読むので、読み直し中の変更も取りこぼさない (重ねて適用しても最後は DB と同じになる)
+    private void reload() {
+        List<T> values = new ArrayList<>();
+        for (Document document : source.findAll()) {
+            values.add(converter.read(type, document));
+        }
+        cache.load(values);
+        reloadRequired = false;
+        log.info("Change stream cache for {} loaded: {} documents", collectionName, values.size());
+    }
+    
+    private void follow(MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor) {
+        while (running) {
+            ChangeStreamDocument<Document> event = cursor.tryNext();
+            if (event == null) {
+                // 追いついた
+                resumeToken = cursor.getResumeToken();
+                cache.markReady();
+                if (failure != null) {
+                    log.info("Change stream on {} is available again", collectionName);
+                    failure = null;
+                }
+                continue;
+            }
+            resumeToken = event.getResumeToken();
+            if (!apply(event)) {
+                requireReload();
+                return;
+            }
+        }
+    }
+    
+    // drop / rename などでストリームが無効になったら false
+    private boolean apply(ChangeStreamDocument<Document> event) {
+        OperationType operation = event.getOperationType();
+        switch (operation) {
+            case INSERT, UPDATE, REPLACE -> {
+                if (event.getFullDocument() != null) {
+                    cache.put(converter.read(type, event.getFullDocument()));
+                } else {
+                    // 更新後に削除された (削除の通知が後から来る)
+                    remove(event);
+                }
+            }
+            case DELETE -> remove(event);
+            case DROP, RENAME, DROP_DATABASE, INVALIDATE -> {
+                return false;
+            }
+            default -> {
+            }
+        }
+        return true;
+    }
+    
+    private void remove(ChangeStreamDocument<Document> event) {
+        BsonDocument documentKey = event.getDocumentKey();
+        if (documentKey == null) {
+            return;
+        }
+        BsonValue id = documentKey.get("_id");
+        if (id.isObjectId()) {
+            cache.remove(id.asObjectId().getValue().toHexString());
+        } else if (id.isString()) {
+            cache.remove(id.asString().getValue());
+        }
+    }
+    
+    private void requireReload() {
+        cache.markStale();
+        resumeToken = null;
+        reloadRequired = true;
+    }
+    
+    private static ChangeStreamSource collectionSource(MongoCollection<Document> collection) {
+        return new ChangeStreamSource() {
+            @Override
+            public MongoChangeStreamCursor<ChangeStreamDocument<Document>> open(BsonDocument resumeAfter) {
+                var stream = collection.watch()
+                    .fullDocument(FullDocument.UPDATE_LOOKUP)
+                    .maxAwaitTime(AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (resumeAfter != null) {
+                    stream = stream.resumeAfter(resumeAfter);
+                }
+                return stream.cursor();
+            }
+            
+            @Override
+            public Iterable<Document> findAll() {
+                return collection.find();
+            }
+        };
+    }
+    
+    // 同じ理由で失敗し続けている間 (レプリカセットでない・DB が止まっている) は最初の1回だけ WARN にする
+    private void logFailure(String reason, String message, Object... arguments) {
+        if (reason.equals(failure)) {
+            log.debug(message, arguments);
+        } else {
+            log.warn(message, arguments);
+        }
+        failure = reason;
+    }
+    
+    private void pause() {
+        try {
+            Thread.sleep(retryInterval.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+    
+    // 変更の通知元 (resumeAfter が null なら現在位置から開く)
+    interface ChangeStreamSource {
+        
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> open(BsonDocument resumeAfter);
+        
+        Iterable<Document> findAll();
+    }
+}
@@ -0,0 +1,127 @@
+package com.docomo.admin.service.mongo;
+
+import com.docomo.admin.entity.mongo.MongoTransaction;
+import com.docomo.admin.service.journal.EventJournal;
+import com.docomo.admin.service.journal.GateEvent;
+import com.docomo.admin.service.journal.GateEventPipeline;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * ゲートの入出庫 (MongoDB 版)。GateEventService と同じく、ジャーナルに書いた時点で受け付けて
+ * 取引の登録・完了はバックグラウンドで行う。
+ */
+@Slf4j
+@Service
+public class MongoGateEventService {
+    
+    @Autowired
+    private MongoTransactionService transactionService;
+    
+    @Autowired
+    private MongoTransactionDeduplicationService deduplicationService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${admin.journal.directory:}")
+    private String directory;
+    
+    @Value("${admin.journal.segment-bytes:16777216}")
+    private int segmentBytes;
+    
+    @Value("${admin.journal.sync:true}")
+    private boolean sync;
+    
+    @Value("${admin.journal.retry-backoff:PT0.1S}")
+    private Duration retryBackoff;
+    
+    private GateEventPipeline pipeline;
+    
+    @PostConstruct
+    public void open() throws IOException {
+        if (directory.isBlank()) {
+            throw new IllegalStateException("admin.journal.directory must be set to a persistent directory");
+        }
+        Path journalDirectory = Paths.get(directory, "mongo");
+        EventJournal journal = new EventJournal(journalDirectory, segmentBytes, sync);
+        EventJournal deadLetters = new EventJournal(journalDirectory.resolve("dead-letter"), segmentBytes, sync);
+        pipeline = new GateEventPipeline(journal, deadLetters, objectMapper, this::apply, retryBackoff, "mongo");
+        log.info("Mongo gate event journal opened: {} events pending, {} dead letters in {}",
+            pipeline.getBacklog(), pipeline.getDeadLetterCount(), journalDirectory);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        pipeline.start();
+    }
+    
+    @PreDestroy
+    public void close() throws IOException {
+        pipeline.close();
+    }
+    
+    // 入庫を受け付けてイベント ID を返す (出庫時に指定する)
+    public String recordEntry(String eventId, String parkingLotId, String userId, String licensePlate, LocalDateTime entryTime) {
+        GateEvent event = GateEvent.entry(eventId, parkingLotId, userId, licensePlate, entryTime);
+        pipeline.submit(event);
+        return event.getEventId();
+    }
+    
+    public String recordExit(String eventId, String entryEventId, LocalDateTime exitTime, BigDecimal amount) {
+        GateEvent event = GateEvent.exit(eventId, entryEventId, exitTime, amount);
+        pipeline.submit(event);
+        return event.getEventId();
+    }
+    
+    public long getBacklog() {
+        return pipeline.getBacklog();
+    }
+    
+    public long getDeadLetterCount() {
+        return pipeline.getDeadLetterCount();
+    }
+    
+    public long replayDeadLetters() {
+        return pipeline.replayDeadLetters();
+    }
+    
+    public boolean awaitDrained(Duration timeout) throws InterruptedException {
+        return pipeline.awaitDrained(timeout);
+    }
+    
+    void apply(GateEvent event) {
+        switch (event.getType()) {
+            case ENTRY -> applyEntry(event);
+            case EXIT -> applyExit(event);
+        }
+    }
+    
+    private void applyEntry(GateEvent event) {
+        MongoTransaction transaction = new MongoTransaction(event.getParkingLotId(), event.getUserId(),
+            event.getLicensePlate(), event.getTime(), MongoTransaction.TransactionStatus.PENDING, null);
+        transaction.setEventId(event.getEventId());
+        transactionService.createTransaction(transaction);
+    }
+    
+    private void applyExit(GateEvent event) {
+        String transactionId = deduplicationService.resolveTransactionId(event.getEntryEventId());
+        if (transactionId == null) {
+            throw new RuntimeException("Transaction not found");
+        }
+        transactionService.completeTransaction(transactionId, event.getTime(), event.getAmount());
+    }
+}
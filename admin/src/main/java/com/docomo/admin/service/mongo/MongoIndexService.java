@@ -0,0 +1,87 @@
+package com.docomo.admin.service.mongo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * @Document クラスに宣言したインデックス (@CompoundIndex) をコレクションに作成する。
+ * Spring Data の自動作成は無効にしてあり、起動時 (MongoIndexInitializer) か移行コマンドから呼ぶ。
+ * 既にあるインデックスは作り直さない。同名でオプションが違うものや、一意制約に反するデータがあるものは
+ * 作成に失敗するので、ログに残して呼び出し元に返す (大きなコレクションの作り直しは手動で行う)。
+ */
+@Slf4j
+@Service
+public class MongoIndexService {
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private MongoMappingContext mappingContext;
+    
+    // 作成できなかったインデックスを返す (すべて作成済みなら空)
+    public List<String> ensureIndexes() {
+        IndexResolver resolver = IndexResolver.create(mappingContext);
+        List<String> failures = new ArrayList<>();
+        for (MongoPersistentEntity<?> entity : documentEntities()) {
+            IndexOperations indexOperations = mongoTemplate.indexOps(entity.getType());
+            Set<String> declared = new HashSet<>();
+            for (IndexDefinition index : resolver.resolveIndexFor(entity.getType())) {
+                String name = indexName(index);
+                declared.add(name);
+                try {
+                    indexOperations.ensureIndex(index);
+                } catch (DataAccessException e) {
+                    log.error("Failed to create index {}.{}: {}", entity.getCollection(), name, e.getMessage());
+                    failures.add(entity.getCollection() + "." + name);
+                }
+            }
+            log.info("Mongo indexes ensured for {}: {}", entity.getCollection(), declared);
+            
+            // 宣言から消したインデックスは書き込みのコストだけが残るので知らせる (削除は手動)
+            for (IndexInfo existing : indexOperations.getIndexInfo()) {
+                if (!existing.getName().equals("_id_") && !declared.contains(existing.getName())) {
+                    log.warn("Undeclared index {}.{}", entity.getCollection(), existing.getName());
+                }
+            }
+        }
+        return failures;
+    }
+    
+    // 宣言されているインデックス名 (コレクション名.インデックス名)
+    public List<String> declaredIndexes() {
+        IndexResolver resolver = IndexResolver.create(mappingContext);
+        List<String> names = new ArrayList<>();
+        for (MongoPersistentEntity<?> entity : documentEntities()) {
+            for (IndexDefinition index : resolver.resolveIndexFor(entity.getType())) {
+                names.add(entity.getCollection() + "." + indexName(index));
+            }
+        }
+        return names;
+    }
+    
+    private List<MongoPersistentEntity<?>> documentEntities() {
+        return mappingContext.getPersistentEntities().stream()
+            .filter(entity -> entity.isAnnotationPresent(Document.class))
+            .collect(Collectors.toList());
+    }
+    
+    private static String indexName(IndexDefinition index) {
+        return index.getIndexOptions().getString("name");
+    }
+}
@@ -0,0 +1,166 @@
+package com.docomo.admin.service.mongo;
+
+import com.docomo.admin.entity.mongo.MongoParkingLot;
+import com.docomo.admin.repository.mongo.MongoParkingLotRepository;
+import com.docomo.admin.service.cache.ParkingLotNearCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Service;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * 駐車場の参照用のキャッシュ。change stream が使えるとき (レプリカセット) は parking_lots 全体を
+ * MongoChangeStreamCache に持ち、他のノードの書き込みも含めて通知で更新する。
+ * 使えないとき・追いつくまでの間はニアキャッシュを使う。駐車場本体は保存・削除のマッピングイベントで ID 単位に無効化し、
+ * findAndModify による空き台数の更新は MongoParkingLotService から通知を受ける。
+ * 入出庫の書き込み (MongoParkingLotOccupancyService の bulk write) は空き台数の短い TTL に任せる。
+ */
+@Service
+public class MongoParkingLotCacheService extends AbstractMongoEventListener<MongoParkingLot> {
+    
+    @Autowired
+    private MongoParkingLotRepository parkingLotRepository;
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Value("${admin.cache.parking-lots.maximum-size:10000}")
+    private long maximumSize;
+    
+    @Value("${admin.cache.parking-lots.ttl:PT10M}")
+    private Duration ttl;
+    
+    @Value("${admin.cache.parking-lots.availability-ttl:PT2S}")
+    private Duration availabilityTtl;
+    
+    @Value("${admin.cache.change-streams.enabled:true}")
+    private boolean changeStreamsEnabled;
+    
+    @Value("${admin.cache.change-streams.retry-interval:PT30S}")
+    private Duration changeStreamRetryInterval;
+    
+    private ParkingLotNearCache<String, MongoParkingLot> cache;
+    
+    private MongoChangeStreamCache<MongoParkingLot> streamCache;
+    
+    @PostConstruct
+    public void initialize() {
+        cache = new ParkingLotNearCache<>(maximumSize, ttl, availabilityTtl, MongoParkingLot::getId,
+            MongoParkingLotCacheService::copy, MongoParkingLot::getAvailableSpaces, MongoParkingLot::setAvailableSpaces);
+        if (changeStreamsEnabled) {
+            streamCache = new MongoChangeStreamCache<>(mongoTemplate, MongoParkingLot.class, MongoParkingLot::getId,
+                MongoParkingLotCacheService::copy, changeStreamRetryInterval);
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void startChangeStream() {
+        if (streamCache != null) {
+            streamCache.start();
+        }
+    }
+    
+    @PreDestroy
+    public void close() {
+        if (streamCache != null) {
+            streamCache.stop();
+        }
+    }
+    
+    public Optional<MongoParkingLot> getParkingLot(String id) {
+        if (isReplicated()) {
+            return streamCache.get(id);
+        }
+        return cache.get(id, parkingLotRepository::findById, this::loadAvailability);
+    }
+    
+    public List<MongoParkingLot> getAllParkingLots() {
+        if (isReplicated()) {
+            return streamCache.getAll();
+        }
+        return cache.getAll(parkingLotRepository::findAll, this::loadAvailability);
+    }
+    
+    public void availableSpacesChanged(String id, int availableSpaces) {
+        cache.invalidateAvailability(id);
+        if (streamCache != null) {
+            streamCache.update(id, parkingLot -> parkingLot.setAvailableSpaces(availableSpaces));
+        }
+    }
+    
+    // isReplicated のときだけ使う
+    public List<MongoParkingLot> findParkingLots(Predicate<MongoParkingLot> condition) {
+        return streamCache.find(condition);
+    }
+    
+    // 全件を change stream で追いかけていて、読み出しをメモリから返せる
+    public boolean isReplicated() {
+        return streamCache != null && streamCache.isReady();
+    }
+    
+    public CacheStats getParkingLotStats() {
+        return cache.lotStats();
+    }
+    
+    public CacheStats getAvailabilityStats() {
+        return cache.availabilityStats();
+    }
+    
+    @Override
+    public void onAfterSave(AfterSaveEvent<MongoParkingLot> event) {
+        if (event.getSource().getId() != null) {
+            cache.invalidate(event.getSource().getId());
+            if (streamCache != null) {
+                streamCache.saved(copy(event.getSource()));
+            }
+        }
+    }
+    
+    // deleteById / delete の条件は {_id: ...}。それ以外の条件による削除は全件を捨てる
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<MongoParkingLot> event) {
+        Object id = event.getSource().get("_id");
+        String deletedId = id instanceof ObjectId objectId ? objectId.toHexString() : id instanceof String stringId ? stringId : null;
+        if (deletedId == null) {
+            cache.invalidateAll();
+            return;
+        }
+        cache.invalidate(deletedId);
+        if (streamCache != null) {
+            streamCache.deleted(deletedId);
+        }
+    }
+    
+    private Map<String, Integer> loadAvailability(Set<String> ids) {
+        Map<String, Integer> availableSpaces = new HashMap<>();
+        for (MongoParkingLot parkingLot : parkingLotRepository.findAvailabilityByIdIn(ids)) {
+            if (parkingLot.getAvailableSpaces() != null) {
+                availableSpaces.put(parkingLot.getId(), parkingLot.getAvailableSpaces());
+            }
+        }
+        return availableSpaces;
+    }
+    
+    private static MongoParkingLot copy(MongoParkingLot parkingLot) {
+        MongoParkingLot copy = new MongoParkingLot();
+        BeanUtils.copyProperties(parkingLot, copy);
+        return copy;
+    }
+}
@@ -0,0 +1,117 @@
+package com.docomo.admin.service.mongo;
+
+import com.docomo.admin.entity.mongo.MongoParkingLot;
+import com.docomo.admin.repository.mongo.MongoParkingLotRepository;
+import com.docomo.admin.service.filter.ParkingLotFilter;
+import com.docomo.admin.service.filter.ParkingLotFilterIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 状態・料金・台数の組み合わせ条件による駐車場の絞り込み。条件の評価と並び替えはメモリ上の
+ * ParkingLotFilterIndex で行い、DB には結果の駐車場を ID で読みに行くだけにする。
+ * 索引は起動時と一定間隔で全件から作り直し、保存・削除のマッピングイベントで1件ずつ更新する。
+ * 空き台数は MongoParkingLotOccupancyService から変化のたびに通知を受ける。
+ */
+@Slf4j
+@Service
+public class MongoParkingLotFilterService extends AbstractMongoEventListener<MongoParkingLot> {
+    
+    @Autowired
+    private MongoParkingLotRepository parkingLotRepository;
+    
+    private volatile ParkingLotFilterIndex index = new ParkingLotFilterIndex();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${admin.filter.rebuild-interval:PT10M}",
+               initialDelayString = "${admin.filter.rebuild-interval:PT10M}")
+    public void rebuild() {
+        ParkingLotFilterIndex rebuilt = new ParkingLotFilterIndex();
+        parkingLotRepository.findAllFilterColumns().forEach(parkingLot -> put(rebuilt, parkingLot));
+        index = rebuilt;
+        log.debug("Mongo parking lot filter index rebuilt: {} parking lots", rebuilt.size());
+    }
+    
+    // 条件に合う駐車場の ID を orderBy の順に最大 limit 件 (DB には問い合わせない)
+    public List<String> findIds(ParkingLotFilter filter, ParkingLotFilterIndex.Column orderBy, boolean descending, int limit) {
+        return index.find(filter, orderBy, descending, limit);
+    }
+    
+    public List<MongoParkingLot> find(ParkingLotFilter filter, ParkingLotFilterIndex.Column orderBy, boolean descending,
+                                      int limit) {
+        while (true) {
+            List<String> ids = findIds(filter, orderBy, descending, limit);
+            List<MongoParkingLot> parkingLots = load(ids);
+            // DB から消えていたものを外した分、残りの候補で埋め直す
+            if (parkingLots.size() == ids.size()) {
+                return parkingLots;
+            }
+        }
+    }
+    
+    public int count(ParkingLotFilter filter) {
+        return index.count(filter);
+    }
+    
+    public void availableSpacesChanged(String id, int availableSpaces) {
+        index.update(id, ParkingLotFilterIndex.Column.AVAILABLE_SPACES, availableSpaces);
+    }
+    
+    @Override
+    public void onAfterSave(AfterSaveEvent<MongoParkingLot> event) {
+        MongoParkingLot parkingLot = event.getSource();
+        if (parkingLot.getId() != null) {
+            put(index, parkingLot);
+        }
+    }
+    
+    // deleteById / delete の条件は {_id: ...}。それ以外の条件による削除は次の作り直しで反映される
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<MongoParkingLot> event) {
+        Object id = event.getSource().get("_id");
+        if (id instanceof ObjectId objectId) {
+            index.remove(objectId.toHexString());
+        } else if (id instanceof String stringId) {
+            index.remove(stringId);
+        }
+    }
+    
+    private static void put(ParkingLotFilterIndex index, MongoParkingLot parkingLot) {
+        index.put(parkingLot.getId(),
+            parkingLot.getStatus() != null ? parkingLot.getStatus().name() : null,
+            parkingLot.getHourlyRate(), parkingLot.getDailyRate(),
+            parkingLot.getTotalSpaces(), parkingLot.getAvailableSpaces());
+    }
+    
+    // 索引の順序のまま読み込む (DB から消えているものは索引からも外す)
+    private List<MongoParkingLot> load(List<String> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<String, MongoParkingLot> parkingLots = parkingLotRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(MongoParkingLot::getId, Function.identity()));
+        List<MongoParkingLot> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            MongoParkingLot parkingLot = parkingLots.get(id);
+            if (parkingLot != null) {
+                result.add(parkingLot);
+            } else {
+                index.remove(id);
+            }
+        }
+        return result;
+    }
+}
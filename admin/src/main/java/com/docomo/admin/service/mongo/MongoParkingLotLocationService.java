@@ -0,0 +1,129 @@
+package com.docomo.admin.service.mongo;
+
+import com.docomo.admin.entity.mongo.MongoParkingLot;
+import com.docomo.admin.repository.mongo.MongoParkingLotRepository;
+import com.docomo.admin.service.geo.GeoGridIndex;
+import com.docomo.admin.service.geo.GeoHit;
+import com.docomo.admin.service.geo.NearbyParkingLot;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 空きのある近くの駐車場の検索。稼働中で位置のある駐車場をメモリ上のグリッド索引に持ち、
+ * 空き台数は MongoParkingLotOccupancyService の値で絞り込む。
+ * 索引は起動時と一定間隔で全件から作り直し、保存・削除のマッピングイベントで1件ずつ更新する。
+ */
+@Slf4j
+@Service
+public class MongoParkingLotLocationService extends AbstractMongoEventListener<MongoParkingLot> {
+    
+    @Autowired
+    private MongoParkingLotRepository parkingLotRepository;
+    
+    @Autowired
+    private MongoParkingLotOccupancyService occupancyService;
+    
+    @Value("${admin.location.cell-degrees:0.01}")
+    private double cellDegrees;
+    
+    private volatile GeoGridIndex index;
+    
+    @PostConstruct
+    public void initialize() {
+        index = new GeoGridIndex(cellDegrees);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${admin.location.rebuild-interval:PT10M}",
+               initialDelayString = "${admin.location.rebuild-interval:PT10M}")
+    public void rebuild() {
+        GeoGridIndex rebuilt = new GeoGridIndex(cellDegrees);
+        for (MongoParkingLot parkingLot : parkingLotRepository.findAllLocations()) {
+            if (isIndexed(parkingLot)) {
+                rebuilt.put(parkingLot.getId(), parkingLot.getLocation().getY(), parkingLot.getLocation().getX());
+            }
+        }
+        index = rebuilt;
+        log.debug("Mongo parking lot location index rebuilt: {} parking lots", rebuilt.size());
+    }
+    
+    // 空きのある駐車場を近い順に最大 limit 件 (ID と距離だけ。DB には問い合わせない)
+    public List<GeoHit> findNearestAvailableIds(double latitude, double longitude, int limit, double maxMeters) {
+        return index.nearest(latitude, longitude, limit, maxMeters, occupancyService::hasAvailableSpaces);
+    }
+    
+    public List<NearbyParkingLot<MongoParkingLot>> findNearestAvailable(double latitude, double longitude, int limit,
+                                                                        double maxMeters) {
+        return load(findNearestAvailableIds(latitude, longitude, limit, maxMeters));
+    }
+    
+    // 半径 radiusMeters 以内で空きのある駐車場を近い順に最大 limit 件
+    public List<NearbyParkingLot<MongoParkingLot>> findAvailableWithin(double latitude, double longitude,
+                                                                       double radiusMeters, int limit) {
+        List<GeoHit> hits = index.within(latitude, longitude, radiusMeters, occupancyService::hasAvailableSpaces);
+        return load(hits.subList(0, Math.min(limit, hits.size())));
+    }
+    
+    @Override
+    public void onAfterSave(AfterSaveEvent<MongoParkingLot> event) {
+        MongoParkingLot parkingLot = event.getSource();
+        if (parkingLot.getId() == null) {
+            return;
+        }
+        if (isIndexed(parkingLot)) {
+            index.put(parkingLot.getId(), parkingLot.getLocation().getY(), parkingLot.getLocation().getX());
+        } else {
+            index.remove(parkingLot.getId());
+        }
+    }
+    
+    // deleteById / delete の条件は {_id: ...}。それ以外の条件による削除は次の作り直しで反映される
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<MongoParkingLot> event) {
+        Object id = event.getSource().get("_id");
+        if (id instanceof ObjectId objectId) {
+            index.remove(objectId.toHexString());
+        } else if (id instanceof String stringId) {
+            index.remove(stringId);
+        }
+    }
+    
+    private static boolean isIndexed(MongoParkingLot parkingLot) {
+        return parkingLot.getStatus() == MongoParkingLot.ParkingLotStatus.ACTIVE && parkingLot.getLocation() != null;
+    }
+    
+    // 検索結果の順序のまま読み込む (DB から消えているものは索引からも外す)
+    private List<NearbyParkingLot<MongoParkingLot>> load(List<GeoHit> hits) {
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+        Map<String, MongoParkingLot> parkingLots = parkingLotRepository.findAllById(
+                hits.stream().map(GeoHit::getId).toList()).stream()
+            .collect(Collectors.toMap(MongoParkingLot::getId, Function.identity()));
+        List<NearbyParkingLot<MongoParkingLot>> result = new ArrayList<>(hits.size());
+        for (GeoHit hit : hits) {
+            MongoParkingLot parkingLot = parkingLots.get(hit.getId());
+            if (parkingLot != null) {
+                result.add(new NearbyParkingLot<>(parkingLot, hit.getDistanceMeters()));
+            } else {
+                index.remove(hit.getId());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,200 @@
+package com.docomo.admin.service.mongo;
+
+import com.docomo.admin.entity.mongo.MongoParkingLot;
+import com.docomo.admin.repository.mongo.MongoParkingLotRepository;
+import com.docomo.admin.service.occupancy.OccupancyCell;
+import com.docomo.admin.service.occupancy.OccupancyEngine;
+import com.docomo.admin.service.occupancy.OccupancyHistoryService;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 入出庫による空き台数の増減をメモリ上で受け付け、一定間隔で1回の bulk write にまとめて反映する。
+ * 起動時に全駐車場を読み込み、DB の値が変わった場合は MongoParkingLotService から通知を受ける。
+ */
+@Slf4j
+@Service
+public class MongoParkingLotOccupancyService {
+    
+    @Autowired
+    private MongoParkingLotRepository parkingLotRepository;
+    
+    @Autowired
+    private OccupancyHistoryService occupancyHistoryService;
+    
+    @Autowired
+    private MongoParkingLotFilterService filterService;
+    
+    private final OccupancyEngine engine = new OccupancyEngine();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        parkingLotRepository.findAllAvailability().forEach(this::parkingLotChanged);
+        log.info("Mongo occupancy engine loaded: {} parking lots", engine.size());
+    }
+    
+    // 入庫: 空き台数を1減らして更新後の値を返す
+    public int enter(String id) {
+        return adjust(id, -1, "No available spaces");
+    }
+    
+    // 出庫: 空き台数を1増やして更新後の値を返す
+    public int exit(String id) {
+        return adjust(id, 1, "Available spaces would exceed total spaces");
+    }
+    
+    // ゲートの入出庫。車はもう通過しているので、範囲外でも例外にせずログだけ残す
+    public void vehicleEntered(String id) {
+        adjustFromGate(id, -1);
+    }
+    
+    public void vehicleExited(String id) {
+        adjustFromGate(id, 1);
+    }
+    
+    public int getAvailableSpaces(String id) {
+        Integer availableSpaces = engine.getAvailableSpaces(id);
+        if (availableSpaces != null) {
+            return availableSpaces;
+        }
+        ensureLoaded(id);
+        return engine.getAvailableSpaces(id);
+    }
+    
+    // 空間検索の絞り込み用。未読み込みの駐車場 (他のインスタンスで追加されたものなど) だけ DB から読む
+    public boolean hasAvailableSpaces(String id) {
+        Integer availableSpaces = engine.getAvailableSpaces(id);
+        if (availableSpaces == null) {
+            parkingLotRepository.findById(id).ifPresent(this::parkingLotChanged);
+            availableSpaces = engine.getAvailableSpaces(id);
+        }
+        return availableSpaces != null && availableSpaces > 0;
+    }
+    
+    // 以下は DB の値が変わったときの通知
+    public void parkingLotChanged(MongoParkingLot parkingLot) {
+        if (parkingLot.getId() == null || parkingLot.getTotalSpaces() == null || parkingLot.getAvailableSpaces() == null) {
+            return;
+        }
+        engine.load(parkingLot.getId(), parkingLot.getTotalSpaces(), parkingLot.getAvailableSpaces());
+        publish(parkingLot.getId(), parkingLot.getAvailableSpaces());
+    }
+    
+    public void availableSpacesChanged(String id, int availableSpaces) {
+        engine.availableSpacesChanged(id, availableSpaces);
+        publish(id, availableSpaces);
+    }
+    
+    public void parkingLotDeleted(String id) {
+        engine.remove(id);
+    }
+    
+    @Scheduled(fixedDelayString = "${admin.occupancy.write-behind-interval:PT1S}")
+    public void flush() {
+        Map<String, Integer> pending = engine.drainPending();
+        if (pending.isEmpty()) {
+            return;
+        }
+        Set<String> flushed = new HashSet<>(pending.keySet());
+        try {
+            int updated = parkingLotRepository.adjustAvailableSpaces(pending);
+            if (updated < pending.size()) {
+                log.warn("{} of {} occupancy deltas are out of range, resynchronizing", pending.size() - updated, pending.size());
+            }
+        } catch (BulkOperationException e) {
+            // UNORDERED なので失敗した操作以外は反映済み。失敗したものだけ戻す (全部戻すと反映済みの分を二重に加算する)
+            Set<String> failed = failedIds(pending, e);
+            log.error("Failed to flush occupancy changes for {} of {} parking lots, retrying later",
+                failed.size(), pending.size(), e);
+            failed.forEach(id -> engine.restorePending(id, pending.get(id)));
+            flushed.removeAll(failed);
+        } catch (RuntimeException e) {
+            log.error("Failed to flush occupancy changes, retrying later", e);
+            pending.forEach(engine::restorePending);
+            return;
+        }
+        if (flushed.isEmpty()) {
+            return;
+        }
+        List<MongoParkingLot> persisted;
+        try {
+            persisted = parkingLotRepository.findAllById(flushed);
+        } catch (RuntimeException e) {
+            // 増減は反映済みなので戻さない (メモリ上の値はそのまま正しい)。DB との突き合わせは次の変更通知に任せる
+            log.error("Failed to reload flushed parking lots", e);
+            return;
+        }
+        
+        // 他の更新で DB 側の値が動いていても、DB の値 + 未反映の増減に揃える
+        Set<String> found = new HashSet<>();
+        for (MongoParkingLot parkingLot : persisted) {
+            parkingLotChanged(parkingLot);
+            found.add(parkingLot.getId());
+        }
+        flushed.stream().filter(id -> !found.contains(id)).forEach(engine::remove);
+        log.debug("Flushed occupancy changes for {} parking lots", flushed.size());
+    }
+    
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+    
+    private int adjust(String id, int delta, String rejectedMessage) {
+        ensureLoaded(id);
+        int availableSpaces = engine.adjust(id, delta);
+        if (availableSpaces == OccupancyCell.REJECTED) {
+            throw new RuntimeException(rejectedMessage);
+        }
+        occupancyHistoryService.availabilityChanged(id, availableSpaces - delta, availableSpaces);
+        filterService.availableSpacesChanged(id, availableSpaces);
+        return availableSpaces;
+    }
+    
+    // 絞り込み索引には未反映の増減を含めた値を渡す (読み込んでいない駐車場は DB の値のまま)
+    private void publish(String id, int persisted) {
+        Integer availableSpaces = engine.getAvailableSpaces(id);
+        filterService.availableSpacesChanged(id, availableSpaces != null ? availableSpaces : persisted);
+    }
+    
+    private void adjustFromGate(String id, int delta) {
+        try {
+            if (delta < 0) {
+                enter(id);
+            } else {
+                exit(id);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Gate {} at parking lot {} not applied to occupancy: {}", delta < 0 ? "entry" : "exit", id, e.getMessage());
+        }
+    }
+    
+    // エラーの index は bulk write に積んだ順 (= deltas の反復順) を指す
+    private static Set<String> failedIds(Map<String, Integer> deltas, BulkOperationException e) {
+        List<String> ids = new ArrayList<>(deltas.keySet());
+        Set<String> failed = new HashSet<>();
+        for (BulkWriteError error : e.getErrors()) {
+            failed.add(ids.get(error.getIndex()));
+        }
+        return failed;
+    }
+    
+    private void ensureLoaded(String id) {
+        if (!engine.contains(id)) {
+            parkingLotChanged(parkingLotRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Parking lot not found")));
+        }
+    }
+}
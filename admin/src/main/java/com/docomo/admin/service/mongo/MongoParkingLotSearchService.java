@@ -0,0 +1,102 @@
+package com.docomo.admin.service.mongo;
+
+import com.docomo.admin.entity.mongo.MongoParkingLot;
+import com.docomo.admin.repository.mongo.MongoParkingLotRepository;
+import com.docomo.admin.service.search.ParkingLotSearchIndex;
+import com.docomo.admin.service.search.ParkingLotSearchIndex.Field;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 駐車場の名前・住所の全文検索。索引はメモリ上に持ち、起動時と一定間隔で全件から作り直すほか、
+ * 保存・削除のマッピングイベントで1件ずつ更新する。
+ */
+@Slf4j
+@Service
+public class MongoParkingLotSearchService extends AbstractMongoEventListener<MongoParkingLot> {
+    
+    @Autowired
+    private MongoParkingLotRepository parkingLotRepository;
+    
+    private final ParkingLotSearchIndex index = new ParkingLotSearchIndex();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${admin.search.rebuild-interval:PT10M}",
+               initialDelayString = "${admin.search.rebuild-interval:PT10M}")
+    public void rebuild() {
+        index.replaceAll(parkingLotRepository.findAllSearchText().stream()
+            .map(lot -> new ParkingLotSearchIndex.Lot(lot.getId(), lot.getName(), lot.getAddress()))
+            .toList());
+        log.debug("Mongo parking lot search index rebuilt: {} parking lots", index.size());
+    }
+    
+    // 名前と住所から、関連度の高い順に返す
+    public List<MongoParkingLot> search(String query, int limit) {
+        return load(() -> index.search(query, Set.of(Field.NAME, Field.ADDRESS), limit));
+    }
+    
+    public List<MongoParkingLot> search(String query, Field field, int limit) {
+        return load(() -> index.search(query, Set.of(field), limit));
+    }
+    
+    public List<MongoParkingLot> suggest(String prefix, int limit) {
+        return load(() -> index.suggest(prefix, limit));
+    }
+    
+    @Override
+    public void onAfterSave(AfterSaveEvent<MongoParkingLot> event) {
+        MongoParkingLot parkingLot = event.getSource();
+        if (parkingLot.getId() != null) {
+            index.put(parkingLot.getId(), parkingLot.getName(), parkingLot.getAddress());
+        }
+    }
+    
+    // deleteById / delete の条件は {_id: ...}。それ以外の条件による削除は次の作り直しで反映される
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<MongoParkingLot> event) {
+        Object id = event.getSource().get("_id");
+        if (id instanceof ObjectId objectId) {
+            index.remove(objectId.toHexString());
+        } else if (id instanceof String stringId) {
+            index.remove(stringId);
+        }
+    }
+    
+    // 索引の順序のまま読み込む。索引に残っていても DB から消えているもの (他のインスタンスでの削除など) は
+    // 索引から外して検索し直す (外すたびに索引は小さくなるので必ず終わる)
+    private List<MongoParkingLot> load(Supplier<List<String>> search) {
+        while (true) {
+            List<String> ids = search.get();
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            Map<String, Integer> order = new HashMap<>();
+            for (String id : ids) {
+                order.put(id, order.size());
+            }
+            List<MongoParkingLot> parkingLots = parkingLotRepository.findAllById(order.keySet());
+            if (parkingLots.size() < ids.size()) {
+                parkingLots.forEach(parkingLot -> order.remove(parkingLot.getId()));
+                order.keySet().forEach(index::remove);
+                continue;
+            }
+            return parkingLots.stream()
+                .sorted(Comparator.comparing(parkingLot -> order.get(parkingLot.getId())))
+                .toList();
+        }
+    }
+}
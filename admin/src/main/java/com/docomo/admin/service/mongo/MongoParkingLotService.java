@@ -2,6 +2,11 @@ package com.docomo.admin.service.mongo;
 
 import com.docomo.admin.entity.mongo.MongoParkingLot;
 import com.docomo.admin.repository.mongo.MongoParkingLotRepository;
+import com.docomo.admin.service.filter.ParkingLotFilter;
+import com.docomo.admin.service.filter.ParkingLotFilterIndex;
+import com.docomo.admin.service.geo.NearbyParkingLot;
+import com.docomo.admin.service.occupancy.OccupancyHistoryService;
+import com.docomo.admin.service.search.ParkingLotSearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
@@ -15,24 +20,58 @@ public class MongoParkingLotService {
     @Autowired
     private MongoParkingLotRepository parkingLotRepository;
     
+    @Autowired
+    private OccupancyHistoryService occupancyHistoryService;
+    
+    @Autowired
+    private MongoParkingLotOccupancyService occupancyService;
+    
+    // 索引は保存・削除のイベントで更新される
+    @Autowired
+    private MongoParkingLotSearchService searchService;
+    
+    @Autowired
+    private MongoParkingLotLocationService locationService;
+    
+    @Autowired
+    private MongoParkingLotFilterService filterService;
+    
+    // 駐車場本体は保存・削除のイベントで無効化される (change stream が使えれば他のノードの更新も反映される)
+    @Autowired
+    private MongoParkingLotCacheService cacheService;
+    
+    // 参照はキャッシュから (返すのはコピー)
     public List<MongoParkingLot> getAllParkingLots() {
-        return parkingLotRepository.findAll();
+        return cacheService.getAllParkingLots();
     }
     
     public Optional<MongoParkingLot> getParkingLotById(String id) {
-        return parkingLotRepository.findById(id);
+        return cacheService.getParkingLot(id);
     }
     
     public List<MongoParkingLot> getParkingLotsByStatus(MongoParkingLot.ParkingLotStatus status) {
+        if (cacheService.isReplicated()) {
+            return cacheService.findParkingLots(parkingLot -> parkingLot.getStatus() == status);
+        }
         return parkingLotRepository.findByStatus(status);
     }
     
+    // 名前・住所の部分一致 (全角・半角、カタカナ・ひらがなの違いは無視し、関連度の高い順に返す)
     public List<MongoParkingLot> searchParkingLotsByName(String name) {
-        return parkingLotRepository.findByNameContainingIgnoreCase(name);
+        return searchService.search(name, ParkingLotSearchIndex.Field.NAME, Integer.MAX_VALUE);
     }
     
     public List<MongoParkingLot> searchParkingLotsByAddress(String address) {
-        return parkingLotRepository.findByAddressContainingIgnoreCase(address);
+        return searchService.search(address, ParkingLotSearchIndex.Field.ADDRESS, Integer.MAX_VALUE);
+    }
+    
+    // 検索ボックス: 空白区切りの語をすべて名前か住所に含むもの
+    public List<MongoParkingLot> searchParkingLots(String query, int limit) {
+        return searchService.search(query, limit);
+    }
+    
+    public List<MongoParkingLot> suggestParkingLots(String prefix, int limit) {
+        return searchService.suggest(prefix, limit);
     }
     
     public List<MongoParkingLot> getParkingLotsWithAvailableSpaces(Integer minSpaces) {
@@ -59,15 +98,35 @@ public class MongoParkingLotService {
         return parkingLotRepository.findActiveAvailableParkingLots();
     }
     
+    // 状態・料金・台数の組み合わせ条件で絞り込み、orderBy の順に最大 limit 件
+    public List<MongoParkingLot> findParkingLots(ParkingLotFilter filter, ParkingLotFilterIndex.Column orderBy,
+                                                 boolean descending, int limit) {
+        return filterService.find(filter, orderBy, descending, limit);
+    }
+    
+    public int countParkingLots(ParkingLotFilter filter) {
+        return filterService.count(filter);
+    }
+    
+    // 空きのある近くの駐車場 (近い順)
+    public List<NearbyParkingLot<MongoParkingLot>> findNearestAvailableParkingLots(double latitude, double longitude,
+                                                                                   int limit, double maxMeters) {
+        return locationService.findNearestAvailable(latitude, longitude, limit, maxMeters);
+    }
+    
     public MongoParkingLot createParkingLot(MongoParkingLot parkingLot) {
         parkingLot.setCreatedAt(LocalDateTime.now());
         parkingLot.setUpdatedAt(LocalDateTime.now());
-        return parkingLotRepository.save(parkingLot);
+        MongoParkingLot saved = parkingLotRepository.save(parkingLot);
+        occupancyHistoryService.availabilityChanged(saved.getId(), null, saved.getAvailableSpaces());
+        occupancyService.parkingLotChanged(saved);
+        return saved;
     }
     
     public MongoParkingLot updateParkingLot(String id, MongoParkingLot parkingLotDetails) {
         MongoParkingLot parkingLot = parkingLotRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Parking lot not found"));
+        Integer oldAvailableSpaces = parkingLot.getAvailableSpaces();
         
         parkingLot.setName(parkingLotDetails.getName());
         parkingLot.setAddress(parkingLotDetails.getAddress());
@@ -76,19 +135,56 @@ public class MongoParkingLotService {
         parkingLot.setHourlyRate(parkingLotDetails.getHourlyRate());
         parkingLot.setDailyRate(parkingLotDetails.getDailyRate());
         parkingLot.setStatus(parkingLotDetails.getStatus());
+        parkingLot.setLocation(parkingLotDetails.getLocation());
         parkingLot.setUpdatedAt(LocalDateTime.now());
         
-        return parkingLotRepository.save(parkingLot);
+        MongoParkingLot saved = parkingLotRepository.save(parkingLot);
+        occupancyHistoryService.availabilityChanged(id, oldAvailableSpaces, saved.getAvailableSpaces());
+        occupancyService.parkingLotChanged(saved);
+        return saved;
     }
     
     public MongoParkingLot updateAvailableSpaces(String id, Integer availableSpaces) {
-        MongoParkingLot parkingLot = parkingLotRepository.findById(id)
-            .orElseThrow(() -> new RuntimeException("Parking lot not found"));
+        // 範囲チェック・読み込み・更新を1回の findAndModify で行い、更新前の値を履歴に使う
+        if (availableSpaces == null || availableSpaces < 0) {
+            throw new IllegalArgumentException("Available spaces must not be negative");
+        }
+        MongoParkingLot parkingLot = parkingLotRepository.replaceAvailableSpaces(id, availableSpaces);
+        if (parkingLot == null) {
+            throw notUpdated(id, "Available spaces cannot exceed total spaces");
+        }
+        Integer oldAvailableSpaces = parkingLot.getAvailableSpaces();
         
         parkingLot.setAvailableSpaces(availableSpaces);
         parkingLot.setUpdatedAt(LocalDateTime.now());
-        
-        return parkingLotRepository.save(parkingLot);
+        occupancyHistoryService.availabilityChanged(id, oldAvailableSpaces, availableSpaces);
+        occupancyService.availableSpacesChanged(id, availableSpaces);
+        cacheService.availableSpacesChanged(id, availableSpaces);
+        return parkingLot;
+    }
+    
+    // 出庫: 空き台数を増やして更新後の値を返す。total_spaces を超える場合は更新しない
+    public int incrementAvailable(String id) {
+        return incrementAvailable(id, 1);
+    }
+    
+    public int incrementAvailable(String id, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        return adjustAvailable(id, count);
+    }
+    
+    // 入庫: 空き台数を減らして更新後の値を返す。0 を下回る場合は更新しない
+    public int decrementAvailable(String id) {
+        return decrementAvailable(id, 1);
+    }
+    
+    public int decrementAvailable(String id, int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive");
+        }
+        return adjustAvailable(id, -count);
     }
     
     public MongoParkingLot updateStatus(String id, MongoParkingLot.ParkingLotStatus status) {
@@ -106,9 +202,30 @@ public class MongoParkingLotService {
             throw new RuntimeException("Parking lot not found");
         }
         parkingLotRepository.deleteById(id);
+        occupancyService.parkingLotDeleted(id);
     }
     
     public boolean existsById(String id) {
         return parkingLotRepository.existsById(id);
     }
-} 
\ No newline at end of file
+    
+    // 範囲チェックと $inc を1回の findAndModify で行うので、同時に呼ばれても更新を取りこぼさない
+    private int adjustAvailable(String id, int delta) {
+        MongoParkingLot parkingLot = parkingLotRepository.adjustAvailableSpaces(id, delta);
+        if (parkingLot == null) {
+            throw notUpdated(id, delta < 0 ? "No available spaces" : "Available spaces would exceed total spaces");
+        }
+        int availableSpaces = parkingLot.getAvailableSpaces();
+        occupancyHistoryService.availabilityChanged(id, availableSpaces - delta, availableSpaces);
+        occupancyService.availableSpacesChanged(id, availableSpaces);
+        cacheService.availableSpacesChanged(id, availableSpaces);
+        return availableSpaces;
+    }
+    
+    private RuntimeException notUpdated(String id, String outOfRangeMessage) {
+        if (!parkingLotRepository.existsById(id)) {
+            return new RuntimeException("Parking lot not found");
+        }
+        return new RuntimeException(outOfRangeMessage);
+    }
+}
@@ -0,0 +1,20 @@
+package com.docomo.admin.service.mongo;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MongoRevenueSummary {
+    
+    private String key;
+    
+    private BigDecimal totalAmount;
+    
+    private Long transactionCount;
+    
+    private Double averageDurationHours;
+}
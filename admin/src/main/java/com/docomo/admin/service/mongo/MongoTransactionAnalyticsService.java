@@ -0,0 +1,50 @@
+package com.docomo.admin.service.mongo;
+
+import com.docomo.admin.entity.mongo.MongoTransaction;
+import com.docomo.admin.service.analytics.AbstractTransactionAnalyticsService;
+import com.docomo.admin.service.analytics.AnalyticsRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// MongoDB の取引の分析用列ストア (JPA 版とは別のディレクトリに置く)
+@Service
+public class MongoTransactionAnalyticsService extends AbstractTransactionAnalyticsService {
+    
+    private static final int REBUILD_BATCH_SIZE = 1000;
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    public MongoTransactionAnalyticsService(@Value("${admin.analytics.directory}") String directory,
+                                            @Value("${admin.analytics.segment-rows:1048576}") int segmentRows) {
+        super(Paths.get(directory, "mongo"), segmentRows);
+    }
+    
+    @Override
+    protected long countRecordable() {
+        return mongoTemplate.count(new Query(recordable()), MongoTransaction.class);
+    }
+    
+    @Override
+    protected void forEachRecordable(Consumer<AnalyticsRecord> action) {
+        Query query = new Query(recordable()).cursorBatchSize(REBUILD_BATCH_SIZE);
+        query.fields().include("parking_lot_id", "entry_time", "exit_time", "amount", "status", "payment_method");
+        try (Stream<MongoTransaction> transactions = mongoTemplate.stream(query, MongoTransaction.class)) {
+            transactions.forEach(transaction -> action.accept(AnalyticsRecord.of(transaction)));
+        }
+    }
+    
+    // AnalyticsRecord#isRecordable と同じ条件
+    private static Criteria recordable() {
+        return Criteria.where("status").is(MongoTransaction.TransactionStatus.COMPLETED.name())
+            .and("parking_lot_id").ne(null)
+            .and("entry_time").ne(null);
+    }
+}
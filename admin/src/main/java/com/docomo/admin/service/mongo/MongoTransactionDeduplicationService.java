@@ -0,0 +1,89 @@
+package com.docomo.admin.service.mongo;
+
+import com.docomo.admin.entity.mongo.MongoTransaction;
+import com.docomo.admin.repository.mongo.MongoTransactionRepository;
+import com.docomo.admin.service.dedup.EventDeduplicator;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * ゲートのイベント ID から登録済みの取引を引く (MongoDB 版)。TransactionDeduplicationService を参照。
+ */
+@Slf4j
+@Service
+public class MongoTransactionDeduplicationService {
+    
+    @Autowired
+    private MongoTransactionRepository transactionRepository;
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Value("${admin.dedup.expected-events:1000000}")
+    private int expectedEvents;
+    
+    @Value("${admin.dedup.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+    
+    @Value("${admin.dedup.recent-capacity:100000}")
+    private int recentCapacity;
+    
+    @Value("${admin.dedup.warmup-window:P3D}")
+    private Duration warmupWindow;
+    
+    private EventDeduplicator<String> deduplicator;
+    
+    @PostConstruct
+    public void open() {
+        deduplicator = new EventDeduplicator<>(expectedEvents, falsePositiveRate, recentCapacity);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        Query query = new Query(Criteria.where("event_id").exists(true)
+            .and("created_at").gte(LocalDateTime.now().minus(warmupWindow)));
+        query.fields().include("event_id");
+        AtomicLong count = new AtomicLong();
+        try (Stream<MongoTransaction> transactions = mongoTemplate.stream(query, MongoTransaction.class)) {
+            transactions.forEach(transaction -> {
+                deduplicator.preload(transaction.getEventId());
+                count.incrementAndGet();
+            });
+        }
+        log.info("Mongo event deduplication loaded: {} event ids", count.get());
+    }
+    
+    // 登録済みならその取引の ID、未登録なら null。登録前の重複確認用 (取りこぼしは一意インデックスで弾く)
+    public String findTransactionId(String eventId) {
+        return deduplicator.find(eventId, this::loadTransactionId);
+    }
+    
+    // 登録済みの取引を必ず見つける (Bloom filter では判定しない)。出庫から入庫の取引を引くとき用
+    public String resolveTransactionId(String eventId) {
+        return deduplicator.resolve(eventId, this::loadTransactionId);
+    }
+    
+    public void transactionCreated(String eventId, String transactionId) {
+        deduplicator.record(eventId, transactionId);
+    }
+    
+    public void transactionDeleted(String eventId) {
+        deduplicator.forget(eventId);
+    }
+    
+    private String loadTransactionId(String eventId) {
+        return transactionRepository.findByEventId(eventId).map(MongoTransaction::getId).orElse(null);
+    }
+}
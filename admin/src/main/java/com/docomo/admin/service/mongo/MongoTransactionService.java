@@ -1,25 +1,74 @@
 package com.docomo.admin.service.mongo;
 
 import com.docomo.admin.entity.mongo.MongoTransaction;
+import com.docomo.admin.repository.mongo.MongoTransactionFilter;
 import com.docomo.admin.repository.mongo.MongoTransactionRepository;
+import com.docomo.admin.repository.support.KeysetCursor;
+import com.docomo.admin.repository.support.KeysetPage;
+import com.docomo.admin.service.analytics.AnalyticsRecord;
+import com.docomo.admin.service.export.ExportRow;
+import com.docomo.admin.service.export.TransactionExportWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 public class MongoTransactionService {
     
+    private static final String COLLECTION = "transactions";
+    private static final int EXPORT_BATCH_SIZE = 1000;
+    
     @Autowired
     private MongoTransactionRepository transactionRepository;
     
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private MongoTransactionAnalyticsService analyticsService;
+    
+    @Autowired
+    private MongoTransactionDeduplicationService deduplicationService;
+    
+    @Autowired
+    private MongoParkingLotOccupancyService occupancyService;
+    
     public List<MongoTransaction> getAllTransactions() {
         return transactionRepository.findAll();
     }
     
+    public KeysetPage<MongoTransaction> getTransactionPage(MongoTransactionFilter filter, String cursor, Integer size) {
+        int limit = KeysetPage.clampSize(size);
+        List<MongoTransaction> rows = transactionRepository.findPage(filter, KeysetCursor.decode(cursor), limit + 1);
+        return KeysetPage.of(rows, limit, transaction -> new KeysetCursor(transaction.getEntryTime(), transaction.getId()));
+    }
+    
+    // 入庫日時が [start, end) の取引をサーバー側カーソルで読みながら書き出す
+    public long exportTransactions(LocalDateTime start, LocalDateTime end, TransactionExportWriter writer) {
+        Query query = new Query(Criteria.where("entryTime").gte(start).lt(end))
+            .with(Sort.by("entryTime", "id"))
+            .cursorBatchSize(EXPORT_BATCH_SIZE);
+        try (Stream<MongoTransaction> transactions = mongoTemplate.stream(query, MongoTransaction.class)) {
+            transactions.forEach(transaction -> writer.write(ExportRow.of(transaction)));
+        }
+        return writer.getRowCount();
+    }
+    
     public Optional<MongoTransaction> getTransactionById(String id) {
         return transactionRepository.findById(id);
     }
@@ -41,7 +90,11 @@ public class MongoTransactionService {
     }
     
     public List<MongoTransaction> searchTransactionsByLicensePlate(String licensePlate) {
-        return transactionRepository.findByLicensePlateContainingIgnoreCase(licensePlate);
+        return transactionRepository.searchByLicensePlate(licensePlate);
+    }
+    
+    public List<MongoTransaction> searchTransactionsByLicensePlatePrefix(String prefix) {
+        return transactionRepository.searchByLicensePlatePrefix(prefix);
     }
     
     public List<MongoTransaction> getTransactionsByEntryTimeRange(LocalDateTime start, LocalDateTime end) {
@@ -79,15 +132,42 @@ public class MongoTransactionService {
         return transactionRepository.findOngoingTransactions();
     }
     
+    // イベント ID 付きの取引は、同じイベントが登録済みならそれを返す (ゲートからの再送)
     public MongoTransaction createTransaction(MongoTransaction transaction) {
+        String eventId = transaction.getEventId();
+        if (eventId != null) {
+            Optional<MongoTransaction> existing = findByEventId(eventId);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+        }
         transaction.setCreatedAt(LocalDateTime.now());
         transaction.setUpdatedAt(LocalDateTime.now());
-        return transactionRepository.save(transaction);
+        MongoTransaction saved;
+        try {
+            saved = transactionRepository.save(transaction);
+        } catch (DuplicateKeyException e) {
+            // 同じイベントが同時に届いた場合 (一意インデックスで弾かれた側は登録済みのものを返す)
+            if (eventId == null) {
+                throw e;
+            }
+            return transactionRepository.findByEventId(eventId).orElseThrow(() -> e);
+        }
+        if (eventId != null) {
+            deduplicationService.transactionCreated(eventId, saved.getId());
+            // ゲートの入庫なので空き台数も減らす (書き込みは MongoParkingLotOccupancyService がまとめて行う)
+            if (saved.getStatus() == MongoTransaction.TransactionStatus.PENDING && saved.getParkingLotId() != null) {
+                occupancyService.vehicleEntered(saved.getParkingLotId());
+            }
+        }
+        analyticsService.transactionChanged(null, AnalyticsRecord.of(saved));
+        return saved;
     }
     
     public MongoTransaction updateTransaction(String id, MongoTransaction transactionDetails) {
         MongoTransaction transaction = transactionRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        AnalyticsRecord before = AnalyticsRecord.of(transaction);
         
         transaction.setParkingLotId(transactionDetails.getParkingLotId());
         transaction.setUserId(transactionDetails.getUserId());
@@ -100,12 +180,23 @@ public class MongoTransactionService {
         transaction.setPaymentMethod(transactionDetails.getPaymentMethod());
         transaction.setUpdatedAt(LocalDateTime.now());
         
-        return transactionRepository.save(transaction);
+        MongoTransaction saved = transactionRepository.save(transaction);
+        analyticsService.transactionChanged(before, AnalyticsRecord.of(saved));
+        return saved;
     }
     
+    // 同じ出庫の再送は何もしない
     public MongoTransaction completeTransaction(String id, LocalDateTime exitTime, BigDecimal amount) {
         MongoTransaction transaction = transactionRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        if (transaction.getStatus() == MongoTransaction.TransactionStatus.COMPLETED
+                && Objects.equals(transaction.getExitTime(), exitTime)
+                && amount != null && transaction.getAmount() != null && amount.compareTo(transaction.getAmount()) == 0) {
+            return transaction;
+        }
+        boolean exited = transaction.getEventId() != null
+            && transaction.getStatus() != MongoTransaction.TransactionStatus.COMPLETED;
+        AnalyticsRecord before = AnalyticsRecord.of(transaction);
         
         transaction.setExitTime(exitTime);
         transaction.setAmount(amount);
@@ -118,27 +209,121 @@ public class MongoTransactionService {
         
         transaction.setUpdatedAt(LocalDateTime.now());
         
-        return transactionRepository.save(transaction);
+        MongoTransaction saved = transactionRepository.save(transaction);
+        analyticsService.transactionChanged(before, AnalyticsRecord.of(saved));
+        if (exited && saved.getParkingLotId() != null) {
+            occupancyService.vehicleExited(saved.getParkingLotId());
+        }
+        return saved;
     }
     
     public MongoTransaction cancelTransaction(String id) {
         MongoTransaction transaction = transactionRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Transaction not found"));
+        AnalyticsRecord before = AnalyticsRecord.of(transaction);
         
         transaction.setStatus(MongoTransaction.TransactionStatus.CANCELLED);
         transaction.setUpdatedAt(LocalDateTime.now());
         
-        return transactionRepository.save(transaction);
+        MongoTransaction saved = transactionRepository.save(transaction);
+        analyticsService.transactionChanged(before, AnalyticsRecord.of(saved));
+        return saved;
     }
     
     public void deleteTransaction(String id) {
-        if (!transactionRepository.existsById(id)) {
-            throw new RuntimeException("Transaction not found");
-        }
+        MongoTransaction transaction = transactionRepository.findById(id)
+            .orElseThrow(() -> new RuntimeException("Transaction not found"));
         transactionRepository.deleteById(id);
+        if (transaction.getEventId() != null) {
+            deduplicationService.transactionDeleted(transaction.getEventId());
+        }
     }
     
     public boolean existsById(String id) {
         return transactionRepository.existsById(id);
     }
-} 
\ No newline at end of file
+    
+    private Optional<MongoTransaction> findByEventId(String eventId) {
+        String transactionId = deduplicationService.findTransactionId(eventId);
+        return transactionId != null ? transactionRepository.findById(transactionId) : Optional.empty();
+    }
+    
+    // 売上集計 (集計パイプラインでサーバー側で計算し、結果だけを受け取る)
+    
+    public BigDecimal getTotalRevenueByParkingLot(String parkingLotId) {
+        return totalRevenue(completed().and("parking_lot_id").is(parkingLotId));
+    }
+    
+    public BigDecimal getTotalRevenueByDateRange(LocalDateTime start, LocalDateTime end) {
+        return totalRevenue(completedBetween(start, end));
+    }
+    
+    public Double getAverageDurationHours(String parkingLotId) {
+        List<MongoRevenueSummary> results = summarize(completed().and("parking_lot_id").is(parkingLotId), "parking_lot_id");
+        return results.isEmpty() ? null : results.get(0).getAverageDurationHours();
+    }
+    
+    public List<MongoRevenueSummary> getRevenueByParkingLot(LocalDateTime start, LocalDateTime end) {
+        return summarize(completedBetween(start, end), "parking_lot_id");
+    }
+    
+    public List<MongoRevenueSummary> getRevenueByPaymentMethod(LocalDateTime start, LocalDateTime end) {
+        return summarize(completedBetween(start, end), "payment_method");
+    }
+    
+    public List<MongoRevenueSummary> getRevenueByUser(LocalDateTime start, LocalDateTime end) {
+        return summarize(completedBetween(start, end), "user_id");
+    }
+    
+    public List<MongoRevenueSummary> getDailyRevenue(LocalDateTime start, LocalDateTime end) {
+        ProjectionOperation byDay = Aggregation.project("amount", "duration_hours")
+            .and(DateOperators.DateToString.dateOf("entry_time")
+                .toString("%Y-%m-%d")
+                .withTimezone(DateOperators.Timezone.valueOf(ZoneId.systemDefault().getId())))
+            .as("key");
+        return summarize(completedBetween(start, end), byDay);
+    }
+    
+    public List<MongoRevenueSummary> getTransactionSummaryByStatus(LocalDateTime start, LocalDateTime end) {
+        return summarize(Criteria.where("entry_time").gte(start).lte(end), "status");
+    }
+    
+    private Criteria completed() {
+        return Criteria.where("status").is(MongoTransaction.TransactionStatus.COMPLETED.name());
+    }
+    
+    private Criteria completedBetween(LocalDateTime start, LocalDateTime end) {
+        return completed().and("entry_time").gte(start).lte(end);
+    }
+    
+    private BigDecimal totalRevenue(Criteria criteria) {
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(criteria),
+            Aggregation.group()
+                .sum("amount").as("totalAmount")
+                .count().as("transactionCount")
+        );
+        MongoRevenueSummary result = mongoTemplate.aggregate(aggregation, COLLECTION, MongoRevenueSummary.class)
+            .getUniqueMappedResult();
+        return result != null && result.getTotalAmount() != null ? result.getTotalAmount() : BigDecimal.ZERO;
+    }
+    
+    private List<MongoRevenueSummary> summarize(Criteria criteria, String keyField) {
+        return summarize(criteria, Aggregation.project("amount", "duration_hours").and(keyField).as("key"));
+    }
+    
+    // amount は Decimal128 で保存しているのでそのまま合計できる (MongoConversionConfig)
+    private List<MongoRevenueSummary> summarize(Criteria criteria, ProjectionOperation keyProjection) {
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(criteria),
+            keyProjection,
+            Aggregation.group("key")
+                .sum("amount").as("totalAmount")
+                .count().as("transactionCount")
+                .avg("duration_hours").as("averageDurationHours"),
+            Aggregation.project("totalAmount", "transactionCount", "averageDurationHours").and("key").previousOperation(),
+            Aggregation.sort(Sort.Direction.ASC, "key")
+        );
+        return mongoTemplate.aggregate(aggregation, COLLECTION, MongoRevenueSummary.class).getMappedResults();
+    }
+}
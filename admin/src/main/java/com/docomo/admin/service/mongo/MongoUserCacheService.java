@@ -0,0 +1,109 @@
+package com.docomo.admin.service.mongo;
+
+import com.docomo.admin.entity.mongo.MongoUser;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Service;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * users コレクション全体を change stream で追いかけるキャッシュ。他のノードでの更新も通知で反映されるので、
+ * isReplicated の間は MongoUserService の参照をメモリから返せる。自ノードの保存・削除はマッピングイベントで先に反映する。
+ */
+@Service
+public class MongoUserCacheService extends AbstractMongoEventListener<MongoUser> {
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Value("${admin.cache.change-streams.enabled:true}")
+    private boolean changeStreamsEnabled;
+    
+    @Value("${admin.cache.change-streams.retry-interval:PT30S}")
+    private Duration changeStreamRetryInterval;
+    
+    private MongoChangeStreamCache<MongoUser> streamCache;
+    
+    @PostConstruct
+    public void initialize() {
+        if (changeStreamsEnabled) {
+            streamCache = new MongoChangeStreamCache<>(mongoTemplate, MongoUser.class, MongoUser::getId,
+                MongoUserCacheService::copy, changeStreamRetryInterval);
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void startChangeStream() {
+        if (streamCache != null) {
+            streamCache.start();
+        }
+    }
+    
+    @PreDestroy
+    public void close() {
+        if (streamCache != null) {
+            streamCache.stop();
+        }
+    }
+    
+    public boolean isReplicated() {
+        return streamCache != null && streamCache.isReady();
+    }
+    
+    // 以下は isReplicated のときだけ使う
+    public Optional<MongoUser> getUser(String id) {
+        return streamCache.get(id);
+    }
+    
+    public List<MongoUser> getAllUsers() {
+        return streamCache.getAll();
+    }
+    
+    public Optional<MongoUser> findUser(Predicate<MongoUser> condition) {
+        return streamCache.find(condition).stream().findFirst();
+    }
+    
+    public List<MongoUser> findUsers(Predicate<MongoUser> condition) {
+        return streamCache.find(condition);
+    }
+    
+    @Override
+    public void onAfterSave(AfterSaveEvent<MongoUser> event) {
+        if (streamCache != null && event.getSource().getId() != null) {
+            streamCache.saved(copy(event.getSource()));
+        }
+    }
+    
+    // 条件が {_id: ...} 以外の削除は change stream の通知に任せる
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<MongoUser> event) {
+        Object id = event.getSource().get("_id");
+        if (streamCache == null) {
+            return;
+        }
+        if (id instanceof ObjectId objectId) {
+            streamCache.deleted(objectId.toHexString());
+        } else if (id instanceof String stringId) {
+            streamCache.deleted(stringId);
+        }
+    }
+    
+    private static MongoUser copy(MongoUser user) {
+        MongoUser copy = new MongoUser();
+        BeanUtils.copyProperties(user, copy);
+        return copy;
+    }
+}
@@ -2,6 +2,7 @@ package com.docomo.admin.service.mongo;
 
 import com.docomo.admin.entity.mongo.MongoUser;
 import com.docomo.admin.repository.mongo.MongoUserRepository;
+import com.docomo.admin.security.RefreshTokenService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -18,23 +19,47 @@ public class MongoUserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private MongoUserCacheService cacheService;
+    
+    // トークン認証が有効なときだけ
+    @Autowired(required = false)
+    private RefreshTokenService refreshTokenService;
+    
+    // 参照は change stream で追いかけているキャッシュから (返すのはコピー)。使えなければ DB から読む。
+    // 登録・更新時の重複チェックは常に DB で行う
     public List<MongoUser> getAllUsers() {
+        if (cacheService.isReplicated()) {
+            return cacheService.getAllUsers();
+        }
         return userRepository.findAll();
     }
     
     public Optional<MongoUser> getUserById(String id) {
+        if (cacheService.isReplicated()) {
+            return cacheService.getUser(id);
+        }
         return userRepository.findById(id);
     }
     
     public Optional<MongoUser> getUserByUsername(String username) {
+        if (cacheService.isReplicated()) {
+            return cacheService.findUser(user -> username.equals(user.getUsername()));
+        }
         return userRepository.findByUsername(username);
     }
     
     public Optional<MongoUser> getUserByEmail(String email) {
+        if (cacheService.isReplicated()) {
+            return cacheService.findUser(user -> email.equals(user.getEmail()));
+        }
         return userRepository.findByEmail(email);
     }
     
     public List<MongoUser> getUsersByRole(MongoUser.UserRole role) {
+        if (cacheService.isReplicated()) {
+            return cacheService.findUsers(user -> user.getRole() == role);
+        }
         return userRepository.findByRole(role);
     }
     
@@ -65,12 +90,18 @@ public class MongoUserService {
         MongoUser user = userRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("User not found"));
         
+        MongoUser.UserRole oldRole = user.getRole();
+        
         user.setFullName(userDetails.getFullName());
         user.setEmail(userDetails.getEmail());
         user.setRole(userDetails.getRole());
         user.setUpdatedAt(LocalDateTime.now());
         
-        return userRepository.save(user);
+        MongoUser saved = userRepository.save(user);
+        if (saved.getRole() != oldRole) {
+            revokeTokens(saved.getUsername());
+        }
+        return saved;
     }
     
     public MongoUser updatePassword(String id, String newPassword) {
@@ -80,14 +111,16 @@ public class MongoUserService {
         user.setPassword(passwordEncoder.encode(newPassword));
         user.setUpdatedAt(LocalDateTime.now());
         
-        return userRepository.save(user);
+        MongoUser saved = userRepository.save(user);
+        revokeTokens(saved.getUsername());
+        return saved;
     }
     
     public void deleteUser(String id) {
-        if (!userRepository.existsById(id)) {
-            throw new RuntimeException("User not found");
-        }
+        MongoUser user = userRepository.findById(id)
+            .orElseThrow(() -> new RuntimeException("User not found"));
         userRepository.deleteById(id);
+        revokeTokens(user.getUsername());
     }
     
     public boolean existsByUsername(String username) {
@@ -101,4 +134,11 @@ public class MongoUserService {
     public List<MongoUser> getUsersCreatedAfter(LocalDateTime date) {
         return userRepository.findByCreatedAtAfter(date);
     }
+    
+    // 発行済みのリフレッシュトークンで古い権限のまま使い続けられないようにする
+    private void revokeTokens(String username) {
+        if (refreshTokenService != null) {
+            refreshTokenService.revokeUser(username);
+        }
+    }
 } 
\ No newline at end of file
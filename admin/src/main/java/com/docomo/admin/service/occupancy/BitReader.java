@@ -0,0 +1,31 @@
+package com.docomo.admin.service.occupancy;
+
+final class BitReader {
+
+    private final byte[] bytes;
+    private int position;
+
+    BitReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    boolean readBit() {
+        boolean bit = (bytes[position >>> 3] & (0x80 >>> (position & 7))) != 0;
+        position++;
+        return bit;
+    }
+
+    long read(int bits) {
+        long value = 0;
+        for (int i = 0; i < bits; i++) {
+            value = (value << 1) | (readBit() ? 1L : 0L);
+        }
+        return value;
+    }
+
+    // 符号付きで読む (bits ビットの2の補数)
+    long readSigned(int bits) {
+        long value = read(bits);
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+}
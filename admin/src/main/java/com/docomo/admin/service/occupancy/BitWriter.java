@@ -0,0 +1,53 @@
+package com.docomo.admin.service.occupancy;
+
+import java.util.Arrays;
+
+// 上位ビットから詰めていくビット単位の書き込みバッファ
+final class BitWriter {
+
+    private byte[] bytes;
+    private int bitCount;
+
+    BitWriter(int initialBytes) {
+        this.bytes = new byte[Math.max(initialBytes, 8)];
+    }
+
+    BitWriter(byte[] bytes, int bitCount) {
+        this.bytes = Arrays.copyOf(bytes, Math.max(bytes.length, 8));
+        this.bitCount = bitCount;
+    }
+
+    void writeBit(boolean bit) {
+        ensureCapacity(1);
+        if (bit) {
+            bytes[bitCount >>> 3] |= (byte) (0x80 >>> (bitCount & 7));
+        }
+        bitCount++;
+    }
+
+    // value の下位 bits ビットを書き込む
+    void write(long value, int bits) {
+        ensureCapacity(bits);
+        for (int i = bits - 1; i >= 0; i--) {
+            if (((value >>> i) & 1L) != 0) {
+                bytes[bitCount >>> 3] |= (byte) (0x80 >>> (bitCount & 7));
+            }
+            bitCount++;
+        }
+    }
+
+    int bitCount() {
+        return bitCount;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, (bitCount + 7) >>> 3);
+    }
+
+    private void ensureCapacity(int bits) {
+        int required = (bitCount + bits + 7) >>> 3;
+        if (required > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.docomo.admin.service.occupancy;
+
+/**
+ * 変化点を固定幅バケットに集約する。値は次の変化まで保持される階段関数として扱い、
+ * バケット内の最小・最大・最終値と時間加重平均 (1/100 単位) を求める。
+ * 変化のなかったバケットは出力しない (直前のバケットの最終値がそのまま続いている)。
+ */
+final class BucketAccumulator {
+
+    static final int COLUMNS = 4;
+
+    private final long width;
+    private final OccupancyResolution resolution;
+
+    private boolean open;
+    private long bucketStart;
+    private long coveredFrom;
+    private long cursor;
+    private long weightedSum;
+    private int min;
+    private int max;
+    private int last;
+
+    BucketAccumulator(OccupancyResolution resolution) {
+        this.resolution = resolution;
+        this.width = resolution.getSeconds();
+    }
+
+    // 点を追加し、閉じたバケットがあれば closed に渡す
+    void add(long epochSecond, int value, OccupancyBlock.PointConsumer closed) {
+        long start = resolution.bucketStart(epochSecond);
+        if (!open) {
+            // 最初の点より前の値は分からないので、その時刻から平均を取る
+            reset(start, epochSecond, value);
+            open = true;
+        } else if (start != bucketStart) {
+            closed.accept(bucketStart, close(bucketStart + width));
+            reset(start, start, last);
+        }
+        weightedSum += (long) last * (epochSecond - cursor);
+        cursor = epochSecond;
+        last = value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    long bucketStart() {
+        return bucketStart;
+    }
+
+    // 集計途中のバケットの値 (now までは最終値が続いているとみなす)
+    int[] snapshot(long now) {
+        long end = Math.min(bucketStart + width, Math.max(cursor, now));
+        return values(weightedSum + (long) last * (end - cursor), end - coveredFrom);
+    }
+
+    private int[] close(long end) {
+        return values(weightedSum + (long) last * (end - cursor), end - coveredFrom);
+    }
+
+    private int[] values(long sum, long span) {
+        int averageCenti = span > 0 ? (int) Math.round(sum * 100.0 / span) : last * 100;
+        return new int[] {min, max, last, averageCenti};
+    }
+
+    private void reset(long start, long from, int value) {
+        bucketStart = start;
+        coveredFrom = from;
+        cursor = from;
+        weightedSum = 0;
+        min = value;
+        max = value;
+        last = value;
+    }
+}
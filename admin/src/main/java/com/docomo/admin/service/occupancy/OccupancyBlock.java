@@ -0,0 +1,81 @@
+package com.docomo.admin.service.occupancy;
+
+// 圧縮済みの時系列ブロック (不変)
+final class OccupancyBlock {
+
+    interface PointConsumer {
+        void accept(long epochSecond, int[] values);
+    }
+
+    final long firstTime;
+    final long lastTime;
+    final int count;
+    final int columns;
+    final byte[] data;
+
+    OccupancyBlock(long firstTime, long lastTime, int count, int columns, byte[] data) {
+        this.firstTime = firstTime;
+        this.lastTime = lastTime;
+        this.count = count;
+        this.columns = columns;
+        this.data = data;
+    }
+
+    boolean overlaps(long from, long to) {
+        return count > 0 && lastTime >= from && firstTime < to;
+    }
+
+    // values 配列は呼び出しごとに再利用される
+    void forEach(PointConsumer consumer) {
+        if (count == 0) {
+            return;
+        }
+        BitReader reader = new BitReader(data);
+        int[] values = new int[columns];
+        int[] leading = new int[columns];
+        int[] trailing = new int[columns];
+        for (int c = 0; c < columns; c++) {
+            values[c] = (int) reader.read(32);
+        }
+        long time = firstTime;
+        consumer.accept(time, values);
+
+        long delta = 0;
+        for (int i = 1; i < count; i++) {
+            if (i == 1) {
+                delta = reader.read(32);
+            } else {
+                delta += readDeltaOfDelta(reader);
+            }
+            time += delta;
+            for (int c = 0; c < columns; c++) {
+                if (reader.readBit()) {
+                    if (reader.readBit()) {
+                        leading[c] = (int) reader.read(5);
+                        int length = (int) reader.read(5) + 1;
+                        trailing[c] = 32 - leading[c] - length;
+                    }
+                    int length = 32 - leading[c] - trailing[c];
+                    values[c] ^= (int) reader.read(length) << trailing[c];
+                }
+            }
+            consumer.accept(time, values);
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader reader) {
+        if (!reader.readBit()) {
+            return 0;
+        }
+        if (!reader.readBit()) {
+            return reader.readSigned(7);
+        }
+        if (!reader.readBit()) {
+            return reader.readSigned(9);
+        }
+        if (!reader.readBit()) {
+            return reader.readSigned(12);
+        }
+        return reader.readSigned(32);
+    }
+}
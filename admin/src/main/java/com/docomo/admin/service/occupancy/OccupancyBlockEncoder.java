@@ -0,0 +1,114 @@
+package com.docomo.admin.service.occupancy;
+
+/**
+ * Gorilla 方式の圧縮で時系列点をブロックに書き込む。
+ * 時刻は2階差分 (delta-of-delta) を可変長のビット列で、値は列ごとに直前の値との XOR を
+ * 先頭/末尾のゼロを除いた有効ビットだけで記録する。空き台数はほとんどの点で ±1 程度しか
+ * 変化しないので、1点あたり数ビットから十数ビットに収まる。
+ */
+final class OccupancyBlockEncoder {
+
+    private final int columns;
+    private final BitWriter writer = new BitWriter(64);
+    private final int[] previousValues;
+    private final int[] previousLeading;
+    private final int[] previousTrailing;
+
+    private long firstTime;
+    private long previousTime;
+    private long previousDelta;
+    private int count;
+
+    OccupancyBlockEncoder(int columns) {
+        this.columns = columns;
+        this.previousValues = new int[columns];
+        this.previousLeading = new int[columns];
+        this.previousTrailing = new int[columns];
+    }
+
+    int size() {
+        return count;
+    }
+
+    long firstTime() {
+        return firstTime;
+    }
+
+    long lastTime() {
+        return previousTime;
+    }
+
+    // 時刻は単調増加であること (呼び出し側で保証する)
+    void append(long epochSecond, int[] values) {
+        if (count == 0) {
+            firstTime = epochSecond;
+            for (int c = 0; c < columns; c++) {
+                writer.write(values[c], 32);
+                previousValues[c] = values[c];
+                previousLeading[c] = -1;
+            }
+        } else {
+            long delta = epochSecond - previousTime;
+            if (count == 1) {
+                writer.write(delta, 32);
+            } else {
+                writeDeltaOfDelta(delta - previousDelta);
+            }
+            previousDelta = delta;
+            for (int c = 0; c < columns; c++) {
+                writeValue(c, values[c]);
+            }
+        }
+        previousTime = epochSecond;
+        count++;
+    }
+
+    OccupancyBlock toBlock() {
+        return new OccupancyBlock(firstTime, previousTime, count, columns, writer.toByteArray());
+    }
+
+    private void writeDeltaOfDelta(long dod) {
+        if (dod == 0) {
+            writer.writeBit(false);
+        } else if (dod >= -64 && dod <= 63) {
+            writer.write(0b10, 2);
+            writer.write(dod, 7);
+        } else if (dod >= -256 && dod <= 255) {
+            writer.write(0b110, 3);
+            writer.write(dod, 9);
+        } else if (dod >= -2048 && dod <= 2047) {
+            writer.write(0b1110, 4);
+            writer.write(dod, 12);
+        } else {
+            writer.write(0b1111, 4);
+            writer.write(dod, 32);
+        }
+    }
+
+    private void writeValue(int column, int value) {
+        int xor = value ^ previousValues[column];
+        previousValues[column] = value;
+        if (xor == 0) {
+            writer.writeBit(false);
+            return;
+        }
+        writer.writeBit(true);
+        int leading = Integer.numberOfLeadingZeros(xor);
+        int trailing = Integer.numberOfTrailingZeros(xor);
+        int previousLead = previousLeading[column];
+        int previousTrail = previousTrailing[column];
+        if (previousLead >= 0 && leading >= previousLead && trailing >= previousTrail) {
+            // 直前と同じ有効ビット範囲に収まる
+            writer.writeBit(false);
+            writer.write(xor >>> previousTrail, 32 - previousLead - previousTrail);
+        } else {
+            int length = 32 - leading - trailing;
+            writer.writeBit(true);
+            writer.write(leading, 5);
+            writer.write(length - 1, 5);
+            writer.write(xor >>> trailing, length);
+            previousLeading[column] = leading;
+            previousTrailing[column] = trailing;
+        }
+    }
+}
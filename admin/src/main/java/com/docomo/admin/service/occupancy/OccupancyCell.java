@@ -0,0 +1,117 @@
+package com.docomo.admin.service.occupancy;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * 1駐車場分の空き台数。空き台数と未反映の増減を1つの long にまとめて CAS で更新するので、
+ * 範囲チェックと加算が不可分になり、反映待ちの増減も取りこぼさない。
+ *
+ * 駐車場ごとのセルが同じキャッシュラインに載って互いの CAS を邪魔しないよう、前後をパディングする
+ * (@Contended は JDK 内部扱いのため手で埋める)。
+ */
+public final class OccupancyCell {
+
+    public static final int REJECTED = -1;
+
+    private static final VarHandle STATE;
+    private static final VarHandle DIRTY;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            STATE = lookup.findVarHandle(OccupancyCell.class, "state", long.class);
+            DIRTY = lookup.findVarHandle(OccupancyCell.class, "dirty", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    long p01, p02, p03, p04, p05, p06, p07;
+    // 上位32ビット: 空き台数、下位32ビット: DB に未反映の増減
+    private volatile long state;
+    private volatile int totalSpaces;
+    private volatile int dirty;
+    long p11, p12, p13, p14, p15, p16, p17;
+
+    OccupancyCell(int totalSpaces, int availableSpaces) {
+        this.totalSpaces = totalSpaces;
+        this.state = pack(availableSpaces, 0);
+    }
+
+    public int getAvailableSpaces() {
+        return available(state);
+    }
+
+    public int getTotalSpaces() {
+        return totalSpaces;
+    }
+
+    int getPending() {
+        return pending(state);
+    }
+
+    // 0 以上 totalSpaces 以下に収まる場合だけ加算し、更新後の空き台数を返す (収まらなければ REJECTED)
+    int adjust(int delta) {
+        while (true) {
+            long current = state;
+            int available = available(current) + delta;
+            if (available < 0 || available > totalSpaces) {
+                return REJECTED;
+            }
+            if (STATE.compareAndSet(this, current, pack(available, pending(current) + delta))) {
+                return available;
+            }
+        }
+    }
+
+    // DB 側の値が変わったとき: 空き台数は DB の値に未反映の増減を足したものになる
+    void reset(int totalSpaces, int persistedAvailableSpaces) {
+        this.totalSpaces = totalSpaces;
+        while (true) {
+            long current = state;
+            int available = Math.max(0, Math.min(totalSpaces, persistedAvailableSpaces + pending(current)));
+            if (STATE.compareAndSet(this, current, pack(available, pending(current)))) {
+                return;
+            }
+        }
+    }
+
+    // 未反映の増減を取り出して 0 に戻す (空き台数はそのまま)
+    int takePending() {
+        DIRTY.setVolatile(this, 0);
+        while (true) {
+            long current = state;
+            if (STATE.compareAndSet(this, current, pack(available(current), 0))) {
+                return pending(current);
+            }
+        }
+    }
+
+    // 反映に失敗した増減を戻す
+    void restorePending(int delta) {
+        while (true) {
+            long current = state;
+            if (STATE.compareAndSet(this, current, pack(available(current), pending(current) + delta))) {
+                return;
+            }
+        }
+    }
+
+    // 反映待ちキューに入っていなければ true を返して印を付ける
+    boolean markDirty() {
+        return DIRTY.compareAndSet(this, 0, 1);
+    }
+
+    private static long pack(int available, int pending) {
+        return ((long) available << 32) | (pending & 0xffffffffL);
+    }
+
+    private static int available(long state) {
+        return (int) (state >> 32);
+    }
+
+    private static int pending(long state) {
+        return (int) state;
+    }
+}
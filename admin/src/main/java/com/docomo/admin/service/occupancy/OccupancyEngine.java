@@ -0,0 +1,97 @@
+package com.docomo.admin.service.occupancy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 駐車場ごとの空き台数をメモリ上で増減させ、DB への反映は後からまとめて行う (write-behind)。
+ * 入出庫のたびに DB を更新する代わりに、反映間隔の間に起きた増減を駐車場ごとに1件へまとめる。
+ * 空き台数の参照は常にメモリ上の値 (DB の値 + 未反映の増減) を返す。
+ */
+public class OccupancyEngine {
+
+    private final Map<String, OccupancyCell> cells = new ConcurrentHashMap<>();
+    private final Queue<String> dirtyKeys = new ConcurrentLinkedQueue<>();
+
+    // DB 上の値を反映する。既にあるセルは未反映の増減を残したまま置き換える
+    public void load(String lotKey, int totalSpaces, int availableSpaces) {
+        cells.compute(lotKey, (key, cell) -> {
+            if (cell == null) {
+                return new OccupancyCell(totalSpaces, availableSpaces);
+            }
+            cell.reset(totalSpaces, availableSpaces);
+            return cell;
+        });
+    }
+
+    // 空き台数だけが変わったとき (読み込み済みの駐車場のみ反映する)
+    public void availableSpacesChanged(String lotKey, int availableSpaces) {
+        OccupancyCell cell = cells.get(lotKey);
+        if (cell != null) {
+            cell.reset(cell.getTotalSpaces(), availableSpaces);
+        }
+    }
+
+    public void remove(String lotKey) {
+        cells.remove(lotKey);
+    }
+
+    public boolean contains(String lotKey) {
+        return cells.containsKey(lotKey);
+    }
+
+    public int size() {
+        return cells.size();
+    }
+
+    // 未ロードの駐車場なら null
+    public Integer getAvailableSpaces(String lotKey) {
+        OccupancyCell cell = cells.get(lotKey);
+        return cell != null ? cell.getAvailableSpaces() : null;
+    }
+
+    // 更新後の空き台数を返す。範囲外なら OccupancyCell.REJECTED
+    public int adjust(String lotKey, int delta) {
+        OccupancyCell cell = cells.get(lotKey);
+        if (cell == null) {
+            throw new IllegalStateException("Parking lot not loaded: " + lotKey);
+        }
+        int available = cell.adjust(delta);
+        if (available != OccupancyCell.REJECTED && cell.markDirty()) {
+            dirtyKeys.add(lotKey);
+        }
+        return available;
+    }
+
+    // 反映待ちの駐車場ごとに、前回の反映以降の増減の合計を取り出す (増減が打ち消し合ったものは除く)
+    public Map<String, Integer> drainPending() {
+        Map<String, Integer> pending = new LinkedHashMap<>();
+        String lotKey;
+        while ((lotKey = dirtyKeys.poll()) != null) {
+            OccupancyCell cell = cells.get(lotKey);
+            if (cell == null) {
+                continue;
+            }
+            int delta = cell.takePending();
+            if (delta != 0) {
+                pending.merge(lotKey, delta, Integer::sum);
+            }
+        }
+        return pending;
+    }
+
+    // DB への反映に失敗した増減を次回に回す
+    public void restorePending(String lotKey, int delta) {
+        OccupancyCell cell = cells.get(lotKey);
+        if (cell == null || delta == 0) {
+            return;
+        }
+        cell.restorePending(delta);
+        if (cell.markDirty()) {
+            dirtyKeys.add(lotKey);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.docomo.admin.service.occupancy;
+
+import com.docomo.admin.service.support.AfterCommit;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 駐車場の空き台数の履歴。空き台数が変わるたびに時系列ストアへ記録し、
+ * ダッシュボードの稼働率グラフは業務テーブルではなくこのストアから描画する。
+ */
+@Slf4j
+@Service
+public class OccupancyHistoryService {
+
+    private final Path directory;
+    private final int pointsPerBlock;
+    private final Map<OccupancyResolution, Duration> retention = new EnumMap<>(OccupancyResolution.class);
+    private final Clock clock = Clock.systemUTC();
+
+    private OccupancyTimeSeriesStore store;
+
+    public OccupancyHistoryService(@Value("${admin.occupancy.directory}") String directory,
+                                   @Value("${admin.occupancy.points-per-block:256}") int pointsPerBlock,
+                                   @Value("${admin.occupancy.retention.raw:P7D}") Duration raw,
+                                   @Value("${admin.occupancy.retention.minute:P30D}") Duration minute,
+                                   @Value("${admin.occupancy.retention.hour:P400D}") Duration hour,
+                                   @Value("${admin.occupancy.retention.day:P3650D}") Duration day) {
+        this.directory = Paths.get(directory);
+        this.pointsPerBlock = pointsPerBlock;
+        retention.put(OccupancyResolution.RAW, raw);
+        retention.put(OccupancyResolution.MINUTE, minute);
+        retention.put(OccupancyResolution.HOUR, hour);
+        retention.put(OccupancyResolution.DAY, day);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        store = new OccupancyTimeSeriesStore(directory, pointsPerBlock, retention, clock);
+        log.info("Occupancy time-series store opened: {} lots in {}", store.lotCount(), directory);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        store.close();
+    }
+
+    // 空き台数の変化をコミット後に記録する (ロールバックされた変更は残さない)
+    public void availabilityChanged(String lotKey, Integer before, Integer after) {
+        if (lotKey == null || after == null || after.equals(before)) {
+            return;
+        }
+        long now = clock.instant().getEpochSecond();
+        AfterCommit.run(() -> store.record(lotKey, now, after));
+    }
+
+    public List<OccupancyPoint> getHistory(String lotKey, OccupancyResolution resolution,
+                                           LocalDateTime start, LocalDateTime end) {
+        return store.query(lotKey, resolution, epochSecond(start), epochSecond(end));
+    }
+
+    public Map<String, List<OccupancyPoint>> getHistories(Collection<String> lotKeys, OccupancyResolution resolution,
+                                                          LocalDateTime start, LocalDateTime end) {
+        return store.query(lotKeys, resolution, epochSecond(start), epochSecond(end));
+    }
+
+    @Scheduled(fixedDelayString = "${admin.occupancy.flush-interval:PT10S}")
+    public void flush() {
+        try {
+            store.flush();
+        } catch (IOException e) {
+            log.error("Failed to flush occupancy time-series store", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${admin.occupancy.expire-interval:PT1H}",
+               initialDelayString = "${admin.occupancy.expire-interval:PT1H}")
+    public void expire() {
+        try {
+            store.expire();
+        } catch (IOException e) {
+            log.error("Failed to expire occupancy time-series blocks", e);
+        }
+    }
+
+    private long epochSecond(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+}
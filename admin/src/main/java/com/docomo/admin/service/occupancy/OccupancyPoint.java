@@ -0,0 +1,17 @@
+package com.docomo.admin.service.occupancy;
+
+import lombok.Value;
+
+/**
+ * 空き台数の時系列の1点。RAW では変化後の値 (min = max = last = average)、
+ * 集約解像度ではバケット開始時刻とバケット内の最小・最大・最終値・時間加重平均。
+ */
+@Value
+public class OccupancyPoint {
+
+    long epochSecond;
+    int min;
+    int max;
+    int last;
+    double average;
+}
@@ -0,0 +1,23 @@
+package com.docomo.admin.service.occupancy;
+
+// 時系列の解像度。RAW は変化点そのもの、それ以外は固定幅バケットへの集約
+public enum OccupancyResolution {
+    RAW(0),
+    MINUTE(60),
+    HOUR(3600),
+    DAY(86400);
+
+    private final long seconds;
+
+    OccupancyResolution(long seconds) {
+        this.seconds = seconds;
+    }
+
+    public long getSeconds() {
+        return seconds;
+    }
+
+    public long bucketStart(long epochSecond) {
+        return epochSecond - Math.floorMod(epochSecond, seconds);
+    }
+}
@@ -0,0 +1,391 @@
+package com.docomo.admin.service.occupancy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 駐車場ごとの空き台数の変化を記録する組み込み時系列ストア。
+ *
+ * 変化点 (RAW) と 1分/1時間/1日 の集約バケットを、それぞれ Gorilla 方式で圧縮したブロックとして
+ * メモリ上に保持する。ブロックは一定点数か一定期間で封止され、封止済みブロックだけを
+ * 追記専用ファイルに書き出す。起動時はファイルを読み込み、集約途中のバケットを RAW から再構築する。
+ * 未封止ブロックは close 時に封止されるが、異常終了時には失われる。
+ */
+public class OccupancyTimeSeriesStore implements Closeable {
+
+    private static final int MAGIC = 0x4f434331;
+    // 異常終了時に失う範囲を抑えるため、ブロックは点数に達しなくてもこの期間で封止する。
+    // 集約ブロックは RAW から復元できる範囲 (RAW の保持期間) より短くしておく
+    private static final long RAW_BLOCK_SPAN_SECONDS = 2 * 3600;
+    private static final long BUCKET_BLOCK_SPAN_SECONDS = 86400;
+
+    private final Path file;
+    private final int pointsPerBlock;
+    private final Map<OccupancyResolution, Duration> retention;
+    private final Clock clock;
+
+    private final Map<String, LotSeries> lots = new ConcurrentHashMap<>();
+    private final Queue<PendingBlock> pending = new ConcurrentLinkedQueue<>();
+    private final Object fileLock = new Object();
+    private DataOutputStream out;
+
+    public OccupancyTimeSeriesStore(Path directory, int pointsPerBlock,
+                                    Map<OccupancyResolution, Duration> retention, Clock clock) throws IOException {
+        if (pointsPerBlock < 2) {
+            throw new IllegalArgumentException("Invalid points per block: " + pointsPerBlock);
+        }
+        Files.createDirectories(directory);
+        this.file = directory.resolve("occupancy.blocks");
+        this.pointsPerBlock = pointsPerBlock;
+        this.retention = new EnumMap<>(retention);
+        this.clock = clock;
+
+        boolean compact = load();
+        for (Map.Entry<String, LotSeries> entry : lots.entrySet()) {
+            entry.getValue().replay();
+        }
+        if (compact) {
+            compact();
+        } else {
+            out = openForAppend();
+        }
+    }
+
+    public int lotCount() {
+        return lots.size();
+    }
+
+    // 空き台数の変化を記録する。時刻が前後した場合は直前の時刻に揃える
+    public void record(String lotKey, long epochSecond, int availableSpaces) {
+        LotSeries series = lots.computeIfAbsent(lotKey, LotSeries::new);
+        synchronized (series) {
+            series.record(Math.max(epochSecond, series.lastTime), availableSpaces);
+        }
+    }
+
+    // [from, to) の点を時刻順に返す。集約解像度ではバケット開始時刻で判定する
+    public List<OccupancyPoint> query(String lotKey, OccupancyResolution resolution, long from, long to) {
+        LotSeries series = lots.get(lotKey);
+        if (series == null) {
+            return List.of();
+        }
+        synchronized (series) {
+            return series.query(resolution, from, to, clock.instant().getEpochSecond());
+        }
+    }
+
+    public Map<String, List<OccupancyPoint>> query(Collection<String> lotKeys, OccupancyResolution resolution,
+                                                   long from, long to) {
+        Map<String, List<OccupancyPoint>> result = new LinkedHashMap<>();
+        for (String lotKey : lotKeys) {
+            result.put(lotKey, query(lotKey, resolution, from, to));
+        }
+        return result;
+    }
+
+    // 保持期間を過ぎた封止済みブロックを捨て、ファイルを詰め直す
+    public void expire() throws IOException {
+        long now = clock.instant().getEpochSecond();
+        int dropped = 0;
+        for (LotSeries series : lots.values()) {
+            synchronized (series) {
+                dropped += series.expire(now);
+            }
+        }
+        if (dropped > 0) {
+            compact();
+        }
+    }
+
+    public void flush() throws IOException {
+        synchronized (fileLock) {
+            drainPending(Collections.emptySet());
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (LotSeries series : lots.values()) {
+            synchronized (series) {
+                series.sealAll();
+            }
+        }
+        synchronized (fileLock) {
+            drainPending(Collections.emptySet());
+            out.close();
+        }
+    }
+
+    private boolean load() throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        long now = clock.instant().getEpochSecond();
+        boolean compact = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an occupancy time-series file: " + file);
+            }
+            while (true) {
+                String lotKey;
+                try {
+                    lotKey = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                OccupancyBlock block;
+                OccupancyResolution resolution;
+                try {
+                    resolution = OccupancyResolution.values()[in.readByte()];
+                    long firstTime = in.readLong();
+                    long lastTime = in.readLong();
+                    int count = in.readInt();
+                    int columns = in.readByte();
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    block = new OccupancyBlock(firstTime, lastTime, count, columns, data);
+                } catch (EOFException e) {
+                    // 書き込み途中で終了した末尾のレコードは捨てる
+                    compact = true;
+                    break;
+                }
+                if (isExpired(resolution, block, now)) {
+                    compact = true;
+                } else {
+                    lots.computeIfAbsent(lotKey, LotSeries::new).sealed.get(resolution).add(block);
+                }
+            }
+        }
+        return compact;
+    }
+
+    // 現在の封止済みブロックだけでファイルを書き直す
+    private void compact() throws IOException {
+        synchronized (fileLock) {
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            Set<OccupancyBlock> written = Collections.newSetFromMap(new IdentityHashMap<>());
+            try (DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                compacted.writeInt(MAGIC);
+                for (Map.Entry<String, LotSeries> entry : lots.entrySet()) {
+                    LotSeries series = entry.getValue();
+                    synchronized (series) {
+                        for (Map.Entry<OccupancyResolution, List<OccupancyBlock>> blocks : series.sealed.entrySet()) {
+                            for (OccupancyBlock block : blocks.getValue()) {
+                                writeBlock(compacted, entry.getKey(), blocks.getKey(), block);
+                                written.add(block);
+                            }
+                        }
+                    }
+                }
+            }
+            if (out != null) {
+                out.close();
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            out = openForAppend();
+            // 書き直し中に封止されたブロックだけを追記する
+            drainPending(written);
+            out.flush();
+        }
+    }
+
+    private DataOutputStream openForAppend() throws IOException {
+        boolean created = !Files.exists(file);
+        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        if (created) {
+            stream.writeInt(MAGIC);
+        }
+        return stream;
+    }
+
+    private void drainPending(Set<OccupancyBlock> alreadyWritten) throws IOException {
+        PendingBlock next;
+        while ((next = pending.poll()) != null) {
+            if (!alreadyWritten.contains(next.block)) {
+                writeBlock(out, next.lotKey, next.resolution, next.block);
+            }
+        }
+    }
+
+    private static void writeBlock(DataOutputStream stream, String lotKey, OccupancyResolution resolution,
+                                   OccupancyBlock block) throws IOException {
+        stream.writeUTF(lotKey);
+        stream.writeByte(resolution.ordinal());
+        stream.writeLong(block.firstTime);
+        stream.writeLong(block.lastTime);
+        stream.writeInt(block.count);
+        stream.writeByte(block.columns);
+        stream.writeInt(block.data.length);
+        stream.write(block.data);
+    }
+
+    private boolean isExpired(OccupancyResolution resolution, OccupancyBlock block, long now) {
+        Duration keep = retention.get(resolution);
+        return keep != null && block.lastTime + resolution.getSeconds() < now - keep.getSeconds();
+    }
+
+    private static OccupancyPoint toPoint(OccupancyResolution resolution, long epochSecond, int[] values) {
+        if (resolution == OccupancyResolution.RAW) {
+            return new OccupancyPoint(epochSecond, values[0], values[0], values[0], values[0]);
+        }
+        return new OccupancyPoint(epochSecond, values[0], values[1], values[2], values[3] / 100.0);
+    }
+
+    private static final class PendingBlock {
+
+        final String lotKey;
+        final OccupancyResolution resolution;
+        final OccupancyBlock block;
+
+        PendingBlock(String lotKey, OccupancyResolution resolution, OccupancyBlock block) {
+            this.lotKey = lotKey;
+            this.resolution = resolution;
+            this.block = block;
+        }
+    }
+
+    // 1駐車場分の系列。操作はすべてこのインスタンスで同期する
+    private final class LotSeries {
+
+        final String lotKey;
+        final Map<OccupancyResolution, List<OccupancyBlock>> sealed = new EnumMap<>(OccupancyResolution.class);
+        final Map<OccupancyResolution, OccupancyBlockEncoder> open = new EnumMap<>(OccupancyResolution.class);
+        final Map<OccupancyResolution, BucketAccumulator> buckets = new EnumMap<>(OccupancyResolution.class);
+        long lastTime = Long.MIN_VALUE;
+
+        LotSeries(String lotKey) {
+            this.lotKey = lotKey;
+            for (OccupancyResolution resolution : OccupancyResolution.values()) {
+                sealed.put(resolution, new ArrayList<>());
+                if (resolution != OccupancyResolution.RAW) {
+                    buckets.put(resolution, new BucketAccumulator(resolution));
+                }
+            }
+        }
+
+        void record(long epochSecond, int value) {
+            append(OccupancyResolution.RAW, epochSecond, new int[] {value});
+            for (Map.Entry<OccupancyResolution, BucketAccumulator> entry : buckets.entrySet()) {
+                OccupancyResolution resolution = entry.getKey();
+                entry.getValue().add(epochSecond, value, (start, values) -> append(resolution, start, values));
+            }
+            lastTime = epochSecond;
+        }
+
+        // 読み込んだ RAW ブロックを流し直し、封止済みの集約ブロックより後のバケットを復元する
+        void replay() {
+            Map<OccupancyResolution, Long> resumeAt = new EnumMap<>(OccupancyResolution.class);
+            for (OccupancyResolution resolution : buckets.keySet()) {
+                List<OccupancyBlock> blocks = sealed.get(resolution);
+                resumeAt.put(resolution, blocks.isEmpty()
+                    ? Long.MIN_VALUE : blocks.get(blocks.size() - 1).lastTime + resolution.getSeconds());
+            }
+            for (OccupancyBlock block : sealed.get(OccupancyResolution.RAW)) {
+                block.forEach((time, values) -> {
+                    for (Map.Entry<OccupancyResolution, BucketAccumulator> entry : buckets.entrySet()) {
+                        OccupancyResolution resolution = entry.getKey();
+                        long resume = resumeAt.get(resolution);
+                        entry.getValue().add(time, values[0], (start, bucket) -> {
+                            if (start >= resume) {
+                                append(resolution, start, bucket);
+                            }
+                        });
+                    }
+                    lastTime = time;
+                });
+            }
+        }
+
+        List<OccupancyPoint> query(OccupancyResolution resolution, long from, long to, long now) {
+            List<OccupancyPoint> points = new ArrayList<>();
+            OccupancyBlock.PointConsumer collector = (time, values) -> {
+                if (time >= from && time < to) {
+                    points.add(toPoint(resolution, time, values));
+                }
+            };
+            for (OccupancyBlock block : sealed.get(resolution)) {
+                if (block.overlaps(from, to)) {
+                    block.forEach(collector);
+                }
+            }
+            OccupancyBlockEncoder encoder = open.get(resolution);
+            if (encoder != null && encoder.size() > 0) {
+                encoder.toBlock().forEach(collector);
+            }
+            BucketAccumulator accumulator = buckets.get(resolution);
+            if (accumulator != null && accumulator.isOpen()) {
+                collector.accept(accumulator.bucketStart(), accumulator.snapshot(now));
+            }
+            return points;
+        }
+
+        int expire(long now) {
+            int dropped = 0;
+            for (Map.Entry<OccupancyResolution, List<OccupancyBlock>> entry : sealed.entrySet()) {
+                List<OccupancyBlock> blocks = entry.getValue();
+                int before = blocks.size();
+                blocks.removeIf(block -> isExpired(entry.getKey(), block, now));
+                dropped += before - blocks.size();
+            }
+            return dropped;
+        }
+
+        void sealAll() {
+            for (OccupancyResolution resolution : new ArrayList<>(open.keySet())) {
+                seal(resolution);
+            }
+        }
+
+        private void append(OccupancyResolution resolution, long epochSecond, int[] values) {
+            OccupancyBlockEncoder encoder = open.get(resolution);
+            long span = resolution == OccupancyResolution.RAW ? RAW_BLOCK_SPAN_SECONDS : BUCKET_BLOCK_SPAN_SECONDS;
+            if (encoder != null && encoder.size() > 0 && epochSecond - encoder.firstTime() >= span) {
+                seal(resolution);
+                encoder = null;
+            }
+            if (encoder == null) {
+                encoder = new OccupancyBlockEncoder(values.length);
+                open.put(resolution, encoder);
+            }
+            encoder.append(epochSecond, values);
+            if (encoder.size() >= pointsPerBlock) {
+                seal(resolution);
+            }
+        }
+
+        private void seal(OccupancyResolution resolution) {
+            OccupancyBlockEncoder encoder = open.remove(resolution);
+            if (encoder == null || encoder.size() == 0) {
+                return;
+            }
+            OccupancyBlock block = encoder.toBlock();
+            sealed.get(resolution).add(block);
+            pending.add(new PendingBlock(lotKey, resolution, block));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.docomo.admin.service.revenue;
+
+import com.docomo.admin.entity.Transaction;
+import com.docomo.admin.entity.Transaction.PaymentMethod;
+import com.docomo.admin.entity.Transaction.TransactionStatus;
+import lombok.Value;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+@Value
+public class RevenueContribution {
+
+    public static final RevenueContribution NONE = new RevenueContribution(null, null, null, null, BigDecimal.ZERO);
+
+    Long parkingLotId;
+    LocalDateTime entryTime;
+    PaymentMethod paymentMethod;
+    TransactionStatus status;
+    BigDecimal amount;
+
+    public static RevenueContribution of(Transaction transaction) {
+        if (transaction.getParkingLot() == null || transaction.getParkingLot().getId() == null
+                || transaction.getEntryTime() == null) {
+            return NONE;
+        }
+        return new RevenueContribution(
+            transaction.getParkingLot().getId(),
+            transaction.getEntryTime(),
+            transaction.getPaymentMethod(),
+            transaction.getStatus(),
+            transaction.getAmount() != null ? transaction.getAmount() : BigDecimal.ZERO
+        );
+    }
+
+    public boolean isCompleted() {
+        return status == TransactionStatus.COMPLETED;
+    }
+
+    public boolean sameAs(RevenueContribution other) {
+        return Objects.equals(parkingLotId, other.parkingLotId)
+            && Objects.equals(entryTime, other.entryTime)
+            && paymentMethod == other.paymentMethod
+            && status == other.status
+            && amount.compareTo(other.amount) == 0;
+    }
+}
@@ -0,0 +1,196 @@
+package com.docomo.admin.service.revenue;
+
+import com.docomo.admin.entity.RevenueRollup;
+import com.docomo.admin.entity.RevenueRollup.Granularity;
+import com.docomo.admin.entity.Transaction.PaymentMethod;
+import com.docomo.admin.entity.Transaction.TransactionStatus;
+import com.docomo.admin.repository.RevenueRollupRepository;
+import com.docomo.admin.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 取引の売上を (駐車場, 時間/日, 支払方法, ステータス) 単位で事前集計する。
+ * 期間売上は集計済みバケットと、バケットに収まらない端の時間帯だけを取引テーブルから合算して求める。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class RevenueRollupService {
+
+    private final RevenueRollupRepository rollupRepository;
+    private final TransactionRepository transactionRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    // 取引と同じトランザクション内で集計行を更新する
+    public void apply(RevenueContribution before, RevenueContribution after) {
+        if (before != RevenueContribution.NONE) {
+            add(before, before.getAmount().negate(), -1);
+        }
+        if (after != RevenueContribution.NONE) {
+            add(after, after.getAmount(), 1);
+        }
+    }
+
+    // 一括登録用: 同じバケットへの加算をまとめ、バケットごとに1回だけ更新する
+    public void applyAll(Collection<RevenueContribution> contributions) {
+        Map<List<Object>, RevenueRollup> deltas = new LinkedHashMap<>();
+        for (RevenueContribution contribution : contributions) {
+            if (contribution == RevenueContribution.NONE) {
+                continue;
+            }
+            LocalDateTime hour = contribution.getEntryTime().truncatedTo(ChronoUnit.HOURS);
+            merge(deltas, Granularity.HOUR, hour, contribution);
+            merge(deltas, Granularity.DAY, hour.truncatedTo(ChronoUnit.DAYS), contribution);
+        }
+        deltas.values().forEach(this::upsert);
+    }
+
+    @Transactional(readOnly = true)
+    public BigDecimal getTotalRevenueByParkingLot(Long parkingLotId) {
+        return orZero(rollupRepository.getTotalRevenueByParkingLot(parkingLotId));
+    }
+
+    // BETWEEN と同じく start, end を両端含む期間として扱う
+    @Transactional(readOnly = true)
+    public BigDecimal getTotalRevenueByDateRange(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime hourStart = ceil(start, ChronoUnit.HOURS);
+        LocalDateTime hourEnd = end.truncatedTo(ChronoUnit.HOURS);
+        if (!hourStart.isBefore(hourEnd)) {
+            return orZero(transactionRepository.getTotalRevenueByDateRange(start, end));
+        }
+
+        BigDecimal total = orZero(transactionRepository.getTotalRevenueByEntryTimeRange(start, hourStart))
+            .add(orZero(transactionRepository.getTotalRevenueByDateRange(hourEnd, end)));
+
+        LocalDateTime dayStart = ceil(hourStart, ChronoUnit.DAYS);
+        LocalDateTime dayEnd = hourEnd.truncatedTo(ChronoUnit.DAYS);
+        if (dayStart.isBefore(dayEnd)) {
+            total = total
+                .add(sumBuckets(Granularity.HOUR, hourStart, dayStart))
+                .add(sumBuckets(Granularity.DAY, dayStart, dayEnd))
+                .add(sumBuckets(Granularity.HOUR, dayEnd, hourEnd));
+        } else {
+            total = total.add(sumBuckets(Granularity.HOUR, hourStart, hourEnd));
+        }
+        return total;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (rollupRepository.count() == 0 && transactionRepository.count() > 0) {
+            rebuild();
+        }
+    }
+
+    // 取引テーブルから集計行を作り直す
+    public void rebuild() {
+        rollupRepository.deleteAllInBatch();
+
+        List<RevenueRollup> rollups = new ArrayList<>();
+        Map<List<Object>, RevenueRollup> daily = new HashMap<>();
+        for (Object[] row : transactionRepository.getHourlyRevenueBuckets()) {
+            Long parkingLotId = (Long) row[0];
+            LocalDateTime hour = LocalDateTime.of(
+                ((Number) row[1]).intValue(), ((Number) row[2]).intValue(), ((Number) row[3]).intValue(),
+                ((Number) row[4]).intValue(), 0);
+            PaymentMethod paymentMethod = (PaymentMethod) row[5];
+            TransactionStatus status = (TransactionStatus) row[6];
+            BigDecimal amount = orZero((BigDecimal) row[7]);
+            long count = ((Number) row[8]).longValue();
+
+            rollups.add(new RevenueRollup(null, Granularity.HOUR, parkingLotId, hour, paymentMethod, status, amount, count));
+
+            LocalDateTime day = hour.truncatedTo(ChronoUnit.DAYS);
+            RevenueRollup dayRollup = daily.computeIfAbsent(
+                List.of(parkingLotId, day, Objects.toString(paymentMethod), Objects.toString(status)),
+                key -> new RevenueRollup(null, Granularity.DAY, parkingLotId, day, paymentMethod, status, BigDecimal.ZERO, 0L));
+            dayRollup.setTotalAmount(dayRollup.getTotalAmount().add(amount));
+            dayRollup.setTransactionCount(dayRollup.getTransactionCount() + count);
+        }
+        rollups.addAll(daily.values());
+        rollupRepository.saveAll(rollups);
+        log.info("Revenue rollups rebuilt: {} buckets", rollups.size());
+    }
+
+    private void add(RevenueContribution contribution, BigDecimal amount, long count) {
+        LocalDateTime hour = contribution.getEntryTime().truncatedTo(ChronoUnit.HOURS);
+        upsert(rollupOf(Granularity.HOUR, hour, contribution, amount, count));
+        upsert(rollupOf(Granularity.DAY, hour.truncatedTo(ChronoUnit.DAYS), contribution, amount, count));
+    }
+
+    private void merge(Map<List<Object>, RevenueRollup> deltas, Granularity granularity, LocalDateTime bucketStart,
+                       RevenueContribution contribution) {
+        List<Object> key = List.of(granularity, contribution.getParkingLotId(), bucketStart,
+            Objects.toString(contribution.getPaymentMethod()), Objects.toString(contribution.getStatus()));
+        RevenueRollup delta = deltas.computeIfAbsent(key,
+            k -> rollupOf(granularity, bucketStart, contribution, BigDecimal.ZERO, 0L));
+        delta.setTotalAmount(delta.getTotalAmount().add(contribution.getAmount()));
+        delta.setTransactionCount(delta.getTransactionCount() + 1);
+    }
+
+    private static RevenueRollup rollupOf(Granularity granularity, LocalDateTime bucketStart,
+                                          RevenueContribution contribution, BigDecimal amount, long count) {
+        return new RevenueRollup(null, granularity, contribution.getParkingLotId(), bucketStart,
+            contribution.getPaymentMethod(), contribution.getStatus(), amount, count);
+    }
+
+    private void upsert(RevenueRollup delta) {
+        if (increment(delta) > 0) {
+            return;
+        }
+        // 空のバケットを別トランザクションで作ってから加算する。同時に作られても一意制約で1行に保たれ、
+        // 呼び出し元がロールバックしても残るのは 0 の行だけ
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            template.executeWithoutResult(status ->
+                rollupRepository.saveAndFlush(new RevenueRollup(null, delta.getGranularity(), delta.getParkingLotId(),
+                    delta.getBucketStart(), delta.getPaymentMethod(), delta.getStatus(), BigDecimal.ZERO, 0L)));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Revenue rollup {} was created concurrently", delta.getBucketKey());
+        }
+        if (increment(delta) == 0) {
+            throw new IllegalStateException("Revenue rollup not found: " + delta.getBucketKey());
+        }
+    }
+
+    private int increment(RevenueRollup delta) {
+        return rollupRepository.increment(delta.getBucketKey(), delta.getTotalAmount(), delta.getTransactionCount());
+    }
+
+    private BigDecimal sumBuckets(Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return BigDecimal.ZERO;
+        }
+        return orZero(rollupRepository.getTotalRevenueByBucketRange(granularity, from, to));
+    }
+
+    private static LocalDateTime ceil(LocalDateTime time, ChronoUnit unit) {
+        LocalDateTime truncated = time.truncatedTo(unit);
+        return truncated.equals(time) ? truncated : truncated.plus(1, unit);
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
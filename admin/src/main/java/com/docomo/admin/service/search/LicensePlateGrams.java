@@ -0,0 +1,60 @@
+package com.docomo.admin.service.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ナンバープレート検索用の n-gram。全角・半角や大文字・小文字、区切り (空白・ハイフン・中黒) の違いを
+ * 吸収した正規化キーから 2-gram と 3-gram を作り、取引に持たせてインデックスを張る。
+ * 部分一致検索は検索語の 3-gram (2文字なら 2-gram) をすべて含む取引を引き、正規化キーで絞り込む。
+ */
+public final class LicensePlateGrams {
+
+    private LicensePlateGrams() {
+    }
+
+    // "品川 300 あ 12-34" → "品川300あ1234"
+    public static String normalize(String licensePlate) {
+        if (licensePlate == null) {
+            return null;
+        }
+        String normalized = Normalizer.normalize(licensePlate, Normalizer.Form.NFKC).toLowerCase();
+        StringBuilder key = new StringBuilder(normalized.length());
+        normalized.codePoints()
+            .filter(c -> !Character.isWhitespace(c) && c != '-' && c != '・' && c != '·' && c != 'ー')
+            .forEach(key::appendCodePoint);
+        return key.toString();
+    }
+
+    // 取引に持たせる n-gram (正規化キーの 2-gram と 3-gram)
+    public static List<String> index(String key) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (key != null) {
+            addGrams(key, 2, grams);
+            addGrams(key, 3, grams);
+        }
+        return new ArrayList<>(grams);
+    }
+
+    // 検索語の n-gram。1文字以下ならインデックスでは絞れないので空を返す
+    public static List<String> query(String key) {
+        Set<String> grams = new LinkedHashSet<>();
+        int length = key.codePointCount(0, key.length());
+        if (length >= 3) {
+            addGrams(key, 3, grams);
+        } else if (length == 2) {
+            grams.add(key);
+        }
+        return new ArrayList<>(grams);
+    }
+
+    private static void addGrams(String key, int n, Set<String> grams) {
+        int[] codePoints = key.codePoints().toArray();
+        for (int i = 0; i + n <= codePoints.length; i++) {
+            grams.add(new String(codePoints, i, n));
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.docomo.admin.service.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 駐車場の名前と住所のメモリ上の全文検索索引。正規化した文字列の unigram/bigram から転置索引を作り、
+ * 検索語ごとに gram の posting の積で候補を絞ってから、正規化した文字列の部分一致で確定する。
+ *
+ * 順位は検索語ごとの一致箇所 (名前 > 住所、前方一致・完全一致に加点) に、その検索語の希少さ (idf) を掛けて合計する。
+ * 駐車場 ID は文字列で持つ (JPA と MongoDB の両方から使う)。
+ */
+public class ParkingLotSearchIndex {
+
+    public enum Field {
+        NAME, ADDRESS
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, Entry> entries = new HashMap<>();
+    private Map<String, Set<String>> postings = new HashMap<>();
+    // 前方一致 (入力補完) 用: 正規化した名前 → ID
+    private NavigableMap<String, Set<String>> names = new TreeMap<>();
+
+    public void put(String id, String name, String address) {
+        Entry entry = new Entry(id, name, address);
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.put(id, entry);
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(entry, postings, names);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                unindex(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 全件を読み直したときに索引を作り直す (作り終えてから差し替えるので、その間も検索できる)
+    public void replaceAll(Collection<Lot> lots) {
+        Map<String, Entry> newEntries = new HashMap<>();
+        Map<String, Set<String>> newPostings = new HashMap<>();
+        NavigableMap<String, Set<String>> newNames = new TreeMap<>();
+        for (Lot lot : lots) {
+            Entry entry = new Entry(lot.id, lot.name, lot.address);
+            newEntries.put(entry.id, entry);
+            index(entry, newPostings, newNames);
+        }
+        lock.writeLock().lock();
+        try {
+            entries = newEntries;
+            postings = newPostings;
+            names = newNames;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 空白区切りの検索語をすべて含む駐車場を、関連度の高い順に最大 limit 件返す
+    public List<String> search(String query, Set<Field> fields, int limit) {
+        List<String> terms = SearchText.terms(query);
+        if (terms.isEmpty() || fields.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Map<String, Double> scores = null;
+            for (String term : terms) {
+                Set<String> candidates = candidates(term);
+                double idf = Math.log(1.0 + (double) entries.size() / Math.max(1, candidates.size()));
+                Map<String, Double> termScores = new HashMap<>();
+                for (String id : candidates) {
+                    if (scores != null && !scores.containsKey(id)) {
+                        continue;
+                    }
+                    double score = entries.get(id).score(term, fields);
+                    if (score > 0) {
+                        termScores.put(id, (scores != null ? scores.get(id) : 0.0) + score * idf);
+                    }
+                }
+                scores = termScores;
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            Map<String, Double> result = scores;
+            return result.keySet().stream()
+                .sorted(Comparator.<String>comparingDouble(result::get).reversed()
+                    .thenComparingInt(id -> entries.get(id).nameKey.length())
+                    .thenComparing(id -> entries.get(id).nameKey)
+                    .thenComparing(Comparator.naturalOrder()))
+                .limit(limit)
+                .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 入力補完: 名前が入力で始まる駐車場を名前順に返し、足りなければ部分一致の検索結果で埋める
+    public List<String> suggest(String prefix, int limit) {
+        String key = SearchText.normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Set<String> ids = new LinkedHashSet<>();
+        lock.readLock().lock();
+        try {
+            for (Set<String> matched : names.subMap(key, true, key + Character.MAX_VALUE, true).values()) {
+                for (String id : matched) {
+                    ids.add(id);
+                    if (ids.size() >= limit) {
+                        return new ArrayList<>(ids);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (String id : search(prefix, Set.of(Field.NAME, Field.ADDRESS), limit)) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            ids.add(id);
+        }
+        return new ArrayList<>(ids);
+    }
+
+    // 検索語の gram をすべて含む駐車場 (posting の小さい順に積を取る)
+    private Set<String> candidates(String term) {
+        List<Set<String>> lists = new ArrayList<>();
+        for (String gram : SearchText.queryGrams(term)) {
+            Set<String> posting = postings.get(gram);
+            if (posting == null) {
+                return Set.of();
+            }
+            lists.add(posting);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<String> result = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    private static void index(Entry entry, Map<String, Set<String>> postings, NavigableMap<String, Set<String>> names) {
+        for (String gram : entry.grams) {
+            postings.computeIfAbsent(gram, g -> new HashSet<>()).add(entry.id);
+        }
+        names.computeIfAbsent(entry.nameKey, n -> new HashSet<>()).add(entry.id);
+    }
+
+    private void unindex(Entry entry) {
+        for (String gram : entry.grams) {
+            Set<String> posting = postings.get(gram);
+            if (posting != null && posting.remove(entry.id) && posting.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+        Set<String> named = names.get(entry.nameKey);
+        if (named != null && named.remove(entry.id) && named.isEmpty()) {
+            names.remove(entry.nameKey);
+        }
+    }
+
+    public static class Lot {
+
+        private final String id;
+        private final String name;
+        private final String address;
+
+        public Lot(String id, String name, String address) {
+            this.id = id;
+            this.name = name;
+            this.address = address;
+        }
+    }
+
+    private static class Entry {
+
+        final String id;
+        final String nameKey;
+        final String addressKey;
+        final Set<String> grams;
+
+        Entry(String id, String name, String address) {
+            this.id = id;
+            this.nameKey = SearchText.normalize(name);
+            this.addressKey = SearchText.normalize(address);
+            Set<String> grams = new HashSet<>(SearchText.indexGrams(nameKey));
+            grams.addAll(SearchText.indexGrams(addressKey));
+            this.grams = Collections.unmodifiableSet(grams);
+        }
+
+        // 検索語が一致しなければ 0
+        double score(String term, Set<Field> fields) {
+            double score = 0;
+            if (fields.contains(Field.NAME)) {
+                score += fieldScore(nameKey, term, 3.0);
+            }
+            if (fields.contains(Field.ADDRESS)) {
+                score += fieldScore(addressKey, term, 1.0);
+            }
+            return score;
+        }
+
+        private static double fieldScore(String key, String term, double weight) {
+            if (key.equals(term)) {
+                return weight * 3;
+            }
+            if (key.startsWith(term)) {
+                return weight * 2;
+            }
+            return key.contains(term) ? weight : 0;
+        }
+    }
+}
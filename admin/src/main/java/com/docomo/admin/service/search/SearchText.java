@@ -0,0 +1,71 @@
+package com.docomo.admin.service.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 日本語テキストの検索用の正規化と bigram 分割。
+ * 全角・半角 (NFKC)、大文字・小文字、カタカナ・ひらがなの違いを吸収し、空白や記号は取り除く。
+ */
+public final class SearchText {
+
+    private SearchText() {
+    }
+
+    // "千代田区 丸ノ内１－１" → "千代田区丸の内11"
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase();
+        StringBuilder key = new StringBuilder(normalized.length());
+        normalized.codePoints()
+            .filter(Character::isLetterOrDigit)
+            .map(c -> c >= 'ァ' && c <= 'ヶ' ? c - ('ァ' - 'ぁ') : c)
+            .forEach(key::appendCodePoint);
+        return key.toString();
+    }
+
+    // 空白で区切られた検索語をそれぞれ正規化する (空になったものは除く)
+    public static List<String> terms(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (query != null) {
+            for (String term : query.trim().split("[\\s\\u3000]+")) {
+                String key = normalize(term);
+                if (!key.isEmpty()) {
+                    terms.add(key);
+                }
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    // 索引に登録する gram (1文字の検索語にも答えられるよう unigram も含める)
+    public static Set<String> indexGrams(String key) {
+        Set<String> grams = new LinkedHashSet<>();
+        int[] codePoints = key.codePoints().toArray();
+        for (int i = 0; i < codePoints.length; i++) {
+            grams.add(new String(codePoints, i, 1));
+            if (i + 1 < codePoints.length) {
+                grams.add(new String(codePoints, i, 2));
+            }
+        }
+        return grams;
+    }
+
+    // 検索語の gram (2文字以上なら bigram、1文字ならその文字)
+    public static Set<String> queryGrams(String term) {
+        int[] codePoints = term.codePoints().toArray();
+        if (codePoints.length == 1) {
+            return Set.of(term);
+        }
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            grams.add(new String(codePoints, i, 2));
+        }
+        return grams;
+    }
+}
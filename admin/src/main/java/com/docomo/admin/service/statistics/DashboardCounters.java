@@ -0,0 +1,115 @@
+package com.docomo.admin.service.statistics;
+
+import com.docomo.admin.entity.ParkingLot.ParkingLotStatus;
+import com.docomo.admin.entity.User.UserRole;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ダッシュボード用のインメモリ集計値。
+ * 件数はロール/ステータスごとのカウンタ、売上は入庫日ごとの合計として保持する。
+ */
+public class DashboardCounters {
+
+    private final Map<UserRole, AtomicLong> usersByRole = new EnumMap<>(UserRole.class);
+    private final AtomicLong usersWithoutRole = new AtomicLong();
+    private final Map<ParkingLotStatus, AtomicLong> parkingLotsByStatus = new EnumMap<>(ParkingLotStatus.class);
+    private final AtomicLong parkingLotsWithoutStatus = new AtomicLong();
+    private final Map<LocalDate, BigDecimal> dailyRevenue = new ConcurrentHashMap<>();
+
+    public DashboardCounters() {
+        for (UserRole role : UserRole.values()) {
+            usersByRole.put(role, new AtomicLong());
+        }
+        for (ParkingLotStatus status : ParkingLotStatus.values()) {
+            parkingLotsByStatus.put(status, new AtomicLong());
+        }
+    }
+
+    public void adjustUsers(UserRole role, long delta) {
+        userCounter(role).addAndGet(delta);
+    }
+
+    public void adjustParkingLots(ParkingLotStatus status, long delta) {
+        parkingLotCounter(status).addAndGet(delta);
+    }
+
+    public void adjustRevenue(LocalDate day, BigDecimal delta) {
+        if (day == null || delta == null || delta.signum() == 0) {
+            return;
+        }
+        dailyRevenue.merge(day, delta, BigDecimal::add);
+    }
+
+    public long getUserCount(UserRole role) {
+        return userCounter(role).get();
+    }
+
+    public long getTotalUsers() {
+        long total = usersWithoutRole.get();
+        for (AtomicLong counter : usersByRole.values()) {
+            total += counter.get();
+        }
+        return total;
+    }
+
+    public long getParkingLotCount(ParkingLotStatus status) {
+        return parkingLotCounter(status).get();
+    }
+
+    public long getTotalParkingLots() {
+        long total = parkingLotsWithoutStatus.get();
+        for (AtomicLong counter : parkingLotsByStatus.values()) {
+            total += counter.get();
+        }
+        return total;
+    }
+
+    public BigDecimal getRevenue(LocalDate day) {
+        return dailyRevenue.getOrDefault(day, BigDecimal.ZERO);
+    }
+
+    public BigDecimal getRevenue(YearMonth month, LocalDate until) {
+        // 保持しているのは当月分の日数だけなので高々31件の走査で済む
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map.Entry<LocalDate, BigDecimal> entry : dailyRevenue.entrySet()) {
+            LocalDate day = entry.getKey();
+            if (YearMonth.from(day).equals(month) && !day.isAfter(until)) {
+                total = total.add(entry.getValue());
+            }
+        }
+        return total;
+    }
+
+    public void resetUsers(Map<UserRole, Long> counts, long withoutRole) {
+        for (UserRole role : UserRole.values()) {
+            usersByRole.get(role).set(counts.getOrDefault(role, 0L));
+        }
+        usersWithoutRole.set(withoutRole);
+    }
+
+    public void resetParkingLots(Map<ParkingLotStatus, Long> counts, long withoutStatus) {
+        for (ParkingLotStatus status : ParkingLotStatus.values()) {
+            parkingLotsByStatus.get(status).set(counts.getOrDefault(status, 0L));
+        }
+        parkingLotsWithoutStatus.set(withoutStatus);
+    }
+
+    public void resetRevenue(Map<LocalDate, BigDecimal> revenueByDay) {
+        dailyRevenue.keySet().retainAll(revenueByDay.keySet());
+        dailyRevenue.putAll(revenueByDay);
+    }
+
+    private AtomicLong userCounter(UserRole role) {
+        return role != null ? usersByRole.get(role) : usersWithoutRole;
+    }
+
+    private AtomicLong parkingLotCounter(ParkingLotStatus status) {
+        return status != null ? parkingLotsByStatus.get(status) : parkingLotsWithoutStatus;
+    }
+}
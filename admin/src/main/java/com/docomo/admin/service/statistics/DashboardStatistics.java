@@ -0,0 +1,13 @@
+package com.docomo.admin.service.statistics;
+
+import lombok.Value;
+import java.math.BigDecimal;
+
+@Value
+public class DashboardStatistics {
+    long totalUsers;
+    long totalParkingLots;
+    long activeParkingLots;
+    BigDecimal todayRevenue;
+    BigDecimal monthlyRevenue;
+}
@@ -0,0 +1,153 @@
+package com.docomo.admin.service.statistics;
+
+import com.docomo.admin.entity.ParkingLot.ParkingLotStatus;
+import com.docomo.admin.entity.User.UserRole;
+import com.docomo.admin.repository.ParkingLotRepository;
+import com.docomo.admin.repository.TransactionRepository;
+import com.docomo.admin.repository.UserRepository;
+import com.docomo.admin.service.revenue.RevenueContribution;
+import com.docomo.admin.service.support.AfterCommit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DashboardStatisticsService {
+
+    private final UserRepository userRepository;
+    private final ParkingLotRepository parkingLotRepository;
+    private final TransactionRepository transactionRepository;
+
+    private final DashboardCounters counters = new DashboardCounters();
+
+    public DashboardStatistics getStatistics() {
+        LocalDate today = LocalDate.now();
+        return new DashboardStatistics(
+            counters.getTotalUsers(),
+            counters.getTotalParkingLots(),
+            counters.getParkingLotCount(ParkingLotStatus.ACTIVE),
+            counters.getRevenue(today),
+            counters.getRevenue(YearMonth.from(today), today)
+        );
+    }
+
+    public long getUserCount(UserRole role) {
+        return counters.getUserCount(role);
+    }
+
+    public long getParkingLotCount(ParkingLotStatus status) {
+        return counters.getParkingLotCount(status);
+    }
+
+    // ユーザーの増減
+
+    public void userCreated(UserRole role) {
+        AfterCommit.run(() -> counters.adjustUsers(role, 1));
+    }
+
+    public void userRoleChanged(UserRole oldRole, UserRole newRole) {
+        if (oldRole == newRole) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            counters.adjustUsers(oldRole, -1);
+            counters.adjustUsers(newRole, 1);
+        });
+    }
+
+    public void userDeleted(UserRole role) {
+        AfterCommit.run(() -> counters.adjustUsers(role, -1));
+    }
+
+    // 駐車場の増減
+
+    public void parkingLotCreated(ParkingLotStatus status) {
+        AfterCommit.run(() -> counters.adjustParkingLots(status, 1));
+    }
+
+    public void parkingLotStatusChanged(ParkingLotStatus oldStatus, ParkingLotStatus newStatus) {
+        if (oldStatus == newStatus) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            counters.adjustParkingLots(oldStatus, -1);
+            counters.adjustParkingLots(newStatus, 1);
+        });
+    }
+
+    public void parkingLotDeleted(ParkingLotStatus status) {
+        AfterCommit.run(() -> counters.adjustParkingLots(status, -1));
+    }
+
+    // 売上の増減 (入庫日基準・COMPLETED のみ計上)
+
+    public void revenueChanged(RevenueContribution before, RevenueContribution after) {
+        AfterCommit.run(() -> {
+            if (before.isCompleted()) {
+                counters.adjustRevenue(before.getEntryTime().toLocalDate(), before.getAmount().negate());
+            }
+            if (after.isCompleted()) {
+                counters.adjustRevenue(after.getEntryTime().toLocalDate(), after.getAmount());
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        reconcile();
+    }
+
+    // 差分更新のずれ (ロールバックや直接のDB操作) を定期的にDBの値で補正する
+    @Scheduled(fixedDelayString = "${admin.statistics.reconcile-interval:PT5M}",
+               initialDelayString = "${admin.statistics.reconcile-interval:PT5M}")
+    @Transactional(readOnly = true)
+    public void reconcile() {
+        Map<UserRole, Long> users = new EnumMap<>(UserRole.class);
+        long usersWithoutRole = 0;
+        for (Object[] row : userRepository.countGroupByRole()) {
+            if (row[0] == null) {
+                usersWithoutRole = (Long) row[1];
+            } else {
+                users.put((UserRole) row[0], (Long) row[1]);
+            }
+        }
+
+        Map<ParkingLotStatus, Long> parkingLots = new EnumMap<>(ParkingLotStatus.class);
+        long parkingLotsWithoutStatus = 0;
+        for (Object[] row : parkingLotRepository.countGroupByStatus()) {
+            if (row[0] == null) {
+                parkingLotsWithoutStatus = (Long) row[1];
+            } else {
+                parkingLots.put((ParkingLotStatus) row[0], (Long) row[1]);
+            }
+        }
+
+        LocalDate startOfMonth = LocalDate.now().withDayOfMonth(1);
+        Map<LocalDate, BigDecimal> revenue = new HashMap<>();
+        List<Object[]> rows = transactionRepository.getDailyRevenueSince(startOfMonth.atStartOfDay());
+        for (Object[] row : rows) {
+            LocalDate day = LocalDate.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue(), ((Number) row[2]).intValue());
+            if (row[3] != null) {
+                revenue.put(day, (BigDecimal) row[3]);
+            }
+        }
+
+        counters.resetUsers(users, usersWithoutRole);
+        counters.resetParkingLots(parkingLots, parkingLotsWithoutStatus);
+        counters.resetRevenue(revenue);
+        log.debug("Dashboard statistics reconciled: users={}, parkingLots={}", users, parkingLots);
+    }
+}
@@ -0,0 +1,30 @@
+package com.docomo.admin.service.version;
+
+import com.docomo.admin.service.support.AfterCommit;
+import org.springframework.stereotype.Service;
+
+/**
+ * 画面・API の条件付き GET (ETag / Last-Modified) 用の版。各サービスが DB を更新したときに通知する。
+ * 版を進めるのはコミット後 (新しい版で古いデータを返さないように)。
+ * 版はノードごとに持つので、他のノードでの更新は反映されない (ConditionalGet が一定間隔で ETag を切り替える)。
+ */
+@Service
+public class EntityVersionService {
+
+    public static final String PARKING_LOTS = "parking-lots";
+    public static final String USERS = "users";
+
+    private final VersionTracker tracker = new VersionTracker();
+
+    public void changed(String collection, Object id) {
+        AfterCommit.run(() -> tracker.changed(collection, id));
+    }
+
+    public VersionStamp getVersion(String collection) {
+        return tracker.get(collection);
+    }
+
+    public VersionStamp getVersion(String collection, Object id) {
+        return tracker.get(collection, id);
+    }
+}
@@ -0,0 +1,12 @@
+package com.docomo.admin.service.version;
+
+import lombok.Value;
+import java.time.Instant;
+
+// 一覧・エンティティの版。epoch はプロセスごとに変わるので、再起動や別ノードの版とは一致しない
+@Value
+public class VersionStamp {
+    long epoch;
+    long version;
+    Instant lastModified;
+}
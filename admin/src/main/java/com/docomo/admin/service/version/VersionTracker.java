@@ -0,0 +1,75 @@
+package com.docomo.admin.service.version;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一覧 (collection) ごとの版番号。エンティティが変わるたびに一覧の版を進め、その値をエンティティの版としても記録する。
+ * 版番号は一覧の中で単調増加なので、削除後に同じ版が再び現れることはない。
+ * 変更されていない一覧・エンティティは版 0 (更新日時は起動時刻)。
+ */
+public class VersionTracker {
+
+    private final Clock clock;
+    private final long epoch;
+    private final Instant started;
+    private final Map<String, Versions> collections = new ConcurrentHashMap<>();
+
+    public VersionTracker() {
+        this(Clock.systemUTC());
+    }
+
+    VersionTracker(Clock clock) {
+        this.clock = clock;
+        this.epoch = new SecureRandom().nextLong();
+        this.started = clock.instant();
+    }
+
+    public void changed(String collection, Object id) {
+        Versions versions = versions(collection);
+        VersionStamp stamp = versions.next();
+        versions.entities.put(id, stamp);
+    }
+
+    public VersionStamp get(String collection) {
+        return versions(collection).current;
+    }
+
+    public VersionStamp get(String collection, Object id) {
+        Versions versions = versions(collection);
+        VersionStamp stamp = versions.entities.get(id);
+        return stamp != null ? stamp : versions.initial;
+    }
+
+    private Versions versions(String collection) {
+        return collections.computeIfAbsent(collection, name -> new Versions(new VersionStamp(epoch, 0, started)));
+    }
+
+    private class Versions {
+
+        final AtomicLong counter = new AtomicLong();
+        final Map<Object, VersionStamp> entities = new ConcurrentHashMap<>();
+        final VersionStamp initial;
+        volatile VersionStamp current;
+
+        Versions(VersionStamp initial) {
+            this.initial = initial;
+            this.current = initial;
+        }
+
+        VersionStamp next() {
+            VersionStamp stamp = new VersionStamp(epoch, counter.incrementAndGet(), clock.instant());
+            synchronized (this) {
+                // 同時に進めた場合も大きい方を残す
+                if (stamp.getVersion() > current.getVersion()) {
+                    current = stamp;
+                }
+            }
+            return stamp;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.docomo.admin.controller;
+
+import com.docomo.admin.entity.User;
+import com.docomo.admin.service.UserService;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// トークン認証 (セッションを作らず、CSRF トークンは Cookie) で確かめる
+@SpringBootTest(properties = {
+    "admin.security.token.enabled=true",
+    "admin.security.token.secret=c2VjcmV0LWtleS1mb3ItdGVzdHMtb25seS0zMi1ieXRlcyEh"
+})
+@AutoConfigureMockMvc
+@WithMockUser(username = "operator", roles = "ADMIN")
+class ConditionalGetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void testUserListIsNotRenderedUntilUsersChange() throws Exception {
+        MvcResult first = mockMvc.perform(get("/users")).andExpect(status().isOk()).andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        assertNotNull(first.getResponse().getHeader(HttpHeaders.LAST_MODIFIED));
+        assertEquals("private, no-cache", first.getResponse().getHeader(HttpHeaders.CACHE_CONTROL));
+        assertNull(first.getRequest().getSession(false));
+        // ブラウザは CSRF トークンの Cookie も送り返す
+        Cookie[] cookies = first.getResponse().getCookies();
+
+        MvcResult cached = mockMvc.perform(get("/users").cookie(cookies).header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified()).andReturn();
+        assertEquals(0, cached.getResponse().getContentLength());
+
+        User user = new User();
+        user.setUsername("etag-test");
+        user.setPassword("password");
+        user.setEmail("etag-test@example.com");
+        user.setFullName("ETag テスト");
+        user.setRole(User.UserRole.OPERATOR);
+        User created = userService.createUser(user);
+        try {
+            MvcResult changed = mockMvc.perform(get("/users").cookie(cookies).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk()).andReturn();
+            assertNotEquals(etag, changed.getResponse().getHeader(HttpHeaders.ETAG));
+            assertTrue(changed.getResponse().getContentAsString().contains("etag-test"));
+        } finally {
+            userService.deleteUser(created.getId());
+        }
+    }
+
+    @Test
+    void testDashboardFollowsStatistics() throws Exception {
+        MvcResult first = mockMvc.perform(get("/")).andExpect(status().isOk()).andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        Cookie[] cookies = first.getResponse().getCookies();
+        mockMvc.perform(get("/").cookie(cookies).header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified());
+        // 別のユーザーの画面は共有しない
+        mockMvc.perform(get("/").cookie(cookies).header(HttpHeaders.IF_NONE_MATCH, etag)
+                .with(user("other")))
+            .andExpect(status().isOk());
+    }
+}
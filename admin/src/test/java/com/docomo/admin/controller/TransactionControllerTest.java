@@ -0,0 +1,94 @@
+package com.docomo.admin.controller;
+
+import com.docomo.admin.repository.support.KeysetCursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+@SpringBootTest(properties = {
+    "admin.security.token.enabled=true",
+    "admin.security.token.secret=c2VjcmV0LWtleS1mb3ItdGVzdHMtb25seS0zMi1ieXRlcyEh"
+})
+@AutoConfigureMockMvc
+@WithMockUser(username = "operator", roles = "ADMIN")
+class TransactionControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testValidCursorIsAccepted() throws Exception {
+        String cursor = new KeysetCursor(LocalDateTime.of(2024, 6, 1, 9, 0), "42").encode();
+        mockMvc.perform(get("/transactions/api").param("cursor", cursor)).andExpect(status().isOk());
+        mockMvc.perform(get("/transactions").param("cursor", cursor)).andExpect(status().isOk());
+    }
+
+    @Test
+    void testTamperedCursorIsBadRequest() throws Exception {
+        for (String cursor : new String[] {"not*base64", encode("2024-06-01T09:00|abc"), encode("yesterday|42"),
+                encode("2024-06-01T09:00|"), encode("no-separator")}) {
+            mockMvc.perform(get("/transactions/api").param("cursor", cursor))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid cursor"));
+            mockMvc.perform(get("/transactions").param("cursor", cursor))
+                .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Test
+    void testGzipFollowsAcceptEncodingQuality() {
+        assertTrue(TransactionController.acceptsGzip("gzip"));
+        assertTrue(TransactionController.acceptsGzip("deflate, gzip;q=0.5"));
+        assertTrue(TransactionController.acceptsGzip("identity, *;q=0.1"));
+        assertTrue(TransactionController.acceptsGzip("GZIP; Q=1.0"));
+        assertFalse(TransactionController.acceptsGzip(null));
+        assertFalse(TransactionController.acceptsGzip("identity"));
+        assertFalse(TransactionController.acceptsGzip("gzip;q=0"));
+        assertFalse(TransactionController.acceptsGzip("gzip;q=0.000, identity"));
+        assertFalse(TransactionController.acceptsGzip("*, gzip;q=0"));
+        assertFalse(TransactionController.acceptsGzip("gzip;q=abc"));
+    }
+
+    @Test
+    void testExportCompressionFollowsAcceptEncoding() throws Exception {
+        MvcResult started = mockMvc.perform(get("/transactions/export")
+                .param("from", "2024-06-01T00:00:00").param("to", "2024-06-02T00:00:00")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+            .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT_ENCODING)));
+
+        started = mockMvc.perform(get("/transactions/export")
+                .param("from", "2024-06-01T00:00:00").param("to", "2024-06-02T00:00:00")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0.8"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+            .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT_ENCODING)));
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,176 @@
+package com.docomo.admin.repository;
+
+import com.docomo.admin.entity.ParkingLot;
+import com.docomo.admin.entity.Transaction;
+import com.docomo.admin.entity.User;
+import com.docomo.admin.repository.projection.TransactionListItem;
+import com.docomo.admin.service.ParkingLotCacheService;
+import com.docomo.admin.service.ParkingLotOccupancyService;
+import com.docomo.admin.service.occupancy.OccupancyHistoryService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// 二次キャッシュ・クエリキャッシュはコミット済みのデータにしか効かないので、テストのトランザクションは使わない
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EntityCacheTest {
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ParkingLotRepository parkingLotRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Statistics statistics;
+    private final List<ParkingLot> parkingLots = new ArrayList<>();
+    private final List<User> users = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        LocalDateTime baseTime = LocalDateTime.of(2024, 3, 1, 9, 0);
+        for (int i = 0; i < 3; i++) {
+            ParkingLot parkingLot = new ParkingLot();
+            parkingLot.setName("キャッシュ駐車場" + i);
+            parkingLot.setAddress("東京都港区" + i);
+            parkingLot.setTotalSpaces(100);
+            parkingLot.setAvailableSpaces(100);
+            parkingLot.setStatus(ParkingLot.ParkingLotStatus.ACTIVE);
+            parkingLots.add(parkingLotRepository.save(parkingLot));
+
+            User user = new User();
+            user.setUsername("cache-user" + i);
+            user.setPassword("$2a$10$hash");
+            user.setEmail("cache-user" + i + "@example.com");
+            user.setRole(User.UserRole.OPERATOR);
+            users.add(userRepository.save(user));
+        }
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setParkingLot(parkingLots.get(i % 3));
+            transaction.setUser(users.get(i % 3));
+            transaction.setLicensePlate("品川 300 か " + i);
+            transaction.setEntryTime(baseTime.plusMinutes(i));
+            transaction.setAmount(new BigDecimal("500.00"));
+            transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
+            transactions.add(transaction);
+        }
+        transactionRepository.saveAll(transactions);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAllInBatch();
+        parkingLotRepository.deleteAllInBatch(parkingLots);
+        userRepository.deleteAllInBatch(users);
+    }
+
+    @Test
+    void testRepeatedPagesReadParkingLotsAndUsersFromCache() {
+        long cold = statementsFor(this::renderPages);
+        long warm = statementsFor(this::renderPages);
+        // 一覧 1 + 取引 10 件の読み込み。駐車場・ユーザー・プルダウン・ログインの参照は SQL を出さない
+        assertEquals(11, warm);
+        assertEquals(warm + 3 + 3 + 1 + 1, cold);
+        assertTrue(statistics.getDomainDataRegionStatistics("parking-lots").getHitCount() > 0);
+        assertTrue(statistics.getDomainDataRegionStatistics("users").getHitCount() > 0);
+        assertTrue(statistics.getQueryCacheHitCount() > 0);
+    }
+
+    @Test
+    void testUpdatesInvalidateCachedEntitiesAndQueries() {
+        ParkingLot parkingLot = parkingLots.get(0);
+        assertEquals(3, statusCount(ParkingLot.ParkingLotStatus.ACTIVE));
+        assertEquals(parkingLot.getName(), parkingLotRepository.findById(parkingLot.getId()).orElseThrow().getName());
+
+        parkingLot = parkingLotRepository.findById(parkingLot.getId()).orElseThrow();
+        parkingLot.setStatus(ParkingLot.ParkingLotStatus.MAINTENANCE);
+        parkingLotRepository.save(parkingLot);
+        assertEquals(2, statusCount(ParkingLot.ParkingLotStatus.ACTIVE));
+
+        // 一括 UPDATE はリージョンごと無効化される
+        Long id = parkingLot.getId();
+        transactionTemplate.executeWithoutResult(status -> parkingLotRepository.decrementAvailableSpaces(id, 1));
+        assertEquals(99, parkingLotRepository.findById(parkingLot.getId()).orElseThrow().getAvailableSpaces());
+    }
+
+    @Test
+    void testOccupancyFlushKeepsParkingLotsCached() {
+        ParkingLotOccupancyService occupancyService = new ParkingLotOccupancyService(parkingLotRepository,
+            mock(OccupancyHistoryService.class), mock(ParkingLotCacheService.class), transactionManager);
+        statementsFor(this::renderPages);
+        long warm = statementsFor(this::renderPages);
+
+        // ゲートの入出庫を書き戻した後も、駐車場は変わったエントリが書き換わるだけで SQL を出さずに読める
+        Long id = parkingLots.get(0).getId();
+        occupancyService.enter(id);
+        occupancyService.enter(id);
+        occupancyService.exit(id);
+        occupancyService.enter(parkingLots.get(1).getId());
+        occupancyService.flush();
+
+        statistics.clear();
+        renderPages();
+        // プルダウンのクエリキャッシュだけは parking_lots の更新で無効になり、1回読み直す
+        assertEquals(warm + 1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getDomainDataRegionStatistics("parking-lots").getMissCount());
+        assertEquals(99, parkingLotRepository.findById(id).orElseThrow().getAvailableSpaces());
+        assertEquals(99, parkingLotRepository.findById(parkingLots.get(1).getId()).orElseThrow().getAvailableSpaces());
+    }
+
+    // 取引一覧 (駐車場のプルダウン付き)・取引 10 件の表示 (駐車場とユーザーの関連)・ログインユーザーの参照
+    private void renderPages() {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<TransactionListItem> page = transactionRepository.findPage(null, null, 10);
+            assertFalse(parkingLotRepository.findAllByOrderByNameAsc().isEmpty());
+            for (TransactionListItem item : page) {
+                Transaction transaction = transactionRepository.findById(item.getId()).orElseThrow();
+                assertNotNull(transaction.getParkingLot().getName());
+                assertNotNull(transaction.getUser().getUsername());
+            }
+            assertTrue(userRepository.findByUsername("cache-user0").isPresent());
+        });
+    }
+
+    private long statementsFor(Runnable action) {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private int statusCount(ParkingLot.ParkingLotStatus status) {
+        return (int) parkingLotRepository.findByStatus(status).stream()
+            .filter(parkingLot -> parkingLots.stream().anyMatch(own -> own.getId().equals(parkingLot.getId())))
+            .count();
+    }
+}
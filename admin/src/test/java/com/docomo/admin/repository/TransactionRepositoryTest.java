@@ -0,0 +1,118 @@
+package com.docomo.admin.repository;
+
+import com.docomo.admin.entity.ParkingLot;
+import com.docomo.admin.entity.Transaction;
+import com.docomo.admin.entity.User;
+import com.docomo.admin.repository.projection.TransactionListItem;
+import com.docomo.admin.repository.support.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import static org.junit.jupiter.api.Assertions.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class TransactionRepositoryTest {
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private LocalDateTime baseTime;
+
+    @BeforeEach
+    void setUp() {
+        baseTime = LocalDateTime.of(2024, 3, 1, 9, 0);
+
+        // 駐車場3件・ユーザー3件に取引を分散させ、行ごとに関連を読めば N+1 になるデータを作る
+        for (int i = 0; i < 3; i++) {
+            ParkingLot parkingLot = new ParkingLot();
+            parkingLot.setName("駐車場" + i);
+            parkingLot.setAddress("東京都千代田区" + i);
+            parkingLot.setTotalSpaces(100);
+            parkingLot.setAvailableSpaces(100);
+            parkingLot.setStatus(ParkingLot.ParkingLotStatus.ACTIVE);
+            entityManager.persist(parkingLot);
+
+            User user = new User();
+            user.setUsername("user" + i);
+            user.setPassword("$2a$10$hash");
+            user.setEmail("user" + i + "@example.com");
+            user.setRole(User.UserRole.OPERATOR);
+            entityManager.persist(user);
+
+            for (int j = 0; j < 10; j++) {
+                Transaction transaction = new Transaction();
+                transaction.setParkingLot(parkingLot);
+                transaction.setUser(user);
+                transaction.setLicensePlate("品川 300 あ " + i + j);
+                transaction.setEntryTime(baseTime.plusMinutes(j));
+                transaction.setAmount(new BigDecimal("500.00"));
+                transaction.setStatus(j % 2 == 0 ? Transaction.TransactionStatus.COMPLETED : Transaction.TransactionStatus.PENDING);
+                entityManager.persist(transaction);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void testFindPageRunsOneQueryPerPage() {
+        KeysetCursor cursor = null;
+        int pages = 0;
+        int rows = 0;
+        while (true) {
+            statistics.clear();
+            List<TransactionListItem> page = transactionRepository.findPage(null, cursor, 7);
+            assertEquals(1, statistics.getPrepareStatementCount());
+            assertEquals(0, statistics.getEntityLoadCount());
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(item -> assertNotNull(item.getParkingLotName()));
+            page.forEach(item -> assertNotNull(item.getUserId()));
+            rows += page.size();
+            pages++;
+            TransactionListItem last = page.get(page.size() - 1);
+            cursor = new KeysetCursor(last.getEntryTime(), String.valueOf(last.getId()));
+        }
+        assertEquals(30, rows);
+        assertEquals(5, pages);
+    }
+
+    @Test
+    void testFindByStatusFetchesParkingLotInSameQuery() {
+        List<Transaction> transactions = transactionRepository.findByStatus(Transaction.TransactionStatus.COMPLETED);
+        assertEquals(15, transactions.size());
+        transactions.forEach(transaction -> assertTrue(transaction.getParkingLot().getName().startsWith("駐車場")));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        // ユーザー (パスワードハッシュを含む) は読み込まない
+        transactions.forEach(transaction -> assertFalse(Hibernate.isInitialized(transaction.getUser())));
+    }
+
+    @Test
+    void testFindByEntryTimeBetweenFetchesParkingLotInSameQuery() {
+        List<Transaction> transactions = transactionRepository.findByEntryTimeBetween(baseTime, baseTime.plusMinutes(4));
+        assertEquals(15, transactions.size());
+        transactions.forEach(transaction -> assertNotNull(transaction.getParkingLot().getName()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
@@ -0,0 +1,182 @@
+package com.docomo.admin.repository.mongo;
+
+import com.docomo.admin.entity.mongo.MongoParkingLot;
+import com.docomo.admin.entity.mongo.MongoTransaction;
+import com.docomo.admin.entity.mongo.MongoUser;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 宣言したインデックス (@CompoundIndex) がリポジトリの検索の形に合っているかを、サーバーなしで確認する。
+ * 等価条件のフィールドがキーの先頭に並び、その後にソート、範囲条件の順で続くものがあれば使えるとみなす。
+ * 実際のプランの確認は MongoIndexExplainTest (explain に対応したサーバーでのみ実行) で行う。
+ */
+class MongoIndexDeclarationTest {
+
+    private static final List<String> PAGE_SORT = List.of("entry_time:-1", "_id:-1");
+
+    private static IndexResolver resolver;
+
+    @BeforeAll
+    static void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        mappingContext.setInitialEntitySet(Set.of(MongoTransaction.class, MongoParkingLot.class, MongoUser.class));
+        mappingContext.afterPropertiesSet();
+        resolver = IndexResolver.create(mappingContext);
+    }
+
+    @Test
+    void testTransactionQueriesHaveIndexes() {
+        assertCovered(MongoTransaction.class, List.of("parking_lot_id"), null, List.of());
+        assertCovered(MongoTransaction.class, List.of("user_id"), null, List.of());
+        assertCovered(MongoTransaction.class, List.of("status"), null, List.of());
+        assertCovered(MongoTransaction.class, List.of("payment_method"), null, List.of());
+        assertCovered(MongoTransaction.class, List.of("event_id"), null, List.of());
+        assertCovered(MongoTransaction.class, List.of(), "entry_time", List.of());
+        assertCovered(MongoTransaction.class, List.of(), "exit_time", List.of());
+        assertCovered(MongoTransaction.class, List.of(), "created_at", List.of());
+        assertCovered(MongoTransaction.class, List.of(), "amount", List.of());
+        assertCovered(MongoTransaction.class, List.of("parking_lot_id", "status"), null, List.of());
+        assertCovered(MongoTransaction.class, List.of("user_id", "status"), null, List.of());
+        assertCovered(MongoTransaction.class, List.of("exit_time"), null, List.of());
+        // searchByLicensePlate / searchByLicensePlatePrefix
+        assertCovered(MongoTransaction.class, List.of("license_plate_grams"), null, List.of());
+        assertCovered(MongoTransaction.class, List.of(), "license_plate_key", List.of());
+    }
+
+    @Test
+    void testTransactionPageQueriesHaveIndexes() {
+        assertCovered(MongoTransaction.class, List.of(), null, PAGE_SORT);
+        assertCovered(MongoTransaction.class, List.of("parking_lot_id"), null, PAGE_SORT);
+        assertCovered(MongoTransaction.class, List.of("status"), null, PAGE_SORT);
+        assertCovered(MongoTransaction.class, List.of("payment_method"), null, PAGE_SORT);
+        assertCovered(MongoTransaction.class, List.of("parking_lot_id", "status"), null, PAGE_SORT);
+        // 期間指定つきの一覧も entry_time の範囲でインデックスを読み進められる
+        assertCovered(MongoTransaction.class, List.of("status"), "entry_time", PAGE_SORT);
+    }
+
+    @Test
+    void testParkingLotQueriesHaveIndexes() {
+        assertCovered(MongoParkingLot.class, List.of("status"), null, List.of());
+        assertCovered(MongoParkingLot.class, List.of(), "available_spaces", List.of());
+        assertCovered(MongoParkingLot.class, List.of("status"), "available_spaces", List.of());
+        assertCovered(MongoParkingLot.class, List.of(), "hourly_rate", List.of());
+        assertCovered(MongoParkingLot.class, List.of(), "daily_rate", List.of());
+        assertCovered(MongoParkingLot.class, List.of(), "total_spaces", List.of());
+        // findByStatusAndAvailableSpacesGreaterThanAndLocationNear
+        Document near = findIndex(MongoParkingLot.class, "location_status_available_spaces");
+        assertEquals("2dsphere", near.get("location"));
+        assertEquals(List.of("location", "status", "available_spaces"), new ArrayList<>(near.keySet()));
+    }
+
+    @Test
+    void testUserQueriesHaveIndexes() {
+        assertCovered(MongoUser.class, List.of("username"), null, List.of());
+        assertCovered(MongoUser.class, List.of("email"), null, List.of());
+        assertCovered(MongoUser.class, List.of("role"), null, List.of());
+        assertCovered(MongoUser.class, List.of(), "created_at", List.of());
+    }
+
+    @Test
+    void testUniqueAndPartialOptions() {
+        assertTrue(options(MongoTransaction.class, "event_id").getBoolean("unique", false));
+        assertTrue(options(MongoTransaction.class, "event_id").getBoolean("sparse", false));
+        assertNotNull(options(MongoTransaction.class, "amount").get("partialFilterExpression"));
+        assertTrue(options(MongoUser.class, "username").getBoolean("unique", false));
+        assertTrue(options(MongoUser.class, "email").getBoolean("unique", false));
+        assertNotNull(options(MongoUser.class, "email").get("partialFilterExpression"));
+    }
+
+    @Test
+    void testIndexNamesAreUnique() {
+        for (Class<?> type : List.of(MongoTransaction.class, MongoParkingLot.class, MongoUser.class)) {
+            List<String> names = indexes(type).stream().map(index -> index.getIndexOptions().getString("name")).collect(Collectors.toList());
+            assertEquals(names.size(), new HashSet<>(names).size(), type.getSimpleName() + ": " + names);
+        }
+    }
+
+    // equality -> sort -> range の順にキーを辿れるインデックスがあるか
+    // (sort は "field:1" / "field:-1"。逆向きに読めるので全体が逆でもよい)
+    private void assertCovered(Class<?> type, List<String> equality, String range, List<String> sort) {
+        List<String> matched = new ArrayList<>();
+        for (IndexDefinition index : indexes(type)) {
+            if (covers(index.getIndexKeys(), equality, range, sort)) {
+                matched.add(index.getIndexOptions().getString("name"));
+            }
+        }
+        assertFalse(matched.isEmpty(), type.getSimpleName() + " has no index for equality=" + equality
+            + " range=" + range + " sort=" + sort + ", declared: " + indexes(type).stream()
+                .map(IndexDefinition::getIndexKeys).collect(Collectors.toList()));
+    }
+
+    private static boolean covers(Document keys, List<String> equality, String range, List<String> sort) {
+        List<Map.Entry<String, Object>> entries = new ArrayList<>(keys.entrySet());
+        int position = 0;
+        Set<String> remaining = new HashSet<>(equality);
+        while (!remaining.isEmpty()) {
+            if (position >= entries.size() || !remaining.remove(entries.get(position).getKey())) {
+                return false;
+            }
+            position++;
+        }
+
+        Boolean reversed = null;
+        for (String field : sort) {
+            String[] parts = field.split(":");
+            if (position >= entries.size() || !entries.get(position).getKey().equals(parts[0])
+                || !(entries.get(position).getValue() instanceof Number direction)) {
+                return false;
+            }
+            boolean opposite = direction.intValue() != Integer.parseInt(parts[1]);
+            if (reversed != null && reversed != opposite) {
+                return false;
+            }
+            reversed = opposite;
+            position++;
+        }
+
+        if (range == null) {
+            return true;
+        }
+        // 範囲条件のフィールドがソートキーに含まれていれば、ソート順のまま範囲を読める
+        if (sort.stream().anyMatch(field -> field.startsWith(range + ":"))) {
+            return true;
+        }
+        return position < entries.size() && entries.get(position).getKey().equals(range);
+    }
+
+    private Document findIndex(Class<?> type, String name) {
+        return indexes(type).stream()
+            .filter(index -> name.equals(index.getIndexOptions().getString("name")))
+            .map(IndexDefinition::getIndexKeys)
+            .findFirst()
+            .orElseThrow(() -> new AssertionError(type.getSimpleName() + " does not declare " + name));
+    }
+
+    private Document options(Class<?> type, String name) {
+        return indexes(type).stream()
+            .filter(index -> name.equals(index.getIndexOptions().getString("name")))
+            .map(IndexDefinition::getIndexOptions)
+            .findFirst()
+            .orElseThrow(() -> new AssertionError(type.getSimpleName() + " does not declare " + name));
+    }
+
+    private static List<IndexDefinition> indexes(Class<?> type) {
+        List<IndexDefinition> indexes = new ArrayList<>();
+        resolver.resolveIndexFor(type).forEach(indexes::add);
+        return indexes;
+    }
+}
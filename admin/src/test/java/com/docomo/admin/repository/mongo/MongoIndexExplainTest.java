@@ -0,0 +1,237 @@
+package com.docomo.admin.repository.mongo;
+
+import com.docomo.admin.entity.mongo.MongoParkingLot;
+import com.docomo.admin.entity.mongo.MongoTransaction;
+import com.docomo.admin.entity.mongo.MongoUser;
+import com.docomo.admin.service.mongo.MongoIndexService;
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.MongoCommandException;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * リポジトリの検索がインデックスを使うことを explain() で確認する。
+ * COLLSCAN になったもの、返した件数に比べて読んだドキュメントが多すぎるものは失敗にする。
+ * 部分一致の正規表現検索 (名前・住所・ナンバー) と全件読み込み (findAllAvailability) は対象外。
+ */
+@DataMongoTest
+@Import({MongoIndexService.class, LicensePlateIndexCallback.class})
+class MongoIndexExplainTest {
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 6, 1, 0, 0);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoIndexService indexService;
+
+    @BeforeEach
+    void setUp() {
+        dropCollections();
+        assertEquals(List.of(), indexService.ensureIndexes());
+
+        List<MongoParkingLot> lots = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            MongoParkingLot lot = new MongoParkingLot("駐車場" + i, "東京都" + i, 50 + i,
+                new BigDecimal(200 + i * 10), new BigDecimal(1500 + i * 50),
+                MongoParkingLot.ParkingLotStatus.values()[i % 3]);
+            lot.setAvailableSpaces(i % 5 == 0 ? 0 : i);
+            lot.setLocation(new GeoJsonPoint(139.70 + i * 0.001, 35.68));
+            lots.add(lot);
+        }
+        mongoTemplate.insertAll(lots);
+
+        List<MongoUser> users = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            MongoUser user = new MongoUser("user" + i, "password", "user" + i + "@example.com", "User " + i,
+                MongoUser.UserRole.values()[i % 3]);
+            user.setCreatedAt(BASE_TIME.plusDays(i));
+            users.add(user);
+        }
+        mongoTemplate.insertAll(users);
+
+        List<MongoTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 800; i++) {
+            MongoTransaction transaction = new MongoTransaction("lot-" + i % 40, "user-" + i % 40, "品川 300 あ " + i,
+                BASE_TIME.plusMinutes(i * 10L), MongoTransaction.TransactionStatus.values()[i % 4],
+                MongoTransaction.PaymentMethod.values()[i % 4]);
+            transaction.setCreatedAt(BASE_TIME.plusMinutes(i * 10L));
+            transaction.setEventId("gate-" + i);
+            if (i % 4 != 0) {
+                transaction.setExitTime(transaction.getEntryTime().plusHours(2));
+                transaction.setAmount(new BigDecimal(100 + i));
+            }
+            transactions.add(transaction);
+        }
+        mongoTemplate.insertAll(transactions);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dropCollections();
+    }
+
+    private void dropCollections() {
+        mongoTemplate.dropCollection(MongoTransaction.class);
+        mongoTemplate.dropCollection(MongoParkingLot.class);
+        mongoTemplate.dropCollection(MongoUser.class);
+    }
+
+    @Test
+    void testDeclaredIndexesAreCreated() {
+        Set<String> existing = new HashSet<>();
+        for (Class<?> type : List.of(MongoTransaction.class, MongoParkingLot.class, MongoUser.class)) {
+            String collection = mongoTemplate.getCollectionName(type);
+            for (IndexInfo index : mongoTemplate.indexOps(type).getIndexInfo()) {
+                existing.add(collection + "." + index.getName());
+            }
+        }
+        assertTrue(existing.containsAll(indexService.declaredIndexes()),
+            "missing: " + indexService.declaredIndexes().stream().filter(name -> !existing.contains(name)).collect(Collectors.toList()));
+        // 2回目は何もしない
+        assertEquals(List.of(), indexService.ensureIndexes());
+    }
+
+    @Test
+    void testTransactionQueriesUseIndexes() {
+        assumeExplainSupported();
+        LocalDateTime from = BASE_TIME.plusDays(1);
+        LocalDateTime to = BASE_TIME.plusDays(2);
+        assertIndexed(MongoTransaction.class, new Document("parking_lot_id", "lot-3"));
+        assertIndexed(MongoTransaction.class, new Document("user_id", "user-5"));
+        assertIndexed(MongoTransaction.class, new Document("status", "PENDING"));
+        assertIndexed(MongoTransaction.class, new Document("payment_method", "CASH"));
+        assertIndexed(MongoTransaction.class, new Document("event_id", "gate-42"));
+        assertIndexed(MongoTransaction.class, range("entry_time", from, to));
+        assertIndexed(MongoTransaction.class, range("exit_time", from, to));
+        assertIndexed(MongoTransaction.class, range("created_at", from, to));
+        assertIndexed(MongoTransaction.class, new Document("amount", new Document("$gte", value(new BigDecimal(800)))));
+        assertIndexed(MongoTransaction.class, new Document("amount", new Document("$lte", value(new BigDecimal(200)))));
+        assertIndexed(MongoTransaction.class, new Document("parking_lot_id", "lot-3").append("status", "REFUNDED"));
+        assertIndexed(MongoTransaction.class, new Document("user_id", "user-5").append("status", "COMPLETED"));
+        assertIndexed(MongoTransaction.class, new Document("entry_time", new Document("$gte", value(BASE_TIME.plusDays(5)))));
+        assertIndexed(MongoTransaction.class, new Document("exit_time", null));
+    }
+
+    @Test
+    void testLicensePlateSearchUsesIndexes() {
+        assumeExplainSupported();
+        // searchByLicensePlate / searchByLicensePlatePrefix と同じ条件
+        assertIndexed(MongoTransaction.class, new Document("license_plate_grams", new Document("$all", List.of("あ42")))
+            .append("license_plate_key", new Document("$regex", Pattern.quote("あ42"))));
+        assertIndexed(MongoTransaction.class, new Document("license_plate_key", new Document("$regex", "^" + Pattern.quote("品川300あ7"))));
+    }
+
+    @Test
+    void testTransactionPageQueriesUseIndexes() {
+        assumeExplainSupported();
+        Document sort = new Document("entry_time", -1).append("_id", -1);
+        assertIndexed(MongoTransaction.class, new Document(), sort, 20);
+        assertIndexed(MongoTransaction.class, new Document("parking_lot_id", "lot-3"), sort, 20);
+        assertIndexed(MongoTransaction.class, new Document("status", "COMPLETED"), sort, 20);
+        assertIndexed(MongoTransaction.class, new Document("payment_method", "CASH"), sort, 20);
+        assertIndexed(MongoTransaction.class, new Document("parking_lot_id", "lot-3").append("status", "REFUNDED"), sort, 20);
+    }
+
+    @Test
+    void testParkingLotQueriesUseIndexes() {
+        assumeExplainSupported();
+        assertIndexed(MongoParkingLot.class, new Document("status", "ACTIVE"));
+        assertIndexed(MongoParkingLot.class, new Document("available_spaces", new Document("$gt", 30)));
+        assertIndexed(MongoParkingLot.class, new Document("available_spaces", new Document("$gt", 0)));
+        assertIndexed(MongoParkingLot.class, new Document("status", "ACTIVE").append("available_spaces", new Document("$gt", 0)));
+        assertIndexed(MongoParkingLot.class, new Document("hourly_rate", new Document("$lte", value(new BigDecimal(250)))));
+        assertIndexed(MongoParkingLot.class, new Document("daily_rate", new Document("$lte", value(new BigDecimal(1700)))));
+        assertIndexed(MongoParkingLot.class, new Document("total_spaces", new Document("$gte", 80)));
+        // findByStatusAndAvailableSpacesGreaterThanAndLocationNear と同じ条件 (距離順なので SORT は出ない)
+        Document near = new Document("$nearSphere", new Document("$geometry", new Document("type", "Point")
+            .append("coordinates", List.of(139.71, 35.68))).append("$maxDistance", 2_000));
+        assertIndexed(MongoParkingLot.class, new Document("location", near).append("status", "ACTIVE")
+            .append("available_spaces", new Document("$gt", 0)), null, 5);
+    }
+
+    @Test
+    void testUserQueriesUseIndexes() {
+        assumeExplainSupported();
+        assertIndexed(MongoUser.class, new Document("username", "user7"));
+        assertIndexed(MongoUser.class, new Document("email", "user7@example.com"));
+        assertIndexed(MongoUser.class, new Document("role", "ADMIN"));
+        assertIndexed(MongoUser.class, new Document("created_at", new Document("$gte", value(BASE_TIME.plusDays(30)))));
+    }
+
+    private Object value(Object value) {
+        return mongoTemplate.getConverter().convertToMongoType(value);
+    }
+
+    private Document range(String field, LocalDateTime from, LocalDateTime to) {
+        return new Document(field, new Document("$gte", value(from)).append("$lte", value(to)));
+    }
+
+    private void assumeExplainSupported() {
+        try {
+            mongoTemplate.getCollection(mongoTemplate.getCollectionName(MongoUser.class))
+                .find(new Document("username", "user0")).explain(ExplainVerbosity.EXECUTION_STATS);
+        } catch (MongoCommandException e) {
+            assumeTrue(false, "explain is not supported by this server: " + e.getErrorMessage());
+        }
+    }
+
+    private void assertIndexed(Class<?> type, Document filter) {
+        assertIndexed(type, filter, null, 0);
+    }
+
+    // 返した件数の2倍 (+ 少しの余裕) より多く読んでいたら、インデックスが合っていないとみなす
+    private void assertIndexed(Class<?> type, Document filter, Document sort, int limit) {
+        var find = mongoTemplate.getCollection(mongoTemplate.getCollectionName(type)).find(filter);
+        if (sort != null) {
+            find = find.sort(sort);
+        }
+        if (limit > 0) {
+            find = find.limit(limit);
+        }
+        Document explain = find.explain(ExplainVerbosity.EXECUTION_STATS);
+        Document winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+        List<String> stages = new ArrayList<>();
+        collectStages(winningPlan, stages);
+        assertFalse(stages.contains("COLLSCAN"), filter.toJson() + " is a collection scan: " + stages);
+        assertFalse(stages.contains("SORT"), filter.toJson() + " sorts in memory: " + stages);
+
+        Document stats = explain.get("executionStats", Document.class);
+        int returned = stats.getInteger("nReturned");
+        int examined = stats.getInteger("totalDocsExamined");
+        assertTrue(returned > 0, filter.toJson() + " returned nothing");
+        assertTrue(examined <= returned * 2 + 5,
+            filter.toJson() + " examined " + examined + " documents to return " + returned + ": " + stages);
+    }
+
+    private static void collectStages(Document plan, List<String> stages) {
+        if (plan == null) {
+            return;
+        }
+        stages.add(plan.getString("stage"));
+        collectStages(plan.get("inputStage", Document.class), stages);
+        List<Document> inputStages = plan.getList("inputStages", Document.class);
+        if (inputStages != null) {
+            inputStages.forEach(input -> collectStages(input, stages));
+        }
+    }
+}
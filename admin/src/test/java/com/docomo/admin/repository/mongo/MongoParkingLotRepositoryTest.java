@@ -1,11 +1,15 @@
 package com.docomo.admin.repository.mongo;
 
+import com.docomo.admin.config.MongoConversionConfig;
 import com.docomo.admin.entity.mongo.MongoParkingLot;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.bson.Document;
+import org.bson.types.Decimal128;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import static org.junit.jupiter.api.Assertions.*;
 import java.math.BigDecimal;
@@ -13,6 +17,7 @@ import java.util.List;
 import java.util.Optional;
 
 @DataMongoTest
+@Import(MongoConversionConfig.class)
 class MongoParkingLotRepositoryTest {
     
     @Autowired
@@ -129,6 +134,30 @@ class MongoParkingLotRepositoryTest {
         assertEquals("Suburban Parking", cheapParkingLots.get(0).getName());
     }
     
+    @Test
+    void testBackfillDecimalRates() {
+        Document saved = mongoTemplate.findById(testParkingLot1.getId(), Document.class, "parking_lots");
+        assertTrue(saved.get("hourly_rate") instanceof Decimal128);
+        assertTrue(saved.get("daily_rate") instanceof Decimal128);
+        
+        // Decimal128 で保存する前に登録された駐車場 (料金が文字列)
+        mongoTemplate.getCollection("parking_lots").insertOne(new Document("name", "Legacy Parking")
+            .append("total_spaces", 80).append("available_spaces", 10).append("status", "ACTIVE")
+            .append("hourly_rate", "300.00").append("daily_rate", "3000.00"));
+        assertTrue(parkingLotRepository.findByHourlyRateLessThanOrEqualTo(new BigDecimal("400.00")).stream()
+            .noneMatch(parkingLot -> parkingLot.getName().equals("Legacy Parking")));
+        
+        assertEquals(1, parkingLotRepository.backfillDecimalRates());
+        assertEquals(0, parkingLotRepository.backfillDecimalRates());
+        
+        List<MongoParkingLot> cheapByHour = parkingLotRepository.findByHourlyRateLessThanOrEqualTo(new BigDecimal("400.00"));
+        assertEquals(List.of("Legacy Parking", "Suburban Parking"), cheapByHour.stream().map(MongoParkingLot::getName).sorted().toList());
+        List<MongoParkingLot> cheapByDay = parkingLotRepository.findByDailyRateLessThanOrEqualTo(new BigDecimal("4000.00"));
+        assertEquals(2, cheapByDay.size());
+        assertEquals(new BigDecimal("300.00"), cheapByHour.stream()
+            .filter(parkingLot -> parkingLot.getName().equals("Legacy Parking")).findFirst().orElseThrow().getHourlyRate());
+    }
+    
     @Test
     void testFindByTotalSpacesGreaterThanOrEqualTo() {
         List<MongoParkingLot> parkingLots = parkingLotRepository.findByTotalSpacesGreaterThanOrEqualTo(150);
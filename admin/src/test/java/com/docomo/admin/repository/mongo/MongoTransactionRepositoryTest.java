@@ -1,19 +1,26 @@
 package com.docomo.admin.repository.mongo;
 
+import com.docomo.admin.config.MongoConversionConfig;
 import com.docomo.admin.entity.mongo.MongoTransaction;
+import com.docomo.admin.repository.support.KeysetCursor;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.bson.Document;
+import org.bson.types.Decimal128;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import static org.junit.jupiter.api.Assertions.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 @DataMongoTest
+@Import({LicensePlateIndexCallback.class, MongoConversionConfig.class})
 class MongoTransactionRepositoryTest {
     
     @Autowired
@@ -135,6 +142,70 @@ class MongoTransactionRepositoryTest {
         assertEquals(1, transactionsCaseInsensitive.size());
     }
     
+    @Test
+    void testSearchByLicensePlate() {
+        // 全角・小文字・区切りなしでも一致する
+        List<MongoTransaction> transactions = transactionRepository.searchByLicensePlate("ａｂｃ１２");
+        assertEquals(1, transactions.size());
+        assertEquals("ABC-123", transactions.get(0).getLicensePlate());
+        
+        assertEquals(1, transactionRepository.searchByLicensePlate("c-1").size());
+        assertEquals(1, transactionRepository.searchByLicensePlate("9").size());
+        // n-gram はすべて含むが並びが違う
+        transactionRepository.save(new MongoTransaction("parking-lot-2", "user-4", "ABC-AB",
+            baseTime, MongoTransaction.TransactionStatus.PENDING, MongoTransaction.PaymentMethod.CASH));
+        assertTrue(transactionRepository.searchByLicensePlate("BCABC").isEmpty());
+        assertEquals(List.of("ABC-AB"), transactionRepository.searchByLicensePlate("CAB").stream()
+            .map(MongoTransaction::getLicensePlate).toList());
+        assertTrue(transactionRepository.searchByLicensePlate("ABD").isEmpty());
+    }
+    
+    @Test
+    void testSearchByLicensePlateOrdersByEntryTime() {
+        MongoTransaction japanese = transactionRepository.save(new MongoTransaction("parking-lot-2", "user-4",
+            "品川 300 あ 12-34", baseTime.plusHours(2), MongoTransaction.TransactionStatus.PENDING, MongoTransaction.PaymentMethod.CASH));
+        
+        List<MongoTransaction> transactions = transactionRepository.searchByLicensePlate("3");
+        assertEquals(List.of(japanese.getId(), testTransaction1.getId()),
+            transactions.stream().map(MongoTransaction::getId).toList());
+        assertEquals(1, transactionRepository.searchByLicensePlate("300あ").size());
+        assertEquals(1, transactionRepository.searchByLicensePlate("品川３００").size());
+    }
+    
+    @Test
+    void testSearchByLicensePlatePrefix() {
+        List<MongoTransaction> transactions = transactionRepository.searchByLicensePlatePrefix("xyz7");
+        assertEquals(1, transactions.size());
+        assertEquals("XYZ-789", transactions.get(0).getLicensePlate());
+        assertTrue(transactionRepository.searchByLicensePlatePrefix("789").isEmpty());
+    }
+    
+    @Test
+    void testBackfillLicensePlateKeys() {
+        // 検索用フィールド導入前に登録された取引
+        mongoTemplate.getCollection("transactions").insertOne(new Document("license_plate", "GHI-000")
+            .append("parking_lot_id", "parking-lot-3").append("status", "PENDING"));
+        assertTrue(transactionRepository.searchByLicensePlate("GHI").isEmpty());
+        
+        assertEquals(1, transactionRepository.backfillLicensePlateKeys());
+        assertEquals(1, transactionRepository.searchByLicensePlate("GHI").size());
+        assertEquals(0, transactionRepository.backfillLicensePlateKeys());
+    }
+    
+    @Test
+    void testBackfillDecimalAmounts() {
+        assertTrue(mongoTemplate.findById(testTransaction1.getId(), Document.class, "transactions").get("amount") instanceof Decimal128);
+        
+        // Decimal128 で保存する前に登録された取引 (金額が文字列)
+        mongoTemplate.getCollection("transactions").insertOne(new Document("parking_lot_id", "parking-lot-3")
+            .append("status", "COMPLETED").append("amount", "1500.00"));
+        assertEquals(1, transactionRepository.backfillDecimalAmounts());
+        assertEquals(0, transactionRepository.backfillDecimalAmounts());
+        
+        List<MongoTransaction> transactions = transactionRepository.findByAmountGreaterThanOrEqualTo(new BigDecimal("1000.00"));
+        assertEquals(2, transactions.size());
+    }
+    
     @Test
     void testFindByEntryTimeBetween() {
         LocalDateTime start = baseTime.minusMinutes(30);
@@ -268,4 +339,48 @@ class MongoTransactionRepositoryTest {
         List<MongoTransaction> transactions = transactionRepository.findAll();
         assertEquals(0, transactions.size());
     }
-} 
\ No newline at end of file
+    
+    @Test
+    void testFindPageSeeksPastTiesWithoutGapsOrDuplicates() {
+        // 同じ入庫時刻の取引を追加して id による順序付けを確認する
+        MongoTransaction sameTime = new MongoTransaction("parking-lot-2", "user-4", "GHI-000",
+            testTransaction1.getEntryTime(), MongoTransaction.TransactionStatus.COMPLETED, MongoTransaction.PaymentMethod.CASH);
+        transactionRepository.save(sameTime);
+        MongoTransaction noEntryTime = new MongoTransaction();
+        noEntryTime.setParkingLotId("parking-lot-1");
+        transactionRepository.save(noEntryTime);
+        
+        List<String> seen = new ArrayList<>();
+        KeysetCursor cursor = null;
+        while (true) {
+            List<MongoTransaction> page = transactionRepository.findPage(null, cursor, 2);
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(transaction -> seen.add(transaction.getId()));
+            MongoTransaction last = page.get(page.size() - 1);
+            cursor = KeysetCursor.decode(new KeysetCursor(last.getEntryTime(), last.getId()).encode());
+        }
+        
+        assertEquals(5, seen.size());
+        assertEquals(5, seen.stream().distinct().count());
+        assertEquals(testTransaction2.getId(), seen.get(0));
+        assertEquals(testTransaction3.getId(), seen.get(3));
+        assertEquals(noEntryTime.getId(), seen.get(4));
+    }
+    
+    @Test
+    void testFindPageWithFilter() {
+        MongoTransactionFilter filter = new MongoTransactionFilter("parking-lot-1", null, null,
+            baseTime.minusMinutes(1), baseTime.plusMinutes(30));
+        List<MongoTransaction> page = transactionRepository.findPage(filter, null, 10);
+        assertEquals(1, page.size());
+        assertEquals("ABC-123", page.get(0).getLicensePlate());
+        
+        filter = new MongoTransactionFilter(null, MongoTransaction.TransactionStatus.CANCELLED,
+            MongoTransaction.PaymentMethod.MOBILE_PAYMENT, null, null);
+        page = transactionRepository.findPage(filter, null, 10);
+        assertEquals(1, page.size());
+        assertEquals("DEF-456", page.get(0).getLicensePlate());
+    }
+}
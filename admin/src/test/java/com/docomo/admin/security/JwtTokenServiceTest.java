@@ -0,0 +1,59 @@
+package com.docomo.admin.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import java.time.Duration;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtTokenServiceTest {
+
+    private static final String KEY = "c2VjcmV0LWtleS1mb3ItdGVzdHMtb25seS0zMi1ieXRlcyEh";
+    private static final String OLD_KEY = "b2xkLXNlY3JldC1rZXktZm9yLXRlc3RzLTMyLWJ5dGVzISE=";
+    private static final List<GrantedAuthority> ROLES = AuthorityUtils.createAuthorityList("ROLE_ADMIN");
+
+    @Test
+    void testRoundTrip() {
+        JwtTokenService service = new JwtTokenService(KEY, new String[0], Duration.ofMinutes(15));
+        Authentication authentication = service.parseAccessToken(service.createAccessToken("admin", ROLES));
+        assertNotNull(authentication);
+        assertEquals("admin", authentication.getName());
+        assertTrue(authentication.isAuthenticated());
+        assertEquals(List.of("ROLE_ADMIN"), authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+    }
+
+    @Test
+    void testRejectsTamperedExpiredAndForeignTokens() {
+        JwtTokenService service = new JwtTokenService(KEY, new String[0], Duration.ofMinutes(15));
+        String token = service.createAccessToken("admin", ROLES);
+        String[] parts = token.split("\\.");
+        String tampered = parts[0] + "." + parts[1] + "x." + parts[2];
+        assertNull(service.parseAccessToken(tampered));
+        assertNull(service.parseAccessToken("not-a-token"));
+
+        // 許容する時計のずれ (30 秒) より前に切れたもの
+        JwtTokenService expired = new JwtTokenService(KEY, new String[0], Duration.ofMinutes(-1));
+        assertNull(service.parseAccessToken(expired.createAccessToken("admin", ROLES)));
+
+        JwtTokenService other = new JwtTokenService(OLD_KEY, new String[0], Duration.ofMinutes(15));
+        assertNull(service.parseAccessToken(other.createAccessToken("admin", ROLES)));
+    }
+
+    @Test
+    void testRequiresSecret() {
+        // ノードごとの乱数の鍵では他のノード・再起動後にトークンが通らないので、起動させない
+        assertThrows(IllegalStateException.class, () -> new JwtTokenService(" ", new String[0], Duration.ofMinutes(15)));
+    }
+
+    @Test
+    void testPreviousKeysStillVerify() {
+        JwtTokenService before = new JwtTokenService(OLD_KEY, new String[0], Duration.ofMinutes(15));
+        String issuedBefore = before.createAccessToken("operator", ROLES);
+
+        JwtTokenService rotated = new JwtTokenService(KEY, new String[] {OLD_KEY}, Duration.ofMinutes(15));
+        assertEquals("operator", rotated.parseAccessToken(issuedBefore).getName());
+        assertNull(new JwtTokenService(KEY, new String[0], Duration.ofMinutes(15)).parseAccessToken(issuedBefore));
+    }
+}
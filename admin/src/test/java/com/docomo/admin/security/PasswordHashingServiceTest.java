@@ -0,0 +1,90 @@
+package com.docomo.admin.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingServiceTest {
+
+    private PasswordHashingService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.destroy();
+        }
+    }
+
+    @Test
+    void testEncodeAndMatch() {
+        service = new PasswordHashingService(1, 4, Duration.ofSeconds(5), 4, Duration.ZERO, 4, 4);
+        String encoded = service.encode("admin123");
+        assertTrue(encoded.startsWith("$2a$04$"));
+        assertTrue(service.matches("admin123", encoded));
+        assertFalse(service.matches("admin124", encoded));
+        // 以前のコストで作ったハッシュも照合できる
+        assertTrue(service.matches("admin123", new BCryptPasswordEncoder(5).encode("admin123")));
+        assertEquals(4, service.getHashCount());
+        assertTrue(service.getMaxHashTime().compareTo(service.getAverageHashTime()) >= 0);
+    }
+
+    @Test
+    void testChooseStrengthFitsTarget() {
+        // 最小コストで 20ms: 40, 80, 160ms まで 250ms に収まる
+        assertEquals(13, PasswordHashingService.chooseStrength(Duration.ofMillis(250), 10, 14, strength -> 20_000_000L));
+        assertEquals(10, PasswordHashingService.chooseStrength(Duration.ofMillis(250), 10, 14, strength -> 400_000_000L));
+        assertEquals(14, PasswordHashingService.chooseStrength(Duration.ofMillis(250), 10, 14, strength -> 1_000L));
+    }
+
+    @Test
+    void testQueueCapacityFitsWaitTimeout() {
+        // 2スレッドで 250ms ずつなら、5秒の間に計算を始められるのは 40 件
+        assertEquals(40, PasswordHashingService.queueCapacity(64, 2, Duration.ofSeconds(5), Duration.ofMillis(250)));
+        assertEquals(16, PasswordHashingService.queueCapacity(16, 2, Duration.ofSeconds(5), Duration.ofMillis(250)));
+        assertEquals(1, PasswordHashingService.queueCapacity(64, 1, Duration.ofMillis(100), Duration.ofMillis(250)));
+        assertEquals(64, PasswordHashingService.queueCapacity(64, 2, Duration.ofSeconds(5), Duration.ZERO));
+    }
+
+    @Test
+    void testRejectsWhenQueueIsFull() throws Exception {
+        service = new PasswordHashingService(1, 1, Duration.ofSeconds(30), 12, Duration.ZERO, 12, 12);
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(callers.submit(() -> {
+                    start.await();
+                    try {
+                        service.encode("password");
+                    } catch (PasswordHashingBusyException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        // 計算中 1 件 + 待ち 1 件を超えた分は待たずに断る
+        assertTrue(rejected.get() > 0);
+        assertEquals(rejected.get(), service.getRejectedCount());
+        assertEquals(8 - rejected.get(), service.getHashCount());
+    }
+}
@@ -0,0 +1,156 @@
+package com.docomo.admin.security;
+
+import com.docomo.admin.entity.RefreshToken;
+import com.docomo.admin.repository.RefreshTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@DataJpaTest(properties = "admin.security.token.enabled=true")
+@Import({RefreshTokenService.class, RefreshTokenServiceTest.Users.class})
+class RefreshTokenServiceTest {
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private InMemoryUserDetailsManager users;
+
+    private final Authentication login = new UsernamePasswordAuthenticationToken("admin", null,
+        AuthorityUtils.createAuthorityList("ROLE_ADMIN", "ROLE_OPERATOR"));
+
+    @TestConfiguration
+    static class Users {
+
+        @Bean
+        InMemoryUserDetailsManager userDetailsService() {
+            return new InMemoryUserDetailsManager(admin().build());
+        }
+    }
+
+    private static User.UserBuilder admin() {
+        return User.withUsername("admin").password("{noop}password").roles("ADMIN", "OPERATOR");
+    }
+
+    @BeforeEach
+    void resetUsers() {
+        if (!users.userExists("admin")) {
+            users.createUser(admin().build());
+        }
+        users.updateUser(admin().build());
+    }
+
+    @Test
+    void testRotationIssuesNewTokenInSameFamily() {
+        String first = refreshTokenService.issue(login);
+        TokenRotation rotation = refreshTokenService.rotate(first).orElseThrow();
+        assertEquals("admin", rotation.getAuthentication().getName());
+        assertEquals(2, rotation.getAuthentication().getAuthorities().size());
+        assertNotNull(rotation.getRefreshToken());
+        assertNotEquals(first, rotation.getRefreshToken());
+
+        List<RefreshToken> stored = refreshTokenRepository.findAll();
+        assertEquals(2, stored.size());
+        assertEquals(1, stored.stream().map(RefreshToken::getFamilyId).distinct().count());
+        // トークンそのものは保存しない
+        assertTrue(stored.stream().noneMatch(token -> token.getTokenHash().equals(first)));
+
+        // 使用直後の再使用 (並行リクエスト) はアクセストークンだけ
+        TokenRotation concurrent = refreshTokenService.rotate(first).orElseThrow();
+        assertNull(concurrent.getRefreshToken());
+        assertTrue(refreshTokenService.rotate(rotation.getRefreshToken()).isPresent());
+    }
+
+    @Test
+    void testReuseAfterGraceRevokesFamily() {
+        String first = refreshTokenService.issue(login);
+        String second = refreshTokenService.rotate(first).orElseThrow().getRefreshToken();
+        refreshTokenRepository.findAll().stream()
+            .filter(token -> token.getUsedAt() != null)
+            .forEach(token -> token.setUsedAt(LocalDateTime.now().minusMinutes(1)));
+        refreshTokenRepository.flush();
+
+        assertTrue(refreshTokenService.rotate(first).isEmpty());
+        // 盗まれた可能性があるので、正規の利用者の最新のトークンも使えなくなる
+        assertTrue(refreshTokenService.rotate(second).isEmpty());
+        assertTrue(refreshTokenRepository.findAll().stream().allMatch(RefreshToken::isRevoked));
+    }
+
+    @Test
+    void testRevokedExpiredAndUnknownTokensAreRejected() {
+        String loggedOut = refreshTokenService.issue(login);
+        refreshTokenService.revoke(loggedOut);
+        assertTrue(refreshTokenService.rotate(loggedOut).isEmpty());
+
+        String expired = refreshTokenService.issue(login);
+        refreshTokenRepository.findAll().forEach(token -> token.setExpiresAt(LocalDateTime.now().minusSeconds(1)));
+        refreshTokenRepository.flush();
+        assertTrue(refreshTokenService.rotate(expired).isEmpty());
+        refreshTokenService.purgeExpired();
+        assertEquals(0, refreshTokenRepository.count());
+
+        assertTrue(refreshTokenService.rotate("unknown").isEmpty());
+    }
+
+    @Test
+    void testRotationReloadsUser() {
+        // 権限を減らすと、次のローテーションから反映される
+        String first = refreshTokenService.issue(login);
+        users.updateUser(admin().roles("OPERATOR").build());
+        TokenRotation rotation = refreshTokenService.rotate(first).orElseThrow();
+        assertEquals(List.of("ROLE_OPERATOR"),
+            rotation.getAuthentication().getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+
+        // 無効化・削除されたユーザーの系列は失効する
+        users.updateUser(admin().disabled(true).build());
+        assertTrue(refreshTokenService.rotate(rotation.getRefreshToken()).isEmpty());
+        assertTrue(refreshTokenRepository.findAll().stream().allMatch(RefreshToken::isRevoked));
+
+        users.deleteUser("admin");
+        assertTrue(refreshTokenService.rotate(refreshTokenService.issue(login)).isEmpty());
+    }
+
+    @Test
+    void testFamilyExpiresAfterMaxLifetime() {
+        String first = refreshTokenService.issue(login);
+        // 30 日前にログインした系列
+        refreshTokenRepository.findAll().forEach(token -> token.setFamilyIssuedAt(LocalDateTime.now().minusDays(30).plusMinutes(1)));
+        refreshTokenRepository.flush();
+
+        String second = refreshTokenService.rotate(first).orElseThrow().getRefreshToken();
+        RefreshToken latest = refreshTokenRepository.findAll().stream()
+            .filter(token -> token.getUsedAt() == null)
+            .findFirst().orElseThrow();
+        // 使っても有効期限は系列の上限 (ログインから 30 日) までしか延びない
+        assertTrue(latest.getExpiresAt().isBefore(LocalDateTime.now().plusMinutes(2)));
+
+        latest.setExpiresAt(latest.getFamilyIssuedAt().plusDays(30).minusMinutes(2));
+        refreshTokenRepository.flush();
+        assertTrue(refreshTokenService.rotate(second).isEmpty());
+    }
+
+    @Test
+    void testRevokeUser() {
+        String first = refreshTokenService.issue(login);
+        String second = refreshTokenService.issue(login);
+        refreshTokenService.revokeUser("admin");
+        assertTrue(refreshTokenService.rotate(first).isEmpty());
+        assertTrue(refreshTokenService.rotate(second).isEmpty());
+    }
+}
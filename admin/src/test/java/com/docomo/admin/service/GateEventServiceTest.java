@@ -0,0 +1,144 @@
+package com.docomo.admin.service;
+
+import com.docomo.admin.entity.ParkingLot;
+import com.docomo.admin.entity.Transaction;
+import com.docomo.admin.repository.ParkingLotRepository;
+import com.docomo.admin.repository.TransactionRepository;
+import com.docomo.admin.service.analytics.TransactionAnalyticsService;
+import com.docomo.admin.service.journal.GateEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import static org.junit.jupiter.api.Assertions.*;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+@SpringBootTest
+class GateEventServiceTest {
+
+    @Autowired
+    private GateEventService gateEventService;
+
+    @Autowired
+    private ParkingLotService parkingLotService;
+
+    @Autowired
+    private ParkingLotRepository parkingLotRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ParkingLotOccupancyService occupancyService;
+
+    @Autowired
+    private TransactionAnalyticsService analyticsService;
+
+    private ParkingLot parkingLot;
+
+    @BeforeEach
+    void setUp() {
+        parkingLot = new ParkingLot();
+        parkingLot.setName("ゲートイベントテスト駐車場");
+        parkingLot.setAddress("東京都目黒区");
+        parkingLot.setTotalSpaces(20);
+        parkingLot.setAvailableSpaces(20);
+        parkingLot = parkingLotService.createParkingLot(parkingLot);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll(transactionRepository.findByParkingLotId(parkingLot.getId()));
+        parkingLotRepository.deleteById(parkingLot.getId());
+    }
+
+    @Test
+    void testJournalDirectoryIsRequired() {
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> new GateEventService(null, null, null,
+            null, null, null, " ", 16777216, true, Duration.ofMillis(100)));
+        assertTrue(e.getMessage().contains("admin.journal.directory"));
+    }
+
+    @Test
+    void testEntryAndExitAreAppliedInBackground() throws InterruptedException {
+        LocalDateTime entryTime = LocalDateTime.of(2024, 5, 1, 10, 0);
+        String entryEventId = gateEventService.recordEntry(null, parkingLot.getId(), null, "目黒 500 え 1234", entryTime);
+        gateEventService.recordExit(null, entryEventId, entryTime.plusMinutes(90), new BigDecimal("450.00"));
+
+        assertTrue(gateEventService.awaitDrained(Duration.ofSeconds(10)));
+        Transaction transaction = transactionRepository.findByEventId(entryEventId).orElseThrow();
+        assertEquals(Transaction.TransactionStatus.COMPLETED, transaction.getStatus());
+        assertEquals("目黒 500 え 1234", transaction.getLicensePlate());
+        assertEquals(entryTime.plusMinutes(90), transaction.getExitTime());
+        assertEquals(0, new BigDecimal("450.00").compareTo(transaction.getAmount()));
+        assertEquals(1.5, transaction.getDurationHours());
+    }
+
+    @Test
+    void testAnalyticsStoreIsRebuiltFromDatabase() throws Exception {
+        LocalDateTime entryTime = LocalDateTime.of(2024, 5, 1, 11, 0);
+        String entryEventId = gateEventService.recordEntry(null, parkingLot.getId(), null, "目黒 500 え 2345", entryTime);
+        gateEventService.recordExit(null, entryEventId, entryTime.plusHours(1), new BigDecimal("300.00"));
+        assertTrue(gateEventService.awaitDrained(Duration.ofSeconds(10)));
+        String lotId = String.valueOf(parkingLot.getId());
+        assertEquals(0, new BigDecimal("300").compareTo(analyticsService.getRevenueByParkingLot(lotId, null, null)));
+
+        analyticsService.rebuild();
+        assertEquals(transactionRepository.countRecordable(), analyticsService.getRecordedCount());
+        assertEquals(0, new BigDecimal("300").compareTo(analyticsService.getRevenueByParkingLot(lotId, null, null)));
+    }
+
+    @Test
+    void testEntryAndExitAdjustOccupancyOnce() {
+        GateEvent entry = GateEvent.entry(null, String.valueOf(parkingLot.getId()), null, "目黒 500 え 3456",
+            LocalDateTime.of(2024, 5, 1, 13, 0));
+        gateEventService.apply(entry);
+        gateEventService.apply(entry);
+        // 空き台数はメモリ上で減り、DB への書き込みはまとめて行う
+        assertEquals(19, occupancyService.getAvailableSpaces(parkingLot.getId()));
+
+        GateEvent exit = GateEvent.exit(null, entry.getEventId(), LocalDateTime.of(2024, 5, 1, 14, 0), new BigDecimal("300.00"));
+        gateEventService.apply(exit);
+        gateEventService.apply(exit);
+        assertEquals(20, occupancyService.getAvailableSpaces(parkingLot.getId()));
+
+        occupancyService.flush();
+        assertEquals(20, parkingLotRepository.findById(parkingLot.getId()).orElseThrow().getAvailableSpaces());
+    }
+
+    @Test
+    void testReplayedEntryIsNotDuplicated() {
+        GateEvent entry = GateEvent.entry(null, String.valueOf(parkingLot.getId()), null, "目黒 500 え 5678",
+            LocalDateTime.of(2024, 5, 1, 11, 0));
+        gateEventService.apply(entry);
+        gateEventService.apply(entry);
+
+        assertEquals(1, transactionRepository.findByParkingLotId(parkingLot.getId()).size());
+    }
+
+    @Test
+    void testEventsUnknownToDeduplicationAreResolvedFromDatabase() {
+        // 他のノードで登録された入庫 (このノードの重複検出は知らない)
+        LocalDateTime entryTime = LocalDateTime.of(2024, 5, 1, 12, 0);
+        Transaction registered = new Transaction();
+        registered.setEventId("other-node-0001");
+        registered.setParkingLot(parkingLot);
+        registered.setLicensePlate("目黒 500 え 9012");
+        registered.setEntryTime(entryTime);
+        registered.setStatus(Transaction.TransactionStatus.PENDING);
+        registered = transactionRepository.save(registered);
+
+        // 再送された入庫は一意制約で弾かれ、登録済みのものとして扱われる
+        gateEventService.apply(GateEvent.entry("other-node-0001", String.valueOf(parkingLot.getId()), null,
+            "目黒 500 え 9012", entryTime));
+        assertEquals(1, transactionRepository.findByParkingLotId(parkingLot.getId()).size());
+
+        gateEventService.apply(GateEvent.exit(null, "other-node-0001", entryTime.plusHours(1), new BigDecimal("300.00")));
+        Transaction completed = transactionRepository.findById(registered.getId()).orElseThrow();
+        assertEquals(Transaction.TransactionStatus.COMPLETED, completed.getStatus());
+        assertEquals(1.0, completed.getDurationHours());
+    }
+}
@@ -0,0 +1,92 @@
+package com.docomo.admin.service;
+
+import com.docomo.admin.entity.ParkingLot;
+import com.docomo.admin.repository.ParkingLotRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import static org.junit.jupiter.api.Assertions.*;
+
+// 定期反映がテスト中に走らないよう間隔を延ばし、flush は明示的に呼ぶ
+@SpringBootTest(properties = "admin.occupancy.write-behind-interval=PT1H")
+class ParkingLotOccupancyServiceTest {
+
+    @Autowired
+    private ParkingLotOccupancyService occupancyService;
+
+    @Autowired
+    private ParkingLotService parkingLotService;
+
+    @Autowired
+    private ParkingLotRepository parkingLotRepository;
+
+    private ParkingLot parkingLot;
+
+    @BeforeEach
+    void setUp() {
+        parkingLot = new ParkingLot();
+        parkingLot.setName("書き込み遅延テスト駐車場");
+        parkingLot.setAddress("東京都品川区");
+        parkingLot.setTotalSpaces(60);
+        parkingLot.setAvailableSpaces(50);
+        parkingLot = parkingLotService.createParkingLot(parkingLot);
+    }
+
+    @AfterEach
+    void tearDown() {
+        occupancyService.flush();
+        parkingLotRepository.findById(parkingLot.getId()).ifPresent(parkingLotRepository::delete);
+    }
+
+    @Test
+    void testChangesAreWrittenBehindInOneUpdate() {
+        for (int i = 0; i < 5; i++) {
+            occupancyService.enter(parkingLot.getId());
+        }
+        occupancyService.exit(parkingLot.getId());
+
+        assertEquals(46, occupancyService.getAvailableSpaces(parkingLot.getId()));
+        assertEquals(50, availableSpacesInDatabase());
+
+        occupancyService.flush();
+        assertEquals(46, availableSpacesInDatabase());
+        assertEquals(46, occupancyService.getAvailableSpaces(parkingLot.getId()));
+    }
+
+    @Test
+    void testEnterIsRejectedWhenFull() {
+        parkingLotService.updateAvailableSpaces(parkingLot.getId(), 1);
+
+        assertEquals(0, occupancyService.enter(parkingLot.getId()));
+        assertThrows(RuntimeException.class, () -> occupancyService.enter(parkingLot.getId()));
+        assertThrows(RuntimeException.class, () -> occupancyService.enter(-1L));
+    }
+
+    @Test
+    void testDatabaseChangesAreMergedWithPendingChanges() {
+        occupancyService.enter(parkingLot.getId());
+        occupancyService.enter(parkingLot.getId());
+
+        // 反映前に画面から空き台数が 30 に変更された
+        parkingLotService.updateAvailableSpaces(parkingLot.getId(), 30);
+        assertEquals(28, occupancyService.getAvailableSpaces(parkingLot.getId()));
+
+        occupancyService.flush();
+        assertEquals(28, availableSpacesInDatabase());
+    }
+
+    @Test
+    void testDeletedLotIsDroppedOnFlush() {
+        occupancyService.enter(parkingLot.getId());
+        parkingLotRepository.deleteById(parkingLot.getId());
+
+        occupancyService.flush();
+        assertThrows(RuntimeException.class, () -> occupancyService.getAvailableSpaces(parkingLot.getId()));
+    }
+
+    private int availableSpacesInDatabase() {
+        return parkingLotRepository.findAvailableSpacesById(parkingLot.getId()).orElseThrow();
+    }
+}
@@ -0,0 +1,218 @@
+package com.docomo.admin.service;
+
+import com.docomo.admin.entity.ParkingLot;
+import com.docomo.admin.repository.ParkingLotRepository;
+import com.docomo.admin.service.support.OptimisticRetry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import static org.junit.jupiter.api.Assertions.*;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SpringBootTest
+class ParkingLotServiceTest {
+
+    @Autowired
+    private ParkingLotService parkingLotService;
+
+    @Autowired
+    private ParkingLotRepository parkingLotRepository;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    @Autowired
+    private ParkingLotCacheService cacheService;
+
+    private ParkingLot parkingLot;
+
+    @BeforeEach
+    void setUp() {
+        parkingLot = new ParkingLot();
+        parkingLot.setName("同時更新テスト駐車場");
+        parkingLot.setAddress("東京都中央区");
+        parkingLot.setTotalSpaces(100);
+        parkingLot.setAvailableSpaces(50);
+        parkingLot.setHourlyRate(new BigDecimal("300"));
+        parkingLot = parkingLotService.createParkingLot(parkingLot);
+    }
+
+    @AfterEach
+    void tearDown() {
+        parkingLotRepository.deleteById(parkingLot.getId());
+    }
+
+    @Test
+    void testSearchFollowsCreateAndUpdate() {
+        assertTrue(parkingLotService.searchParkingLots("同時更新 中央区", 10).stream()
+            .anyMatch(found -> found.getId().equals(parkingLot.getId())));
+
+        ParkingLot details = parkingLotRepository.findById(parkingLot.getId()).orElseThrow();
+        details.setName("検索テスト駐車場");
+        parkingLotService.updateParkingLot(parkingLot.getId(), details);
+
+        assertTrue(parkingLotService.searchParkingLotsByName("同時更新").stream()
+            .noneMatch(found -> found.getId().equals(parkingLot.getId())));
+        List<ParkingLot> found = parkingLotService.suggestParkingLots("ケンサク", 5);
+        assertTrue(found.isEmpty());
+        found = parkingLotService.suggestParkingLots("検索テスト", 5);
+        assertEquals(List.of(parkingLot.getId()), found.stream().map(ParkingLot::getId).toList());
+    }
+
+    @Test
+    void testCachedLookupFollowsUpdates() {
+        Long id = parkingLot.getId();
+        long hits = cacheService.getParkingLotStats().hitCount();
+        assertEquals(50, parkingLotService.getParkingLotById(id).orElseThrow().getAvailableSpaces());
+        ParkingLot cached = parkingLotService.getParkingLotById(id).orElseThrow();
+        assertTrue(cacheService.getParkingLotStats().hitCount() > hits);
+
+        // 返されたコピーを書き換えてもキャッシュは変わらない
+        cached.setName("書き換え");
+        assertEquals("同時更新テスト駐車場", parkingLotService.getParkingLotById(id).orElseThrow().getName());
+
+        parkingLotService.decrementAvailable(id, 3);
+        assertEquals(47, parkingLotService.getParkingLotById(id).orElseThrow().getAvailableSpaces());
+        parkingLotService.updateAvailableSpaces(id, 40);
+        assertEquals(40, parkingLotService.getParkingLotById(id).orElseThrow().getAvailableSpaces());
+
+        ParkingLot details = parkingLotRepository.findById(id).orElseThrow();
+        details.setName("キャッシュテスト駐車場");
+        parkingLotService.updateParkingLot(id, details);
+        assertEquals("キャッシュテスト駐車場", parkingLotService.getParkingLotById(id).orElseThrow().getName());
+        parkingLotService.updateParkingLotStatus(id, ParkingLot.ParkingLotStatus.MAINTENANCE);
+        assertEquals(ParkingLot.ParkingLotStatus.MAINTENANCE, parkingLotService.getParkingLotById(id).orElseThrow().getStatus());
+        assertTrue(parkingLotService.getAllParkingLots().stream()
+            .anyMatch(found -> found.getId().equals(id) && found.getStatus() == ParkingLot.ParkingLotStatus.MAINTENANCE));
+
+        parkingLotService.deleteParkingLot(id);
+        assertTrue(parkingLotService.getParkingLotById(id).isEmpty());
+        assertTrue(parkingLotService.getAllParkingLots().stream().noneMatch(found -> found.getId().equals(id)));
+    }
+
+    @Test
+    void testNearestAvailableFollowsOccupancyAndStatus() {
+        // 東京駅の近く
+        ParkingLot details = parkingLotRepository.findById(parkingLot.getId()).orElseThrow();
+        details.setLatitude(35.6815);
+        details.setLongitude(139.7670);
+        parkingLotService.updateParkingLot(parkingLot.getId(), details);
+
+        List<Long> nearby = nearbyIds();
+        assertTrue(nearby.contains(parkingLot.getId()));
+
+        parkingLotService.updateAvailableSpaces(parkingLot.getId(), 1);
+        parkingLotService.decrementAvailable(parkingLot.getId());
+        assertFalse(nearbyIds().contains(parkingLot.getId()));
+
+        parkingLotService.incrementAvailable(parkingLot.getId());
+        assertTrue(nearbyIds().contains(parkingLot.getId()));
+
+        parkingLotService.updateParkingLotStatus(parkingLot.getId(), ParkingLot.ParkingLotStatus.MAINTENANCE);
+        assertFalse(nearbyIds().contains(parkingLot.getId()));
+    }
+
+    private List<Long> nearbyIds() {
+        return parkingLotService.findNearestAvailableParkingLots(35.6812, 139.7671, 10, 500).stream()
+            .map(nearby -> nearby.getParkingLot().getId())
+            .toList();
+    }
+
+    @Test
+    void testIncrementAndDecrementAvailable() {
+        Long version = parkingLot.getVersion();
+
+        assertEquals(49, parkingLotService.decrementAvailable(parkingLot.getId()));
+        assertEquals(52, parkingLotService.incrementAvailable(parkingLot.getId(), 3));
+
+        ParkingLot found = parkingLotRepository.findById(parkingLot.getId()).orElseThrow();
+        assertEquals(52, found.getAvailableSpaces());
+        assertEquals(version + 2, found.getVersion());
+    }
+
+    @Test
+    void testAvailableSpacesStayWithinBounds() {
+        assertThrows(RuntimeException.class, () -> parkingLotService.incrementAvailable(parkingLot.getId(), 51));
+        assertThrows(RuntimeException.class, () -> parkingLotService.decrementAvailable(parkingLot.getId(), 51));
+        assertThrows(RuntimeException.class, () -> parkingLotService.updateAvailableSpaces(parkingLot.getId(), 101));
+        assertThrows(RuntimeException.class, () -> parkingLotService.updateAvailableSpaces(parkingLot.getId(), -1));
+        assertEquals(50, parkingLotRepository.findById(parkingLot.getId()).orElseThrow().getAvailableSpaces());
+
+        assertEquals(100, parkingLotService.updateAvailableSpaces(parkingLot.getId(), 100).getAvailableSpaces());
+        assertThrows(RuntimeException.class, () -> parkingLotService.decrementAvailable(-1L));
+    }
+
+    @Test
+    void testConcurrentEntriesNeverOverbook() throws Exception {
+        AtomicInteger admitted = new AtomicInteger();
+
+        // 空き 50 台に 8 スレッド x 10 台が同時に入庫しようとする
+        runConcurrently(8, () -> {
+            for (int i = 0; i < 10; i++) {
+                try {
+                    parkingLotService.decrementAvailable(parkingLot.getId());
+                    admitted.incrementAndGet();
+                } catch (RuntimeException e) {
+                    // 満車
+                }
+            }
+        });
+
+        assertEquals(50, admitted.get());
+        assertEquals(0, parkingLotRepository.findById(parkingLot.getId()).orElseThrow().getAvailableSpaces());
+    }
+
+    @Test
+    void testVersionConflictIsRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        ParkingLot saved = optimisticRetry.execute(() -> {
+            ParkingLot loaded = parkingLotRepository.findById(parkingLot.getId()).orElseThrow();
+            if (attempts.incrementAndGet() == 1) {
+                // 読み込み後に別トランザクションで空き台数が更新される
+                CompletableFuture.runAsync(() -> parkingLotService.decrementAvailable(parkingLot.getId())).join();
+            }
+            loaded.setName("名称変更");
+            return parkingLotRepository.saveAndFlush(loaded);
+        });
+
+        assertEquals(2, attempts.get());
+        ParkingLot found = parkingLotRepository.findById(parkingLot.getId()).orElseThrow();
+        assertEquals("名称変更", found.getName());
+        // 画面からの編集で入庫分を上書きしない
+        assertEquals(49, found.getAvailableSpaces());
+        assertEquals(saved.getVersion(), found.getVersion());
+    }
+
+    private void runConcurrently(int threads, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
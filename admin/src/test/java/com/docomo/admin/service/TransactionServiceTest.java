@@ -0,0 +1,129 @@
+package com.docomo.admin.service;
+
+import com.docomo.admin.entity.ParkingLot;
+import com.docomo.admin.entity.Transaction;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import static org.junit.jupiter.api.Assertions.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class TransactionServiceTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private ParkingLot parkingLot;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        parkingLot = new ParkingLot();
+        parkingLot.setName("一括登録テスト駐車場");
+        parkingLot.setAddress("東京都港区");
+        parkingLot.setTotalSpaces(500);
+        parkingLot.setAvailableSpaces(500);
+        parkingLot.setStatus(ParkingLot.ParkingLotStatus.ACTIVE);
+        entityManager.persist(parkingLot);
+        entityManager.flush();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void testCreateTransactionsBatchesInserts() {
+        LocalDateTime baseTime = LocalDateTime.of(2024, 4, 1, 8, 0);
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setParkingLot(parkingLot);
+            transaction.setLicensePlate("品川 500 さ " + i);
+            transaction.setEntryTime(baseTime.plusMinutes(i % 100));
+            transaction.setAmount(new BigDecimal("300.00"));
+            transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
+            transaction.setPaymentMethod(Transaction.PaymentMethod.CASH);
+            transactions.add(transaction);
+        }
+
+        List<Transaction> saved = transactionService.createTransactions(transactions);
+
+        assertEquals(1000, saved.size());
+        assertEquals(1000, new HashSet<>(saved.stream().map(Transaction::getId).toList()).size());
+        assertEquals(1000, statistics.getEntityStatistics(Transaction.class.getName()).getInsertCount());
+        // 1件ずつなら INSERT だけで 1000 回。採番 (50件ごと) と集計行 (2時間分 + 1日分) を含めても100回未満に収まる
+        assertTrue(statistics.getPrepareStatementCount() < 100,
+            "prepared statements: " + statistics.getPrepareStatementCount());
+
+        assertEquals(new BigDecimal("300000.00"), transactionService.getTotalRevenueByParkingLot(parkingLot.getId()));
+        assertEquals(new BigDecimal("180000.00"),
+            transactionService.getTotalRevenueByDateRange(baseTime, baseTime.plusMinutes(59).plusSeconds(59)));
+    }
+
+    private Transaction entry(String eventId, String licensePlate) {
+        Transaction transaction = new Transaction();
+        transaction.setEventId(eventId);
+        transaction.setParkingLot(parkingLot);
+        transaction.setLicensePlate(licensePlate);
+        transaction.setEntryTime(LocalDateTime.of(2024, 4, 2, 9, 0));
+        return transaction;
+    }
+
+    @Test
+    void testCreateTransactionIgnoresRetriedEvent() {
+        statistics.clear();
+        Transaction first = transactionService.createTransaction(entry("gate-1-0001", "品川 500 さ 1"));
+        // 新規のイベントは重複確認のための問い合わせをしない
+        assertEquals(0, statistics.getQueryExecutionCount());
+
+        Transaction retried = transactionService.createTransaction(entry("gate-1-0001", "品川 500 さ 1"));
+        assertEquals(first.getId(), retried.getId());
+        assertEquals(1, transactionService.getTransactionsByParkingLot(parkingLot.getId()).size());
+    }
+
+    @Test
+    void testCreateTransactionsSkipsDuplicateEvents() {
+        transactionService.createTransaction(entry("gate-2-0001", "品川 500 さ 1"));
+
+        List<Transaction> saved = transactionService.createTransactions(List.of(
+            entry("gate-2-0001", "品川 500 さ 1"),
+            entry("gate-2-0002", "品川 500 さ 2"),
+            entry("gate-2-0002", "品川 500 さ 2"),
+            entry(null, "品川 500 さ 3")));
+
+        assertEquals(2, saved.size());
+        assertEquals(3, transactionService.getTransactionsByParkingLot(parkingLot.getId()).size());
+    }
+
+    @Test
+    void testCompleteTransactionIsIdempotent() {
+        Transaction transaction = transactionService.createTransaction(entry("gate-3-0001", "品川 500 さ 1"));
+        LocalDateTime exitTime = transaction.getEntryTime().plusHours(2);
+
+        transactionService.completeTransaction(transaction.getId(), exitTime, new BigDecimal("600.00"));
+        transactionService.completeTransaction(transaction.getId(), exitTime, new BigDecimal("600.00"));
+
+        Transaction completed = transactionService.getTransactionById(transaction.getId()).orElseThrow();
+        assertEquals(Transaction.TransactionStatus.COMPLETED, completed.getStatus());
+        assertEquals(2.0, completed.getDurationHours());
+        assertEquals(new BigDecimal("600.00"), transactionService.getTotalRevenueByParkingLot(parkingLot.getId()));
+    }
+}
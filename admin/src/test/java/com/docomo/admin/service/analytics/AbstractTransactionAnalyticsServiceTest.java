@@ -0,0 +1,111 @@
+package com.docomo.admin.service.analytics;
+
+import com.docomo.admin.entity.Transaction.PaymentMethod;
+import com.docomo.admin.entity.Transaction.TransactionStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 起動時にストアとバックエンドの完了済み取引を突き合わせ、合わなければ作り直すことを確かめる。
+ * バックエンドはリストで代用する。
+ */
+class AbstractTransactionAnalyticsServiceTest {
+    
+    private static final LocalDateTime ENTRY_TIME = LocalDateTime.of(2024, 3, 1, 9, 0);
+    
+    @TempDir
+    Path directory;
+    
+    private final List<AnalyticsRecord> database = new ArrayList<>();
+    private int rebuildReads;
+    
+    @Test
+    void testEmptyStoreIsRebuiltFromDatabase() throws IOException {
+        database.add(completed("1", 0, "500"));
+        database.add(completed("1", 1, "700"));
+        database.add(completed("2", 2, "300"));
+        
+        AbstractTransactionAnalyticsService service = open();
+        try {
+            assertEquals(1, rebuildReads);
+            assertEquals(3, service.getRecordedCount());
+            assertEquals(0, new BigDecimal("1200").compareTo(service.getRevenueByParkingLot("1", null, null)));
+            assertEquals(0, new BigDecimal("300").compareTo(service.getRevenueByParkingLot("2", null, null)));
+        } finally {
+            service.close();
+        }
+    }
+    
+    @Test
+    void testStoreInSyncIsNotRebuilt() throws IOException {
+        AbstractTransactionAnalyticsService service = open();
+        AnalyticsRecord record = completed("1", 0, "500");
+        database.add(record);
+        service.transactionChanged(null, record);
+        service.close();
+        
+        service = open();
+        try {
+            assertEquals(0, rebuildReads);
+            assertEquals(1, service.size());
+            assertEquals(0, new BigDecimal("500").compareTo(service.getRevenueByParkingLot("1", null, null)));
+        } finally {
+            service.close();
+        }
+    }
+    
+    @Test
+    void testStaleStoreIsRebuilt() throws IOException {
+        // DB を作り直した (create-drop で再起動した) 後に前回の行が残っている場合
+        AbstractTransactionAnalyticsService service = open();
+        service.transactionChanged(null, completed("1", 0, "500"));
+        service.transactionChanged(null, completed("1", 1, "700"));
+        service.close();
+        
+        database.add(completed("2", 2, "300"));
+        service = open();
+        try {
+            assertEquals(1, rebuildReads);
+            assertEquals(1, service.getRecordedCount());
+            assertEquals(0, BigDecimal.ZERO.compareTo(service.getRevenueByParkingLot("1", null, null)));
+            assertEquals(0, new BigDecimal("300").compareTo(service.getRevenueByParkingLot("2", null, null)));
+            
+            // 作り直した後の変化は新しいストアに追記される
+            service.transactionChanged(null, completed("2", 3, "100"));
+            assertEquals(2, service.getRecordedCount());
+        } finally {
+            service.close();
+        }
+    }
+    
+    private AbstractTransactionAnalyticsService open() throws IOException {
+        rebuildReads = 0;
+        AbstractTransactionAnalyticsService service = new AbstractTransactionAnalyticsService(directory, 16) {
+            @Override
+            protected long countRecordable() {
+                return database.size();
+            }
+            
+            @Override
+            protected void forEachRecordable(Consumer<AnalyticsRecord> action) {
+                rebuildReads++;
+                database.forEach(action);
+            }
+        };
+        service.open();
+        return service;
+    }
+    
+    private static AnalyticsRecord completed(String parkingLotId, int hour, String amount) {
+        return new AnalyticsRecord(parkingLotId, ENTRY_TIME.plusHours(hour), ENTRY_TIME.plusHours(hour + 1),
+            new BigDecimal(amount), TransactionStatus.COMPLETED, PaymentMethod.CREDIT_CARD);
+    }
+}
@@ -0,0 +1,90 @@
+package com.docomo.admin.service.analytics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Path;
+
+class ColumnarTransactionStoreTest {
+    
+    private static final long BASE = 1_700_000_000L - 1_700_000_000L % 86400;
+    
+    @TempDir
+    Path directory;
+    
+    private AnalyticsQuery query(AnalyticsQuery.GroupBy groupBy) {
+        return new AnalyticsQuery(Long.MIN_VALUE, Long.MAX_VALUE, -1, groupBy, 0);
+    }
+    
+    @Test
+    void testAppendAcrossSegments() throws IOException {
+        try (ColumnarTransactionStore store = new ColumnarTransactionStore(directory, 4)) {
+            for (int i = 0; i < 10; i++) {
+                store.append(i % 2, BASE + i * 3600L, BASE + i * 3600L + 7200, 100, (byte) 1, (byte) 1);
+            }
+            assertEquals(10, store.size());
+            
+            AnalyticsResult byLot = store.aggregate(query(AnalyticsQuery.GroupBy.PARKING_LOT));
+            assertEquals(5, byLot.getCount(0));
+            assertEquals(5, byLot.getCount(1));
+            assertEquals(500, byLot.getAmountYen(1));
+            assertEquals(2.0, byLot.getAverageDurationHours(0), 0.0001);
+        }
+    }
+    
+    @Test
+    void testGroupByHourOfDayWithRangeAndLotFilter() throws IOException {
+        try (ColumnarTransactionStore store = new ColumnarTransactionStore(directory, 16)) {
+            store.append(0, BASE + 9 * 3600L, ColumnarTransactionStore.NO_EXIT, 300, (byte) 1, (byte) 0);
+            store.append(0, BASE + 9 * 3600L + 60, ColumnarTransactionStore.NO_EXIT, 200, (byte) 1, (byte) 0);
+            store.append(1, BASE + 9 * 3600L, ColumnarTransactionStore.NO_EXIT, 1000, (byte) 1, (byte) 0);
+            store.append(0, BASE + 86400L + 9 * 3600L, ColumnarTransactionStore.NO_EXIT, 700, (byte) 1, (byte) 0);
+            
+            AnalyticsResult result = store.aggregate(
+                new AnalyticsQuery(BASE, BASE + 86400L, 0, AnalyticsQuery.GroupBy.HOUR_OF_DAY, 0));
+            assertEquals(500, result.getAmountYen(9));
+            assertEquals(2, result.getCount(9));
+            assertEquals(0, result.getCount(10));
+            assertNull(result.getAverageDurationHours(9));
+            
+            AnalyticsResult shifted = store.aggregate(
+                new AnalyticsQuery(BASE, BASE + 86400L, 0, AnalyticsQuery.GroupBy.HOUR_OF_DAY, 9 * 3600L));
+            assertEquals(500, shifted.getAmountYen(18));
+        }
+    }
+    
+    @Test
+    void testReversalRowsCancelOut() throws IOException {
+        try (ColumnarTransactionStore store = new ColumnarTransactionStore(directory, 16)) {
+            store.append(0, BASE, BASE + 3600, 500, (byte) 1, (byte) 2);
+            store.append(0, BASE, BASE + 3600, -500, (byte) (1 | ColumnarTransactionStore.REVERSAL), (byte) 2);
+            store.append(0, BASE, BASE + 7200, 800, (byte) 1, (byte) 3);
+            
+            AnalyticsResult total = store.aggregate(query(AnalyticsQuery.GroupBy.NONE));
+            assertEquals(1, total.getCount(0));
+            assertEquals(800, total.getAmountYen(0));
+            assertEquals(2.0, total.getAverageDurationHours(0), 0.0001);
+            
+            AnalyticsResult byPayment = store.aggregate(query(AnalyticsQuery.GroupBy.PAYMENT_METHOD));
+            assertEquals(0, byPayment.getCount(2));
+            assertEquals(1, byPayment.getCount(3));
+        }
+    }
+    
+    @Test
+    void testReopenKeepsRowsAndSegmentSize() throws IOException {
+        try (ColumnarTransactionStore store = new ColumnarTransactionStore(directory, 4)) {
+            for (int i = 0; i < 6; i++) {
+                store.append(3, BASE + i, BASE + i + 3600, 10, (byte) 1, (byte) 0);
+            }
+        }
+        try (ColumnarTransactionStore store = new ColumnarTransactionStore(directory, 1024)) {
+            assertEquals(6, store.size());
+            store.append(3, BASE, BASE + 3600, 10, (byte) 1, (byte) 0);
+            AnalyticsResult result = store.aggregate(query(AnalyticsQuery.GroupBy.PARKING_LOT));
+            assertEquals(7, result.getCount(3));
+            assertEquals(70, result.getAmountYen(3));
+        }
+    }
+}
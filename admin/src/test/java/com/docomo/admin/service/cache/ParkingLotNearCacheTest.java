@@ -0,0 +1,120 @@
+package com.docomo.admin.service.cache;
+
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParkingLotNearCacheTest {
+
+    private final Map<Long, Lot> database = new HashMap<>();
+    private final AtomicInteger lotLoads = new AtomicInteger();
+    private final AtomicInteger availabilityLoads = new AtomicInteger();
+    private final ParkingLotNearCache<Long, Lot> cache = new ParkingLotNearCache<>(100, Duration.ofMinutes(10),
+        Duration.ofMinutes(10), lot -> lot.id, Lot::copy, lot -> lot.availableSpaces, (lot, spaces) -> lot.availableSpaces = spaces);
+
+    @Test
+    void testLotsAreLoadedOnceAndReturnedAsCopies() {
+        database.put(1L, new Lot(1L, "東京駅前", 50));
+
+        Lot first = get(1L).orElseThrow();
+        first.name = "書き換え";
+        assertEquals("東京駅前", get(1L).orElseThrow().name);
+        assertEquals(1, lotLoads.get());
+        // 本体を読んだときの空き台数はそのまま使う
+        assertEquals(0, availabilityLoads.get());
+        assertEquals(1, cache.lotStats().hitCount());
+        assertEquals(1, cache.lotStats().missCount());
+
+        // 見つからない駐車場はキャッシュしない
+        assertTrue(get(2L).isEmpty());
+        database.put(2L, new Lot(2L, "渋谷", 10));
+        assertTrue(get(2L).isPresent());
+    }
+
+    @Test
+    void testAvailabilityIsInvalidatedSeparately() {
+        database.put(1L, new Lot(1L, "東京駅前", 50));
+        assertEquals(50, get(1L).orElseThrow().availableSpaces);
+
+        database.get(1L).availableSpaces = 49;
+        assertEquals(50, get(1L).orElseThrow().availableSpaces);
+        cache.invalidateAvailability(1L);
+        assertEquals(49, get(1L).orElseThrow().availableSpaces);
+        assertEquals(1, lotLoads.get());
+        assertEquals(1, availabilityLoads.get());
+
+        database.get(1L).name = "東京駅八重洲口";
+        cache.invalidate(1L);
+        assertEquals("東京駅八重洲口", get(1L).orElseThrow().name);
+        assertEquals(2, lotLoads.get());
+    }
+
+    @Test
+    void testListOverlaysCurrentAvailability() {
+        database.put(1L, new Lot(1L, "東京駅前", 50));
+        database.put(2L, new Lot(2L, "渋谷", 10));
+        AtomicInteger listLoads = new AtomicInteger();
+        Function<Set<Long>, Map<Long, Integer>> availabilityLoader = this::loadAvailability;
+
+        assertEquals(2, cache.getAll(() -> list(listLoads), availabilityLoader).size());
+        database.get(2L).availableSpaces = 9;
+        cache.invalidateAvailability(2L);
+        List<Lot> lots = cache.getAll(() -> list(listLoads), availabilityLoader);
+        assertEquals(9, lots.stream().filter(lot -> lot.id == 2L).findFirst().orElseThrow().availableSpaces);
+        assertEquals(1, listLoads.get());
+        assertEquals(1, cache.listStats().hitCount());
+
+        // 駐車場の追加・変更で一覧は読み直す
+        database.put(3L, new Lot(3L, "新宿", 0));
+        cache.invalidate(3L);
+        assertEquals(3, cache.getAll(() -> list(listLoads), availabilityLoader).size());
+        assertEquals(2, listLoads.get());
+    }
+
+    private Optional<Lot> get(Long id) {
+        return cache.get(id, key -> {
+            lotLoads.incrementAndGet();
+            return Optional.ofNullable(database.get(key)).map(Lot::copy);
+        }, this::loadAvailability);
+    }
+
+    private List<Lot> list(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return database.values().stream().map(Lot::copy).toList();
+    }
+
+    private Map<Long, Integer> loadAvailability(Set<Long> ids) {
+        availabilityLoads.incrementAndGet();
+        Map<Long, Integer> result = new HashMap<>();
+        for (Long id : ids) {
+            if (database.containsKey(id)) {
+                result.put(id, database.get(id).availableSpaces);
+            }
+        }
+        return result;
+    }
+
+    private static class Lot {
+
+        final Long id;
+        String name;
+        Integer availableSpaces;
+
+        Lot(Long id, String name, Integer availableSpaces) {
+            this.id = id;
+            this.name = name;
+            this.availableSpaces = availableSpaces;
+        }
+
+        Lot copy() {
+            return new Lot(id, name, availableSpaces);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.docomo.admin.service.cache;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicatedCacheTest {
+
+    private final ReplicatedCache<Lot> cache = new ReplicatedCache<>(lot -> lot.id, Lot::copy);
+
+    @Test
+    void testChangesAreAppliedToLoadedEntries() {
+        assertFalse(cache.isReady());
+        cache.load(List.of(new Lot("a", "東京駅前", 50), new Lot("b", "渋谷", 10)));
+        cache.markReady();
+        assertTrue(cache.isReady());
+        assertEquals(2, cache.size());
+
+        cache.put(new Lot("c", "新宿", 30));
+        cache.put(new Lot("a", "東京駅前", 49));
+        cache.remove("b");
+        cache.update("c", lot -> lot.availableSpaces = 29);
+        // 持っていないエントリーは部分更新で作らない
+        cache.update("d", lot -> lot.availableSpaces = 1);
+
+        assertEquals(49, cache.get("a").orElseThrow().availableSpaces);
+        assertTrue(cache.get("b").isEmpty());
+        assertEquals(29, cache.get("c").orElseThrow().availableSpaces);
+        assertTrue(cache.get("d").isEmpty());
+        assertEquals(List.of("新宿"), cache.find(lot -> lot.availableSpaces < 40).stream().map(lot -> lot.name).toList());
+    }
+
+    @Test
+    void testReturnsCopiesAndReloadReplacesEverything() {
+        cache.load(List.of(new Lot("a", "東京駅前", 50)));
+        cache.get("a").orElseThrow().name = "書き換え";
+        cache.getAll().get(0).availableSpaces = 0;
+        assertEquals("東京駅前", cache.get("a").orElseThrow().name);
+        assertEquals(50, cache.get("a").orElseThrow().availableSpaces);
+
+        cache.markReady();
+        cache.markStale();
+        assertFalse(cache.isReady());
+        // 通知が欠けた後の読み直しでは、読み直しに無いものは消える
+        cache.load(List.of(new Lot("b", "渋谷", 10)));
+        assertTrue(cache.get("a").isEmpty());
+        assertEquals(1, cache.size());
+    }
+
+    private static class Lot {
+
+        final String id;
+        String name;
+        int availableSpaces;
+
+        Lot(String id, String name, int availableSpaces) {
+            this.id = id;
+            this.name = name;
+            this.availableSpaces = availableSpaces;
+        }
+
+        Lot copy() {
+            return new Lot(id, name, availableSpaces);
+        }
+    }
+}
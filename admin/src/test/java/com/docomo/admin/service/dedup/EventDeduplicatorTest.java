@@ -0,0 +1,76 @@
+package com.docomo.admin.service.dedup;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+class EventDeduplicatorTest {
+
+    private final List<String> loaded = new ArrayList<>();
+
+    private Function<String, Long> loader(Long value) {
+        return eventId -> {
+            loaded.add(eventId);
+            return value;
+        };
+    }
+
+    @Test
+    void testNewEventDoesNotCallLoader() {
+        EventDeduplicator<Long> deduplicator = new EventDeduplicator<>(1000, 0.001, 10);
+        for (int i = 0; i < 100; i++) {
+            assertNull(deduplicator.find("event-" + i, loader(1L)));
+        }
+        assertTrue(loaded.isEmpty());
+    }
+
+    @Test
+    void testRecentEventIsFoundWithoutLoader() {
+        EventDeduplicator<Long> deduplicator = new EventDeduplicator<>(1000, 0.001, 10);
+        deduplicator.record("event-1", 42L);
+
+        assertEquals(42L, deduplicator.find("event-1", loader(null)));
+        assertTrue(loaded.isEmpty());
+    }
+
+    @Test
+    void testEvictedOrPreloadedEventIsLoaded() {
+        EventDeduplicator<Long> deduplicator = new EventDeduplicator<>(1000, 0.001, 2);
+        deduplicator.record("event-1", 1L);
+        deduplicator.record("event-2", 2L);
+        deduplicator.record("event-3", 3L);
+        deduplicator.preload("event-4");
+
+        assertEquals(1L, deduplicator.find("event-1", loader(1L)));
+        assertEquals(4L, deduplicator.find("event-4", loader(4L)));
+        assertEquals(List.of("event-1", "event-4"), loaded);
+
+        // 読み込んだものは LRU に入る
+        assertEquals(4L, deduplicator.find("event-4", loader(null)));
+        assertEquals(2, loaded.size());
+    }
+
+    @Test
+    void testResolveDoesNotTrustFilter() {
+        EventDeduplicator<Long> deduplicator = new EventDeduplicator<>(1000, 0.001, 10);
+        // Bloom filter に無い (他のノードで登録された) イベントも DB から引く
+        assertEquals(7L, deduplicator.resolve("event-1", loader(7L)));
+        assertEquals(List.of("event-1"), loaded);
+
+        assertEquals(7L, deduplicator.resolve("event-1", loader(null)));
+        assertEquals(7L, deduplicator.find("event-1", loader(null)));
+        assertEquals(1, loaded.size());
+    }
+
+    @Test
+    void testForgottenEventIsLoadedAgain() {
+        EventDeduplicator<Long> deduplicator = new EventDeduplicator<>(1000, 0.001, 10);
+        deduplicator.record("event-1", 1L);
+        deduplicator.forget("event-1");
+
+        assertNull(deduplicator.find("event-1", loader(null)));
+        assertEquals(List.of("event-1"), loaded);
+    }
+}
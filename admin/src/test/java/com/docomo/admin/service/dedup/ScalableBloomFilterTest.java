@@ -0,0 +1,43 @@
+package com.docomo.admin.service.dedup;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void testAddedKeysAreAlwaysFound() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        for (int i = 0; i < 20_000; i++) {
+            filter.add("event-" + i);
+        }
+        for (int i = 0; i < 20_000; i++) {
+            assertTrue(filter.mightContain("event-" + i));
+        }
+        // 想定件数を超えたので段が増えている
+        assertTrue(filter.stageCount() > 1);
+    }
+
+    @Test
+    void testFalsePositiveRateStaysWithinBoundAfterGrowth() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        for (int i = 0; i < 50_000; i++) {
+            filter.add("event-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 1000, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void testEmptyFilterContainsNothing() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.001);
+        assertFalse(filter.mightContain("event-1"));
+        assertThrows(IllegalArgumentException.class, () -> new ScalableBloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new ScalableBloomFilter(100, 1.0));
+    }
+}
@@ -0,0 +1,60 @@
+package com.docomo.admin.service.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPInputStream;
+
+class TransactionExportWriterTest {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    
+    private final ExportRow row = new ExportRow("1", "10", null, "品川 300 \"あ\", 12-34",
+        LocalDateTime.of(2024, 3, 1, 9, 0), null, 2.5, new BigDecimal("1E+3"), "COMPLETED", "CASH");
+    
+    @Test
+    void testCsvEscapesFieldsAndWritesPlainAmounts() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (TransactionExportWriter writer = new TransactionExportWriter(output, ExportFormat.CSV, objectMapper, false)) {
+            writer.write(row);
+            assertEquals(1, writer.getRowCount());
+        }
+        
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("id,parking_lot_id,user_id,license_plate"));
+        assertEquals("1,10,,\"品川 300 \"\"あ\"\", 12-34\",2024-03-01T09:00,,2.5,1000,COMPLETED,CASH", lines[1]);
+    }
+    
+    @Test
+    void testGzippedNdjson() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (TransactionExportWriter writer = new TransactionExportWriter(output, ExportFormat.NDJSON, objectMapper, true)) {
+            writer.write(row);
+            writer.write(row);
+        }
+        
+        String text;
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            text = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String[] lines = text.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(text.endsWith("\n"));
+        JsonNode json = objectMapper.readTree(lines[1]);
+        assertEquals("10", json.get("parkingLotId").asText());
+        assertEquals("2024-03-01T09:00:00", json.get("entryTime").asText());
+        assertTrue(json.get("exitTime").isNull());
+    }
+}
@@ -0,0 +1,146 @@
+package com.docomo.admin.service.filter;
+
+import com.docomo.admin.service.filter.ParkingLotFilterIndex.Column;
+import org.junit.jupiter.api.Test;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParkingLotFilterIndexTest {
+
+    private static final String[] STATUSES = {"ACTIVE", "INACTIVE", "MAINTENANCE"};
+
+    @Test
+    void testCombinedFilterAndOrder() {
+        ParkingLotFilterIndex index = new ParkingLotFilterIndex();
+        index.put("1", "ACTIVE", new BigDecimal("500"), new BigDecimal("5000"), 100, 50);
+        index.put("2", "ACTIVE", new BigDecimal("600"), new BigDecimal("6000"), 200, 0);
+        index.put("3", "MAINTENANCE", new BigDecimal("400"), new BigDecimal("4000"), 150, 75);
+        index.put("4", "ACTIVE", new BigDecimal("300.00"), null, 80, 10);
+
+        ParkingLotFilter activeAvailable = ParkingLotFilter.status("ACTIVE")
+            .and(ParkingLotFilter.availableSpacesAtLeast(1));
+        assertEquals(List.of("4", "1"), index.find(activeAvailable, Column.HOURLY_RATE, false, 10));
+        assertEquals(List.of("1", "4"), index.find(activeAvailable, Column.AVAILABLE_SPACES, true, 10));
+        assertEquals(List.of("1"), index.find(activeAvailable, Column.HOURLY_RATE, true, 1));
+        // 日額料金のない駐車場は最後に並ぶ
+        assertEquals(List.of("1", "4"), index.find(activeAvailable, Column.DAILY_RATE, false, 10));
+
+        ParkingLotFilter cheap = ParkingLotFilter.hourlyRateAtMost(new BigDecimal("400"))
+            .or(ParkingLotFilter.dailyRateAtMost(new BigDecimal("5000")));
+        assertEquals(3, index.count(cheap));
+        assertEquals(List.of("2"), index.find(ParkingLotFilter.not(cheap), null, false, 10));
+        assertEquals(List.of("3", "2"), index.find(ParkingLotFilter.totalSpacesAtLeast(150), Column.TOTAL_SPACES, false, 10));
+
+        index.update("2", Column.AVAILABLE_SPACES, 5);
+        index.remove("1");
+        assertEquals(List.of("2", "4"), index.find(activeAvailable, Column.HOURLY_RATE, true, 10));
+        assertEquals(3, index.size());
+        assertEquals(0, index.count(ParkingLotFilter.status("INACTIVE")));
+    }
+
+    @Test
+    void testFindMatchesBruteForce() {
+        Random random = new Random(7);
+        ParkingLotFilterIndex index = new ParkingLotFilterIndex();
+        Map<String, Lot> lots = new HashMap<>();
+        for (int round = 0; round < 20; round++) {
+            // 追加・更新・削除を混ぜて、スロットの再利用も通す
+            for (int i = 0; i < 200; i++) {
+                String id = String.valueOf(random.nextInt(500));
+                int operation = random.nextInt(10);
+                if (operation == 0) {
+                    index.remove(id);
+                    lots.remove(id);
+                } else if (operation <= 2 && lots.containsKey(id)) {
+                    int availableSpaces = random.nextInt(100);
+                    index.update(id, Column.AVAILABLE_SPACES, availableSpaces);
+                    lots.get(id).values[Column.AVAILABLE_SPACES.ordinal()] = BigDecimal.valueOf(availableSpaces);
+                } else {
+                    Lot lot = randomLot(random, id);
+                    index.put(id, lot.status, lot.values[0], lot.values[1], integer(lot.values[2]), integer(lot.values[3]));
+                    lots.put(id, lot);
+                }
+            }
+            assertEquals(lots.size(), index.size());
+
+            for (int q = 0; q < 20; q++) {
+                String status = STATUSES[random.nextInt(STATUSES.length)];
+                BigDecimal maxRate = BigDecimal.valueOf(random.nextInt(1000));
+                int minAvailable = random.nextInt(100);
+                ParkingLotFilter filter = ParkingLotFilter.status(status)
+                    .and(ParkingLotFilter.hourlyRateAtMost(maxRate).or(ParkingLotFilter.availableSpacesAtLeast(minAvailable)));
+                Predicate<Lot> expected = lot -> status.equals(lot.status)
+                    && (atMost(lot.values[0], maxRate) || atLeast(lot.values[3], BigDecimal.valueOf(minAvailable)));
+                assertMatches(index, lots, filter, expected, random);
+                assertMatches(index, lots, ParkingLotFilter.not(filter), expected.negate(), random);
+            }
+        }
+    }
+
+    private static void assertMatches(ParkingLotFilterIndex index, Map<String, Lot> lots, ParkingLotFilter filter,
+                                      Predicate<Lot> expected, Random random) {
+        List<Lot> matched = lots.values().stream().filter(expected).toList();
+        assertEquals(matched.size(), index.count(filter));
+        Set<String> all = new HashSet<>(index.find(filter, null, false, Integer.MAX_VALUE));
+        assertEquals(matched.stream().map(lot -> lot.id).collect(Collectors.toSet()), all);
+
+        // 同じ値の並びは索引の都合で決まるので、値の列で比べる
+        Column column = Column.values()[random.nextInt(Column.values().length)];
+        boolean descending = random.nextBoolean();
+        int limit = 1 + random.nextInt(30);
+        Comparator<BigDecimal> order = descending ? Comparator.reverseOrder() : Comparator.naturalOrder();
+        List<BigDecimal> expectedValues = matched.stream()
+            .map(lot -> lot.values[column.ordinal()])
+            .sorted(Comparator.nullsLast(order))
+            .limit(limit)
+            .toList();
+        List<BigDecimal> actualValues = new ArrayList<>();
+        for (String id : index.find(filter, column, descending, limit)) {
+            assertTrue(expected.test(lots.get(id)));
+            actualValues.add(lots.get(id).values[column.ordinal()]);
+        }
+        assertEquals(expectedValues, actualValues);
+    }
+
+    private static Lot randomLot(Random random, String id) {
+        Lot lot = new Lot(id, random.nextInt(20) == 0 ? null : STATUSES[random.nextInt(STATUSES.length)]);
+        for (int i = 0; i < lot.values.length; i++) {
+            lot.values[i] = random.nextInt(20) == 0 ? null : BigDecimal.valueOf(random.nextInt(i < 2 ? 1000 : 100));
+        }
+        return lot;
+    }
+
+    private static boolean atMost(BigDecimal value, BigDecimal max) {
+        return value != null && value.compareTo(max) <= 0;
+    }
+
+    private static boolean atLeast(BigDecimal value, BigDecimal min) {
+        return value != null && value.compareTo(min) >= 0;
+    }
+
+    private static Integer integer(BigDecimal value) {
+        return value != null ? value.intValue() : null;
+    }
+
+    private static class Lot {
+
+        final String id;
+        final String status;
+        final BigDecimal[] values = new BigDecimal[Column.values().length];
+
+        Lot(String id, String status) {
+            this.id = id;
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.docomo.admin.service.geo;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoGridIndexTest {
+
+    @Test
+    void testDistance() {
+        // 東京駅 → 新宿駅 (約 6.1km)
+        double distance = GeoGridIndex.distanceMeters(35.6812, 139.7671, 35.6896, 139.7006);
+        assertEquals(6_100, distance, 100);
+        assertEquals(0, GeoGridIndex.distanceMeters(35.0, 139.0, 35.0, 139.0), 1e-6);
+    }
+
+    @Test
+    void testNearestMatchesBruteForce() {
+        Random random = new Random(42);
+        for (double cellDegrees : new double[] {0.001, 0.01, 0.1}) {
+            GeoGridIndex index = new GeoGridIndex(cellDegrees);
+            List<double[]> points = new ArrayList<>();
+            // 東京周辺の 2000 点
+            for (int i = 0; i < 2000; i++) {
+                double[] point = {35.5 + random.nextDouble() * 0.4, 139.5 + random.nextDouble() * 0.5};
+                points.add(point);
+                index.put(String.valueOf(i), point[0], point[1]);
+            }
+            Predicate<String> even = id -> Integer.parseInt(id) % 2 == 0;
+            for (int q = 0; q < 50; q++) {
+                double latitude = 35.4 + random.nextDouble() * 0.6;
+                double longitude = 139.4 + random.nextDouble() * 0.7;
+                assertEquals(bruteForce(points, latitude, longitude, 7, Double.POSITIVE_INFINITY, even),
+                    ids(index.nearest(latitude, longitude, 7, Double.POSITIVE_INFINITY, even)));
+                assertEquals(bruteForce(points, latitude, longitude, 20, 1_500, id -> true),
+                    ids(index.nearest(latitude, longitude, 20, 1_500, id -> true)));
+                assertEquals(bruteForce(points, latitude, longitude, Integer.MAX_VALUE, 2_000, even),
+                    ids(index.within(latitude, longitude, 2_000, even)));
+            }
+        }
+    }
+
+    @Test
+    void testSparsePointsAndAntimeridian() {
+        GeoGridIndex index = new GeoGridIndex(0.01);
+        index.put("fiji", -17.7, 179.99);
+        index.put("samoa", -13.8, -171.8);
+        index.put("tokyo", 35.68, 139.77);
+
+        List<GeoHit> hits = index.nearest(-17.7, -179.99, 2, Double.POSITIVE_INFINITY, id -> true);
+        assertEquals(List.of("fiji", "samoa"), ids(hits));
+        assertTrue(hits.get(0).getDistanceMeters() < 3_000);
+        assertEquals(List.of("fiji"), ids(index.within(-17.7, -179.99, 5_000, id -> true)));
+        assertTrue(index.nearest(0, 0, 3, 1_000, id -> true).isEmpty());
+    }
+
+    @Test
+    void testMoveAndRemove() {
+        GeoGridIndex index = new GeoGridIndex(0.01);
+        index.put("a", 35.68, 139.77);
+        index.put("b", 35.69, 139.70);
+
+        index.put("a", 35.69, 139.701);
+        assertEquals(List.of("a", "b"), ids(index.nearest(35.6901, 139.7011, 2, Double.POSITIVE_INFINITY, id -> true)));
+        assertEquals(2, index.size());
+
+        index.remove("a");
+        assertEquals(List.of("b"), ids(index.nearest(35.68, 139.77, 5, Double.POSITIVE_INFINITY, id -> true)));
+        assertThrows(IllegalArgumentException.class, () -> index.put("c", 91, 0));
+    }
+
+    private static List<String> bruteForce(List<double[]> points, double latitude, double longitude, int k,
+                                           double maxMeters, Predicate<String> filter) {
+        List<GeoHit> hits = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            double distance = GeoGridIndex.distanceMeters(latitude, longitude, points.get(i)[0], points.get(i)[1]);
+            if (distance <= maxMeters && filter.test(String.valueOf(i))) {
+                hits.add(new GeoHit(String.valueOf(i), distance));
+            }
+        }
+        hits.sort(Comparator.comparingDouble(GeoHit::getDistanceMeters));
+        return ids(hits.subList(0, Math.min(k, hits.size())));
+    }
+
+    private static List<String> ids(List<GeoHit> hits) {
+        return hits.stream().map(GeoHit::getId).toList();
+    }
+}
@@ -0,0 +1,149 @@
+package com.docomo.admin.service.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+class EventJournalTest {
+
+    private static final int SEGMENT_BYTES = 256;
+
+    @TempDir
+    Path directory;
+
+    private static byte[] payload(int i) {
+        return ("event-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readAll(EventJournal.Cursor cursor) {
+        List<String> payloads = new ArrayList<>();
+        EventJournal.Record record;
+        while ((record = cursor.next()) != null) {
+            payloads.add(new String(record.getPayload(), StandardCharsets.UTF_8));
+        }
+        return payloads;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.toString().endsWith(".journal")).sorted().toList();
+        }
+    }
+
+    @Test
+    void testAppendAndReadAcrossSegments() throws IOException {
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_BYTES, false)) {
+            for (int i = 1; i <= 50; i++) {
+                assertEquals(i, journal.append(payload(i)));
+            }
+            assertTrue(journal.segmentCount() > 1);
+            assertEquals(50, journal.getLastSequence());
+
+            List<String> payloads = readAll(journal.openCursor(0));
+            assertEquals(50, payloads.size());
+            assertEquals("event-1", payloads.get(0));
+            assertEquals("event-50", payloads.get(49));
+
+            // 途中から読む
+            List<String> tail = readAll(journal.openCursor(45));
+            assertEquals(List.of("event-46", "event-47", "event-48", "event-49", "event-50"), tail);
+        }
+    }
+
+    @Test
+    void testCursorSeesRecordsAppendedLater() throws IOException {
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_BYTES, false)) {
+            EventJournal.Cursor cursor = journal.openCursor(0);
+            assertNull(cursor.next());
+            for (int i = 1; i <= 20; i++) {
+                journal.append(payload(i));
+                EventJournal.Record record = cursor.next();
+                assertEquals(i, record.getSequence());
+                assertNull(cursor.next());
+            }
+        }
+    }
+
+    @Test
+    void testReopenResumesSequenceAndCheckpoint() throws IOException {
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_BYTES, true)) {
+            for (int i = 1; i <= 30; i++) {
+                journal.append(payload(i));
+            }
+            journal.checkpoint(25);
+        }
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_BYTES, false)) {
+            assertEquals(30, journal.getLastSequence());
+            assertEquals(25, journal.getCheckpoint());
+            assertEquals(List.of("event-26", "event-27", "event-28", "event-29", "event-30"),
+                readAll(journal.openCursor(journal.getCheckpoint())));
+            assertEquals(31, journal.append(payload(31)));
+        }
+    }
+
+    @Test
+    void testTornRecordIsDiscardedOnRecovery() throws IOException {
+        try (EventJournal journal = new EventJournal(directory, 4096, false)) {
+            for (int i = 1; i <= 3; i++) {
+                journal.append(payload(i));
+            }
+        }
+        // 3件目の本体を壊す (書き込み途中で落ちた状態)
+        int recordBytes = 16 + payload(1).length;
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles().get(0).toFile(), "rw")) {
+            file.seek(16 + recordBytes * 2L + 16);
+            file.write('X');
+        }
+
+        try (EventJournal journal = new EventJournal(directory, 4096, false)) {
+            assertEquals(2, journal.getLastSequence());
+            assertEquals(List.of("event-1", "event-2"), readAll(journal.openCursor(0)));
+            assertEquals(3, journal.append("replaced".getBytes(StandardCharsets.UTF_8)));
+        }
+        try (EventJournal journal = new EventJournal(directory, 4096, false)) {
+            assertEquals(List.of("event-1", "event-2", "replaced"), readAll(journal.openCursor(0)));
+        }
+    }
+
+    @Test
+    void testCheckpointDeletesAppliedSegments() throws IOException {
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_BYTES, false)) {
+            for (int i = 1; i <= 50; i++) {
+                journal.append(payload(i));
+            }
+            int segments = journal.segmentCount();
+            EventJournal.Cursor cursor = journal.openCursor(0);
+            for (int i = 1; i <= 40; i++) {
+                journal.checkpoint(cursor.next().getSequence());
+            }
+            assertTrue(journal.segmentCount() < segments);
+            assertEquals(journal.segmentCount(), segmentFiles().size());
+
+            // 削除後も読みかけのカーソルは続きから読める
+            assertEquals(41, cursor.next().getSequence());
+            assertEquals(List.of("event-42", "event-43", "event-44", "event-45", "event-46", "event-47",
+                "event-48", "event-49", "event-50"), readAll(cursor));
+        }
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_BYTES, false)) {
+            assertEquals(50, journal.getLastSequence());
+            assertEquals(10, readAll(journal.openCursor(journal.getCheckpoint())).size());
+        }
+    }
+
+    @Test
+    void testDirectoryCannotBeOpenedTwice() throws IOException {
+        try (EventJournal journal = new EventJournal(directory, SEGMENT_BYTES, false)) {
+            assertThrows(IOException.class, () -> new EventJournal(directory, SEGMENT_BYTES, false));
+            // 2つ目を開けなくても、先に開いた方はそのまま書ける
+            assertEquals(1, journal.append(payload(1)));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.docomo.admin.service.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.QueryTimeoutException;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+class GateEventPipelineTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = JsonMapper.builder().findAndAddModules().build();
+    private static final LocalDateTime ENTRY_TIME = LocalDateTime.of(2024, 1, 15, 9, 30);
+
+    @TempDir
+    Path directory;
+
+    private GateEventPipeline open(Consumer<GateEvent> applier) throws IOException {
+        return new GateEventPipeline(new EventJournal(directory, 4096, false),
+            new EventJournal(directory.resolve("dead-letter"), 4096, false), OBJECT_MAPPER, applier,
+            Duration.ofMillis(1), "test");
+    }
+
+    @Test
+    void testEventsAreAppliedInOrder() throws Exception {
+        List<GateEvent> applied = new CopyOnWriteArrayList<>();
+        try (GateEventPipeline pipeline = open(applied::add)) {
+            pipeline.start();
+            for (int i = 0; i < 100; i++) {
+                pipeline.submit(GateEvent.entry(null, "1", "2", "品川 300 あ " + i, ENTRY_TIME.plusMinutes(i)));
+            }
+            assertTrue(pipeline.awaitDrained(Duration.ofSeconds(10)));
+            assertEquals(0, pipeline.getBacklog());
+        }
+        assertEquals(100, applied.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("品川 300 あ " + i, applied.get(i).getLicensePlate());
+            assertEquals(ENTRY_TIME.plusMinutes(i), applied.get(i).getTime());
+            assertEquals(GateEvent.Type.ENTRY, applied.get(i).getType());
+        }
+    }
+
+    @Test
+    void testTransientFailureIsRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        List<GateEvent> applied = new CopyOnWriteArrayList<>();
+        try (GateEventPipeline pipeline = open(event -> {
+            if (attempts.incrementAndGet() <= 3) {
+                throw new QueryTimeoutException("database is slow");
+            }
+            applied.add(event);
+        })) {
+            pipeline.start();
+            GateEvent exit = GateEvent.exit(null, "entry-1", ENTRY_TIME.plusHours(2), new BigDecimal("600.00"));
+            pipeline.submit(exit);
+            assertTrue(pipeline.awaitDrained(Duration.ofSeconds(10)));
+            assertEquals(1, applied.size());
+            assertEquals(exit.getEventId(), applied.get(0).getEventId());
+            assertEquals(new BigDecimal("600.00"), applied.get(0).getAmount());
+        }
+        assertEquals(4, attempts.get());
+    }
+
+    @Test
+    void testPermanentFailureIsMovedToDeadLetters() throws Exception {
+        Set<String> knownParkingLots = ConcurrentHashMap.newKeySet();
+        knownParkingLots.add("1");
+        List<GateEvent> applied = new CopyOnWriteArrayList<>();
+        Consumer<GateEvent> applier = event -> {
+            if (!knownParkingLots.contains(event.getParkingLotId())) {
+                throw new RuntimeException("Parking lot not found");
+            }
+            applied.add(event);
+        };
+        try (GateEventPipeline pipeline = open(applier)) {
+            pipeline.start();
+            pipeline.submit(GateEvent.entry(null, "missing", null, "A", ENTRY_TIME));
+            pipeline.submit(GateEvent.entry(null, "1", null, "B", ENTRY_TIME));
+            assertTrue(pipeline.awaitDrained(Duration.ofSeconds(10)));
+            assertEquals(1, pipeline.getDeadLetterCount());
+        }
+        assertEquals(List.of("B"), applied.stream().map(GateEvent::getLicensePlate).toList());
+
+        // 再起動してもデッドレターは残り、原因を直してから戻すと適用される
+        knownParkingLots.add("missing");
+        try (GateEventPipeline pipeline = open(applier)) {
+            assertEquals(0, pipeline.getBacklog());
+            assertEquals(1, pipeline.getDeadLetterCount());
+            pipeline.start();
+            assertEquals(1, pipeline.replayDeadLetters());
+            assertTrue(pipeline.awaitDrained(Duration.ofSeconds(10)));
+            assertEquals(0, pipeline.getDeadLetterCount());
+            assertEquals(0, pipeline.replayDeadLetters());
+        }
+        assertEquals(List.of("B", "A"), applied.stream().map(GateEvent::getLicensePlate).toList());
+    }
+
+    @Test
+    void testUnappliedEventsAreReplayedAfterReopen() throws Exception {
+        // 適用前に停止した場合 (DB が止まっている間に落ちた場合など)
+        try (GateEventPipeline pipeline = open(event -> fail("should not be applied before start"))) {
+            pipeline.submit(GateEvent.entry(null, "1", null, "A", ENTRY_TIME));
+            pipeline.submit(GateEvent.entry(null, "1", null, "B", ENTRY_TIME));
+            assertEquals(2, pipeline.getBacklog());
+        }
+
+        List<GateEvent> applied = new CopyOnWriteArrayList<>();
+        try (GateEventPipeline pipeline = open(applied::add)) {
+            assertEquals(2, pipeline.getBacklog());
+            pipeline.start();
+            pipeline.submit(GateEvent.entry(null, "1", null, "C", ENTRY_TIME));
+            assertTrue(pipeline.awaitDrained(Duration.ofSeconds(10)));
+        }
+        assertEquals(List.of("A", "B", "C"), applied.stream().map(GateEvent::getLicensePlate).toList());
+
+        // 適用済みのものは再生しない
+        applied.clear();
+        try (GateEventPipeline pipeline = open(applied::add)) {
+            pipeline.start();
+            assertTrue(pipeline.awaitDrained(Duration.ofSeconds(10)));
+            assertEquals(0, pipeline.getBacklog());
+        }
+        assertTrue(applied.isEmpty());
+    }
+}
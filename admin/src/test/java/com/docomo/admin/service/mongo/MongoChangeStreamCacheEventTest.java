@@ -0,0 +1,333 @@
+package com.docomo.admin.service.mongo;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.docomo.admin.entity.mongo.MongoParkingLot;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * MongoChangeStreamCache の通知の適用と読み直し・再開の判断を、台本どおりに通知を返すストリームで確かめる。
+ * 実際の change stream での確認は MongoChangeStreamCacheTest (mongod を用意できる環境でのみ実行) で行う。
+ */
+class MongoChangeStreamCacheEventTest {
+
+    private static final String NAMESPACE = "parking_lots";
+    private static final Codec<ChangeStreamDocument<Document>> EVENT_CODEC =
+        ChangeStreamDocument.createCodec(Document.class, MongoClientSettings.getDefaultCodecRegistry());
+
+    private final List<Document> collection = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<Object> script = new LinkedBlockingQueue<>();
+    private final List<BsonDocument> opens = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger reloads = new AtomicInteger();
+    private final AtomicReference<RuntimeException> openFailure = new AtomicReference<>();
+
+    private MongoChangeStreamCache<MongoParkingLot> cache;
+
+    @BeforeEach
+    void setUp() {
+        MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+
+        MongoChangeStreamCache.ChangeStreamSource source = new MongoChangeStreamCache.ChangeStreamSource() {
+            @Override
+            public MongoChangeStreamCursor<ChangeStreamDocument<Document>> open(BsonDocument resumeAfter) {
+                opens.add(resumeAfter);
+                RuntimeException failure = openFailure.get();
+                if (failure != null) {
+                    throw failure;
+                }
+                return new ScriptedCursor(script, resumeAfter);
+            }
+
+            @Override
+            public Iterable<Document> findAll() {
+                reloads.incrementAndGet();
+                return new ArrayList<>(collection);
+            }
+        };
+        cache = new MongoChangeStreamCache<>(source, converter, MongoParkingLot.class, NAMESPACE,
+            MongoParkingLot::getId, MongoChangeStreamCacheEventTest::copy, Duration.ofMillis(20));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.stop();
+    }
+
+    @Test
+    void testLoadsThenAppliesEvents() {
+        ObjectId tokyo = new ObjectId();
+        ObjectId shibuya = new ObjectId();
+        collection.add(lot(tokyo, "東京駅前駐車場", 50));
+        cache.start();
+        await(cache::isReady);
+        assertEquals(50, cache.get(tokyo.toHexString()).orElseThrow().getAvailableSpaces());
+        assertNull(opens.get(0));
+
+        script.add(event("insert", "t1", shibuya, lot(shibuya, "渋谷駐車場", 10)));
+        script.add(event("update", "t2", tokyo, lot(tokyo, "東京駅前駐車場", 47)));
+        script.add(event("delete", "t3", shibuya, null));
+        await(() -> script.isEmpty() && cache.get(tokyo.toHexString()).orElseThrow().getAvailableSpaces() == 47
+            && cache.get(shibuya.toHexString()).isEmpty());
+        assertEquals(1, cache.size());
+        assertEquals(1, reloads.get());
+        assertEquals(1, opens.size());
+    }
+
+    @Test
+    void testUpdateWithoutFullDocumentRemovesEntry() {
+        ObjectId tokyo = new ObjectId();
+        collection.add(lot(tokyo, "東京駅前駐車場", 50));
+        cache.start();
+        await(cache::isReady);
+
+        // 更新の後に削除されていると fullDocument は null になる
+        script.add(event("update", "t1", tokyo, null));
+        await(() -> cache.get(tokyo.toHexString()).isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testDropReloadsWithoutResumeToken() {
+        ObjectId tokyo = new ObjectId();
+        ObjectId shinjuku = new ObjectId();
+        collection.add(lot(tokyo, "東京駅前駐車場", 50));
+        cache.start();
+        await(cache::isReady);
+
+        script.add(event("update", "t1", tokyo, lot(tokyo, "東京駅前駐車場", 49)));
+        await(() -> cache.get(tokyo.toHexString()).orElseThrow().getAvailableSpaces() == 49);
+        collection.clear();
+        collection.add(lot(shinjuku, "新宿駐車場", 30));
+        script.add(event("drop", "t2", null, null));
+
+        await(() -> reloads.get() == 2 && cache.isReady());
+        assertTrue(cache.get(tokyo.toHexString()).isEmpty());
+        assertEquals(30, cache.get(shinjuku.toHexString()).orElseThrow().getAvailableSpaces());
+        assertEquals(2, opens.size());
+        assertNull(opens.get(1));
+    }
+
+    @Test
+    void testTransientErrorResumesFromLastToken() {
+        ObjectId tokyo = new ObjectId();
+        collection.add(lot(tokyo, "東京駅前駐車場", 50));
+        cache.start();
+        await(cache::isReady);
+
+        script.add(event("update", "t1", tokyo, lot(tokyo, "東京駅前駐車場", 49)));
+        await(() -> cache.get(tokyo.toHexString()).orElseThrow().getAvailableSpaces() == 49);
+        script.add(new MongoException("connection reset"));
+        script.add(event("update", "t2", tokyo, lot(tokyo, "東京駅前駐車場", 48)));
+
+        await(() -> cache.isReady() && cache.get(tokyo.toHexString()).orElseThrow().getAvailableSpaces() == 48);
+        assertEquals(2, opens.size());
+        assertEquals(token("t1"), opens.get(1));
+        assertEquals(1, reloads.get());
+    }
+
+    @Test
+    void testHistoryLostReloads() {
+        ObjectId tokyo = new ObjectId();
+        collection.add(lot(tokyo, "東京駅前駐車場", 50));
+        cache.start();
+        await(cache::isReady);
+
+        script.add(event("update", "t1", tokyo, lot(tokyo, "東京駅前駐車場", 49)));
+        await(() -> cache.get(tokyo.toHexString()).orElseThrow().getAvailableSpaces() == 49);
+        collection.set(0, lot(tokyo, "東京駅前駐車場", 40));
+        script.add(commandError(286, "resume point may no longer be in the oplog"));
+
+        await(() -> reloads.get() == 2 && cache.isReady());
+        assertEquals(40, cache.get(tokyo.toHexString()).orElseThrow().getAvailableSpaces());
+        assertEquals(2, opens.size());
+        assertNull(opens.get(1));
+    }
+
+    @Test
+    void testUnavailableStreamIsNotReady() {
+        collection.add(lot(new ObjectId(), "東京駅前駐車場", 50));
+        openFailure.set(commandError(40573, "The $changeStream stage is only supported on replica sets"));
+        Logger logger = (Logger) LoggerFactory.getLogger(MongoChangeStreamCache.class);
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        try {
+            cache.start();
+
+            await(() -> opens.size() >= 3);
+            assertFalse(cache.isReady());
+            assertEquals(0, reloads.get());
+            // 開き直すたびに同じ理由で失敗するので、WARN は最初の1回だけ
+            assertEquals(1, appender.list.stream().filter(event -> event.getLevel() == Level.WARN).count());
+
+            openFailure.set(null);
+            await(cache::isReady);
+            assertEquals(1, cache.size());
+            await(() -> appender.list.stream().anyMatch(event -> event.getLevel() == Level.INFO
+                && event.getFormattedMessage().contains("available again")));
+        } finally {
+            logger.detachAppender(appender);
+        }
+    }
+
+    private static Document lot(ObjectId id, String name, int availableSpaces) {
+        return new Document("_id", id)
+            .append("name", name)
+            .append("total_spaces", 100)
+            .append("available_spaces", availableSpaces)
+            .append("status", "ACTIVE");
+    }
+
+    // サーバーから届く形の通知をドライバーのコーデックで読む
+    private static ChangeStreamDocument<Document> event(String operation, String token, ObjectId id, Document fullDocument) {
+        BsonDocument event = new BsonDocument("_id", token(token))
+            .append("operationType", new BsonString(operation))
+            .append("ns", new BsonDocument("db", new BsonString("test")).append("coll", new BsonString(NAMESPACE)));
+        if (id != null) {
+            event.append("documentKey", new BsonDocument("_id", new BsonObjectId(id)));
+        }
+        if (fullDocument != null) {
+            event.append("fullDocument", fullDocument.toBsonDocument());
+        }
+        return EVENT_CODEC.decode(new BsonDocumentReader(event), DecoderContext.builder().build());
+    }
+
+    private static BsonDocument token(String value) {
+        return new BsonDocument("_data", new BsonString(value));
+    }
+
+    private static MongoCommandException commandError(int code, String message) {
+        return new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+            .append("code", new BsonInt32(code))
+            .append("errmsg", new BsonString(message)), new ServerAddress());
+    }
+
+    private static MongoParkingLot copy(MongoParkingLot parkingLot) {
+        MongoParkingLot copy = new MongoParkingLot();
+        BeanUtils.copyProperties(parkingLot, copy);
+        return copy;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within 10 seconds");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+
+    // 台本の通知を順に返す。例外が入っていれば投げ、空なら追いついたことになる
+    private static class ScriptedCursor implements MongoChangeStreamCursor<ChangeStreamDocument<Document>> {
+
+        private final BlockingQueue<Object> script;
+        private BsonDocument resumeToken;
+
+        ScriptedCursor(BlockingQueue<Object> script, BsonDocument resumeAfter) {
+            this.script = script;
+            this.resumeToken = resumeAfter;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ChangeStreamDocument<Document> tryNext() {
+            Object next;
+            try {
+                next = script.poll(5, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            if (next instanceof RuntimeException failure) {
+                throw failure;
+            }
+            ChangeStreamDocument<Document> event = (ChangeStreamDocument<Document>) next;
+            if (event != null) {
+                resumeToken = event.getResumeToken();
+            }
+            return event;
+        }
+
+        @Override
+        public BsonDocument getResumeToken() {
+            return resumeToken;
+        }
+
+        @Override
+        public int available() {
+            return script.size();
+        }
+
+        @Override
+        public boolean hasNext() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ChangeStreamDocument<Document> next() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerCursor getServerCursor() {
+            return null;
+        }
+
+        @Override
+        public ServerAddress getServerAddress() {
+            return new ServerAddress();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
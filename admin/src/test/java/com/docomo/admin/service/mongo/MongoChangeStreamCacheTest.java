@@ -0,0 +1,144 @@
+package com.docomo.admin.service.mongo;
+
+import com.docomo.admin.entity.mongo.MongoParkingLot;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.commands.MongodArguments;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.Transition;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.transitions.Start;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 組み込みの mongod (flapdoodle) を1ノードのレプリカセットとして起動して確かめる。
+ * mongod を用意できない環境 (ダウンロードできないなど) ではスキップする。
+ */
+class MongoChangeStreamCacheTest {
+
+    private static TransitionWalker.ReachedState<RunningMongodProcess> mongod;
+    private static MongoClient client;
+
+    private MongoTemplate mongoTemplate;
+    private MongoChangeStreamCache<MongoParkingLot> cache;
+
+    @BeforeAll
+    static void startReplicaSet() {
+        try {
+            mongod = new Mongod() {
+                @Override
+                public Transition<MongodArguments> mongodArguments() {
+                    return Start.to(MongodArguments.class)
+                        .initializedWith(MongodArguments.defaults().withReplication(Storage.of("rs0", 0)));
+                }
+            }.start(Version.Main.V6_0);
+        } catch (RuntimeException e) {
+            assumeTrue(false, "embedded mongod is not available: " + e.getMessage());
+        }
+        String address = mongod.current().getServerAddress().toString();
+        client = MongoClients.create("mongodb://" + address + "/?directConnection=true");
+        client.getDatabase("admin").runCommand(new Document("replSetInitiate", new Document("_id", "rs0")
+            .append("members", List.of(new Document("_id", 0).append("host", address)))));
+        await(() -> client.getDatabase("admin").runCommand(new Document("hello", 1)).getBoolean("isWritablePrimary", false));
+    }
+
+    @AfterAll
+    static void stopReplicaSet() {
+        if (client != null) {
+            client.close();
+        }
+        if (mongod != null) {
+            mongod.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = new MongoTemplate(new SimpleMongoClientDatabaseFactory(client, "change_stream_test"));
+        mongoTemplate.dropCollection(MongoParkingLot.class);
+        mongoTemplate.insert(lot("東京駅前駐車場", 50));
+        cache = new MongoChangeStreamCache<>(mongoTemplate, MongoParkingLot.class, MongoParkingLot::getId,
+            MongoChangeStreamCacheTest::copy, Duration.ofMillis(200));
+        cache.start();
+        await(cache::isReady);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (cache != null) {
+            cache.stop();
+        }
+    }
+
+    @Test
+    void testWritesFromOtherNodesAreApplied() {
+        assertEquals(1, cache.size());
+
+        // 別のノードからの書き込み (このキャッシュには通知しない)
+        MongoParkingLot added = mongoTemplate.insert(lot("渋谷駐車場", 10));
+        await(() -> cache.get(added.getId()).isPresent());
+
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(added.getId())),
+            new Update().inc("availableSpaces", -3), MongoParkingLot.class);
+        await(() -> cache.get(added.getId()).orElseThrow().getAvailableSpaces() == 7);
+
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(added.getId())), MongoParkingLot.class);
+        await(() -> cache.get(added.getId()).isEmpty());
+        assertEquals(1, cache.size());
+        assertTrue(cache.isReady());
+    }
+
+    @Test
+    void testDroppedCollectionIsReloaded() {
+        mongoTemplate.dropCollection(MongoParkingLot.class);
+        mongoTemplate.insert(lot("新宿駐車場", 30));
+        await(() -> cache.isReady() && cache.getAll().stream().map(MongoParkingLot::getName).toList().equals(List.of("新宿駐車場")));
+    }
+
+    private static MongoParkingLot lot(String name, int availableSpaces) {
+        MongoParkingLot parkingLot = new MongoParkingLot();
+        parkingLot.setName(name);
+        parkingLot.setTotalSpaces(100);
+        parkingLot.setAvailableSpaces(availableSpaces);
+        parkingLot.setStatus(MongoParkingLot.ParkingLotStatus.ACTIVE);
+        return parkingLot;
+    }
+
+    private static MongoParkingLot copy(MongoParkingLot parkingLot) {
+        MongoParkingLot copy = new MongoParkingLot();
+        BeanUtils.copyProperties(parkingLot, copy);
+        return copy;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within 30 seconds");
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
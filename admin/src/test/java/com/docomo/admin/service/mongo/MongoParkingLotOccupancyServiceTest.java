@@ -0,0 +1,96 @@
+package com.docomo.admin.service.mongo;
+
+import com.docomo.admin.entity.mongo.MongoParkingLot;
+import com.docomo.admin.repository.mongo.MongoParkingLotRepository;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.reset;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 定期フラッシュが割り込まないよう、書き込みはテストから flush() を呼んで行う
+@SpringBootTest(properties = "admin.occupancy.write-behind-interval=PT1H")
+class MongoParkingLotOccupancyServiceTest {
+    
+    @Autowired
+    private MongoParkingLotOccupancyService occupancyService;
+    
+    @SpyBean
+    private MongoParkingLotRepository parkingLotRepository;
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    private final List<String> ids = new ArrayList<>();
+    
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection("parking_lots");
+        for (String name : List.of("北口駐車場", "南口駐車場", "東口駐車場")) {
+            MongoParkingLot parkingLot = new MongoParkingLot(name, "東京都品川区", 10,
+                new BigDecimal("300.00"), new BigDecimal("2000.00"), MongoParkingLot.ParkingLotStatus.ACTIVE);
+            ids.add(parkingLotRepository.save(parkingLot).getId());
+        }
+    }
+    
+    @AfterEach
+    void tearDown() {
+        reset(parkingLotRepository);
+        ids.forEach(occupancyService::parkingLotDeleted);
+        mongoTemplate.dropCollection("parking_lots");
+    }
+    
+    @Test
+    void testPartialBulkFailureRestoresOnlyFailedDeltas() {
+        ids.forEach(occupancyService::enter);
+        String failing = ids.get(1);
+        
+        // 失敗する1件以外は反映し、その1件だけをエラーとして返す (UNORDERED の bulk write と同じ結果)
+        doAnswer(invocation -> {
+            Map<String, Integer> deltas = invocation.getArgument(0);
+            List<String> order = new ArrayList<>(deltas.keySet());
+            deltas.forEach((id, delta) -> {
+                if (!id.equals(failing)) {
+                    parkingLotRepository.adjustAvailableSpaces(id, delta);
+                }
+            });
+            BulkWriteError error = new BulkWriteError(2, "simulated failure", new BsonDocument(), order.indexOf(failing));
+            throw new BulkOperationException("simulated failure", new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(0, deltas.size() - 1, 0, deltas.size() - 1, List.of(), List.of()),
+                List.of(error), null, new ServerAddress(), Set.of()));
+        }).when(parkingLotRepository).adjustAvailableSpaces(anyMap());
+        
+        occupancyService.flush();
+        assertEquals(List.of(9, 10, 9), persistedAvailableSpaces());
+        ids.forEach(id -> assertEquals(9, occupancyService.getAvailableSpaces(id)));
+        
+        // 次のフラッシュでは失敗した分だけを書き込む (反映済みの分は二重に加算しない)
+        reset(parkingLotRepository);
+        occupancyService.flush();
+        assertEquals(List.of(9, 9, 9), persistedAvailableSpaces());
+        ids.forEach(id -> assertEquals(9, occupancyService.getAvailableSpaces(id)));
+    }
+    
+    private List<Integer> persistedAvailableSpaces() {
+        return ids.stream()
+            .map(id -> mongoTemplate.findById(id, MongoParkingLot.class).getAvailableSpaces())
+            .toList();
+    }
+}
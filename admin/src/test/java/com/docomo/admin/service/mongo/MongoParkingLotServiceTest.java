@@ -2,16 +2,27 @@ package com.docomo.admin.service.mongo;
 
 import com.docomo.admin.entity.mongo.MongoParkingLot;
 import com.docomo.admin.repository.mongo.MongoParkingLotRepository;
+import com.docomo.admin.service.filter.ParkingLotFilter;
+import com.docomo.admin.service.filter.ParkingLotFilterIndex;
+import com.docomo.admin.service.geo.NearbyParkingLot;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
 import static org.junit.jupiter.api.Assertions.*;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @SpringBootTest
 class MongoParkingLotServiceTest {
@@ -25,6 +36,9 @@ class MongoParkingLotServiceTest {
     @Autowired
     private MongoTemplate mongoTemplate;
     
+    @Autowired
+    private MongoParkingLotOccupancyService occupancyService;
+    
     private MongoParkingLot testParkingLot1;
     private MongoParkingLot testParkingLot2;
     private MongoParkingLot testParkingLot3;
@@ -96,6 +110,89 @@ class MongoParkingLotServiceTest {
         assertEquals("123 Main St", parkingLots.get(0).getAddress());
     }
     
+    @Test
+    void testSearchParkingLotsInJapanese() {
+        MongoParkingLot marunouchi = parkingLotService.createParkingLot(new MongoParkingLot("丸の内パーキング",
+            "東京都千代田区丸の内1-1", 80, new BigDecimal("700.00"), new BigDecimal("7000.00"), MongoParkingLot.ParkingLotStatus.ACTIVE));
+        
+        List<MongoParkingLot> parkingLots = parkingLotService.searchParkingLots("千代田 ﾊﾟｰｷﾝｸﾞ", 10);
+        assertEquals(1, parkingLots.size());
+        assertEquals(marunouchi.getId(), parkingLots.get(0).getId());
+        // 名前の前方一致が先、住所の "Parking" は含まない
+        assertEquals(List.of("Central Parking", "Downtown Parking", "Suburban Parking"),
+            parkingLotService.searchParkingLots("parking", 10).stream().map(MongoParkingLot::getName).toList());
+        assertEquals(1, parkingLotService.suggestParkingLots("丸の", 10).size());
+        
+        parkingLotService.deleteParkingLot(marunouchi.getId());
+        assertTrue(parkingLotService.searchParkingLots("丸の内", 10).isEmpty());
+    }
+    
+    @Test
+    void testCachedLookupFollowsUpdates() {
+        String id = testParkingLot1.getId();
+        assertEquals(50, parkingLotService.getParkingLotById(id).get().getAvailableSpaces());
+        
+        parkingLotService.updateAvailableSpaces(id, 30);
+        parkingLotService.decrementAvailable(id);
+        assertEquals(29, parkingLotService.getParkingLotById(id).get().getAvailableSpaces());
+        
+        parkingLotService.updateStatus(id, MongoParkingLot.ParkingLotStatus.INACTIVE);
+        assertEquals(MongoParkingLot.ParkingLotStatus.INACTIVE, parkingLotService.getParkingLotById(id).get().getStatus());
+        assertEquals(3, parkingLotService.getAllParkingLots().size());
+        
+        parkingLotService.deleteParkingLot(id);
+        assertFalse(parkingLotService.getParkingLotById(id).isPresent());
+        assertEquals(2, parkingLotService.getAllParkingLots().size());
+    }
+    
+    @Test
+    void testFindParkingLotsByCombinedFilter() {
+        ParkingLotFilter activeAvailable = ParkingLotFilter.status("ACTIVE")
+            .and(ParkingLotFilter.availableSpacesAtLeast(1));
+        assertEquals(List.of("Central Parking"), names(parkingLotService.findParkingLots(
+            activeAvailable, ParkingLotFilterIndex.Column.HOURLY_RATE, false, 10)));
+        
+        parkingLotService.updateAvailableSpaces(testParkingLot2.getId(), 10);
+        assertEquals(List.of("Central Parking", "Downtown Parking"), names(parkingLotService.findParkingLots(
+            activeAvailable, ParkingLotFilterIndex.Column.AVAILABLE_SPACES, true, 10)));
+        // 書き込み前の入庫も空き台数の並びに反映される
+        for (int i = 0; i < 45; i++) {
+            occupancyService.enter(testParkingLot1.getId());
+        }
+        assertEquals(List.of("Downtown Parking", "Central Parking"), names(parkingLotService.findParkingLots(
+            activeAvailable, ParkingLotFilterIndex.Column.AVAILABLE_SPACES, true, 10)));
+        
+        ParkingLotFilter activeOrCheap = ParkingLotFilter.status("ACTIVE")
+            .or(ParkingLotFilter.hourlyRateAtMost(new BigDecimal("400")));
+        assertEquals(List.of("Suburban Parking", "Central Parking"), names(parkingLotService.findParkingLots(
+            activeOrCheap, ParkingLotFilterIndex.Column.HOURLY_RATE, false, 2)));
+        
+        parkingLotService.deleteParkingLot(testParkingLot3.getId());
+        assertEquals(List.of("Central Parking", "Downtown Parking"), names(parkingLotService.findParkingLots(
+            activeOrCheap, ParkingLotFilterIndex.Column.HOURLY_RATE, false, 10)));
+    }
+    
+    @Test
+    void testFindNearestAvailableParkingLots() {
+        // 東京駅から 約 300m (1)、約 1km (2, 満車)、約 2km (3, メンテナンス中)
+        testParkingLot1.setLocation(new GeoJsonPoint(139.7700, 35.6830));
+        testParkingLot2.setLocation(new GeoJsonPoint(139.7671, 35.6902));
+        testParkingLot3.setLocation(new GeoJsonPoint(139.7671, 35.6992));
+        parkingLotService.updateParkingLot(testParkingLot1.getId(), testParkingLot1);
+        parkingLotService.updateParkingLot(testParkingLot2.getId(), testParkingLot2);
+        parkingLotService.updateParkingLot(testParkingLot3.getId(), testParkingLot3);
+        
+        List<NearbyParkingLot<MongoParkingLot>> nearby = parkingLotService.findNearestAvailableParkingLots(35.6812, 139.7671, 5, 5_000);
+        assertEquals(List.of(testParkingLot1.getId()), nearby.stream().map(n -> n.getParkingLot().getId()).toList());
+        assertEquals(330, nearby.get(0).getDistanceMeters(), 30);
+        
+        parkingLotService.incrementAvailable(testParkingLot2.getId());
+        assertEquals(List.of(testParkingLot1.getId(), testParkingLot2.getId()),
+            parkingLotService.findNearestAvailableParkingLots(35.6812, 139.7671, 5, 5_000).stream()
+                .map(n -> n.getParkingLot().getId()).toList());
+        assertTrue(parkingLotService.findNearestAvailableParkingLots(35.6812, 139.7671, 5, 100).isEmpty());
+    }
+    
     @Test
     void testGetParkingLotsWithAvailableSpaces() {
         List<MongoParkingLot> parkingLots = parkingLotService.getParkingLotsWithAvailableSpaces(0);
@@ -228,11 +325,26 @@ class MongoParkingLotServiceTest {
         assertEquals(25, foundParkingLot.get().getAvailableSpaces());
     }
     
+    @Test
+    void testUpdateAvailableSpacesStaysWithinBounds() {
+        String id = testParkingLot1.getId();
+        int totalSpaces = testParkingLot1.getTotalSpaces();
+        assertThrows(IllegalArgumentException.class, () -> parkingLotService.updateAvailableSpaces(id, -1));
+        RuntimeException exceeded = assertThrows(RuntimeException.class,
+            () -> parkingLotService.updateAvailableSpaces(id, totalSpaces + 1));
+        assertEquals("Available spaces cannot exceed total spaces", exceeded.getMessage());
+        assertEquals(testParkingLot1.getAvailableSpaces(), parkingLotRepository.findById(id).orElseThrow().getAvailableSpaces());
+        
+        assertEquals(totalSpaces, parkingLotService.updateAvailableSpaces(id, totalSpaces).getAvailableSpaces());
+        assertEquals(0, parkingLotService.updateAvailableSpaces(id, 0).getAvailableSpaces());
+    }
+    
     @Test
     void testUpdateAvailableSpacesNotFound() {
-        assertThrows(RuntimeException.class, () -> {
+        RuntimeException notFound = assertThrows(RuntimeException.class, () -> {
             parkingLotService.updateAvailableSpaces("nonexistent-id", 25);
         });
+        assertEquals("Parking lot not found", notFound.getMessage());
     }
     
     @Test
@@ -279,4 +391,122 @@ class MongoParkingLotServiceTest {
         assertTrue(parkingLotService.existsById(testParkingLot2.getId()));
         assertFalse(parkingLotService.existsById("nonexistent-id"));
     }
-} 
\ No newline at end of file
+    
+    @Test
+    void testIncrementAndDecrementAvailable() {
+        assertEquals(49, parkingLotService.decrementAvailable(testParkingLot1.getId()));
+        assertEquals(52, parkingLotService.incrementAvailable(testParkingLot1.getId(), 3));
+        
+        Optional<MongoParkingLot> foundParkingLot = parkingLotRepository.findById(testParkingLot1.getId());
+        assertTrue(foundParkingLot.isPresent());
+        assertEquals(52, foundParkingLot.get().getAvailableSpaces());
+        assertNotNull(foundParkingLot.get().getUpdatedAt());
+    }
+    
+    @Test
+    void testAvailableCountersStayWithinBounds() {
+        // 満車からは減らせない
+        assertThrows(RuntimeException.class, () -> {
+            parkingLotService.decrementAvailable(testParkingLot2.getId());
+        });
+        assertEquals(0, parkingLotRepository.findById(testParkingLot2.getId()).get().getAvailableSpaces());
+        
+        // total_spaces (100) を超えては増やせない
+        assertThrows(RuntimeException.class, () -> {
+            parkingLotService.incrementAvailable(testParkingLot1.getId(), 51);
+        });
+        assertEquals(50, parkingLotRepository.findById(testParkingLot1.getId()).get().getAvailableSpaces());
+        assertEquals(100, parkingLotService.incrementAvailable(testParkingLot1.getId(), 50));
+    }
+    
+    @Test
+    void testAvailableCountersNotFound() {
+        assertThrows(RuntimeException.class, () -> {
+            parkingLotService.incrementAvailable("nonexistent-id");
+        });
+        assertThrows(RuntimeException.class, () -> {
+            parkingLotService.decrementAvailable("nonexistent-id");
+        });
+    }
+    
+    @Test
+    void testConcurrentEntriesAndExitsLoseNoUpdates() throws Exception {
+        String id = testParkingLot3.getId();
+        int threads = 16;
+        int cycles = 100;
+        
+        // 各スレッドが入庫→出庫を繰り返す。更新を取りこぼさなければ最後は元の 75 に戻る
+        runConcurrently(threads, () -> {
+            for (int i = 0; i < cycles; i++) {
+                parkingLotService.decrementAvailable(id);
+                parkingLotService.incrementAvailable(id);
+            }
+        });
+        
+        assertEquals(75, parkingLotRepository.findById(id).get().getAvailableSpaces());
+    }
+    
+    @Test
+    void testConcurrentEntriesNeverOverbook() throws Exception {
+        String id = testParkingLot1.getId();
+        AtomicInteger admitted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        
+        // 空き 50 台に 16 スレッド x 10 台が同時に入庫しようとする
+        runConcurrently(16, () -> {
+            for (int i = 0; i < 10; i++) {
+                try {
+                    parkingLotService.decrementAvailable(id);
+                    admitted.incrementAndGet();
+                } catch (RuntimeException e) {
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+        
+        assertEquals(50, admitted.get());
+        assertEquals(110, rejected.get());
+        assertEquals(0, parkingLotRepository.findById(id).get().getAvailableSpaces());
+    }
+    
+    @Test
+    void testOccupancyChangesAreWrittenBehindInBulk() {
+        for (int i = 0; i < 5; i++) {
+            occupancyService.enter(testParkingLot1.getId());
+        }
+        occupancyService.exit(testParkingLot3.getId());
+        assertEquals(45, occupancyService.getAvailableSpaces(testParkingLot1.getId()));
+        assertThrows(RuntimeException.class, () -> {
+            occupancyService.enter(testParkingLot2.getId());
+        });
+        
+        occupancyService.flush();
+        assertEquals(45, parkingLotRepository.findById(testParkingLot1.getId()).get().getAvailableSpaces());
+        assertEquals(76, parkingLotRepository.findById(testParkingLot3.getId()).get().getAvailableSpaces());
+    }
+    
+    private static List<String> names(List<MongoParkingLot> parkingLots) {
+        return parkingLots.stream().map(MongoParkingLot::getName).toList();
+    }
+    
+    private void runConcurrently(int threads, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.docomo.admin.repository.mongo.MongoUserRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
+import org.mockito.Answers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -29,7 +30,9 @@ class MongoUserServiceTest {
     @Autowired
     private MongoTemplate mongoTemplate;
     
-    @MockBean
+    // 起動時の DataInitializer も encode を呼ぶので、スタブ前でも null を返さないようにする
+    // (起動に失敗したコンテキストの後始末が、共有している H2 と二次キャッシュを他のテストから消してしまう)
+    @MockBean(answer = Answers.RETURNS_SMART_NULLS)
     private PasswordEncoder passwordEncoder;
     
     private MongoUser testUser1;
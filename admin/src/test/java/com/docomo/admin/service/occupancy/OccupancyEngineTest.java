@@ -0,0 +1,121 @@
+package com.docomo.admin.service.occupancy;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class OccupancyEngineTest {
+
+    @Test
+    void testAdjustStaysWithinBounds() {
+        OccupancyEngine engine = new OccupancyEngine();
+        engine.load("1", 10, 1);
+
+        assertEquals(0, engine.adjust("1", -1));
+        assertEquals(OccupancyCell.REJECTED, engine.adjust("1", -1));
+        assertEquals(10, engine.adjust("1", 10));
+        assertEquals(OccupancyCell.REJECTED, engine.adjust("1", 1));
+        assertEquals(10, engine.getAvailableSpaces("1"));
+        assertNull(engine.getAvailableSpaces("2"));
+        assertThrows(IllegalStateException.class, () -> engine.adjust("2", 1));
+    }
+
+    @Test
+    void testDrainCoalescesChangesPerLot() {
+        OccupancyEngine engine = new OccupancyEngine();
+        engine.load("1", 100, 50);
+        engine.load("2", 100, 50);
+        engine.load("3", 100, 50);
+
+        for (int i = 0; i < 5; i++) {
+            engine.adjust("1", -1);
+        }
+        engine.adjust("2", 1);
+        engine.adjust("3", -1);
+        engine.adjust("3", 1);
+
+        // 打ち消し合った駐車場 3 は書き込まない
+        assertEquals(Map.of("1", -5, "2", 1), engine.drainPending());
+        assertTrue(engine.drainPending().isEmpty());
+        assertEquals(45, engine.getAvailableSpaces("1"));
+    }
+
+    @Test
+    void testLoadKeepsPendingChanges() {
+        OccupancyEngine engine = new OccupancyEngine();
+        engine.load("1", 100, 50);
+        engine.adjust("1", -3);
+
+        // 反映前に DB 側で 40 に変更された
+        engine.load("1", 100, 40);
+        assertEquals(37, engine.getAvailableSpaces("1"));
+        assertEquals(Map.of("1", -3), engine.drainPending());
+
+        engine.restorePending("1", -3);
+        engine.availableSpacesChanged("1", 30);
+        assertEquals(27, engine.getAvailableSpaces("1"));
+        assertEquals(Map.of("1", -3), engine.drainPending());
+    }
+
+    @Test
+    void testConcurrentChangesAreNeverLostWhileFlushing() throws Exception {
+        OccupancyEngine engine = new OccupancyEngine();
+        int lots = 4;
+        for (int i = 0; i < lots; i++) {
+            engine.load(String.valueOf(i), 50, 25);
+        }
+        Map<String, Integer> flushed = new ConcurrentHashMap<>();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        ExecutorService executor = Executors.newFixedThreadPool(9);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            // 反映スレッドは書き込みと並行して取り出し続ける
+            Future<?> flusher = executor.submit(() -> {
+                start.await();
+                while (running.get()) {
+                    engine.drainPending().forEach((lotKey, delta) -> flushed.merge(lotKey, delta, Integer::sum));
+                }
+                return null;
+            });
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 50_000; i++) {
+                        String lotKey = String.valueOf(random.nextInt(lots));
+                        int available = engine.adjust(lotKey, random.nextBoolean() ? 1 : -1);
+                        assertTrue(available == OccupancyCell.REJECTED || (available >= 0 && available <= 50));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+            running.set(false);
+            flusher.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        engine.drainPending().forEach((lotKey, delta) -> flushed.merge(lotKey, delta, Integer::sum));
+
+        // 反映した増減の合計が、メモリ上の空き台数の変化と一致する
+        for (int i = 0; i < lots; i++) {
+            String lotKey = String.valueOf(i);
+            assertEquals(engine.getAvailableSpaces(lotKey) - 25, flushed.getOrDefault(lotKey, 0).intValue());
+        }
+    }
+}
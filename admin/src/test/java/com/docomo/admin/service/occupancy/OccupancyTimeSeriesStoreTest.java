@@ -0,0 +1,135 @@
+package com.docomo.admin.service.occupancy;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+class OccupancyTimeSeriesStoreTest {
+
+    private static final long BASE = 1_700_000_000L - 1_700_000_000L % 86400;
+
+    @TempDir
+    Path directory;
+
+    private static Clock clockAt(long epochSecond) {
+        return Clock.fixed(Instant.ofEpochSecond(epochSecond), ZoneOffset.UTC);
+    }
+
+    private static Map<OccupancyResolution, Duration> retention(Duration raw) {
+        Map<OccupancyResolution, Duration> retention = new EnumMap<>(OccupancyResolution.class);
+        retention.put(OccupancyResolution.RAW, raw);
+        retention.put(OccupancyResolution.MINUTE, Duration.ofDays(30));
+        return retention;
+    }
+
+    @Test
+    void testRawPointsRoundTripAcrossBlocks() throws IOException {
+        Random random = new Random(42);
+        long[] times = new long[1000];
+        int[] values = new int[1000];
+        long time = BASE;
+        int value = 100;
+        try (OccupancyTimeSeriesStore store = new OccupancyTimeSeriesStore(directory, 16, retention(Duration.ofDays(7)), clockAt(BASE))) {
+            for (int i = 0; i < times.length; i++) {
+                time += random.nextInt(10) < 8 ? random.nextInt(5) : random.nextInt(100_000);
+                value = i % 100 == 0 ? random.nextInt() : Math.max(0, value + random.nextInt(3) - 1);
+                times[i] = time;
+                values[i] = value;
+                store.record("1", time, value);
+            }
+
+            List<OccupancyPoint> points = store.query("1", OccupancyResolution.RAW, Long.MIN_VALUE, Long.MAX_VALUE);
+            assertEquals(times.length, points.size());
+            for (int i = 0; i < times.length; i++) {
+                assertEquals(times[i], points.get(i).getEpochSecond());
+                assertEquals(values[i], points.get(i).getLast());
+            }
+        }
+    }
+
+    @Test
+    void testMinuteBucketsUseTimeWeightedAverage() throws IOException {
+        try (OccupancyTimeSeriesStore store = new OccupancyTimeSeriesStore(directory, 16, retention(Duration.ofDays(7)), clockAt(BASE + 600))) {
+            store.record("1", BASE, 10);
+            store.record("1", BASE + 15, 20);
+            store.record("1", BASE + 45, 5);
+            // 次の分は変化なし、その次の分で変化
+            store.record("1", BASE + 150, 7);
+
+            List<OccupancyPoint> minutes = store.query("1", OccupancyResolution.MINUTE, BASE, BASE + 3600);
+            assertEquals(2, minutes.size());
+
+            OccupancyPoint first = minutes.get(0);
+            assertEquals(BASE, first.getEpochSecond());
+            assertEquals(5, first.getMin());
+            assertEquals(20, first.getMax());
+            assertEquals(5, first.getLast());
+            assertEquals((10 * 15 + 20 * 30 + 5 * 15) / 60.0, first.getAverage(), 0.01);
+
+            // 集計途中のバケットは現在時刻まで最終値が続いているとみなす
+            OccupancyPoint open = minutes.get(1);
+            assertEquals(BASE + 120, open.getEpochSecond());
+            assertEquals(5, open.getMin());
+            assertEquals(7, open.getMax());
+            assertEquals((5 * 30 + 7 * 30) / 60.0, open.getAverage(), 0.01);
+
+            List<OccupancyPoint> hours = store.query("1", OccupancyResolution.HOUR, BASE, BASE + 3600);
+            assertEquals(1, hours.size());
+            assertEquals(20, hours.get(0).getMax());
+        }
+    }
+
+    @Test
+    void testReopenRestoresBlocksAndOpenBuckets() throws IOException {
+        try (OccupancyTimeSeriesStore store = new OccupancyTimeSeriesStore(directory, 4, retention(Duration.ofDays(7)), clockAt(BASE))) {
+            for (int i = 0; i < 30; i++) {
+                store.record("1", BASE + i * 20L, 50 - i);
+                store.record("2", BASE + i * 20L, i);
+            }
+        }
+
+        try (OccupancyTimeSeriesStore store = new OccupancyTimeSeriesStore(directory, 4, retention(Duration.ofDays(7)), clockAt(BASE + 600))) {
+            assertEquals(2, store.lotCount());
+            assertEquals(30, store.query("2", OccupancyResolution.RAW, BASE, BASE + 3600).size());
+
+            List<OccupancyPoint> minutes = store.query("1", OccupancyResolution.MINUTE, BASE, BASE + 3600);
+            assertEquals(10, minutes.size());
+            assertEquals(BASE + 540, minutes.get(9).getEpochSecond());
+            assertEquals(21, minutes.get(9).getLast());
+
+            store.record("1", BASE + 700, 0);
+            minutes = store.query("1", OccupancyResolution.MINUTE, BASE, BASE + 3600);
+            assertEquals(11, minutes.size());
+            assertEquals(21, minutes.get(9).getMin());
+            assertEquals(0, minutes.get(10).getLast());
+        }
+    }
+
+    @Test
+    void testExpiredBlocksAreDroppedOnReopen() throws IOException {
+        try (OccupancyTimeSeriesStore store = new OccupancyTimeSeriesStore(directory, 4, retention(Duration.ofDays(1)), clockAt(BASE))) {
+            for (int i = 0; i < 8; i++) {
+                store.record("1", BASE + i * 60L, i);
+            }
+            store.record("1", BASE + 3 * 86400L, 100);
+        }
+
+        try (OccupancyTimeSeriesStore store = new OccupancyTimeSeriesStore(directory, 4, retention(Duration.ofDays(1)), clockAt(BASE + 3 * 86400L))) {
+            List<OccupancyPoint> raw = store.query("1", OccupancyResolution.RAW, Long.MIN_VALUE, Long.MAX_VALUE);
+            assertEquals(1, raw.size());
+            assertEquals(100, raw.get(0).getLast());
+            // 集約バケットは保持期間内なので残る
+            assertEquals(9, store.query("1", OccupancyResolution.MINUTE, Long.MIN_VALUE, Long.MAX_VALUE).size());
+        }
+    }
+}
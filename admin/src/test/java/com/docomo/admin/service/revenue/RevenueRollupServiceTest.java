@@ -0,0 +1,96 @@
+package com.docomo.admin.service.revenue;
+
+import com.docomo.admin.entity.RevenueRollup;
+import com.docomo.admin.entity.Transaction;
+import com.docomo.admin.repository.RevenueRollupRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import static org.junit.jupiter.api.Assertions.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// 集計行は駐車場に外部キーを持たないので、存在しない駐車場 id で作って後で消す
+@SpringBootTest
+class RevenueRollupServiceTest {
+
+    private static final long PARKING_LOT_ID = 990_001L;
+    private static final LocalDateTime ENTRY_TIME = LocalDateTime.of(2024, 5, 1, 10, 15);
+
+    @Autowired
+    private RevenueRollupService rollupService;
+
+    @Autowired
+    private RevenueRollupRepository rollupRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        rollupRepository.deleteAll(rollups());
+    }
+
+    @Test
+    void testConcurrentFirstContributionsShareOneBucket() throws Exception {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        RevenueContribution contribution = new RevenueContribution(PARKING_LOT_ID, ENTRY_TIME, null,
+            Transaction.TransactionStatus.COMPLETED, new BigDecimal("300.00"));
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(callers.submit(() -> {
+                    start.await();
+                    template.executeWithoutResult(status -> rollupService.apply(RevenueContribution.NONE, contribution));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        // 時間・日のバケットが1行ずつで、全員の加算が入っている
+        List<RevenueRollup> rollups = rollups();
+        assertEquals(2, rollups.size());
+        for (RevenueRollup rollup : rollups) {
+            assertEquals(0, new BigDecimal("2400.00").compareTo(rollup.getTotalAmount()));
+            assertEquals(8L, rollup.getTransactionCount());
+        }
+
+        // 後の加算も1回だけ数える
+        template.executeWithoutResult(status -> rollupService.apply(RevenueContribution.NONE, contribution));
+        assertEquals(0, new BigDecimal("2700.00").compareTo(rollupService.getTotalRevenueByParkingLot(PARKING_LOT_ID)));
+    }
+
+    @Test
+    void testDuplicateBucketIsRejected() {
+        rollupRepository.saveAndFlush(new RevenueRollup(null, RevenueRollup.Granularity.DAY, PARKING_LOT_ID,
+            ENTRY_TIME.toLocalDate().atStartOfDay(), null, null, BigDecimal.ZERO, 0L));
+        assertThrows(DataIntegrityViolationException.class, () -> rollupRepository.saveAndFlush(new RevenueRollup(null,
+            RevenueRollup.Granularity.DAY, PARKING_LOT_ID, ENTRY_TIME.toLocalDate().atStartOfDay(), null, null,
+            BigDecimal.ONE, 1L)));
+    }
+
+    private List<RevenueRollup> rollups() {
+        return rollupRepository.findAll().stream()
+            .filter(rollup -> rollup.getParkingLotId() == PARKING_LOT_ID)
+            .toList();
+    }
+}
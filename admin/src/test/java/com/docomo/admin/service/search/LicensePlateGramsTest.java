@@ -0,0 +1,32 @@
+package com.docomo.admin.service.search;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LicensePlateGramsTest {
+
+    @Test
+    void testNormalize() {
+        assertEquals("品川300あ1234", LicensePlateGrams.normalize("品川 300 あ 12-34"));
+        assertEquals("品川300あ1234", LicensePlateGrams.normalize("品川　３００　あ　１２－３４"));
+        assertEquals("abc123", LicensePlateGrams.normalize("ＡＢＣ-123"));
+        assertNull(LicensePlateGrams.normalize(null));
+    }
+
+    @Test
+    void testIndexContainsBigramsAndTrigrams() {
+        assertEquals(List.of("ab", "bc", "c1", "abc", "bc1"), LicensePlateGrams.index("abc1"));
+        assertEquals(List.of(), LicensePlateGrams.index("a"));
+        // 重複は1つにする
+        assertEquals(List.of("11", "111"), LicensePlateGrams.index("1111"));
+    }
+
+    @Test
+    void testQuery() {
+        assertEquals(List.of("123", "234"), LicensePlateGrams.query("1234"));
+        assertEquals(List.of("12"), LicensePlateGrams.query("12"));
+        assertEquals(List.of(), LicensePlateGrams.query("1"));
+        assertEquals(List.of(), LicensePlateGrams.query(""));
+    }
+}
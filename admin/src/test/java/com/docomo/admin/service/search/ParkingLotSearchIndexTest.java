@@ -0,0 +1,81 @@
+package com.docomo.admin.service.search;
+
+import com.docomo.admin.service.search.ParkingLotSearchIndex.Field;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParkingLotSearchIndexTest {
+
+    private static final Set<Field> ALL = Set.of(Field.NAME, Field.ADDRESS);
+
+    private ParkingLotSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ParkingLotSearchIndex();
+        index.put("1", "丸の内センタービル駐車場", "東京都千代田区丸の内1-1");
+        index.put("2", "有楽町パーキング", "東京都千代田区有楽町2-2");
+        index.put("3", "丸の内北口", "東京都千代田区丸の内3-3");
+        index.put("4", "Shinagawa Station Parking", "東京都港区高輪3-26");
+    }
+
+    @Test
+    void testNormalize() {
+        assertEquals("千代田区丸の内11", SearchText.normalize("千代田区 丸ノ内１－１"));
+        assertEquals("shinagawa", SearchText.normalize("ＳＨＩＮＡＧＡＷＡ"));
+        assertEquals("ぱーきんぐ", SearchText.normalize("ﾊﾟｰｷﾝｸﾞ"));
+        assertEquals(List.of("千代田", "丸の内"), SearchText.terms(" 千代田　丸ノ内 "));
+    }
+
+    @Test
+    void testSearchRanksNameAboveAddress() {
+        // 名前の前方一致は住所だけの一致より上、同点なら名前の短い順
+        assertEquals(List.of("3", "1"), index.search("丸の内", ALL, 10));
+        assertEquals(List.of("1"), index.search("センター", ALL, 10));
+        assertEquals(List.of("3", "2", "1"), index.search("千代田", ALL, 10));
+        assertEquals(List.of("3", "2"), index.search("千代田", ALL, 2));
+        assertEquals(List.of("2"), index.search("ﾊﾟｰｷﾝｸﾞ 有楽町", ALL, 10));
+        assertEquals(List.of("4"), index.search("PARKING", ALL, 10));
+        assertEquals(List.of("4"), index.search("station parking", ALL, 10));
+    }
+
+    @Test
+    void testSearchRequiresContiguousMatch() {
+        // bigram はすべて含むが連続していない
+        index.put("5", "ABCAB", "");
+        assertTrue(index.search("BCABC", ALL, 10).isEmpty());
+        assertEquals(List.of("5"), index.search("cab", ALL, 10));
+        assertTrue(index.search("丸の内", Set.of(Field.ADDRESS), 10).containsAll(List.of("1", "3")));
+        assertTrue(index.search("千代田", Set.of(Field.NAME), 10).isEmpty());
+        assertTrue(index.search("", ALL, 10).isEmpty());
+    }
+
+    @Test
+    void testUpdatesAreIncremental() {
+        index.put("2", "有楽町第二駐車場", "東京都千代田区有楽町2-2");
+        assertEquals(List.of("2"), index.search("第二", ALL, 10));
+        assertTrue(index.search("パーキング", ALL, 10).isEmpty());
+
+        index.remove("1");
+        assertTrue(index.search("センター 丸の内", ALL, 10).isEmpty());
+        assertEquals(List.of("3"), index.search("丸の内", ALL, 10));
+        assertEquals(3, index.size());
+
+        index.replaceAll(List.of(new ParkingLotSearchIndex.Lot("9", "品川", "東京都港区")));
+        assertEquals(1, index.size());
+        assertEquals(List.of("9"), index.search("品川", ALL, 10));
+    }
+
+    @Test
+    void testSuggest() {
+        assertEquals(List.of("1", "3"), index.suggest("丸の", 10));
+        assertEquals(List.of("4"), index.suggest("shina", 10));
+        assertEquals(List.of("2"), index.suggest("有楽町パ", 10));
+        // 名前の前方一致がなければ部分一致の検索結果で補う
+        assertEquals(List.of("3", "2", "1"), index.suggest("千代田", 10));
+        assertEquals(1, index.suggest("丸", 1).size());
+    }
+}
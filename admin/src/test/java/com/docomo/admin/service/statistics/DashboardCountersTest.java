@@ -0,0 +1,80 @@
+package com.docomo.admin.service.statistics;
+
+import com.docomo.admin.entity.ParkingLot.ParkingLotStatus;
+import com.docomo.admin.entity.User.UserRole;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import static org.junit.jupiter.api.Assertions.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Map;
+
+class DashboardCountersTest {
+    
+    private DashboardCounters counters;
+    
+    @BeforeEach
+    void setUp() {
+        counters = new DashboardCounters();
+    }
+    
+    @Test
+    void testAdjustUsers() {
+        counters.adjustUsers(UserRole.ADMIN, 1);
+        counters.adjustUsers(UserRole.OPERATOR, 2);
+        counters.adjustUsers(null, 1);
+        counters.adjustUsers(UserRole.OPERATOR, -1);
+        
+        assertEquals(1, counters.getUserCount(UserRole.ADMIN));
+        assertEquals(1, counters.getUserCount(UserRole.OPERATOR));
+        assertEquals(0, counters.getUserCount(UserRole.MANAGER));
+        assertEquals(3, counters.getTotalUsers());
+    }
+    
+    @Test
+    void testAdjustParkingLots() {
+        counters.adjustParkingLots(ParkingLotStatus.ACTIVE, 2);
+        counters.adjustParkingLots(ParkingLotStatus.MAINTENANCE, 1);
+        counters.adjustParkingLots(ParkingLotStatus.ACTIVE, -1);
+        counters.adjustParkingLots(ParkingLotStatus.INACTIVE, 1);
+        
+        assertEquals(1, counters.getParkingLotCount(ParkingLotStatus.ACTIVE));
+        assertEquals(3, counters.getTotalParkingLots());
+    }
+    
+    @Test
+    void testRevenueByDayAndMonth() {
+        LocalDate today = LocalDate.of(2024, 3, 15);
+        counters.adjustRevenue(today, new BigDecimal("1000"));
+        counters.adjustRevenue(today, new BigDecimal("500"));
+        counters.adjustRevenue(today.minusDays(3), new BigDecimal("300"));
+        counters.adjustRevenue(today.plusDays(1), new BigDecimal("700"));
+        counters.adjustRevenue(LocalDate.of(2024, 2, 29), new BigDecimal("9999"));
+        counters.adjustRevenue(today, new BigDecimal("-500"));
+        
+        assertEquals(0, new BigDecimal("1000").compareTo(counters.getRevenue(today)));
+        assertEquals(0, new BigDecimal("1300").compareTo(counters.getRevenue(YearMonth.of(2024, 3), today)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(counters.getRevenue(today.minusDays(1))));
+    }
+    
+    @Test
+    void testResetReplacesCounters() {
+        counters.adjustUsers(UserRole.ADMIN, 5);
+        counters.adjustParkingLots(ParkingLotStatus.ACTIVE, 5);
+        LocalDate day = LocalDate.of(2024, 3, 1);
+        counters.adjustRevenue(day, new BigDecimal("100"));
+        counters.adjustRevenue(day.plusDays(1), new BigDecimal("200"));
+        
+        counters.resetUsers(Map.of(UserRole.MANAGER, 2L), 1);
+        counters.resetParkingLots(Map.of(ParkingLotStatus.INACTIVE, 3L), 0);
+        counters.resetRevenue(Map.of(day, new BigDecimal("150")));
+        
+        assertEquals(0, counters.getUserCount(UserRole.ADMIN));
+        assertEquals(3, counters.getTotalUsers());
+        assertEquals(0, counters.getParkingLotCount(ParkingLotStatus.ACTIVE));
+        assertEquals(3, counters.getTotalParkingLots());
+        assertEquals(0, new BigDecimal("150").compareTo(counters.getRevenue(day)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(counters.getRevenue(day.plusDays(1))));
+    }
+}
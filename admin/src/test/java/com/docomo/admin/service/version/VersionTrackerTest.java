@@ -0,0 +1,38 @@
+package com.docomo.admin.service.version;
+
+import org.junit.jupiter.api.Test;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionTrackerTest {
+
+    @Test
+    void testCollectionAndEntityVersions() {
+        Instant started = Instant.parse("2024-04-01T00:00:00Z");
+        VersionTracker tracker = new VersionTracker(Clock.fixed(started, ZoneOffset.UTC));
+        VersionStamp initial = tracker.get("users");
+        assertEquals(0, initial.getVersion());
+        assertEquals(started, initial.getLastModified());
+        assertEquals(initial, tracker.get("users", 1L));
+
+        tracker.changed("users", 1L);
+        tracker.changed("users", 2L);
+        assertEquals(2, tracker.get("users").getVersion());
+        assertEquals(1, tracker.get("users", 1L).getVersion());
+        assertEquals(2, tracker.get("users", 2L).getVersion());
+        // 変更していないエンティティ・一覧はそのまま
+        assertEquals(initial, tracker.get("users", 3L));
+        assertEquals(0, tracker.get("parking-lots").getVersion());
+
+        tracker.changed("users", 1L);
+        assertEquals(3, tracker.get("users", 1L).getVersion());
+        assertEquals(3, tracker.get("users").getVersion());
+    }
+
+    @Test
+    void testEpochDiffersPerInstance() {
+        assertNotEquals(new VersionTracker().get("users"), new VersionTracker().get("users"));
+    }
+}